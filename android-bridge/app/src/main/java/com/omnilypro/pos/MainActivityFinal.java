@@ -32,8 +32,11 @@ import android.text.Layout;
 import android.text.Layout.Alignment;
 import android.util.Log;
 import android.view.Display;
+import android.view.ViewGroup;
 import android.webkit.JavascriptInterface;
 import android.webkit.WebChromeClient;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
@@ -63,6 +66,7 @@ import com.zcs.sdk.print.PrnTextStyle;
 import com.zcs.sdk.print.PrnAlignTypeEnum;
 import com.zcs.sdk.print.PrnFontSizeTypeEnum;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONException;
 
@@ -70,9 +74,35 @@ import com.google.zxing.integration.android.IntentIntegrator;
 import com.google.zxing.integration.android.IntentResult;
 import com.google.zxing.BarcodeFormat;
 
+import com.omnilypro.pos.bridge.BinaryBridgeChannel;
+import com.omnilypro.pos.bridge.BridgeBatchInvoker;
+import com.omnilypro.pos.bridge.BridgeInjector;
+import com.omnilypro.pos.bridge.BridgeResult;
+import com.omnilypro.pos.bridge.JsCallbackDispatcher;
+import com.omnilypro.pos.bridge.SessionChannel;
+import com.omnilypro.pos.display.CustomerDisplayChannel;
+import com.omnilypro.pos.display.NativeCustomerDisplay;
+import com.omnilypro.pos.display.WebViewDisplaySink;
+import com.omnilypro.pos.diagnostics.BridgeMetrics;
+import com.omnilypro.pos.diagnostics.DiagnosticLog;
+import com.omnilypro.pos.diagnostics.JankMonitor;
+import com.omnilypro.pos.diagnostics.WebPerfCollector;
 import com.omnilypro.pos.mdm.MdmManager;
 import com.omnilypro.pos.mdm.MyDeviceAdminReceiver;
 import com.omnilypro.pos.mdm.ProvisioningLogger;
+import com.omnilypro.pos.session.SecureSessionStore;
+import com.omnilypro.pos.startup.StartupOrchestrator;
+import com.omnilypro.pos.startup.StartupTracer;
+import com.omnilypro.pos.web.ImageDownscaleProxy;
+import com.omnilypro.pos.web.NativeRequestChain;
+import com.omnilypro.pos.web.PickedImageCompressor;
+import com.omnilypro.pos.web.PrefetchManager;
+import com.omnilypro.pos.web.RendererRecoveryPolicy;
+import com.omnilypro.pos.web.ServiceWorkerInterceptor;
+import com.omnilypro.pos.web.SupabaseReadCache;
+import com.omnilypro.pos.web.WebBundleManager;
+import com.omnilypro.pos.web.WebCacheManager;
+import com.omnilypro.pos.web.WebViewMemoryGovernor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -91,8 +121,29 @@ public class MainActivityFinal extends AppCompatActivity {
     private RfCard mRfCard;
     private HQrsanner mHQrsanner;
     private Printer mPrinter;
+    private static final int SDK_POWER_ON_RETRIES = 8;
+    private static final long SDK_POWER_ON_RETRY_MS = 200;
+
+    // Avvio a grafo: task indipendenti in parallelo, non critici dopo il primo onPageFinished
+    private StartupOrchestrator startup;
+    private StartupTracer startupTracer;
+    private RendererRecoveryPolicy rendererRecovery;
+    private WebViewMemoryGovernor memoryGovernor;
     private WebView webView;
+    private WebCacheManager webCacheManager;
+    private WebBundleManager webBundleManager;
+    private SupabaseReadCache supabaseReadCache;
+    private ImageDownscaleProxy imageProxy;
+    private PrefetchManager prefetchManager;
+    private boolean bundleUpdateChecked = false;
+    private long lastUserInteractionAt = System.currentTimeMillis();
+    private static final long BUNDLE_SWAP_IDLE_MS = 5 * 60 * 1000; // 5 minuti senza interazioni
     private Presentation customerPresentation;
+    private final CustomerDisplayChannel customerDisplayChannel = new CustomerDisplayChannel();
+    // Customer display: "native" (viste native, default) o "webview" (fallback con il web app)
+    private static final String PREF_CUSTOMER_DISPLAY_MODE = "customer_display_mode";
+    private static final String CUSTOMER_DISPLAY_NATIVE = "native";
+    private static final String CUSTOMER_DISPLAY_WEBVIEW = "webview";
 
     // Android NFC
     private NfcAdapter nfcAdapter;
@@ -101,16 +152,19 @@ public class MainActivityFinal extends AppCompatActivity {
     private String[][] nfcTechLists;
     private OmnilyPOSBridge bridge;
 
-    // Bridge re-injection handler for SPA navigation
-    private android.os.Handler bridgeHandler;
-    private Runnable bridgeInjector;
+    // Bridge iniettato una volta + handshake document-start (niente più loop di re-iniezione)
+    private BridgeInjector bridgeInjector;
+    private SessionChannel sessionChannel;
+    // Callback ed eventi verso il JS: una evaluateJavascript per frame
+    private final JsCallbackDispatcher jsDispatcher = new JsCallbackDispatcher(() -> webView);
 
     // QR Code scanning
     private String currentQRCallback;
 
     // MDM - Device Admin
-    private DevicePolicyManager mDevicePolicyManager;
-    private ComponentName mAdminComponent;
+    // volatile: inizializzati dal task di avvio in background
+    private volatile DevicePolicyManager mDevicePolicyManager;
+    private volatile ComponentName mAdminComponent;
     private BroadcastReceiver mdmCommandReceiver;
 
     // Text-to-Speech
@@ -140,9 +194,42 @@ public class MainActivityFinal extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        DiagnosticLog.init(this);
         Log.d(TAG, "Activity Created");
+        // Tempi di frame del WebView POS (jank_summary nell'heartbeat)
+        JankMonitor.getInstance().attach(JankMonitor.SURFACE_MAIN, this);
+        startupTracer = StartupTracer.getInstance(this);
+        startupTracer.begin();
+        rendererRecovery = new RendererRecoveryPolicy(this);
+        memoryGovernor = new WebViewMemoryGovernor(this, new WebViewMemoryGovernor.Host() {
+            @Override
+            public WebView getMainWebView() {
+                return webView;
+            }
+
+            @Override
+            public WebView getCustomerWebView() {
+                return customerPresentation instanceof CustomerPresentation
+                        ? ((CustomerPresentation) customerPresentation).getWebView() : null;
+            }
+
+            @Override
+            public void releaseCustomerDisplay() {
+                if (customerPresentation instanceof CustomerPresentation) {
+                    ((CustomerPresentation) customerPresentation).releaseWebView();
+                }
+            }
+
+            @Override
+            public void restoreCustomerDisplay() {
+                if (customerPresentation instanceof CustomerPresentation) {
+                    ((CustomerPresentation) customerPresentation).restoreWebView();
+                }
+            }
+        });
         ProvisioningLogger.log(this, "MAINACTIVITY_ONCREATE", "MainActivity.onCreate chiamato");
         showSplashScreen();
+        startupTracer.mark(StartupTracer.PHASE_SPLASH_SHOWN);
 
         // Check if opened via deep link (omnily://setup?token=xxx)
         handleDeepLink(getIntent());
@@ -153,33 +240,107 @@ public class MainActivityFinal extends AppCompatActivity {
 
     private void startApp() {
         Log.d(TAG, "startApp() called. Initializing components...");
-        initZcsSDK();
-        setupNFC();
-        setupWebView();
-        setupCustomerDisplay();
-
-        // Inizializza Device Admin per MDM. Questo metodo ora gestirà i permessi.
-        setupDeviceAdmin();
-
-        // Initialize Text-to-Speech
-        setupTextToSpeech();
+        // L'executor SDK esiste subito e initZcsSDK è il suo primo job: i lavori che il bridge invia a
+        // mExecutor partono dopo l'init (FIFO). Le altre chiamate del bridge non attendono nulla
+        // Strumentato: attesa in coda ed esecuzione dei job finiscono sul metodo del bridge chiamante
+        mExecutor = BridgeMetrics.getInstance().newSingleThreadExecutor();
+
+        startup = new StartupOrchestrator()
+                // Prima di tutto il caricamento della pagina (è il percorso critico)
+                .addMain("webview", StartupOrchestrator.Phase.CRITICAL, () -> {
+                    setupWebView();
+                    loadInitialUrl();
+                })
+                .addBackground("zcs_sdk", StartupOrchestrator.Phase.CRITICAL, mExecutor, this::initZcsSDK)
+                // Sessione staff dal Keystore, decifrata in anticipo per SessionChannel: la cassa è pronta
+                // senza login (il rinnovo del token lo fa solo supabase-js)
+                .addBackground("session", StartupOrchestrator.Phase.CRITICAL, null, this::restoreStaffSession)
+                // Inizializza Device Admin per MDM. Questo metodo ora gestirà i permessi.
+                .addBackground("device_admin", StartupOrchestrator.Phase.CRITICAL, null, this::setupDeviceAdmin)
+                .addMain("nfc", StartupOrchestrator.Phase.CRITICAL, this::setupNFC, "webview")
+                // Il kiosk mode via MDM richiede i Lock Task packages configurati da device_admin
+                .addMain("mdm_receiver", StartupOrchestrator.Phase.CRITICAL, this::registerMdmCommandReceiver, "device_admin")
+                // Non critici: dopo il primo onPageFinished
+                .addMain("customer_display", StartupOrchestrator.Phase.AFTER_FIRST_PAINT, this::setupCustomerDisplay)
+                .addMain("tts", StartupOrchestrator.Phase.AFTER_FIRST_PAINT, this::setupTextToSpeech)
+                // Il resto della logica di avvio che dipende dai permessi va qui.
+                .addMain("mdm", StartupOrchestrator.Phase.AFTER_FIRST_PAINT, () -> {
+                    Log.i(TAG, "Initializing MDM system...");
+                    MdmManager.getInstance(this).initialize();
+                    Log.i(TAG, "MDM system initialized successfully");
+                }, "device_admin");
+        startup.start();
+    }
 
-        // Il resto della logica di avvio che dipende dai permessi va qui.
-        Log.i(TAG, "Initializing MDM system...");
-        MdmManager.getInstance(this).initialize();
-        Log.i(TAG, "MDM system initialized successfully");
+    private void restoreStaffSession() {
+        SecureSessionStore.getInstance(this).restore();
+    }
 
-        registerMdmCommandReceiver();
-        loadInitialUrl();
+    /**
+     * Logout dal web app (SessionChannel): niente dati né cookie dell'operatore uscente
+     */
+    private void onStaffLogout() {
+        // Righe in cache dell'operatore uscente (clienti, staff): mai servite al successivo.
+        // clear() non tocca il disco su questo thread
+        if (supabaseReadCache != null) {
+            supabaseReadCache.clear();
+        }
+        android.webkit.CookieManager.getInstance().removeAllCookies(null);
     }
 
     private void loadInitialUrl() {
-        String timestamp = String.valueOf(System.currentTimeMillis());
-        String url = "https://omnilypro.com?posomnily=true&v=" + timestamp + "&cb=" + timestamp + "&_t=" + timestamp;
+        // Niente cache-busting: l'entry point viene rivalidato con ETag da WebCacheManager
+        String url = WebCacheManager.getEntryUrl("posomnily=true");
         Log.d(TAG, "Loading initial URL: " + url);
         webView.loadUrl(url);
     }
 
+    private void checkWebBundleUpdate() {
+        webBundleManager.checkForUpdateAsync(version -> runOnUiThread(this::scheduleIdleBundleSwap));
+    }
+
+    /**
+     * Attiva il bundle scaricato quando il POS è inattivo (altrimenti verrà attivato al prossimo riavvio)
+     */
+    private void scheduleIdleBundleSwap() {
+        if (webView == null || webBundleManager.getPendingVersion() == null) {
+            return;
+        }
+        long idleFor = System.currentTimeMillis() - lastUserInteractionAt;
+        boolean busy = bridge != null && bridge.isNFCReading;
+        if (idleFor >= BUNDLE_SWAP_IDLE_MS && !busy) {
+            if (webBundleManager.activatePendingNow()) {
+                Log.i(TAG, "🔄 POS idle - reloading with web bundle " + webBundleManager.getActiveVersion());
+                loadInitialUrl();
+            }
+            return;
+        }
+        long delay = Math.max(BUNDLE_SWAP_IDLE_MS - idleFor, 30000);
+        webView.postDelayed(this::scheduleIdleBundleSwap, delay);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (memoryGovernor != null) {
+            memoryGovernor.onTrimMemory(level);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        if (memoryGovernor != null) {
+            memoryGovernor.onLowMemory();
+        }
+    }
+
+    @Override
+    public void onUserInteraction() {
+        super.onUserInteraction();
+        lastUserInteractionAt = System.currentTimeMillis();
+    }
+
     private void checkAndRequestPermissions() {
         // Questo metodo ora viene chiamato SOLO se l'app NON è Device Owner.
         Log.d(TAG, "Running as a normal app. Checking and requesting permissions interactively.");
@@ -216,32 +377,36 @@ public class MainActivityFinal extends AppCompatActivity {
         }
     }
 
+    /**
+     * Eseguito su mExecutor dallo startup orchestrator (mai sul main thread)
+     */
     private void initZcsSDK() {
-        mExecutor = java.util.concurrent.Executors.newSingleThreadExecutor();
-        mExecutor.submit(() -> {
-            try {
-                mDriverManager = DriverManager.getInstance();
-                mSys = mDriverManager.getBaseSysDevice();
-                int status = mSys.sdkInit();
-                if (status != SdkResult.SDK_OK) {
-                    mSys.sysPowerOn();
-                    Thread.sleep(1000);
+        try {
+            mDriverManager = DriverManager.getInstance();
+            mSys = mDriverManager.getBaseSysDevice();
+            int status = mSys.sdkInit();
+            // Power-on: ritenta a intervalli brevi invece di un'attesa fissa di 1s
+            if (status != SdkResult.SDK_OK) {
+                mSys.sysPowerOn();
+                for (int attempt = 0; attempt < SDK_POWER_ON_RETRIES && status != SdkResult.SDK_OK; attempt++) {
+                    Thread.sleep(SDK_POWER_ON_RETRY_MS);
                     status = mSys.sdkInit();
                 }
-                if (status == SdkResult.SDK_OK) {
-                    mCardReadManager = mDriverManager.getCardReadManager();
-                    mRfCard = mCardReadManager.getRFCard(); // Initialize RfCard object
-                    mHQrsanner = mDriverManager.getHQrsannerDriver(); // Initialize QR scanner
-                    mPinPadManager = mDriverManager.getPadManager(); // Initialize PinPad
-                    mPrinter = mDriverManager.getPrinter(); // Initialize Printer
-                    Log.d(TAG, "ZCS SDK initialized successfully with Printer support.");
-                } else {
-                    Log.e(TAG, "ZCS SDK init failed, status: " + status);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "SDK init error: " + e.getMessage(), e);
             }
-        });
+            if (status == SdkResult.SDK_OK) {
+                mCardReadManager = mDriverManager.getCardReadManager();
+                mRfCard = mCardReadManager.getRFCard(); // Initialize RfCard object
+                mHQrsanner = mDriverManager.getHQrsannerDriver(); // Initialize QR scanner
+                mPinPadManager = mDriverManager.getPadManager(); // Initialize PinPad
+                mPrinter = mDriverManager.getPrinter(); // Initialize Printer
+                Log.d(TAG, "ZCS SDK initialized successfully with Printer support.");
+            } else {
+                Log.e(TAG, "ZCS SDK init failed, status: " + status);
+            }
+            startupTracer.mark(StartupTracer.PHASE_SDK_INIT_DONE);
+        } catch (Exception e) {
+            Log.e(TAG, "SDK init error: " + e.getMessage(), e);
+        }
     }
 
     private void setupNFC() {
@@ -500,13 +665,12 @@ public class MainActivityFinal extends AppCompatActivity {
             final String callbackToUse = bridge.currentNFCCallback != null ? bridge.currentNFCCallback : "omnilyNFCResultHandler";
 
             try {
-                JSONObject result = new JSONObject();
-                result.put("success", true);
-                result.put("cardNo", tagId);
-                result.put("rfUid", tagId);
-
                 // Prima invia il risultato al JavaScript
-                bridge.runJsCallback(callbackToUse, result.toString());
+                bridge.runJsCallback(callbackToUse, BridgeResult.begin()
+                        .put(BridgeResult.SUCCESS, true)
+                        .put(BridgeResult.CARD_NO, tagId)
+                        .put(BridgeResult.RF_UID, tagId)
+                        .end());
 
                 // Poi disabilita NFC con un piccolo delay per permettere al callback di completarsi
                 // Questo evita che onResume venga chiamato prima che il callback sia processato
@@ -545,10 +709,7 @@ public class MainActivityFinal extends AppCompatActivity {
             final String callbackToUse = bridge.currentNFCCallback != null ? bridge.currentNFCCallback : "omnilyNFCResultHandler";
 
             try {
-                JSONObject result = new JSONObject();
-                result.put("success", false);
-                result.put("error", e.getMessage());
-                bridge.runJsCallback(callbackToUse, result.toString());
+                bridge.runJsCallback(callbackToUse, BridgeResult.error(e.getMessage()));
 
                 // Disabilita NFC anche in caso di errore, ma con delay
                 new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(() -> {
@@ -572,6 +733,22 @@ public class MainActivityFinal extends AppCompatActivity {
         }
     }
 
+    /**
+     * Miniatura della fotocamera (extra "data") quando non è stato passato EXTRA_OUTPUT
+     */
+    @SuppressWarnings("deprecation")
+    private static android.graphics.Bitmap cameraThumbnail(Intent data) {
+        android.os.Bundle extras = data.getExtras();
+        if (extras == null) {
+            return null;
+        }
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.TIRAMISU) {
+            return extras.getParcelable("data", android.graphics.Bitmap.class);
+        }
+        android.os.Parcelable legacy = extras.getParcelable("data");
+        return legacy instanceof android.graphics.Bitmap ? (android.graphics.Bitmap) legacy : null;
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -583,22 +760,26 @@ public class MainActivityFinal extends AppCompatActivity {
                 return;
             }
 
-            android.net.Uri[] results = null;
+            final android.webkit.ValueCallback<android.net.Uri[]> callback = filePathCallback;
+            filePathCallback = null;
 
-            if (resultCode == RESULT_OK) {
-                if (data != null) {
-                    String dataString = data.getDataString();
-                    if (dataString != null) {
-                        results = new android.net.Uri[]{android.net.Uri.parse(dataString)};
-                        Log.d(TAG, "✅ File selezionato: " + dataString);
-                    }
-                }
-            } else {
+            if (resultCode != RESULT_OK || data == null) {
                 Log.d(TAG, "📸 Selezione file annullata");
+                callback.onReceiveValue(null);
+                return;
             }
 
-            filePathCallback.onReceiveValue(results);
-            filePathCallback = null;
+            android.net.Uri[] picked = null;
+            String dataString = data.getDataString();
+            if (dataString != null) {
+                picked = new android.net.Uri[]{android.net.Uri.parse(dataString)};
+                Log.d(TAG, "✅ File selezionato: " + dataString);
+            }
+            // Fotocamera senza EXTRA_OUTPUT: arriva solo la miniatura nel bundle
+            android.graphics.Bitmap thumbnail = picked == null ? cameraThumbnail(data) : null;
+
+            // Copia ridimensionata/compressa (limiti dal web app) invece della foto a piena risoluzione
+            PickedImageCompressor.getInstance(this).process(picked, thumbnail, callback::onReceiveValue);
             return;
         }
 
@@ -615,24 +796,28 @@ public class MainActivityFinal extends AppCompatActivity {
         String callbackToUse = currentQRCallback != null ? currentQRCallback : "omnilyQRResultHandler";
 
         try {
-            JSONObject jsonResult = new JSONObject();
+            String jsonResult;
 
             if (result.getContents() == null) {
                 // User cancelled the scan
                 Log.d(TAG, "QR scan cancelled by user");
-                jsonResult.put("success", false);
-                jsonResult.put("cancelled", true);
-                jsonResult.put("error", "Scansione annullata dall'utente");
+                jsonResult = BridgeResult.begin()
+                        .put(BridgeResult.SUCCESS, false)
+                        .put(BridgeResult.CANCELLED, true)
+                        .put(BridgeResult.ERROR, "Scansione annullata dall'utente")
+                        .end();
             } else {
                 // Successful scan
                 String qrContent = result.getContents();
                 String qrFormat = result.getFormatName();
                 Log.d(TAG, "QR scan successful: " + qrContent + " (format: " + qrFormat + ")");
 
-                jsonResult.put("success", true);
-                jsonResult.put("content", qrContent);
-                jsonResult.put("format", qrFormat);
-                jsonResult.put("qrCode", qrContent); // Alias for compatibility
+                jsonResult = BridgeResult.begin()
+                        .put(BridgeResult.SUCCESS, true)
+                        .put(BridgeResult.CONTENT, qrContent)
+                        .put(BridgeResult.FORMAT, qrFormat)
+                        .put(BridgeResult.QR_CODE, qrContent) // Alias for compatibility
+                        .end();
 
                 // Play success beep
                 runOnUiThread(() -> {
@@ -648,20 +833,13 @@ public class MainActivityFinal extends AppCompatActivity {
 
             // Send result to JavaScript
             if (bridge != null) {
-                bridge.runJsCallback(callbackToUse, jsonResult.toString());
+                bridge.runJsCallback(callbackToUse, jsonResult);
             }
 
         } catch (Exception e) {
             Log.e(TAG, "Error processing QR scan result", e);
-            try {
-                JSONObject errorResult = new JSONObject();
-                errorResult.put("success", false);
-                errorResult.put("error", "Errore processamento risultato: " + e.getMessage());
-                if (bridge != null) {
-                    bridge.runJsCallback(callbackToUse, errorResult.toString());
-                }
-            } catch (Exception jsonE) {
-                Log.e(TAG, "Error creating error response", jsonE);
+            if (bridge != null) {
+                bridge.runJsCallback(callbackToUse, BridgeResult.error("Errore processamento risultato: " + e.getMessage()));
             }
         } finally {
             // Reset the callback
@@ -669,73 +847,80 @@ public class MainActivityFinal extends AppCompatActivity {
         }
     }
 
+    /**
+     * Catena di interception condivisa da shouldInterceptRequest, Service Worker e prefetch speculativo
+     *
+     * @return la risposta locale/in cache, oppure null per lasciare la richiesta al WebView
+     */
+    private WebResourceResponse interceptWebRequest(WebResourceRequest request) {
+        return NativeRequestChain.getInstance(this).intercept(request);
+    }
+
     @SuppressLint("SetJavaScriptEnabled")
     private void setupWebView() {
+        // bridge già esistente = WebView ricreato dopo un crash del renderer (stato NFC e cookie preservati)
+        boolean recreating = bridge != null;
         webView = new WebView(this);
+        webCacheManager = WebCacheManager.getInstance(this);
+        // App shell offline: se esiste un bundle locale la prima pagina non dipende dalla rete
+        webBundleManager = WebBundleManager.getInstance(this);
+        supabaseReadCache = SupabaseReadCache.getInstance(this);
+        imageProxy = ImageDownscaleProxy.getInstance(this);
+        if (prefetchManager == null) {
+            prefetchManager = new PrefetchManager(this::interceptWebRequest);
+        }
+        // Le fetch del Service Worker usano le stesse cache native della pagina
+        ServiceWorkerInterceptor.install(this);
+        startupTracer.setWebBundleVersion(webBundleManager.getActiveVersion());
+        WebPerfCollector.getInstance().setWebBundleVersion(webBundleManager.getActiveVersion());
+        startupTracer.mark(StartupTracer.PHASE_WEBVIEW_CREATED);
 
-        // Cancella completamente la cache per forzare reload
-        webView.clearCache(true);
-        webView.clearHistory();
-        webView.clearFormData();
-        android.webkit.CookieManager.getInstance().removeAllCookies(null);
+        // La cache HTTP NON viene più cancellata ad ogni avvio: asset con hash serviti dal disco,
+        // entry point rivalidato, purge solo quando il server pubblica una nuova build
+        if (!recreating) {
+            android.webkit.CookieManager.getInstance().removeAllCookies(null);
+        }
+
+        // Renderer del POS: l'ultimo che il sistema deve sacrificare
+        WebViewMemoryGovernor.applyMainPolicy(webView);
 
         WebSettings webSettings = webView.getSettings();
         webSettings.setJavaScriptEnabled(true);
         webSettings.setDomStorageEnabled(true);
         webSettings.setDatabaseEnabled(true);
-        webSettings.setCacheMode(WebSettings.LOAD_NO_CACHE);
+        webSettings.setCacheMode(WebSettings.LOAD_DEFAULT);
         webSettings.setAllowFileAccess(false);
 
         // Rimosso supporto window.open per evitare apertura browser esterni
 
-        // Force bridge recreation
-        webView.removeJavascriptInterface("OmnilyPOS");
-        bridge = new OmnilyPOSBridge();
-        webView.addJavascriptInterface(bridge, "OmnilyPOS");
+        // Il bridge viene registrato UNA volta prima del primo loadUrl: resta valido per tutte
+        // le navigazioni SPA, la prontezza viene confermata dall'handshake document-start
+        if (!recreating) {
+            bridge = new OmnilyPOSBridge();
+        }
+        bridgeInjector = new BridgeInjector(webView, bridge);
+        // PerformanceObserver del web app (navigation timing, LCP, long task, heap) -> reportWebPerf
+        bridgeInjector.addDocumentStartScript(WebPerfCollector.SCRIPT);
+        bridgeInjector.addDocumentStartScript(BridgeBatchInvoker.SCRIPT);
+        bridgeInjector.addDocumentStartScript(BinaryBridgeChannel.SCRIPT);
+        bridgeInjector.addDocumentStartScript(SessionChannel.SCRIPT);
+        bridgeInjector.install();
+        // Immagini e JSON grandi come ArrayBuffer (ogni WebView creato registra il proprio listener)
+        bridge.binaryChannel.install(webView);
+        // Sessione staff solo verso il main frame delle origini ammesse (mai dal @JavascriptInterface)
+        if (sessionChannel == null) {
+            sessionChannel = new SessionChannel(SecureSessionStore.getInstance(this), this::onStaffLogout);
+        }
+        sessionChannel.install(webView);
 
         Log.i(TAG, "🔧 Bridge CREATED with BEEP method!");
 
-        // Setup periodic bridge re-injection for SPA navigation
-        bridgeHandler = new android.os.Handler(android.os.Looper.getMainLooper());
-        bridgeInjector = new Runnable() {
-            @Override
-            public void run() {
-                // Re-inject bridge to ensure it's always available
-                try {
-                    webView.removeJavascriptInterface("OmnilyPOS");
-                    webView.addJavascriptInterface(bridge, "OmnilyPOS");
-
-                    // Force verification in JavaScript context
-                    webView.evaluateJavascript(
-                        "(function() {" +
-                        "  console.log('🔧 Bridge verification from Android:', typeof window.OmnilyPOS);" +
-                        "  if (typeof window.OmnilyPOS === 'undefined') {" +
-                        "    console.error('❌ Bridge NOT visible in JS context!');" +
-                        "  } else {" +
-                        "    console.log('✅ Bridge IS visible in JS context!');" +
-                        "  }" +
-                        "})()",
-                        null
-                    );
-
-                    Log.i(TAG, "🔄 Bridge re-injected (periodic)");
-                } catch (Exception e) {
-                    Log.e(TAG, "❌ Error re-injecting bridge: " + e.getMessage());
-                }
-                // Re-schedule every 3 seconds
-                bridgeHandler.postDelayed(this, 3000);
-            }
-        };
-        // Start periodic injection
-        bridgeHandler.postDelayed(bridgeInjector, 3000);
-        Log.i(TAG, "✅ Periodic bridge re-injection started (every 3s)");
-
         webView.setWebChromeClient(new WebChromeClient() {
             @Override
             public boolean onConsoleMessage(android.webkit.ConsoleMessage consoleMessage) {
-                Log.d(TAG, "🌐 JS Console: " + consoleMessage.message() + " -- From line "
-                         + consoleMessage.lineNumber() + " of " + consoleMessage.sourceId());
-                return super.onConsoleMessage(consoleMessage);
+                // Livello, campionamento e rate limit decisi da DiagnosticLog (config MDM)
+                DiagnosticLog.console(TAG, consoleMessage);
+                return true; // Gestito: niente duplicato "chromium: CONSOLE" in logcat
             }
 
             @Override
@@ -802,33 +987,44 @@ public class MainActivityFinal extends AppCompatActivity {
         });
 
         webView.setWebViewClient(new WebViewClient() {
+            @Override
+            public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+                // Chiamato sul thread IO del WebView: l'accesso a disco/rete qui non blocca la UI
+                WebResourceResponse response = interceptWebRequest(request);
+                return response != null ? response : super.shouldInterceptRequest(view, request);
+            }
+
+            @Override
+            public void doUpdateVisitedHistory(WebView view, String url, boolean isReload) {
+                super.doUpdateVisitedHistory(view, url, isReload);
+                // Cambi di route della SPA: i frame lenti vengono associati alla schermata
+                JankMonitor.getInstance().setRoute(url);
+            }
+
+            @Override
+            public void onPageStarted(WebView view, String url, android.graphics.Bitmap favicon) {
+                super.onPageStarted(view, url, favicon);
+                bridgeInjector.onPageStarted(url);
+                // Nuovo documento: i prefetch richiesti dalla pagina precedente non servono più
+                prefetchManager.resetSession();
+            }
+
             @Override
             public void onPageFinished(WebView view, String url) {
                 super.onPageFinished(view, url);
                 Log.d(TAG, "Page finished loading: " + url);
 
-                // Re-inject bridge ogni volta per SPA navigation
-                // ⚠️ NON creare un nuovo bridge! Usa quello esistente per preservare lo stato NFC
-                Log.d(TAG, "🔧 Re-injecting EXISTING bridge for SPA compatibility...");
-                view.removeJavascriptInterface("OmnilyPOS");
-                view.addJavascriptInterface(bridge, "OmnilyPOS");
-                Log.d(TAG, "✅ Bridge re-injected (preserved state)!");
-
-                // Inject bridge detection (without beep test)
-                String javascript = "javascript:(function() {" +
-                    "console.log('🔧 BRIDGE DETECTION: Checking window.OmnilyPOS...');" +
-                    "if (window.OmnilyPOS) {" +
-                        "console.log('✅ Bridge found:', Object.keys(window.OmnilyPOS));" +
-                        "console.log('✅ Bridge available and ready');" +
-                    "} else {" +
-                        "console.log('❌ Bridge NOT found');" +
-                    "}" +
-                    "console.log('🌐 Current URL:', window.location.href);" +
-                    "console.log('🔍 URL Search:', window.location.search);" +
-                "})()";
-
-                view.evaluateJavascript(javascript, null);
+                // Verifica handshake (una sola reload di recupero se il bridge non è visibile)
+                bridgeInjector.onPageFinished(url);
                 setContentView(webView);
+                startupTracer.mark(StartupTracer.PHASE_FIRST_PAGE_FINISHED);
+                startup.onFirstPaint();
+
+                // Controllo aggiornamenti del bundle web solo dopo il primo caricamento, in background
+                if (!bundleUpdateChecked) {
+                    bundleUpdateChecked = true;
+                    checkWebBundleUpdate();
+                }
             }
 
             @Override
@@ -838,14 +1034,25 @@ public class MainActivityFinal extends AppCompatActivity {
                 Log.e(TAG, "🚨 WebView renderer process crashed!");
                 Log.e(TAG, "🚨 Crash: " + detail.didCrash());
                 Log.e(TAG, "🚨 Priority at exit: " + detail.rendererPriorityAtExit());
-                Log.e(TAG, "🚨 Triggering automatic recovery...");
+
+                RendererRecoveryPolicy.Tier tier = rendererRecovery.onRendererGone(detail.didCrash());
+                Log.e(TAG, "🚨 Triggering automatic recovery (" + tier + ")...");
 
                 // Distruggi il WebView corrotto
                 if (view != null) {
+                    if (view.getParent() instanceof ViewGroup) {
+                        ((ViewGroup) view.getParent()).removeView(view);
+                    }
                     view.destroy();
                 }
 
-                // Triggera recovery automatico tramite WebViewRecoveryActivity
+                if (tier != RendererRecoveryPolicy.Tier.FULL_WIPE) {
+                    recoverWebViewInProcess(tier == RendererRecoveryPolicy.Tier.CLEAR_HTTP_CACHE);
+                    return true;
+                }
+
+                // Ultima risorsa: recovery completo tramite WebViewRecoveryActivity
+                rendererRecovery.reset();
                 Intent recoveryIntent = new Intent(MainActivityFinal.this, WebViewRecoveryActivity.class);
                 recoveryIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                 startActivity(recoveryIntent);
@@ -856,11 +1063,53 @@ public class MainActivityFinal extends AppCompatActivity {
         });
     }
 
+    /**
+     * Recovery in-process: nuovo WebView nella stessa activity, SDK e NFC restano attivi
+     */
+    private void recoverWebViewInProcess(boolean clearHttpCache) {
+        long startedAt = android.os.SystemClock.elapsedRealtime();
+        showSplashScreen();
+        setupWebView();
+
+        if (clearHttpCache) {
+            // Solo cache HTTP (Chromium + WebCacheManager): storage, cookie e bundle restano
+            webView.clearCache(true);
+            webCacheManager.clear();
+            supabaseReadCache.clear();
+            Log.w(TAG, "🧹 HTTP cache cleared for recovery");
+        }
+
+        loadInitialUrl();
+        // I callback postati sul WebView distrutto sono persi
+        scheduleIdleBundleSwap();
+        Log.i(TAG, "✅ WebView recreated in-process in " + (android.os.SystemClock.elapsedRealtime() - startedAt) + "ms");
+    }
+
     public class      OmnilyPOSBridge {
         private volatile boolean isNFCReading = false;
         public volatile boolean isNFCEnabled = false;
         private volatile String currentNFCCallback = null;
 
+        // Protocollo batch con ID di correlazione (OmnilyBridge.call lato JS)
+        private final BridgeBatchInvoker batchInvoker = new BridgeBatchInvoker(this::dispatchInvoke, jsDispatcher);
+
+        // Payload grandi (immagini da stampare) come ArrayBuffer invece di base64
+        private final BinaryBridgeChannel binaryChannel = new BinaryBridgeChannel(this::handleBinaryOperation, jsDispatcher);
+
+        private BridgeMetrics.Call onBridgeCall(String method) {
+            startupTracer.mark(StartupTracer.PHASE_FIRST_BRIDGE_CALL);
+            JankMonitor.getInstance().noteBridgeCall(method);
+            return BridgeMetrics.getInstance().begin(method);
+        }
+
+        /**
+         * Nasconde Activity.runOnUiThread (final) nel bridge: i runnable postati dai metodi portano
+         * il loro contesto BridgeMetrics (attesa + esecuzione sul main thread)
+         */
+        private void runOnUiThread(Runnable action) {
+            MainActivityFinal.this.runOnUiThread(BridgeMetrics.getInstance().wrap(action));
+        }
+
         public void setNFCReading(boolean reading) {
             this.isNFCReading = reading;
         }
@@ -870,7 +1119,7 @@ public class MainActivityFinal extends AppCompatActivity {
                 runOnUiThread(() -> {
                     nfcAdapter.enableForegroundDispatch(MainActivityFinal.this, nfcPendingIntent, nfcIntentFilters, nfcTechLists);
                     isNFCEnabled = true;
-                    Log.d(TAG, "NFC enabled for reading");
+                    DiagnosticLog.d(TAG, "NFC enabled for reading");
                 });
             }
         }
@@ -881,68 +1130,60 @@ public class MainActivityFinal extends AppCompatActivity {
                     nfcAdapter.disableForegroundDispatch(MainActivityFinal.this);
                     isNFCEnabled = false;
                     isNFCReading = false;
-                    Log.d(TAG, "NFC disabled");
+                    DiagnosticLog.d(TAG, "NFC disabled");
                 });
             }
         }
 
         @JavascriptInterface
         public void readNFCCard(String callbackName) {
-            Log.d(TAG, "readNFCCard called with callback: " + callbackName);
+            BridgeMetrics.Call call = onBridgeCall("readNFCCard");
+            try {
+                startNFCRead(callbackName);
+            } finally {
+                call.end();
+            }
+        }
+
+        /**
+         * Lettura NFC condivisa da readNFCCard e dagli alias *Async/*Sync (senza strumentazione propria)
+         */
+        private void startNFCRead(String callbackName) {
+            DiagnosticLog.d(TAG, "readNFCCard called with callback: " + callbackName);
 
             if (nfcAdapter == null) {
-                Log.e(TAG, "NFC not supported on this device");
-                try {
-                    JSONObject result = new JSONObject();
-                    result.put("success", false);
-                    result.put("error", "NFC not supported on this device");
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error creating JSON error response", e);
-                }
+                DiagnosticLog.e(TAG, "NFC not supported on this device");
+                runJsCallback(callbackName, BridgeResult.error("NFC not supported on this device"));
                 return;
             }
 
             if (!nfcAdapter.isEnabled()) {
-                Log.e(TAG, "NFC is not enabled");
-                try {
-                    JSONObject result = new JSONObject();
-                    result.put("success", false);
-                    result.put("error", "NFC is not enabled");
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error creating JSON error response", e);
-                }
+                DiagnosticLog.e(TAG, "NFC is not enabled");
+                runJsCallback(callbackName, BridgeResult.error("NFC is not enabled"));
                 return;
             }
 
             if (isNFCReading) {
                 // Se già in lettura, fermalo (toggle)
-                Log.d(TAG, "NFC reading in progress - stopping");
+                DiagnosticLog.d(TAG, "NFC reading in progress - stopping");
                 isNFCReading = false;
                 disableNFCReading();
 
-                try {
-                    JSONObject result = new JSONObject();
-                    result.put("success", false);
-                    result.put("error", "NFC reading cancelled by user");
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error creating JSON cancel response", e);
-                }
+                runJsCallback(callbackName, BridgeResult.error("NFC reading cancelled by user"));
                 return;
             }
 
             // Salva il callback per quando il tag viene rilevato
             currentNFCCallback = callbackName;
+            BridgeMetrics.getInstance().expectCallback(callbackName);
 
             // Enable NFC only when needed
             enableNFCReading();
 
             isNFCReading = true;
-            Log.d(TAG, "NFC enabled and ready for card reading");
+            DiagnosticLog.d(TAG, "NFC enabled and ready for card reading");
 
-            showToast("Present NFC card to reader... Press again to cancel");
+            displayToast("Present NFC card to reader... Press again to cancel");
 
             // Set a timeout to reset the reading state
             runOnUiThread(() -> {
@@ -951,15 +1192,8 @@ public class MainActivityFinal extends AppCompatActivity {
                         isNFCReading = false;
                         disableNFCReading();
                         currentNFCCallback = null;
-                        Log.d(TAG, "NFC reading timeout - NFC disabled");
-                        try {
-                            JSONObject result = new JSONObject();
-                            result.put("success", false);
-                            result.put("error", "NFC reading timeout");
-                            runJsCallback(callbackName, result.toString());
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error creating JSON timeout response", e);
-                        }
+                        DiagnosticLog.d(TAG, "NFC reading timeout - NFC disabled");
+                        runJsCallback(callbackName, BridgeResult.error("NFC reading timeout"));
                     }
                 }, 30000); // 30 second timeout
             });
@@ -967,21 +1201,50 @@ public class MainActivityFinal extends AppCompatActivity {
 
         @JavascriptInterface
         public void showToast(String message) {
+            BridgeMetrics.Call call = onBridgeCall("showToast");
+            try {
+                displayToast(message);
+            } finally {
+                call.end();
+            }
+        }
+
+        /**
+         * Toast senza strumentazione (usato anche da NFC e test stampante)
+         */
+        private void displayToast(String message) {
             runOnUiThread(() -> {
                 Toast.makeText(MainActivityFinal.this, message, Toast.LENGTH_SHORT).show();
-                Log.d(TAG, "Toast displayed: " + message);
+                if (DiagnosticLog.isLoggable(TAG, Log.DEBUG)) {
+                    DiagnosticLog.d(TAG, "Toast displayed: " + (message != null ? message.length() : 0) + " chars");
+                }
             });
         }
 
         @JavascriptInterface
         public void beep() {
-            Log.d(TAG, "🔍 BEEP() CHIAMATO! Stack trace:");
-            Thread.dumpStack(); // Mostra da dove viene chiamato
-            beep("1", "200"); // Default: 1 beep di 200ms
+            BridgeMetrics.Call call = onBridgeCall("beep");
+            try {
+                playBeep("1", "200"); // Default: 1 beep di 200ms
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
         public void beep(String count, String duration) {
+            BridgeMetrics.Call call = onBridgeCall("beep");
+            try {
+                playBeep(count, duration);
+            } finally {
+                call.end();
+            }
+        }
+
+        /**
+         * Gli overload di beep() la chiamano una volta sola (metriche contate sul punto d'ingresso)
+         */
+        private void playBeep(String count, String duration) {
             int tempBeepCount = 1;
             int tempBeepDuration = 200;
 
@@ -989,14 +1252,13 @@ public class MainActivityFinal extends AppCompatActivity {
                 tempBeepCount = Integer.parseInt(count);
                 tempBeepDuration = Integer.parseInt(duration);
             } catch (NumberFormatException e) {
-                Log.w(TAG, "Invalid beep parameters, using defaults");
+                DiagnosticLog.w(TAG, "Invalid beep parameters, using defaults");
             }
 
             final int beepCount = tempBeepCount;
             final int beepDuration = tempBeepDuration;
 
-            Log.d(TAG, "🔊 BEEP(" + count + "," + duration + ") CHIAMATO!");
-            Thread.dumpStack(); // Debug stack trace
+            DiagnosticLog.d(TAG, "🔊 BEEP(" + count + "," + duration + ")");
 
             runOnUiThread(() -> {
                 android.media.ToneGenerator toneGen = null;
@@ -1012,15 +1274,15 @@ public class MainActivityFinal extends AppCompatActivity {
                             } catch (InterruptedException ignored) {}
                         }
                     }
-                    Log.d(TAG, "🎵 Played " + beepCount + " beep(s) successfully");
+                    DiagnosticLog.d(TAG, "🎵 Played " + beepCount + " beep(s) successfully");
                 } catch (Exception e) {
-                    Log.e(TAG, "❌ Error playing beep sound", e);
+                    DiagnosticLog.e(TAG, "❌ Error playing beep sound", e);
                 } finally {
                     if (toneGen != null) {
                         try {
                             toneGen.release();
                         } catch (Exception e) {
-                            Log.w(TAG, "Error releasing ToneGenerator", e);
+                            DiagnosticLog.w(TAG, "Error releasing ToneGenerator", e);
                         }
                     }
                 }
@@ -1029,41 +1291,79 @@ public class MainActivityFinal extends AppCompatActivity {
 
         @JavascriptInterface
         public void registerNFCResultCallback(String callbackName) {
-            Log.d(TAG, "registerNFCResultCallback called with: " + callbackName);
-            // Store the callback name for future NFC operations
-            // This method is for callback registration, actual callback happens in readNFCCardAsync
+            BridgeMetrics.Call call = onBridgeCall("registerNFCResultCallback");
+            try {
+                DiagnosticLog.d(TAG, "registerNFCResultCallback called with: " + callbackName);
+                // Store the callback name for future NFC operations
+                // This method is for callback registration, actual callback happens in readNFCCardAsync
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
         public void readNFCCardAsync() {
-            Log.d(TAG, "readNFCCardAsync called - using persistent callback");
-            readNFCCard("omnilyNFCResultHandler");
+            BridgeMetrics.Call call = onBridgeCall("readNFCCardAsync");
+            try {
+                DiagnosticLog.d(TAG, "readNFCCardAsync called - using persistent callback");
+                startNFCRead("omnilyNFCResultHandler");
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
         public void readNFCCardSync() {
-            Log.d(TAG, "readNFCCardSync called - alias for readNFCCardAsync");
-            readNFCCardAsync();
+            BridgeMetrics.Call call = onBridgeCall("readNFCCardSync");
+            try {
+                DiagnosticLog.d(TAG, "readNFCCardSync called - alias for readNFCCardAsync");
+                startNFCRead("omnilyNFCResultHandler");
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
         public void stopNFCReading() {
-            Log.d(TAG, "stopNFCReading called - disattivando NFC");
-            disableNFCReading();
+            BridgeMetrics.Call call = onBridgeCall("stopNFCReading");
+            try {
+                DiagnosticLog.d(TAG, "stopNFCReading called - disattivando NFC");
+                disableNFCReading();
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
         public void unregisterNFCResultCallback(String callbackName) {
-            Log.d(TAG, "unregisterNFCResultCallback called with: " + callbackName + " - disattivando NFC");
-            disableNFCReading();
+            BridgeMetrics.Call call = onBridgeCall("unregisterNFCResultCallback");
+            try {
+                DiagnosticLog.d(TAG, "unregisterNFCResultCallback called with: " + callbackName + " - disattivando NFC");
+                disableNFCReading();
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
         public void readQRCode(String callbackName) {
-            Log.d(TAG, "readQRCode called with callback: " + callbackName);
+            BridgeMetrics.Call call = onBridgeCall("readQRCode");
+            try {
+                startQRScan(callbackName);
+            } finally {
+                call.end();
+            }
+        }
+
+        /**
+         * Scansione QR condivisa da readQRCode e readQRCodeAsync
+         */
+        private void startQRScan(String callbackName) {
+            DiagnosticLog.d(TAG, "readQRCode called with callback: " + callbackName);
 
             // Store the callback for QR result
             currentQRCallback = callbackName;
+            BridgeMetrics.getInstance().expectCallback(callbackName);
 
             runOnUiThread(() -> {
                 try {
@@ -1078,837 +1378,1107 @@ public class MainActivityFinal extends AppCompatActivity {
                     integrator.setTimeout(30000); // Timeout di 30 secondi
                     integrator.setCaptureActivity(com.journeyapps.barcodescanner.CaptureActivity.class);
 
-                    Log.d(TAG, "Starting ZXing QR scanner activity...");
+                    DiagnosticLog.d(TAG, "Starting ZXing QR scanner activity...");
                     integrator.initiateScan();
 
                 } catch (Exception e) {
-                    Log.e(TAG, "Error starting QR scanner", e);
-                    try {
-                        JSONObject result = new JSONObject();
-                        result.put("success", false);
-                        result.put("error", "Errore avvio scanner: " + e.getMessage());
-                        runJsCallback(callbackName, result.toString());
-                    } catch (Exception jsonE) {
-                        Log.e(TAG, "Error creating error response", jsonE);
-                    }
+                    DiagnosticLog.e(TAG, "Error starting QR scanner", e);
+                    runJsCallback(callbackName, BridgeResult.error("Errore avvio scanner: " + e.getMessage()));
                 }
             });
         }
 
         @JavascriptInterface
         public void readQRCodeAsync() {
-            Log.d(TAG, "readQRCodeAsync called - using default callback");
-            readQRCode("omnilyQRResultHandler");
+            BridgeMetrics.Call call = onBridgeCall("readQRCodeAsync");
+            try {
+                DiagnosticLog.d(TAG, "readQRCodeAsync called - using default callback");
+                startQRScan("omnilyQRResultHandler");
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
         public void cancelQRScanner() {
-            Log.d(TAG, "cancelQRScanner called - cancelling current QR scan");
+            BridgeMetrics.Call call = onBridgeCall("cancelQRScanner");
+            try {
+                DiagnosticLog.d(TAG, "cancelQRScanner called - cancelling current QR scan");
 
-            runOnUiThread(() -> {
-                try {
-                    // Se c'è una callback in attesa, invia risultato di cancellazione
-                    if (currentQRCallback != null) {
-                        JSONObject result = new JSONObject();
-                        result.put("success", false);
-                        result.put("cancelled", true);
-                        result.put("message", "Scansione annullata dall'utente");
-                        runJsCallback(currentQRCallback, result.toString());
-                        currentQRCallback = null;
-                    }
+                runOnUiThread(() -> {
+                    try {
+                        // Se c'è una callback in attesa, invia risultato di cancellazione
+                        if (currentQRCallback != null) {
+                            runJsCallback(currentQRCallback, BridgeResult.begin()
+                                    .put(BridgeResult.SUCCESS, false)
+                                    .put(BridgeResult.CANCELLED, true)
+                                    .put(BridgeResult.MESSAGE, "Scansione annullata dall'utente")
+                                    .end());
+                            currentQRCallback = null;
+                        }
 
-                    // Chiudi l'activity dello scanner se è aperta
-                    finishActivity(IntentIntegrator.REQUEST_CODE);
+                        // Chiudi l'activity dello scanner se è aperta
+                        finishActivity(IntentIntegrator.REQUEST_CODE);
 
-                } catch (Exception e) {
-                    Log.e(TAG, "Error cancelling QR scanner", e);
-                }
-            });
+                    } catch (Exception e) {
+                        DiagnosticLog.e(TAG, "Error cancelling QR scanner", e);
+                    }
+                });
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
         public void updateCustomerDisplay(String messageData) {
-            Log.d(TAG, "updateCustomerDisplay chiamato con dati: " + messageData);
+            BridgeMetrics.Call call = onBridgeCall("updateCustomerDisplay");
+            try {
+                // Coalescenza per frame e delta: qui solo parsing e accodamento, nessun salto sul main thread
+                customerDisplayChannel.submit(messageData);
+            } finally {
+                call.end();
+            }
+        }
 
-            runOnUiThread(() -> {
-                try {
-                    // Se abbiamo un customer display attivo, invia i dati
-                    if (customerPresentation != null && customerPresentation instanceof CustomerPresentation) {
-                        Log.d(TAG, "📤 Invio dati al customer display: " + messageData);
-                        ((CustomerPresentation) customerPresentation).sendDataToDisplay(messageData);
-                    } else {
-                        Log.w(TAG, "⚠️ Customer display non attivo");
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "❌ Errore invio dati customer display", e);
+        /**
+         * Batch [{id, method, args}]: risultati sincroni nel valore di ritorno, gli altri risolti a lotti
+         */
+        @JavascriptInterface
+        public String invoke(String batchJson) {
+            BridgeMetrics.Call call = onBridgeCall("invoke");
+            try {
+                return batchInvoker.invoke(batchJson);
+            } finally {
+                call.end();
+            }
+        }
+
+        /**
+         * "native" o "webview"; persistito e applicato subito ricreando la Presentation
+         */
+        @JavascriptInterface
+        public boolean setCustomerDisplayMode(String mode) {
+            BridgeMetrics.Call call = onBridgeCall("setCustomerDisplayMode");
+            try {
+                if (!CUSTOMER_DISPLAY_NATIVE.equals(mode) && !CUSTOMER_DISPLAY_WEBVIEW.equals(mode)) {
+                    DiagnosticLog.w(TAG, "⚠️ Unknown customer display mode: " + mode);
+                    return false;
                 }
-            });
+                SharedPreferences prefs = getSharedPreferences("OmnilyPOS", Context.MODE_PRIVATE);
+                if (mode.equals(prefs.getString(PREF_CUSTOMER_DISPLAY_MODE, CUSTOMER_DISPLAY_NATIVE))) {
+                    return true;
+                }
+                prefs.edit().putString(PREF_CUSTOMER_DISPLAY_MODE, mode).apply();
+                DiagnosticLog.i(TAG, "🖥️ Customer display mode: " + mode);
+                runOnUiThread(() -> {
+                    if (customerPresentation != null) {
+                        customerPresentation.dismiss();
+                        customerPresentation = null;
+                        setupCustomerDisplay();
+                    }
+                });
+                return true;
+            } finally {
+                call.end();
+            }
         }
 
+        /**
+         * Handshake dallo script document-start: il bridge è visibile nel documento corrente
+         */
         @JavascriptInterface
-        public String getAvailableMethods() {
-            String methods = "readNFCCard,readNFCCardAsync,readNFCCardSync,readQRCode,readQRCodeAsync,cancelQRScanner,showToast,beep,registerNFCResultCallback,unregisterNFCResultCallback,stopNFCReading,updateCustomerDisplay,inputAmount,inputAmountAsync,printReceipt,printText,printQRCode,printBarcode,printBitmap,cutPaper,initPrinter,testPrinter,getNetworkInfo,getBridgeVersion,getAppVersion,getAvailableMethods";
-            Log.d(TAG, "getAvailableMethods called - returning: " + methods);
-            return methods;
+        public void notifyBridgeReady(String href) {
+            startupTracer.mark(StartupTracer.PHASE_BRIDGE_READY);
+            if (bridgeInjector != null) {
+                bridgeInjector.onBridgeReady(href);
+            }
         }
 
+        /**
+         * Lotto di metriche dal PerformanceObserver iniettato (ogni 30 s, non conta come chiamata del web app)
+         */
         @JavascriptInterface
-        public String getBridgeVersion() {
-            String version = "4.3.0-pinpad-input-" + System.currentTimeMillis();
-            Log.d(TAG, "getBridgeVersion called - returning: " + version);
-            return version;
+        public void reportWebPerf(String json) {
+            WebPerfCollector.getInstance().report(json);
         }
 
+        /**
+         * Dimensione (px CSS) con cui il web app mostrerà un'immagine: il proxy la ridimensiona di conseguenza
+         */
         @JavascriptInterface
-        public String getAppVersion() {
-            Log.d(TAG, "getAppVersion called");
+        public void reportImageSize(String url, int width, int height) {
+            BridgeMetrics.Call call = onBridgeCall("reportImageSize");
             try {
-                android.content.pm.PackageInfo pInfo = getPackageManager()
-                    .getPackageInfo(getPackageName(), 0);
-                String version = pInfo.versionName;
-                Log.d(TAG, "getAppVersion returning: " + version);
-                return version;
-            } catch (Exception e) {
-                Log.e(TAG, "Error getting app version: " + e.getMessage());
-                return "N/A";
+                if (imageProxy != null) {
+                    imageProxy.reportSize(url, width, height);
+                }
+            } finally {
+                call.end();
             }
         }
 
+        /**
+         * Prefetch speculativo delle risorse della prossima schermata probabile
+         *
+         * @param urlsJson array di URL o di oggetti {url, headers} (header necessari per le GET Supabase)
+         * @param priority "high" oppure "low"
+         * @return JSON {queued, skipped}
+         */
         @JavascriptInterface
-        public void inputAmount(String callbackName) {
-            Log.d(TAG, "inputAmount called with callback: " + callbackName);
+        public String prefetch(String urlsJson, String priority) {
+            BridgeMetrics.Call call = onBridgeCall("prefetch");
+            try {
+                if (prefetchManager == null) {
+                    return "{\"queued\":0,\"skipped\":0}";
+                }
+                return prefetchManager.prefetch(urlsJson, priority);
+            } finally {
+                call.end();
+            }
+        }
 
-            if (mPinPadManager == null) {
-                Log.e(TAG, "PinPad not initialized");
-                runOnUiThread(() -> {
-                    String script = callbackName + "('ERROR: PinPad not available');";
-                    webView.evaluateJavascript(script, null);
-                });
-                return;
+        /**
+         * Annulla i prefetch ancora in coda (es. il cassiere ha cambiato schermata)
+         */
+        @JavascriptInterface
+        public int cancelPrefetch() {
+            BridgeMetrics.Call call = onBridgeCall("cancelPrefetch");
+            try {
+                return prefetchManager != null ? prefetchManager.cancel() : 0;
+            } finally {
+                call.end();
             }
+        }
 
-            runOnUiThread(() -> {
+        /**
+         * Limiti per le immagini scelte dal file chooser (ridimensionate e compresse prima dell'upload)
+         *
+         * @param limitsJson {"maxWidth", "maxHeight", "quality", "format": "jpeg"|"webp", "maxBytes"}
+         */
+        @JavascriptInterface
+        public void setImagePickerLimits(String limitsJson) {
+            BridgeMetrics.Call call = onBridgeCall("setImagePickerLimits");
+            try {
                 try {
-                    Log.d(TAG, "Attempting PinPad input for amount...");
-
-                    // Try different approach - use inputOnlinePin with minimal parameters
-                    mPinPadManager.inputOnlinePin(MainActivityFinal.this,
-                        (byte) 1,    // min 1 digit
-                        (byte) 8,    // max 8 digits (99999.99)
-                        30,          // 30 second timeout (reduced)
-                        true,        // sound enabled
-                        "",          // empty account number
-                        (byte) 0,    // key index 0
-                        PinAlgorithmMode.ANSI_X_9_8, // standard algorithm
-                        new PinPadManager.OnPinPadInputListener() {
-                            @Override
-                            public void onSuccess(byte[] data) {
-                                runOnUiThread(() -> {
-                                    if (data != null) {
-                                        // Convert bytes to amount string
-                                        String amountStr = new String(data).trim();
-                                        // Format as decimal (add decimal point if needed)
-                                        if (amountStr.length() > 2) {
-                                            String euros = amountStr.substring(0, amountStr.length() - 2);
-                                            String cents = amountStr.substring(amountStr.length() - 2);
-                                            amountStr = euros + "." + cents;
-                                        } else if (amountStr.length() == 2) {
-                                            amountStr = "0." + amountStr;
-                                        } else if (amountStr.length() == 1) {
-                                            amountStr = "0.0" + amountStr;
-                                        }
-
-                                        Log.d(TAG, "Amount input success: " + amountStr);
-                                        String script = callbackName + "('" + amountStr + "');";
-                                        webView.evaluateJavascript(script, null);
-                                    } else {
-                                        Log.e(TAG, "Amount input failed - no data");
-                                        String script = callbackName + "('ERROR: No data received');";
-                                        webView.evaluateJavascript(script, null);
-                                    }
-                                });
-                            }
-
-                            @Override
-                            public void onError(int errorCode) {
-                                Log.e(TAG, "PinPad error code: " + errorCode);
-                                runOnUiThread(() -> {
-                                    String script = callbackName + "('ERROR: Code " + errorCode + "');";
-                                    webView.evaluateJavascript(script, null);
-                                });
-                            }
-                        });
-                } catch (Exception e) {
-                    Log.e(TAG, "Error starting amount input: " + e.getMessage());
-                    String script = callbackName + "('ERROR: " + e.getMessage() + "');";
-                    webView.evaluateJavascript(script, null);
+                    PickedImageCompressor.getInstance(MainActivityFinal.this).setLimits(limitsJson);
+                } catch (JSONException e) {
+                    DiagnosticLog.e(TAG, "❌ Invalid image picker limits: " + e.getMessage());
                 }
-            });
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
-        public void inputAmountAsync() {
-            Log.d(TAG, "inputAmountAsync called - using default callback");
-            inputAmount("omnilyAmountInputHandler");
+        public String getAvailableMethods() {
+            BridgeMetrics.Call call = onBridgeCall("getAvailableMethods");
+            try {
+                String methods = "readNFCCard,readNFCCardAsync,readNFCCardSync,readQRCode,readQRCodeAsync,cancelQRScanner,showToast,beep,registerNFCResultCallback,unregisterNFCResultCallback,stopNFCReading,updateCustomerDisplay,inputAmount,inputAmountAsync,printReceipt,printText,printQRCode,printBarcode,printBitmap,cutPaper,initPrinter,testPrinter,getNetworkInfo,getBridgeVersion,getAppVersion,getAvailableMethods,notifyBridgeReady,reportImageSize,prefetch,cancelPrefetch,setImagePickerLimits,reportWebPerf,setCustomerDisplayMode,invoke,getBridgeStats";
+                DiagnosticLog.d(TAG, "getAvailableMethods called - returning: " + methods);
+                return methods;
+            } finally {
+                call.end();
+            }
         }
 
-        // ============================================================================
-        // METODI DI STAMPA - ZCS PRINTER SDK
-        // ============================================================================
-
+        /**
+         * Latenze per metodo dall'ultimo heartbeat: {window_start, window_end, methods: {nome: {calls, exec_ms, queue_ms, callback_ms}}}
+         */
         @JavascriptInterface
-        public void initPrinter(String callbackName) {
-            Log.d(TAG, "initPrinter called with callback: " + callbackName);
+        public String getBridgeStats() {
+            return BridgeMetrics.getInstance().getSummary().toString();
+        }
 
-            if (mPrinter == null) {
-                Log.e(TAG, "Printer not initialized");
-                try {
-                    JSONObject result = new JSONObject();
-                    result.put("success", false);
-                    result.put("error", "Printer not available");
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error creating JSON error response", e);
-                }
-                return;
+        @JavascriptInterface
+        public String getBridgeVersion() {
+            BridgeMetrics.Call call = onBridgeCall("getBridgeVersion");
+            try {
+                String version = "4.3.0-pinpad-input-" + System.currentTimeMillis();
+                DiagnosticLog.d(TAG, "getBridgeVersion called - returning: " + version);
+                return version;
+            } finally {
+                call.end();
             }
+        }
 
-            mExecutor.submit(() -> {
+        @JavascriptInterface
+        public String getAppVersion() {
+            BridgeMetrics.Call call = onBridgeCall("getAppVersion");
+            try {
+                DiagnosticLog.d(TAG, "getAppVersion called");
                 try {
-                    // Check printer status instead of trying to init
-                    int status = mPrinter.getPrinterStatus();
-                    JSONObject result = new JSONObject();
-
-                    if (status == SdkResult.SDK_OK) {
-                        result.put("success", true);
-                        result.put("message", "Printer ready");
-                        Log.d(TAG, "Printer ready for use");
-                    } else {
-                        result.put("success", false);
-                        result.put("error", "Printer status error: " + status);
-                        Log.e(TAG, "Printer status error: " + status);
-                    }
-
-                    runJsCallback(callbackName, result.toString());
+                    android.content.pm.PackageInfo pInfo = getPackageManager()
+                        .getPackageInfo(getPackageName(), 0);
+                    String version = pInfo.versionName;
+                    DiagnosticLog.d(TAG, "getAppVersion returning: " + version);
+                    return version;
                 } catch (Exception e) {
-                    Log.e(TAG, "Error checking printer", e);
-                    try {
-                        JSONObject result = new JSONObject();
-                        result.put("success", false);
-                        result.put("error", "Printer error: " + e.getMessage());
-                        runJsCallback(callbackName, result.toString());
-                    } catch (Exception jsonE) {
-                        Log.e(TAG, "Error creating error response", jsonE);
-                    }
+                    DiagnosticLog.e(TAG, "Error getting app version: " + e.getMessage());
+                    return "N/A";
                 }
-            });
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
-        public void printText(String text, String callbackName) {
-            Log.d(TAG, "printText called with text: " + text + ", callback: " + callbackName);
+        public void inputAmount(String callbackName) {
+            BridgeMetrics.Call call = onBridgeCall("inputAmount");
+            try {
+                startAmountInput(callbackName);
+            } finally {
+                call.end();
+            }
+        }
 
-            if (mPrinter == null) {
-                Log.e(TAG, "Printer not initialized");
-                try {
-                    JSONObject result = new JSONObject();
-                    result.put("success", false);
-                    result.put("error", "Printer not available");
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error creating JSON error response", e);
-                }
+        /**
+         * Inserimento importo dal PinPad, condiviso da inputAmount e inputAmountAsync
+         */
+        private void startAmountInput(String callbackName) {
+            DiagnosticLog.d(TAG, "inputAmount called with callback: " + callbackName);
+            BridgeMetrics.getInstance().expectCallback(callbackName);
+
+            if (mPinPadManager == null) {
+                DiagnosticLog.e(TAG, "PinPad not initialized");
+                runJsCallback(callbackName, BridgeResult.quote("ERROR: PinPad not available"));
                 return;
             }
 
-            mExecutor.submit(() -> {
+            runOnUiThread(() -> {
                 try {
-                    // Add extra lines for manual paper tearing (using spaces instead of empty lines)
-                    String textWithFeed = text + "\n \n \n \n \n \n ";
-
-                    // Create format object for normal text
-                    PrnStrFormat format = new PrnStrFormat();
-                    format.setTextSize(24);
-                    format.setAli(Layout.Alignment.ALIGN_NORMAL);
-
-                    // Print text using proper format
-                    mPrinter.setPrintAppendString(textWithFeed, format);
-
-                    // Start printing
-                    int printStatus = mPrinter.setPrintStart();
-                    JSONObject result = new JSONObject();
-                    if (printStatus == SdkResult.SDK_OK) {
-                        result.put("success", true);
-                        result.put("message", "Text printed successfully");
-                        Log.d(TAG, "Text printed successfully with paper feed");
-                    } else {
-                        result.put("success", false);
-                        result.put("error", "Print start failed with status: " + printStatus);
-                        Log.e(TAG, "Print start failed with status: " + printStatus);
-                    }
+                    DiagnosticLog.d(TAG, "Attempting PinPad input for amount...");
+
+                    // Try different approach - use inputOnlinePin with minimal parameters
+                    mPinPadManager.inputOnlinePin(MainActivityFinal.this,
+                        (byte) 1,    // min 1 digit
+                        (byte) 8,    // max 8 digits (99999.99)
+                        30,          // 30 second timeout (reduced)
+                        true,        // sound enabled
+                        "",          // empty account number
+                        (byte) 0,    // key index 0
+                        PinAlgorithmMode.ANSI_X_9_8, // standard algorithm
+                        new PinPadManager.OnPinPadInputListener() {
+                            @Override
+                            public void onSuccess(byte[] data) {
+                                if (data != null) {
+                                    // Convert bytes to amount string
+                                    String amountStr = new String(data).trim();
+                                    // Format as decimal (add decimal point if needed)
+                                    if (amountStr.length() > 2) {
+                                        String euros = amountStr.substring(0, amountStr.length() - 2);
+                                        String cents = amountStr.substring(amountStr.length() - 2);
+                                        amountStr = euros + "." + cents;
+                                    } else if (amountStr.length() == 2) {
+                                        amountStr = "0." + amountStr;
+                                    } else if (amountStr.length() == 1) {
+                                        amountStr = "0.0" + amountStr;
+                                    }
 
-                    runJsCallback(callbackName, result.toString());
+                                    DiagnosticLog.d(TAG, "Amount input success: " + amountStr);
+                                    runJsCallback(callbackName, BridgeResult.quote(amountStr));
+                                } else {
+                                    DiagnosticLog.e(TAG, "Amount input failed - no data");
+                                    runJsCallback(callbackName, BridgeResult.quote("ERROR: No data received"));
+                                }
+                            }
+
+                            @Override
+                            public void onError(int errorCode) {
+                                DiagnosticLog.e(TAG, "PinPad error code: " + errorCode);
+                                runJsCallback(callbackName, BridgeResult.quote("ERROR: Code " + errorCode));
+                            }
+                        });
                 } catch (Exception e) {
-                    Log.e(TAG, "Error printing text", e);
-                    try {
-                        JSONObject result = new JSONObject();
-                        result.put("success", false);
-                        result.put("error", "Print error: " + e.getMessage());
-                        runJsCallback(callbackName, result.toString());
-                    } catch (Exception jsonE) {
-                        Log.e(TAG, "Error creating error response", jsonE);
-                    }
+                    DiagnosticLog.e(TAG, "Error starting amount input: " + e.getMessage());
+                    runJsCallback(callbackName, BridgeResult.quote("ERROR: " + e.getMessage()));
                 }
             });
         }
 
         @JavascriptInterface
-        public void printTextWithAlignment(String text, String alignment, String callbackName) {
-            Log.d(TAG, "printTextWithAlignment called with alignment: " + alignment + ", callback: " + callbackName);
-
-            if (mPrinter == null) {
-                Log.e(TAG, "Printer not initialized");
-                try {
-                    JSONObject result = new JSONObject();
-                    result.put("success", false);
-                    result.put("error", "Printer not available");
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error creating JSON error response", e);
-                }
-                return;
+        public void inputAmountAsync() {
+            BridgeMetrics.Call call = onBridgeCall("inputAmountAsync");
+            try {
+                DiagnosticLog.d(TAG, "inputAmountAsync called - using default callback");
+                startAmountInput("omnilyAmountInputHandler");
+            } finally {
+                call.end();
             }
+        }
 
-            mExecutor.submit(() -> {
-                try {
-                    // Add extra lines for manual paper tearing (using spaces instead of empty lines)
-                    String textWithFeed = text + "\n \n \n \n \n \n ";
-
-                    // Create format object with specified alignment
-                    PrnStrFormat format = new PrnStrFormat();
-                    format.setTextSize(24);
-
-                    // Set alignment based on parameter
-                    if ("center".equalsIgnoreCase(alignment)) {
-                        format.setAli(Layout.Alignment.ALIGN_CENTER);
-                    } else if ("right".equalsIgnoreCase(alignment)) {
-                        format.setAli(Layout.Alignment.ALIGN_OPPOSITE);
-                    } else {
-                        format.setAli(Layout.Alignment.ALIGN_NORMAL); // left
-                    }
+        // ============================================================================
+        // METODI DI STAMPA - ZCS PRINTER SDK
+        // ============================================================================
 
-                    // Print text using proper format
-                    mPrinter.setPrintAppendString(textWithFeed, format);
+        @JavascriptInterface
+        public void initPrinter(String callbackName) {
+            BridgeMetrics.Call call = onBridgeCall("initPrinter");
+            BridgeMetrics.getInstance().expectCallback(callbackName);
+            try {
+                DiagnosticLog.d(TAG, "initPrinter called with callback: " + callbackName);
 
-                    // Start printing
-                    int printStatus = mPrinter.setPrintStart();
-                    JSONObject result = new JSONObject();
-                    if (printStatus == SdkResult.SDK_OK) {
-                        result.put("success", true);
-                        result.put("message", "Text printed successfully with alignment: " + alignment);
-                        Log.d(TAG, "Text printed successfully with alignment: " + alignment);
-                    } else {
-                        result.put("success", false);
-                        result.put("error", "Print start failed with status: " + printStatus);
-                        Log.e(TAG, "Print start failed with status: " + printStatus);
-                    }
+                if (mPrinter == null) {
+                    DiagnosticLog.e(TAG, "Printer not initialized");
+                    runJsCallback(callbackName, BridgeResult.error("Printer not available"));
+                    return;
+                }
 
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error printing text", e);
+                mExecutor.submit(() -> {
                     try {
-                        JSONObject result = new JSONObject();
-                        result.put("success", false);
-                        result.put("error", "Print error: " + e.getMessage());
-                        runJsCallback(callbackName, result.toString());
-                    } catch (Exception jsonE) {
-                        Log.e(TAG, "Error creating error response", jsonE);
+                        // Check printer status instead of trying to init
+                        int status = mPrinter.getPrinterStatus();
+                        String result;
+
+                        if (status == SdkResult.SDK_OK) {
+                            result = BridgeResult.success("Printer ready");
+                            DiagnosticLog.d(TAG, "Printer ready for use");
+                        } else {
+                            result = BridgeResult.error("Printer status error: " + status);
+                            DiagnosticLog.e(TAG, "Printer status error: " + status);
+                        }
+
+                        runJsCallback(callbackName, result);
+                    } catch (Exception e) {
+                        DiagnosticLog.e(TAG, "Error checking printer", e);
+                        runJsCallback(callbackName, BridgeResult.error("Printer error: " + e.getMessage()));
                     }
-                }
-            });
+                });
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
-        public void printQRCode(String data, String callbackName) {
-            Log.d(TAG, "printQRCode called with data: " + data + ", callback: " + callbackName);
+        public void printText(String text, String callbackName) {
+            BridgeMetrics.Call call = onBridgeCall("printText");
+            BridgeMetrics.getInstance().expectCallback(callbackName);
+            try {
+                if (DiagnosticLog.isLoggable(TAG, Log.DEBUG)) {
+                    // Solo la dimensione: il testo dello scontrino non finisce nei log caricati via MDM
+                    DiagnosticLog.d(TAG, "printText called with " + (text != null ? text.length() : 0) + " chars, callback: " + callbackName);
+                }
 
-            if (mPrinter == null) {
-                Log.e(TAG, "Printer not initialized");
-                try {
-                    JSONObject result = new JSONObject();
-                    result.put("success", false);
-                    result.put("error", "Printer not available");
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error creating JSON error response", e);
+                if (mPrinter == null) {
+                    DiagnosticLog.e(TAG, "Printer not initialized");
+                    runJsCallback(callbackName, BridgeResult.error("Printer not available"));
+                    return;
                 }
-                return;
-            }
 
-            mExecutor.submit(() -> {
-                try {
-                    // Print QR code with correct ZCS API signature from Gemini
-                    mPrinter.setPrintAppendQRCode(data, 200, 200, Alignment.ALIGN_CENTER);
+                mExecutor.submit(() -> {
+                    try {
+                        // Add extra lines for manual paper tearing (using spaces instead of empty lines)
+                        String textWithFeed = text + "\n \n \n \n \n \n ";
 
-                    // Add extra lines for manual paper tearing (using spaces instead of empty lines)
-                    PrnStrFormat format = new PrnStrFormat();
-                    format.setTextSize(24);
-                    format.setAli(Layout.Alignment.ALIGN_NORMAL);
-                    mPrinter.setPrintAppendString("\n \n \n \n \n \n ", format);
+                        // Create format object for normal text
+                        PrnStrFormat format = new PrnStrFormat();
+                        format.setTextSize(24);
+                        format.setAli(Layout.Alignment.ALIGN_NORMAL);
 
-                    int status = SdkResult.SDK_OK;
+                        // Print text using proper format
+                        mPrinter.setPrintAppendString(textWithFeed, format);
 
-                    JSONObject result = new JSONObject();
-                    if (status == SdkResult.SDK_OK) {
                         // Start printing
                         int printStatus = mPrinter.setPrintStart();
+                        String result;
                         if (printStatus == SdkResult.SDK_OK) {
-                            result.put("success", true);
-                            result.put("message", "QR code printed successfully");
-                            Log.d(TAG, "QR code printed successfully with paper feed");
+                            result = BridgeResult.success("Text printed successfully");
+                            DiagnosticLog.d(TAG, "Text printed successfully with paper feed");
                         } else {
-                            result.put("success", false);
-                            result.put("error", "Print start failed with status: " + printStatus);
-                            Log.e(TAG, "Print start failed with status: " + printStatus);
+                            result = BridgeResult.error("Print start failed with status: " + printStatus);
+                            DiagnosticLog.e(TAG, "Print start failed with status: " + printStatus);
                         }
-                    } else {
-                        result.put("success", false);
-                        result.put("error", "Print QR code failed with status: " + status);
-                        Log.e(TAG, "Print QR code failed with status: " + status);
-                    }
 
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error printing QR code", e);
-                    try {
-                        JSONObject result = new JSONObject();
-                        result.put("success", false);
-                        result.put("error", "Print error: " + e.getMessage());
-                        runJsCallback(callbackName, result.toString());
-                    } catch (Exception jsonE) {
-                        Log.e(TAG, "Error creating error response", jsonE);
+                        runJsCallback(callbackName, result);
+                    } catch (Exception e) {
+                        DiagnosticLog.e(TAG, "Error printing text", e);
+                        runJsCallback(callbackName, BridgeResult.error("Print error: " + e.getMessage()));
                     }
-                }
-            });
+                });
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
-        public void printBarcode(String data, String callbackName) {
-            Log.d(TAG, "printBarcode called with data: " + data + ", callback: " + callbackName);
+        public void printTextWithAlignment(String text, String alignment, String callbackName) {
+            BridgeMetrics.Call call = onBridgeCall("printTextWithAlignment");
+            BridgeMetrics.getInstance().expectCallback(callbackName);
+            try {
+                DiagnosticLog.d(TAG, "printTextWithAlignment called with alignment: " + alignment + ", callback: " + callbackName);
 
-            if (mPrinter == null) {
-                Log.e(TAG, "Printer not initialized");
-                try {
-                    JSONObject result = new JSONObject();
-                    result.put("success", false);
-                    result.put("error", "Printer not available");
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error creating JSON error response", e);
+                if (mPrinter == null) {
+                    DiagnosticLog.e(TAG, "Printer not initialized");
+                    runJsCallback(callbackName, BridgeResult.error("Printer not available"));
+                    return;
                 }
-                return;
-            }
 
-            mExecutor.submit(() -> {
-                try {
-                    // Print barcode with correct ZCS API signature from Gemini
-                    mPrinter.setPrintAppendBarCode(MainActivityFinal.this, data, 200, 100, true, Alignment.ALIGN_CENTER, BarcodeFormat.CODE_128);
-                    int status = SdkResult.SDK_OK;
+                mExecutor.submit(() -> {
+                    try {
+                        // Add extra lines for manual paper tearing (using spaces instead of empty lines)
+                        String textWithFeed = text + "\n \n \n \n \n \n ";
+
+                        // Create format object with specified alignment
+                        PrnStrFormat format = new PrnStrFormat();
+                        format.setTextSize(24);
+
+                        // Set alignment based on parameter
+                        if ("center".equalsIgnoreCase(alignment)) {
+                            format.setAli(Layout.Alignment.ALIGN_CENTER);
+                        } else if ("right".equalsIgnoreCase(alignment)) {
+                            format.setAli(Layout.Alignment.ALIGN_OPPOSITE);
+                        } else {
+                            format.setAli(Layout.Alignment.ALIGN_NORMAL); // left
+                        }
+
+                        // Print text using proper format
+                        mPrinter.setPrintAppendString(textWithFeed, format);
 
-                    JSONObject result = new JSONObject();
-                    if (status == SdkResult.SDK_OK) {
                         // Start printing
                         int printStatus = mPrinter.setPrintStart();
+                        String result;
                         if (printStatus == SdkResult.SDK_OK) {
-                            result.put("success", true);
-                            result.put("message", "Barcode printed successfully");
-                            Log.d(TAG, "Barcode printed successfully");
+                            result = BridgeResult.success("Text printed successfully with alignment: " + alignment);
+                            DiagnosticLog.d(TAG, "Text printed successfully with alignment: " + alignment);
                         } else {
-                            result.put("success", false);
-                            result.put("error", "Print start failed with status: " + printStatus);
-                            Log.e(TAG, "Print start failed with status: " + printStatus);
+                            result = BridgeResult.error("Print start failed with status: " + printStatus);
+                            DiagnosticLog.e(TAG, "Print start failed with status: " + printStatus);
                         }
-                    } else {
-                        result.put("success", false);
-                        result.put("error", "Print barcode failed with status: " + status);
-                        Log.e(TAG, "Print barcode failed with status: " + status);
+
+                        runJsCallback(callbackName, result);
+                    } catch (Exception e) {
+                        DiagnosticLog.e(TAG, "Error printing text", e);
+                        runJsCallback(callbackName, BridgeResult.error("Print error: " + e.getMessage()));
                     }
+                });
+            } finally {
+                call.end();
+            }
+        }
 
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error printing barcode", e);
+        @JavascriptInterface
+        public void printQRCode(String data, String callbackName) {
+            BridgeMetrics.Call call = onBridgeCall("printQRCode");
+            BridgeMetrics.getInstance().expectCallback(callbackName);
+            try {
+                if (DiagnosticLog.isLoggable(TAG, Log.DEBUG)) {
+                    DiagnosticLog.d(TAG, "printQRCode called with " + (data != null ? data.length() : 0) + " chars, callback: " + callbackName);
+                }
+
+                if (mPrinter == null) {
+                    DiagnosticLog.e(TAG, "Printer not initialized");
+                    runJsCallback(callbackName, BridgeResult.error("Printer not available"));
+                    return;
+                }
+
+                mExecutor.submit(() -> {
                     try {
-                        JSONObject result = new JSONObject();
-                        result.put("success", false);
-                        result.put("error", "Print error: " + e.getMessage());
-                        runJsCallback(callbackName, result.toString());
-                    } catch (Exception jsonE) {
-                        Log.e(TAG, "Error creating error response", jsonE);
+                        // Print QR code with correct ZCS API signature from Gemini
+                        mPrinter.setPrintAppendQRCode(data, 200, 200, Alignment.ALIGN_CENTER);
+
+                        // Add extra lines for manual paper tearing (using spaces instead of empty lines)
+                        PrnStrFormat format = new PrnStrFormat();
+                        format.setTextSize(24);
+                        format.setAli(Layout.Alignment.ALIGN_NORMAL);
+                        mPrinter.setPrintAppendString("\n \n \n \n \n \n ", format);
+
+                        int status = SdkResult.SDK_OK;
+
+                        String result;
+                        if (status == SdkResult.SDK_OK) {
+                            // Start printing
+                            int printStatus = mPrinter.setPrintStart();
+                            if (printStatus == SdkResult.SDK_OK) {
+                                result = BridgeResult.success("QR code printed successfully");
+                                DiagnosticLog.d(TAG, "QR code printed successfully with paper feed");
+                            } else {
+                                result = BridgeResult.error("Print start failed with status: " + printStatus);
+                                DiagnosticLog.e(TAG, "Print start failed with status: " + printStatus);
+                            }
+                        } else {
+                            result = BridgeResult.error("Print QR code failed with status: " + status);
+                            DiagnosticLog.e(TAG, "Print QR code failed with status: " + status);
+                        }
+
+                        runJsCallback(callbackName, result);
+                    } catch (Exception e) {
+                        DiagnosticLog.e(TAG, "Error printing QR code", e);
+                        runJsCallback(callbackName, BridgeResult.error("Print error: " + e.getMessage()));
                     }
-                }
-            });
+                });
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
-        public void cutPaper(String callbackName) {
-            Log.d(TAG, "cutPaper called with callback: " + callbackName);
+        public void printBarcode(String data, String callbackName) {
+            BridgeMetrics.Call call = onBridgeCall("printBarcode");
+            BridgeMetrics.getInstance().expectCallback(callbackName);
+            try {
+                if (DiagnosticLog.isLoggable(TAG, Log.DEBUG)) {
+                    DiagnosticLog.d(TAG, "printBarcode called with " + (data != null ? data.length() : 0) + " chars, callback: " + callbackName);
+                }
 
-            if (mPrinter == null) {
-                Log.e(TAG, "Printer not initialized");
-                try {
-                    JSONObject result = new JSONObject();
-                    result.put("success", false);
-                    result.put("error", "Printer not available");
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error creating JSON error response", e);
+                if (mPrinter == null) {
+                    DiagnosticLog.e(TAG, "Printer not initialized");
+                    runJsCallback(callbackName, BridgeResult.error("Printer not available"));
+                    return;
                 }
-                return;
-            }
 
-            mExecutor.submit(() -> {
-                try {
-                    // Cut paper using correct method
-                    int status = mPrinter.openPrnCutter((byte) 1);
-
-                    JSONObject result = new JSONObject();
-                    if (status == SdkResult.SDK_OK) {
-                        result.put("success", true);
-                        result.put("message", "Paper cut successfully");
-                        Log.d(TAG, "Paper cut successfully");
-                    } else {
-                        result.put("success", false);
-                        result.put("error", "Cut paper failed with status: " + status);
-                        Log.e(TAG, "Cut paper failed with status: " + status);
+                mExecutor.submit(() -> {
+                    try {
+                        // Print barcode with correct ZCS API signature from Gemini
+                        mPrinter.setPrintAppendBarCode(MainActivityFinal.this, data, 200, 100, true, Alignment.ALIGN_CENTER, BarcodeFormat.CODE_128);
+                        int status = SdkResult.SDK_OK;
+
+                        String result;
+                        if (status == SdkResult.SDK_OK) {
+                            // Start printing
+                            int printStatus = mPrinter.setPrintStart();
+                            if (printStatus == SdkResult.SDK_OK) {
+                                result = BridgeResult.success("Barcode printed successfully");
+                                DiagnosticLog.d(TAG, "Barcode printed successfully");
+                            } else {
+                                result = BridgeResult.error("Print start failed with status: " + printStatus);
+                                DiagnosticLog.e(TAG, "Print start failed with status: " + printStatus);
+                            }
+                        } else {
+                            result = BridgeResult.error("Print barcode failed with status: " + status);
+                            DiagnosticLog.e(TAG, "Print barcode failed with status: " + status);
+                        }
+
+                        runJsCallback(callbackName, result);
+                    } catch (Exception e) {
+                        DiagnosticLog.e(TAG, "Error printing barcode", e);
+                        runJsCallback(callbackName, BridgeResult.error("Print error: " + e.getMessage()));
                     }
+                });
+            } finally {
+                call.end();
+            }
+        }
 
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error cutting paper", e);
+        @JavascriptInterface
+        public void cutPaper(String callbackName) {
+            BridgeMetrics.Call call = onBridgeCall("cutPaper");
+            BridgeMetrics.getInstance().expectCallback(callbackName);
+            try {
+                DiagnosticLog.d(TAG, "cutPaper called with callback: " + callbackName);
+
+                if (mPrinter == null) {
+                    DiagnosticLog.e(TAG, "Printer not initialized");
+                    runJsCallback(callbackName, BridgeResult.error("Printer not available"));
+                    return;
+                }
+
+                mExecutor.submit(() -> {
                     try {
-                        JSONObject result = new JSONObject();
-                        result.put("success", false);
-                        result.put("error", "Cut error: " + e.getMessage());
-                        runJsCallback(callbackName, result.toString());
-                    } catch (Exception jsonE) {
-                        Log.e(TAG, "Error creating error response", jsonE);
+                        // Cut paper using correct method
+                        int status = mPrinter.openPrnCutter((byte) 1);
+
+                        String result;
+                        if (status == SdkResult.SDK_OK) {
+                            result = BridgeResult.success("Paper cut successfully");
+                            DiagnosticLog.d(TAG, "Paper cut successfully");
+                        } else {
+                            result = BridgeResult.error("Cut paper failed with status: " + status);
+                            DiagnosticLog.e(TAG, "Cut paper failed with status: " + status);
+                        }
+
+                        runJsCallback(callbackName, result);
+                    } catch (Exception e) {
+                        DiagnosticLog.e(TAG, "Error cutting paper", e);
+                        runJsCallback(callbackName, BridgeResult.error("Cut error: " + e.getMessage()));
                     }
-                }
-            });
+                });
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
         public void printBitmap(String base64Image, String callbackName) {
-            Log.d(TAG, "printBitmap called with callback: " + callbackName);
-            Log.d(TAG, "Image data length: " + (base64Image != null ? base64Image.length() : 0));
+            BridgeMetrics.Call call = onBridgeCall("printBitmap");
+            BridgeMetrics.getInstance().expectCallback(callbackName);
+            try {
+                DiagnosticLog.d(TAG, "printBitmap called with callback: " + callbackName);
+                DiagnosticLog.d(TAG, "Image data length: " + (base64Image != null ? base64Image.length() : 0));
 
-            if (mPrinter == null) {
-                Log.e(TAG, "Printer not initialized");
-                try {
-                    JSONObject result = new JSONObject();
-                    result.put("success", false);
-                    result.put("error", "Printer not available");
-                    runJsCallback(callbackName, result.toString());
-                } catch (JSONException e) {
-                    Log.e(TAG, "Error creating JSON response", e);
+                if (mPrinter == null) {
+                    DiagnosticLog.e(TAG, "Printer not initialized");
+                    sendPrintError(callbackName, "Printer not available");
+                    return;
                 }
-                return;
-            }
 
-            runOnUiThread(() -> {
-                try {
-                    Log.d(TAG, "Converting base64 to bitmap...");
+                // Decodifica e stampa fuori dal main thread
+                mExecutor.submit(() -> {
+                    try {
+                        DiagnosticLog.d(TAG, "Converting base64 to bitmap...");
 
-                    // Remove data:image prefix if present
-                    String base64Data = base64Image;
-                    if (base64Image.contains(",")) {
-                        base64Data = base64Image.substring(base64Image.indexOf(",") + 1);
+                        // Remove data:image prefix if present
+                        String base64Data = base64Image;
+                        if (base64Image.contains(",")) {
+                            base64Data = base64Image.substring(base64Image.indexOf(",") + 1);
+                        }
+                        byte[] decodedBytes = android.util.Base64.decode(base64Data, android.util.Base64.DEFAULT);
+                        printImageBytes(decodedBytes, 0, decodedBytes.length, callbackName);
+                    } catch (Exception e) {
+                        DiagnosticLog.e(TAG, "Error decoding base64 bitmap", e);
+                        sendPrintError(callbackName, "Print error: " + e.getMessage());
                     }
+                });
+            } finally {
+                call.end();
+            }
+        }
 
-                    // Decode base64 string to bitmap
-                    byte[] decodedBytes = android.util.Base64.decode(base64Data, android.util.Base64.DEFAULT);
-                    Bitmap bitmap = android.graphics.BitmapFactory.decodeByteArray(decodedBytes, 0, decodedBytes.length);
+        /**
+         * Stampa un'immagine (PNG/JPEG) già in byte: da printBitmap (base64) o dal canale binario.
+         * Thread di mExecutor
+         */
+        private void printImageBytes(byte[] data, int offset, int length, String callbackName) {
+            try {
+                Bitmap bitmap = decodeForPrinter(data, offset, length, 384); // 58mm = max 384 pixels
 
-                    if (bitmap == null) {
-                        Log.e(TAG, "Failed to decode bitmap from base64");
-                        JSONObject result = new JSONObject();
-                        result.put("success", false);
-                        result.put("error", "Failed to decode image");
-                        runJsCallback(callbackName, result.toString());
-                        return;
-                    }
+                if (bitmap == null) {
+                    DiagnosticLog.e(TAG, "Failed to decode bitmap");
+                    sendPrintError(callbackName, "Failed to decode image");
+                    return;
+                }
 
-                    Log.d(TAG, "Bitmap decoded successfully. Size: " + bitmap.getWidth() + "x" + bitmap.getHeight());
+                DiagnosticLog.d(TAG, "Bitmap decoded successfully. Size: " + bitmap.getWidth() + "x" + bitmap.getHeight());
 
-                    // Scale bitmap to fit thermal printer (58mm = max 384 pixels width)
-                    int maxWidth = 384; // Maximum width for 58mm thermal printer
-                    if (bitmap.getWidth() > maxWidth) {
-                        Log.d(TAG, "Scaling bitmap to fit printer width...");
-                        float scale = (float) maxWidth / bitmap.getWidth();
-                        int newHeight = (int) (bitmap.getHeight() * scale);
-                        bitmap = Bitmap.createScaledBitmap(bitmap, maxWidth, newHeight, true);
-                        Log.d(TAG, "Bitmap scaled to: " + bitmap.getWidth() + "x" + bitmap.getHeight());
-                    }
+                // Print the bitmap
+                DiagnosticLog.d(TAG, "Printing bitmap...");
+                mPrinter.setPrintAppendBitmap(bitmap, Layout.Alignment.ALIGN_CENTER);
 
-                    // Print the bitmap
-                    Log.d(TAG, "Printing bitmap...");
-                    mPrinter.setPrintAppendBitmap(bitmap, Layout.Alignment.ALIGN_CENTER);
+                // Add some paper feed after the image
+                PrnStrFormat format = new PrnStrFormat();
+                format.setTextSize(24);
+                format.setAli(Layout.Alignment.ALIGN_NORMAL);
+                mPrinter.setPrintAppendString("\n\n\n\n\n", format);
 
-                    // Add some paper feed after the image
-                    PrnStrFormat format = new PrnStrFormat();
-                    format.setTextSize(24);
-                    format.setAli(Layout.Alignment.ALIGN_NORMAL);
-                    mPrinter.setPrintAppendString("\n\n\n\n\n", format);
+                // Start printing
+                int printStatus = mPrinter.setPrintStart();
 
-                    // Start printing
-                    int printStatus = mPrinter.setPrintStart();
+                String result;
+                if (printStatus == SdkResult.SDK_OK) {
+                    result = BridgeResult.success("Bitmap printed successfully");
+                    DiagnosticLog.d(TAG, "Bitmap printed successfully");
+                } else {
+                    result = BridgeResult.error("Print start failed with status: " + printStatus);
+                    DiagnosticLog.e(TAG, "Print start failed with status: " + printStatus);
+                }
 
-                    JSONObject result = new JSONObject();
-                    if (printStatus == SdkResult.SDK_OK) {
-                        result.put("success", true);
-                        result.put("message", "Bitmap printed successfully");
-                        Log.d(TAG, "Bitmap printed successfully");
-                    } else {
-                        result.put("success", false);
-                        result.put("error", "Print start failed with status: " + printStatus);
-                        Log.e(TAG, "Print start failed with status: " + printStatus);
-                    }
+                runJsCallback(callbackName, result);
 
-                    runJsCallback(callbackName, result.toString());
+            } catch (Exception e) {
+                DiagnosticLog.e(TAG, "Error printing bitmap", e);
+                sendPrintError(callbackName, "Print error: " + e.getMessage());
+            }
+        }
 
-                } catch (Exception e) {
-                    Log.e(TAG, "Error printing bitmap", e);
-                    try {
-                        JSONObject result = new JSONObject();
-                        result.put("success", false);
-                        result.put("error", "Print error: " + e.getMessage());
-                        runJsCallback(callbackName, result.toString());
-                    } catch (JSONException je) {
-                        Log.e(TAG, "Error creating error JSON", je);
-                    }
+        /**
+         * Decodifica già ridotta (inSampleSize) e poi scalata alla larghezza della stampante termica
+         */
+        private Bitmap decodeForPrinter(byte[] data, int offset, int length, int maxWidth) {
+            android.graphics.BitmapFactory.Options bounds = new android.graphics.BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            android.graphics.BitmapFactory.decodeByteArray(data, offset, length, bounds);
+            if (bounds.outWidth <= 0) {
+                return null;
+            }
+            android.graphics.BitmapFactory.Options options = new android.graphics.BitmapFactory.Options();
+            options.inSampleSize = 1;
+            while (bounds.outWidth / (options.inSampleSize * 2) >= maxWidth) {
+                options.inSampleSize *= 2;
+            }
+            Bitmap bitmap = android.graphics.BitmapFactory.decodeByteArray(data, offset, length, options);
+            if (bitmap != null && bitmap.getWidth() > maxWidth) {
+                float scale = (float) maxWidth / bitmap.getWidth();
+                Bitmap scaled = Bitmap.createScaledBitmap(bitmap, maxWidth, (int) (bitmap.getHeight() * scale), true);
+                if (scaled != bitmap) {
+                    bitmap.recycle();
                 }
-            });
+                bitmap = scaled;
+            }
+            return bitmap;
+        }
+
+        private void sendPrintError(String callbackName, String error) {
+            runJsCallback(callbackName, BridgeResult.error(error));
         }
 
         @JavascriptInterface
         public void printReceipt(String receiptData, String callbackName) {
-            Log.d(TAG, "printReceipt called with callback: " + callbackName);
+            BridgeMetrics.Call call = onBridgeCall("printReceipt");
+            BridgeMetrics.getInstance().expectCallback(callbackName);
+            try {
+                DiagnosticLog.d(TAG, "printReceipt called with callback: " + callbackName);
 
-            if (mPrinter == null) {
-                Log.e(TAG, "Printer not initialized");
-                try {
-                    JSONObject result = new JSONObject();
-                    result.put("success", false);
-                    result.put("error", "Printer not available");
-                    runJsCallback(callbackName, result.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "Error creating JSON error response", e);
+                if (mPrinter == null) {
+                    DiagnosticLog.e(TAG, "Printer not initialized");
+                    runJsCallback(callbackName, BridgeResult.error("Printer not available"));
+                    return;
                 }
-                return;
-            }
-
-            mExecutor.submit(() -> {
-                try {
-                    JSONObject receipt = new JSONObject(receiptData);
-
-                    // No need to initialize printer for receipt printing
 
-                    // Print logo if available
+                mExecutor.submit(() -> {
+                    JSONObject receipt;
+                    try {
+                        receipt = new JSONObject(receiptData);
+                    } catch (JSONException e) {
+                        DiagnosticLog.e(TAG, "Invalid receipt data", e);
+                        sendPrintError(callbackName, "Receipt print error: " + e.getMessage());
+                        return;
+                    }
+                    byte[] logo = null;
                     String logoBase64 = receipt.optString("logoBase64", "");
                     if (!logoBase64.isEmpty() && logoBase64.startsWith("data:image")) {
                         try {
                             // Remove data:image/png;base64, prefix
-                            String base64Image = logoBase64.substring(logoBase64.indexOf(",") + 1);
-                            byte[] decodedBytes = android.util.Base64.decode(base64Image, android.util.Base64.DEFAULT);
-                            Bitmap logoBitmap = android.graphics.BitmapFactory.decodeByteArray(decodedBytes, 0, decodedBytes.length);
-                            
-                            if (logoBitmap != null) {
-                                // Scale logo to fit receipt width (max 384 pixels)
-                                int maxWidth = 300;
-                                if (logoBitmap.getWidth() > maxWidth) {
-                                    float scale = (float) maxWidth / logoBitmap.getWidth();
-                                    int newHeight = (int) (logoBitmap.getHeight() * scale);
-                                    logoBitmap = Bitmap.createScaledBitmap(logoBitmap, maxWidth, newHeight, true);
-                                }
-                                
-                                mPrinter.setPrintAppendBitmap(logoBitmap, Layout.Alignment.ALIGN_CENTER);
-                                
-                                PrnStrFormat normalFormat = new PrnStrFormat();
-                                normalFormat.setTextSize(24);
-                                normalFormat.setAli(Layout.Alignment.ALIGN_NORMAL);
-                                mPrinter.setPrintAppendString("\n", normalFormat);
-                                
-                                Log.d(TAG, "Logo printed successfully");
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error printing logo", e);
+                            logo = android.util.Base64.decode(logoBase64.substring(logoBase64.indexOf(",") + 1),
+                                    android.util.Base64.DEFAULT);
+                        } catch (IllegalArgumentException e) {
+                            DiagnosticLog.e(TAG, "Invalid logo base64", e);
                         }
                     }
+                    printReceiptContent(receipt, logo, 0, logo != null ? logo.length : 0, callbackName);
+                });
+            } finally {
+                call.end();
+            }
+        }
 
-                    // Store name (large font, center)
-                    String storeName = receipt.optString("storeName", "");
-                    if (!storeName.isEmpty()) {
-                        PrnStrFormat headerFormat = new PrnStrFormat();
-                        headerFormat.setTextSize(30);
-                        headerFormat.setAli(Layout.Alignment.ALIGN_CENTER);
-                        headerFormat.setStyle(PrnTextStyle.BOLD);
-                        mPrinter.setPrintAppendString(storeName, headerFormat);
+        /**
+         * Corpo dello scontrino; il logo arriva in byte (da logoBase64 o dal canale binario). Thread di mExecutor
+         */
+        private void printReceiptContent(JSONObject receipt, byte[] logo, int logoOffset, int logoLength,
+                                         String callbackName) {
+            try {
+                // No need to initialize printer for receipt printing
 
-                        PrnStrFormat normalFormat = new PrnStrFormat();
-                        normalFormat.setTextSize(24);
-                        normalFormat.setAli(Layout.Alignment.ALIGN_NORMAL);
-                        mPrinter.setPrintAppendString("\n", normalFormat);
+                // Print logo if available
+                if (logo != null && logoLength > 0) {
+                    try {
+                        // Scale logo to fit receipt width (max 300 pixels)
+                        Bitmap logoBitmap = decodeForPrinter(logo, logoOffset, logoLength, 300);
+
+                        if (logoBitmap != null) {
+                            mPrinter.setPrintAppendBitmap(logoBitmap, Layout.Alignment.ALIGN_CENTER);
+                            
+                            PrnStrFormat normalFormat = new PrnStrFormat();
+                            normalFormat.setTextSize(24);
+                            normalFormat.setAli(Layout.Alignment.ALIGN_NORMAL);
+                            mPrinter.setPrintAppendString("\n", normalFormat);
+                            
+                            DiagnosticLog.d(TAG, "Logo printed successfully");
+                        }
+                    } catch (Exception e) {
+                        DiagnosticLog.e(TAG, "Error printing logo", e);
                     }
+                }
 
-                    // Store info
-                    String storeAddress = receipt.optString("storeAddress", "");
-                    String storePhone = receipt.optString("storePhone", "");
-                    String storeTax = receipt.optString("storeTax", "");
+                // Store name (large font, center)
+                String storeName = receipt.optString("storeName", "");
+                if (!storeName.isEmpty()) {
+                    PrnStrFormat headerFormat = new PrnStrFormat();
+                    headerFormat.setTextSize(30);
+                    headerFormat.setAli(Layout.Alignment.ALIGN_CENTER);
+                    headerFormat.setStyle(PrnTextStyle.BOLD);
+                    mPrinter.setPrintAppendString(storeName, headerFormat);
 
                     PrnStrFormat normalFormat = new PrnStrFormat();
                     normalFormat.setTextSize(24);
                     normalFormat.setAli(Layout.Alignment.ALIGN_NORMAL);
+                    mPrinter.setPrintAppendString("\n", normalFormat);
+                }
 
-                    if (!storeAddress.isEmpty()) {
-                        mPrinter.setPrintAppendString(storeAddress + "\n", normalFormat);
-                    }
-                    if (!storePhone.isEmpty()) {
-                        mPrinter.setPrintAppendString(storePhone + "\n", normalFormat);
-                    }
-                    if (!storeTax.isEmpty()) {
-                        mPrinter.setPrintAppendString("P.IVA: " + storeTax + "\n", normalFormat);
-                    }
+                // Store info
+                String storeAddress = receipt.optString("storeAddress", "");
+                String storePhone = receipt.optString("storePhone", "");
+                String storeTax = receipt.optString("storeTax", "");
 
-                    // Separator
-                    mPrinter.setPrintAppendString("----------------------------------------\n", normalFormat);
+                PrnStrFormat normalFormat = new PrnStrFormat();
+                normalFormat.setTextSize(24);
+                normalFormat.setAli(Layout.Alignment.ALIGN_NORMAL);
 
-                    // Receipt info
-                    String receiptNumber = receipt.optString("receiptNumber", "");
-                    String timestamp = receipt.optString("timestamp", "");
-                    String cashier = receipt.optString("cashier", "");
+                if (!storeAddress.isEmpty()) {
+                    mPrinter.setPrintAppendString(storeAddress + "\n", normalFormat);
+                }
+                if (!storePhone.isEmpty()) {
+                    mPrinter.setPrintAppendString(storePhone + "\n", normalFormat);
+                }
+                if (!storeTax.isEmpty()) {
+                    mPrinter.setPrintAppendString("P.IVA: " + storeTax + "\n", normalFormat);
+                }
 
-                    if (!receiptNumber.isEmpty()) {
-                        mPrinter.setPrintAppendString("Scontrino: " + receiptNumber + "\n", normalFormat);
-                    }
-                    if (!timestamp.isEmpty()) {
-                        mPrinter.setPrintAppendString("Data: " + timestamp + "\n", normalFormat);
-                    }
-                    if (!cashier.isEmpty()) {
-                        mPrinter.setPrintAppendString("Cassiere: " + cashier + "\n", normalFormat);
-                    }
+                // Separator
+                mPrinter.setPrintAppendString("----------------------------------------\n", normalFormat);
 
-                    // Separator
-                    mPrinter.setPrintAppendString("----------------------------------------\n", normalFormat);
+                // Receipt info
+                String receiptNumber = receipt.optString("receiptNumber", "");
+                String timestamp = receipt.optString("timestamp", "");
+                String cashier = receipt.optString("cashier", "");
 
-                    // Items
-                    if (receipt.has("items")) {
-                        org.json.JSONArray items = receipt.getJSONArray("items");
-                        for (int i = 0; i < items.length(); i++) {
-                            JSONObject item = items.getJSONObject(i);
-                            String name = item.optString("name", "");
-                            int quantity = item.optInt("quantity", 1);
-                            double price = item.optDouble("price", 0);
-                            double total = item.optDouble("total", 0);
-
-                            String itemLine = String.format("%dx %s", quantity, name);
-                            if (itemLine.length() > 30) {
-                                itemLine = itemLine.substring(0, 27) + "...";
-                            }
+                if (!receiptNumber.isEmpty()) {
+                    mPrinter.setPrintAppendString("Scontrino: " + receiptNumber + "\n", normalFormat);
+                }
+                if (!timestamp.isEmpty()) {
+                    mPrinter.setPrintAppendString("Data: " + timestamp + "\n", normalFormat);
+                }
+                if (!cashier.isEmpty()) {
+                    mPrinter.setPrintAppendString("Cassiere: " + cashier + "\n", normalFormat);
+                }
 
-                            mPrinter.setPrintAppendString(itemLine + "\n", normalFormat);
-                            mPrinter.setPrintAppendString(String.format("                          EUR %.2f\n", total), normalFormat);
+                // Separator
+                mPrinter.setPrintAppendString("----------------------------------------\n", normalFormat);
+
+                // Items
+                if (receipt.has("items")) {
+                    org.json.JSONArray items = receipt.getJSONArray("items");
+                    for (int i = 0; i < items.length(); i++) {
+                        JSONObject item = items.getJSONObject(i);
+                        String name = item.optString("name", "");
+                        int quantity = item.optInt("quantity", 1);
+                        double price = item.optDouble("price", 0);
+                        double total = item.optDouble("total", 0);
+
+                        String itemLine = String.format("%dx %s", quantity, name);
+                        if (itemLine.length() > 30) {
+                            itemLine = itemLine.substring(0, 27) + "...";
                         }
+
+                        mPrinter.setPrintAppendString(itemLine + "\n", normalFormat);
+                        mPrinter.setPrintAppendString(String.format("                          EUR %.2f\n", total), normalFormat);
                     }
+                }
+
+                // Separator
+                mPrinter.setPrintAppendString("----------------------------------------\n", normalFormat);
 
-                    // Separator
+                // Totals
+                double subtotal = receipt.optDouble("subtotal", 0);
+                double tax = receipt.optDouble("tax", 0);
+                double total = receipt.optDouble("total", 0);
+
+                mPrinter.setPrintAppendString(String.format("Subtotale:                EUR %.2f\n", subtotal), normalFormat);
+                mPrinter.setPrintAppendString(String.format("IVA 22%%:                  EUR %.2f\n", tax), normalFormat);
+
+                PrnStrFormat totalFormat = new PrnStrFormat();
+                totalFormat.setTextSize(30);
+                totalFormat.setAli(Layout.Alignment.ALIGN_NORMAL);
+                totalFormat.setStyle(PrnTextStyle.BOLD);
+                mPrinter.setPrintAppendString(String.format("TOTALE:                   EUR %.2f\n", total), totalFormat);
+
+                // Payment method
+                String paymentMethod = receipt.optString("paymentMethod", "");
+                if (!paymentMethod.isEmpty()) {
                     mPrinter.setPrintAppendString("----------------------------------------\n", normalFormat);
+                    mPrinter.setPrintAppendString("Pagamento: " + paymentMethod + "\n", normalFormat);
+                }
 
-                    // Totals
-                    double subtotal = receipt.optDouble("subtotal", 0);
-                    double tax = receipt.optDouble("tax", 0);
-                    double total = receipt.optDouble("total", 0);
-
-                    mPrinter.setPrintAppendString(String.format("Subtotale:                EUR %.2f\n", subtotal), normalFormat);
-                    mPrinter.setPrintAppendString(String.format("IVA 22%%:                  EUR %.2f\n", tax), normalFormat);
-
-                    PrnStrFormat totalFormat = new PrnStrFormat();
-                    totalFormat.setTextSize(30);
-                    totalFormat.setAli(Layout.Alignment.ALIGN_NORMAL);
-                    totalFormat.setStyle(PrnTextStyle.BOLD);
-                    mPrinter.setPrintAppendString(String.format("TOTALE:                   EUR %.2f\n", total), totalFormat);
-
-                    // Payment method
-                    String paymentMethod = receipt.optString("paymentMethod", "");
-                    if (!paymentMethod.isEmpty()) {
-                        mPrinter.setPrintAppendString("----------------------------------------\n", normalFormat);
-                        mPrinter.setPrintAppendString("Pagamento: " + paymentMethod + "\n", normalFormat);
-                    }
+                // Footer
+                mPrinter.setPrintAppendString("\n", normalFormat);
+                mPrinter.setPrintAppendString("        Grazie per la visita!\n", normalFormat);
+                mPrinter.setPrintAppendString("       Powered by OMNILY PRO\n", normalFormat);
+                mPrinter.setPrintAppendString("\n\n", normalFormat);
 
-                    // Footer
+                // Print QR code if present
+                String qrData = receipt.optString("qrData", "");
+                if (!qrData.isEmpty()) {
+                    mPrinter.setPrintAppendQRCode(qrData, 200, 200, Alignment.ALIGN_CENTER);
                     mPrinter.setPrintAppendString("\n", normalFormat);
-                    mPrinter.setPrintAppendString("        Grazie per la visita!\n", normalFormat);
-                    mPrinter.setPrintAppendString("       Powered by OMNILY PRO\n", normalFormat);
-                    mPrinter.setPrintAppendString("\n\n", normalFormat);
-
-                    // Print QR code if present
-                    String qrData = receipt.optString("qrData", "");
-                    if (!qrData.isEmpty()) {
-                        mPrinter.setPrintAppendQRCode(qrData, 200, 200, Alignment.ALIGN_CENTER);
-                        mPrinter.setPrintAppendString("\n", normalFormat);
-                    }
+                }
 
-                    // Start printing and cut paper
-                    int printStatus = mPrinter.setPrintStart();
-                    if (printStatus == SdkResult.SDK_OK) {
-                        // Wait for print to complete then cut
-                        Thread.sleep(2000);
-                        mPrinter.openPrnCutter((byte) 1);
-
-                        JSONObject result = new JSONObject();
-                        result.put("success", true);
-                        result.put("message", "Receipt printed successfully");
-                        runJsCallback(callbackName, result.toString());
-                        Log.d(TAG, "Receipt printed successfully");
-                    } else {
-                        JSONObject result = new JSONObject();
-                        result.put("success", false);
-                        result.put("error", "Print failed with status: " + printStatus);
-                        runJsCallback(callbackName, result.toString());
-                        Log.e(TAG, "Print failed with status: " + printStatus);
-                    }
+                // Start printing and cut paper
+                int printStatus = mPrinter.setPrintStart();
+                if (printStatus == SdkResult.SDK_OK) {
+                    // Wait for print to complete then cut
+                    Thread.sleep(2000);
+                    mPrinter.openPrnCutter((byte) 1);
 
-                } catch (Exception e) {
-                    Log.e(TAG, "Error printing receipt", e);
-                    try {
-                        JSONObject result = new JSONObject();
-                        result.put("success", false);
-                        result.put("error", "Receipt print error: " + e.getMessage());
-                        runJsCallback(callbackName, result.toString());
-                    } catch (Exception jsonE) {
-                        Log.e(TAG, "Error creating error response", jsonE);
-                    }
+                    runJsCallback(callbackName, BridgeResult.success("Receipt printed successfully"));
+                    DiagnosticLog.d(TAG, "Receipt printed successfully");
+                } else {
+                    runJsCallback(callbackName, BridgeResult.error("Print failed with status: " + printStatus));
+                    DiagnosticLog.e(TAG, "Print failed with status: " + printStatus);
                 }
-            });
+
+            } catch (Exception e) {
+                DiagnosticLog.e(TAG, "Error printing receipt", e);
+                runJsCallback(callbackName, BridgeResult.error("Receipt print error: " + e.getMessage()));
+            }
         }
 
         private void runJsCallback(final String callbackName, final String result) {
-            Log.d(TAG, "🔴 runJsCallback called - callback: " + callbackName + ", result: " + result);
+            if (DiagnosticLog.isLoggable(TAG, Log.DEBUG)) {
+                // Solo la dimensione: i payload (dati carta, clienti) non finiscono nei log
+                DiagnosticLog.d(TAG, "runJsCallback - callback: " + callbackName + ", result: " + result.length() + " chars");
+            }
+            BridgeMetrics.getInstance().onCallback(callbackName);
+            if (batchInvoker.complete(callbackName, result)) {
+                return; // Operazione di invoke(): risolta nel prossimo lotto
+            }
+            if (binaryChannel.complete(callbackName, result)) {
+                return; // Risposta sul canale binario, senza costruire sorgente JS
+            }
             if (callbackName != null && !callbackName.isEmpty()) {
-                runOnUiThread(() -> {
-                    Log.d(TAG, "🔴 About to call JavaScript callback: window." + callbackName);
-                    if (webView != null) {
-                        // Passa il JSON come oggetto, non come stringa
-                        String jsCode = String.format("window.%s(%s)", callbackName, result);
-                        Log.d(TAG, "🔴 Executing JS code: " + jsCode);
-                        webView.evaluateJavascript(jsCode, null);
-                        Log.d(TAG, "🔴 JavaScript callback executed successfully");
+                // Passa il JSON come oggetto, non come stringa; accodato e inviato col frame successivo
+                jsDispatcher.enqueue("window." + callbackName + "(" + result + ")");
+            } else {
+                DiagnosticLog.e(TAG, "🔴 Callback name is null or empty!");
+            }
+        }
+
+        /**
+         * Operazioni del canale binario (main thread): stampa con i byte dell'immagine, JSON nell'header
+         */
+        private void handleBinaryOperation(String op, JSONObject header, byte[] frame, int payloadOffset,
+                                           int payloadLength, String callbackName) {
+            BridgeMetrics.Call call = onBridgeCall("binary:" + op);
+            BridgeMetrics.getInstance().expectCallback(callbackName);
+            try {
+                switch (op) {
+                    case "printBitmap":
+                        if (mPrinter == null) {
+                            sendPrintError(callbackName, "Printer not available");
+                            return;
+                        }
+                        mExecutor.submit(() -> printImageBytes(frame, payloadOffset, payloadLength, callbackName));
+                        break;
+                    case "printReceipt": {
+                        JSONObject receipt = header.optJSONObject("receipt");
+                        if (receipt == null) {
+                            throw new IllegalArgumentException("Missing receipt");
+                        }
+                        if (mPrinter == null) {
+                            sendPrintError(callbackName, "Printer not available");
+                            return;
+                        }
+                        // Payload = logo (opzionale)
+                        mExecutor.submit(() -> printReceiptContent(receipt, payloadLength > 0 ? frame : null,
+                                payloadOffset, payloadLength, callbackName));
+                        break;
+                    }
+                    case "updateCustomerDisplay": {
+                        JSONObject message = header.optJSONObject("message");
+                        if (message == null) {
+                            throw new IllegalArgumentException("Missing message");
+                        }
+                        customerDisplayChannel.submit(message.toString());
+                        runJsCallback(callbackName, "null");
+                        break;
+                    }
+                    default:
+                        throw new IllegalArgumentException("Unknown binary operation: " + op);
+                }
+            } finally {
+                // Main thread: il contesto non resta sui callback successivi non legati al bridge
+                call.end();
+            }
+        }
+
+        /**
+         * Operazioni ammesse in invoke(): stessi metodi del bridge, col callback riservato al posto
+         * dell'handler globale (i metodi *Async con handler registrato restano fuori)
+         */
+        private Object dispatchInvoke(String method, JSONArray args, String callbackName) {
+            switch (method) {
+                // Risultato asincrono sul callback
+                case "readNFCCard":
+                    readNFCCard(callbackName);
+                    return BridgeBatchInvoker.PENDING;
+                case "readQRCode":
+                    readQRCode(callbackName);
+                    return BridgeBatchInvoker.PENDING;
+                case "inputAmount":
+                    inputAmount(callbackName);
+                    return BridgeBatchInvoker.PENDING;
+                case "initPrinter":
+                    initPrinter(callbackName);
+                    return BridgeBatchInvoker.PENDING;
+                case "printText":
+                    printText(invokeArg(args, 0), callbackName);
+                    return BridgeBatchInvoker.PENDING;
+                case "printTextWithAlignment":
+                    printTextWithAlignment(invokeArg(args, 0), invokeArg(args, 1), callbackName);
+                    return BridgeBatchInvoker.PENDING;
+                case "printQRCode":
+                    printQRCode(invokeArg(args, 0), callbackName);
+                    return BridgeBatchInvoker.PENDING;
+                case "printBarcode":
+                    printBarcode(invokeArg(args, 0), callbackName);
+                    return BridgeBatchInvoker.PENDING;
+                case "cutPaper":
+                    cutPaper(callbackName);
+                    return BridgeBatchInvoker.PENDING;
+                case "printBitmap":
+                    printBitmap(invokeArg(args, 0), callbackName);
+                    return BridgeBatchInvoker.PENDING;
+                case "printReceipt":
+                    printReceipt(invokeArg(args, 0), callbackName);
+                    return BridgeBatchInvoker.PENDING;
+
+                // Fire-and-forget: risolti subito
+                case "showToast":
+                    showToast(invokeArg(args, 0));
+                    return null;
+                case "beep":
+                    if (args.length() >= 2) {
+                        beep(invokeArg(args, 0), invokeArg(args, 1));
                     } else {
-                        Log.e(TAG, "🔴 WebView is null - cannot execute callback!");
+                        beep();
                     }
-                });
-            } else {
-                Log.e(TAG, "🔴 Callback name is null or empty!");
+                    return null;
+                case "speak":
+                    speak(invokeArg(args, 0));
+                    return null;
+                case "updateCustomerDisplay":
+                    updateCustomerDisplay(invokeArg(args, 0));
+                    return null;
+                case "stopNFCReading":
+                    stopNFCReading();
+                    return null;
+                case "cancelQRScanner":
+                    cancelQRScanner();
+                    return null;
+                case "testPrinter":
+                    testPrinter();
+                    return null;
+                case "setImagePickerLimits":
+                    setImagePickerLimits(invokeArg(args, 0));
+                    return null;
+
+                // Valore di ritorno
+                case "prefetch":
+                    return prefetch(invokeArg(args, 0), args.length() > 1 ? invokeArg(args, 1) : null);
+                case "cancelPrefetch":
+                    return cancelPrefetch();
+                case "setCustomerDisplayMode":
+                    return setCustomerDisplayMode(invokeArg(args, 0));
+                case "getNetworkInfo":
+                    return getNetworkInfo();
+                case "getBridgeVersion":
+                    return getBridgeVersion();
+                case "getAppVersion":
+                    return getAppVersion();
+                case "getAvailableMethods":
+                    return getAvailableMethods();
+                case "getBridgeStats":
+                    return getBridgeStats();
+                default:
+                    throw new IllegalArgumentException("Unknown method: " + method);
+            }
+        }
+
+        /**
+         * Argomento come stringa (oggetti e array JSON serializzati, come li passa il JS ai metodi classici)
+         */
+        private String invokeArg(JSONArray args, int index) {
+            if (index >= args.length() || args.isNull(index)) {
+                throw new IllegalArgumentException("Missing argument " + index);
             }
+            return String.valueOf(args.opt(index));
         }
 
         public String bytesToHex(byte[] bytes) {
@@ -1922,70 +2492,78 @@ public class MainActivityFinal extends AppCompatActivity {
 
         @JavascriptInterface
         public void testPrinter() {
-            Log.d(TAG, "testPrinter called");
+            BridgeMetrics.Call call = onBridgeCall("testPrinter");
+            try {
+                DiagnosticLog.d(TAG, "testPrinter called");
 
-            new Thread(() -> {
-                try {
-                    if (mPrinter == null) {
-                        Log.e(TAG, "Printer not initialized");
-                        runOnUiThread(() -> showToast("Stampante non inizializzata"));
-                        return;
-                    }
+                new Thread(() -> {
+                    try {
+                        if (mPrinter == null) {
+                            DiagnosticLog.e(TAG, "Printer not initialized");
+                            runOnUiThread(() -> displayToast("Stampante non inizializzata"));
+                            return;
+                        }
 
-                    // Simple test print
-                    PrnStrFormat centerFormat = new PrnStrFormat();
-                    centerFormat.setTextSize(24);
-                    centerFormat.setAli(Layout.Alignment.ALIGN_CENTER);
-                    centerFormat.setStyle(PrnTextStyle.BOLD);
+                        // Simple test print
+                        PrnStrFormat centerFormat = new PrnStrFormat();
+                        centerFormat.setTextSize(24);
+                        centerFormat.setAli(Layout.Alignment.ALIGN_CENTER);
+                        centerFormat.setStyle(PrnTextStyle.BOLD);
 
-                    PrnStrFormat normalFormat = new PrnStrFormat();
-                    normalFormat.setTextSize(20);
-                    normalFormat.setAli(Layout.Alignment.ALIGN_CENTER);
+                        PrnStrFormat normalFormat = new PrnStrFormat();
+                        normalFormat.setTextSize(20);
+                        normalFormat.setAli(Layout.Alignment.ALIGN_CENTER);
 
-                    mPrinter.setPrintAppendString("\n", normalFormat);
-                    mPrinter.setPrintAppendString("=== TEST STAMPANTE ===\n", centerFormat);
-                    mPrinter.setPrintAppendString("\n", normalFormat);
-                    mPrinter.setPrintAppendString("OMNILY PRO POS System\n", normalFormat);
-                    mPrinter.setPrintAppendString("Test stampante eseguito con successo\n", normalFormat);
-                    mPrinter.setPrintAppendString("\n", normalFormat);
-                    mPrinter.setPrintAppendString(new java.text.SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new java.util.Date()) + "\n", normalFormat);
-                    mPrinter.setPrintAppendString("\n\n\n", normalFormat);
-
-                    int printStatus = mPrinter.setPrintStart();
-                    if (printStatus == SdkResult.SDK_OK) {
-                        Thread.sleep(2000);
-                        mPrinter.openPrnCutter((byte) 1);
-                        Log.d(TAG, "Test print completed successfully");
-                        runOnUiThread(() -> showToast("Test stampante completato"));
-                    } else {
-                        Log.e(TAG, "Test print failed with status: " + printStatus);
-                        runOnUiThread(() -> showToast("Test stampante fallito"));
+                        mPrinter.setPrintAppendString("\n", normalFormat);
+                        mPrinter.setPrintAppendString("=== TEST STAMPANTE ===\n", centerFormat);
+                        mPrinter.setPrintAppendString("\n", normalFormat);
+                        mPrinter.setPrintAppendString("OMNILY PRO POS System\n", normalFormat);
+                        mPrinter.setPrintAppendString("Test stampante eseguito con successo\n", normalFormat);
+                        mPrinter.setPrintAppendString("\n", normalFormat);
+                        mPrinter.setPrintAppendString(new java.text.SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new java.util.Date()) + "\n", normalFormat);
+                        mPrinter.setPrintAppendString("\n\n\n", normalFormat);
+
+                        int printStatus = mPrinter.setPrintStart();
+                        if (printStatus == SdkResult.SDK_OK) {
+                            Thread.sleep(2000);
+                            mPrinter.openPrnCutter((byte) 1);
+                            DiagnosticLog.d(TAG, "Test print completed successfully");
+                            runOnUiThread(() -> displayToast("Test stampante completato"));
+                        } else {
+                            DiagnosticLog.e(TAG, "Test print failed with status: " + printStatus);
+                            runOnUiThread(() -> displayToast("Test stampante fallito"));
+                        }
+                    } catch (Exception e) {
+                        DiagnosticLog.e(TAG, "Error in test print", e);
+                        runOnUiThread(() -> displayToast("Errore test stampante: " + e.getMessage()));
                     }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error in test print", e);
-                    runOnUiThread(() -> showToast("Errore test stampante: " + e.getMessage()));
-                }
-            }).start();
+                }).start();
+            } finally {
+                call.end();
+            }
         }
 
         @JavascriptInterface
         public String getNetworkInfo() {
-            Log.d(TAG, "getNetworkInfo called");
+            BridgeMetrics.Call call = onBridgeCall("getNetworkInfo");
+            DiagnosticLog.d(TAG, "getNetworkInfo called");
 
             try {
                 android.net.ConnectivityManager cm = (android.net.ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
                 android.net.NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
 
-                JSONObject networkInfo = new JSONObject();
+                boolean connected = activeNetwork != null && activeNetwork.isConnected();
+                String type = "None";
+                String ip = "N/A";
 
-                if (activeNetwork != null && activeNetwork.isConnected()) {
-                    networkInfo.put("connected", true);
-                    networkInfo.put("type", activeNetwork.getTypeName()); // WIFI or MOBILE
+                if (connected) {
+                    type = activeNetwork.getTypeName(); // WIFI or MOBILE
 
                     // Try to get IP address
+                    ip = null;
                     try {
                         java.net.InetAddress inetAddress = java.net.InetAddress.getLocalHost();
-                        networkInfo.put("ip", inetAddress.getHostAddress());
+                        ip = inetAddress.getHostAddress();
                     } catch (Exception e) {
                         // Try alternative method for IP
                         try {
@@ -1996,71 +2574,79 @@ public class MainActivityFinal extends AppCompatActivity {
                                 while (addresses.hasMoreElements()) {
                                     java.net.InetAddress addr = addresses.nextElement();
                                     if (!addr.isLoopbackAddress() && addr instanceof java.net.Inet4Address) {
-                                        networkInfo.put("ip", addr.getHostAddress());
+                                        ip = addr.getHostAddress();
                                         break;
                                     }
                                 }
                             }
                         } catch (Exception ex) {
-                            Log.e(TAG, "Failed to get IP address", ex);
-                            networkInfo.put("ip", "N/A");
+                            DiagnosticLog.e(TAG, "Failed to get IP address", ex);
+                            ip = "N/A";
                         }
                     }
-                } else {
-                    networkInfo.put("connected", false);
-                    networkInfo.put("type", "None");
-                    networkInfo.put("ip", "N/A");
                 }
 
-                String result = networkInfo.toString();
-                Log.d(TAG, "getNetworkInfo returning: " + result);
+                // Valori già calcolati: tra begin() ed end() non può lanciare nulla
+                BridgeResult networkInfo = BridgeResult.begin()
+                        .put(BridgeResult.CONNECTED, connected)
+                        .put(BridgeResult.TYPE, type);
+                if (ip != null) {
+                    networkInfo.put(BridgeResult.IP, ip);
+                }
+                String result = networkInfo.end();
+                DiagnosticLog.d(TAG, "getNetworkInfo returning: " + result);
                 return result;
 
             } catch (Exception e) {
-                Log.e(TAG, "Error getting network info", e);
-                try {
-                    JSONObject errorInfo = new JSONObject();
-                    errorInfo.put("connected", false);
-                    errorInfo.put("type", "Error");
-                    errorInfo.put("ip", "N/A");
-                    errorInfo.put("error", e.getMessage());
-                    return errorInfo.toString();
-                } catch (JSONException jsonE) {
-                    return "{\"connected\":false,\"type\":\"Error\",\"ip\":\"N/A\"}";
-                }
+                DiagnosticLog.e(TAG, "Error getting network info", e);
+                return BridgeResult.begin()
+                        .put(BridgeResult.CONNECTED, false)
+                        .put(BridgeResult.TYPE, "Error")
+                        .put(BridgeResult.IP, "N/A")
+                        .put(BridgeResult.ERROR, e.getMessage())
+                        .end();
+            } finally {
+                call.end();
             }
         }
 
         @JavascriptInterface
         public void speak(String text) {
-            Log.d(TAG, "🔊 speak() called with text: " + text);
+            BridgeMetrics.Call call = onBridgeCall("speak");
+            try {
+                if (DiagnosticLog.isLoggable(TAG, Log.DEBUG)) {
+                    DiagnosticLog.d(TAG, "🔊 speak() called with " + (text != null ? text.length() : 0) + " chars");
+                }
 
-            if (!ttsInitialized) {
-                Log.e(TAG, "❌ TTS not initialized");
-                return;
-            }
+                if (!ttsInitialized) {
+                    DiagnosticLog.e(TAG, "❌ TTS not initialized");
+                    return;
+                }
 
-            if (textToSpeech == null) {
-                Log.e(TAG, "❌ textToSpeech is null");
-                return;
-            }
+                if (textToSpeech == null) {
+                    DiagnosticLog.e(TAG, "❌ textToSpeech is null");
+                    return;
+                }
 
-            runOnUiThread(() -> {
-                try {
-                    // Stop any current speech
-                    textToSpeech.stop();
+                runOnUiThread(() -> {
+                    try {
+                        // Stop any current speech
+                        textToSpeech.stop();
 
-                    // Speak the text
-                    int result = textToSpeech.speak(text, TextToSpeech.QUEUE_FLUSH, null, "TTS_ID");
-                    if (result == TextToSpeech.SUCCESS) {
-                        Log.d(TAG, "✅ TTS started successfully");
-                    } else {
-                        Log.e(TAG, "❌ TTS speak() failed with result: " + result);
+                        // Speak the text
+                        int result = textToSpeech.speak(text, TextToSpeech.QUEUE_FLUSH, null, "TTS_ID");
+                        if (result == TextToSpeech.SUCCESS) {
+                            DiagnosticLog.d(TAG, "✅ TTS started successfully");
+                        } else {
+                            DiagnosticLog.e(TAG, "❌ TTS speak() failed with result: " + result);
+                        }
+                    } catch (Exception e) {
+                        DiagnosticLog.e(TAG, "❌ Error in TTS speak()", e);
                     }
-                } catch (Exception e) {
-                    Log.e(TAG, "❌ Error in TTS speak()", e);
-                }
-            });
+                });
+            } finally {
+                call.end();
+            }
         }
     }
 
@@ -2110,7 +2696,7 @@ public class MainActivityFinal extends AppCompatActivity {
                 } else {
                     // Se non siamo Device Owner, procediamo con la richiesta interattiva classica.
                     Log.w(TAG, "⚠️ App is NOT Device Owner. Requesting permissions interactively.");
-                    checkAndRequestPermissions();
+                    runOnUiThread(this::checkAndRequestPermissions);
                 }
             }
         } catch (Exception e) {
@@ -2218,6 +2804,9 @@ public class MainActivityFinal extends AppCompatActivity {
 
         // TODO: Implementare sync configurazioni da Supabase
         // Per ora reload del WebView per forzare refresh
+        if (webBundleManager != null) {
+            checkWebBundleUpdate();
+        }
         if (webView != null) {
             runOnUiThread(() -> {
                 webView.reload();
@@ -2333,12 +2922,20 @@ public class MainActivityFinal extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
 
-        // Stop periodic bridge re-injection
-        if (bridgeHandler != null && bridgeInjector != null) {
-            bridgeHandler.removeCallbacks(bridgeInjector);
-            Log.d(TAG, "🛑 Periodic bridge re-injection stopped");
+        if (memoryGovernor != null) {
+            memoryGovernor.release();
+        }
+
+        if (startup != null) {
+            startup.shutdown();
         }
 
+        if (prefetchManager != null) {
+            prefetchManager.shutdown();
+        }
+
+        JankMonitor.getInstance().detach(JankMonitor.SURFACE_MAIN);
+
         // Deregistra BroadcastReceiver MDM
         if (mdmCommandReceiver != null) {
             try {
@@ -2356,6 +2953,7 @@ public class MainActivityFinal extends AppCompatActivity {
             Log.d(TAG, "🔊 TTS shutdown");
         }
 
+        customerDisplayChannel.setSink(null);
         if (customerPresentation != null) {
             customerPresentation.dismiss();
         }
@@ -2387,7 +2985,9 @@ public class MainActivityFinal extends AppCompatActivity {
             if (displayManager != null) {
                 Display[] displays = displayManager.getDisplays(DisplayManager.DISPLAY_CATEGORY_PRESENTATION);
                 if (displays.length > 0) {
-                    customerPresentation = new CustomerPresentation(this, displays[0]);
+                    boolean nativeMode = CUSTOMER_DISPLAY_NATIVE.equals(getSharedPreferences("OmnilyPOS", Context.MODE_PRIVATE)
+                            .getString(PREF_CUSTOMER_DISPLAY_MODE, CUSTOMER_DISPLAY_NATIVE));
+                    customerPresentation = new CustomerPresentation(this, displays[0], nativeMode);
                     customerPresentation.show();
                 }
             }
@@ -2397,16 +2997,48 @@ public class MainActivityFinal extends AppCompatActivity {
     }
 
     private class CustomerPresentation extends Presentation {
+        private final boolean nativeMode;
         private WebView customerWebView;
+        private final WebViewDisplaySink displaySink = new WebViewDisplaySink();
+        private NativeCustomerDisplay nativeDisplay;
 
-        public CustomerPresentation(Context outerContext, Display display) {
+        public CustomerPresentation(Context outerContext, Display display, boolean nativeMode) {
             super(outerContext, display);
+            this.nativeMode = nativeMode;
         }
 
         @Override
         protected void onCreate(Bundle savedInstanceState) {
             super.onCreate(savedInstanceState);
+            if (nativeMode) {
+                // Niente secondo renderer: carrello, totali e logo con viste native
+                nativeDisplay = new NativeCustomerDisplay(getContext());
+                setContentView(nativeDisplay.getView());
+                customerDisplayChannel.setSink(nativeDisplay);
+                customerDisplayChannel.resync();
+                Log.d(TAG, "✅ CustomerPresentation nativa creata");
+            } else {
+                createWebView();
+                customerDisplayChannel.setSink(displaySink);
+            }
+            JankMonitor.getInstance().attach(JankMonitor.SURFACE_CUSTOMER, getWindow(), getDisplay());
+        }
+
+        @Override
+        protected void onStop() {
+            JankMonitor.getInstance().detach(JankMonitor.SURFACE_CUSTOMER);
+            if (nativeDisplay != null) {
+                customerDisplayChannel.setSink(null);
+                nativeDisplay.release();
+                nativeDisplay = null;
+            }
+            super.onStop();
+        }
+
+        private void createWebView() {
             customerWebView = new WebView(getContext());
+            // Sacrificabile sotto pressione di memoria, a favore del WebView principale
+            WebViewMemoryGovernor.applyWaivablePolicy(customerWebView);
 
             // Configura la WebView del customer display
             WebSettings settings = customerWebView.getSettings();
@@ -2423,26 +3055,69 @@ public class MainActivityFinal extends AppCompatActivity {
                 }
             });
 
+            // Il renderer è condiviso con il WebView principale: se muore va gestito anche qui,
+            // altrimenti il sistema termina l'intera app
+            customerWebView.setWebViewClient(new WebViewClient() {
+                @Override
+                public void onPageStarted(WebView view, String url, Bitmap favicon) {
+                    if (view == customerWebView) {
+                        displaySink.onPageStarted();
+                    }
+                }
+
+                @Override
+                public void onPageFinished(WebView view, String url) {
+                    if (view == customerWebView) {
+                        // Il documento nuovo non ha stato: riproponi carrello/benvenuto correnti
+                        displaySink.onPageFinished();
+                        customerDisplayChannel.resync();
+                    }
+                }
+
+                @Override
+                public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail) {
+                    Log.e(TAG, "🚨 Customer display renderer gone (crash: " + detail.didCrash() + ") - recreating");
+                    if (view == customerWebView) {
+                        // setContentView sostituisce (e stacca) il WebView morto
+                        createWebView();
+                    }
+                    view.destroy();
+                    return true;
+                }
+            });
+
+            displaySink.attach(customerWebView);
             customerWebView.loadUrl("https://omnilypro.com?posomnily=true&customer=true");
             setContentView(customerWebView);
 
             Log.d(TAG, "✅ CustomerPresentation WebView creata e configurata");
         }
 
-        // Metodo per inviare dati alla WebView del customer display
-        public void sendDataToDisplay(String jsonData) {
-            if (customerWebView != null) {
-                runOnUiThread(() -> {
-                    try {
-                        String jsCode = String.format("window.postMessage(%s, '*');", jsonData);
-                        Log.d(TAG, "📤 Invio dati al customer display: " + jsCode);
-                        customerWebView.evaluateJavascript(jsCode, null);
-                    } catch (Exception e) {
-                        Log.e(TAG, "❌ Errore invio dati customer display", e);
-                    }
-                });
-            } else {
-                Log.w(TAG, "⚠️ CustomerWebView non disponibile");
+        /**
+         * Pressione di memoria critica: placeholder nativo al posto del WebView
+         */
+        public void releaseWebView() {
+            if (customerWebView == null) {
+                return;
+            }
+            WebView released = customerWebView;
+            customerWebView = null;
+            displaySink.attach(null);
+
+            android.widget.TextView placeholder = new android.widget.TextView(getContext());
+            placeholder.setText("OMNILY PRO");
+            placeholder.setTextSize(android.util.TypedValue.COMPLEX_UNIT_SP, 36);
+            placeholder.setTextColor(android.graphics.Color.WHITE);
+            placeholder.setTypeface(null, android.graphics.Typeface.BOLD);
+            placeholder.setGravity(android.view.Gravity.CENTER);
+            placeholder.setBackgroundColor(android.graphics.Color.parseColor("#D32F2F"));
+            setContentView(placeholder);
+            released.destroy();
+        }
+
+        public void restoreWebView() {
+            if (!nativeMode && customerWebView == null) {
+                createWebView();
             }
         }
 
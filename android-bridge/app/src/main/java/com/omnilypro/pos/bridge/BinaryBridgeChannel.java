@@ -0,0 +1,221 @@
+package com.omnilypro.pos.bridge;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.webkit.WebView;
+
+import androidx.webkit.JavaScriptReplyProxy;
+import androidx.webkit.WebMessageCompat;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canale binario tra web app e nativo (WebMessageListener + ArrayBuffer)
+ *
+ * Le immagini da stampare e i JSON grandi non passano più come stringhe base64 nel
+ * @JavascriptInterface (+33%, copie stringa JS/Java, decodifica base64 in Java): il web app invia
+ * un ArrayBuffer con window.OmnilyBinaryBridge.send(op, header, bytes) → Promise.
+ *
+ * Frame (in entrambe le direzioni): [uint32 big-endian lunghezza header][header JSON UTF-8][payload]
+ * L'header contiene id e op; la risposta ha lo stesso id ed eventuali byte nel payload.
+ * Se il WebView non supporta listener o ArrayBuffer il canale non viene installato e
+ * OmnilyBinaryBridge resta undefined: il web app usa i metodi base64 classici.
+ * Come OmnilyBridge.call, ogni Promise scade dopo TIMEOUT_MS e la risposta nativa viene scartata:
+ * un callback perso non lascia voci in replies né Promise appese.
+ */
+public class BinaryBridgeChannel {
+    private static final String TAG = "BinaryBridgeChannel";
+    public static final String OBJECT_NAME = "OmnilyPOSBinary";
+    private static final String CALLBACK_PREFIX = "__omnilyBinary:";
+    private static final int MAX_HEADER_BYTES = 1024 * 1024;
+    static final long TIMEOUT_MS = BridgeBatchInvoker.CALL_TIMEOUT_MS;
+
+    public static final String SCRIPT =
+            "(function () {" +
+            "  var port = window." + OBJECT_NAME + ";" +
+            "  if (window.OmnilyBinaryBridge || !port) { return; }" +
+            "  var doc = Date.now().toString(36) + Math.random().toString(36).slice(2, 6);" +
+            "  var seq = 0, pending = {};" +
+            "  var encoder = new TextEncoder(), decoder = new TextDecoder();" +
+            "  port.addEventListener('message', function (event) {" +
+            "    if (!(event.data instanceof ArrayBuffer)) { return; }" +
+            "    var header, length;" +
+            "    try {" +
+            "      length = new DataView(event.data).getUint32(0);" +
+            "      header = JSON.parse(decoder.decode(new Uint8Array(event.data, 4, length)));" +
+            "    } catch (e) { return; }" +
+            "    var p = pending[header.id];" +
+            "    if (!p) { return; }" +
+            "    delete pending[header.id];" +
+            "    clearTimeout(p.timer);" +
+            "    var payload = event.data.byteLength > 4 + length ? event.data.slice(4 + length) : null;" +
+            "    if (header.ok) { p.resolve({ result: header.result, payload: payload }); }" +
+            "    else { p.reject(new Error(header.error)); }" +
+            "  });" +
+            "  window.OmnilyBinaryBridge = {" +
+            "    send: function (op, header, bytes) {" +
+            "      return new Promise(function (resolve, reject) {" +
+            "        var h = {}, k;" +
+            "        for (k in header || {}) { h[k] = header[k]; }" +
+            "        h.id = doc + ':' + (++seq); h.op = op;" +
+            "        var head = encoder.encode(JSON.stringify(h));" +
+            "        var body = bytes ? new Uint8Array(bytes.buffer || bytes, bytes.byteOffset || 0, bytes.byteLength) : new Uint8Array(0);" +
+            "        var frame = new Uint8Array(4 + head.length + body.length);" +
+            "        new DataView(frame.buffer).setUint32(0, head.length);" +
+            "        frame.set(head, 4); frame.set(body, 4 + head.length);" +
+            "        var id = h.id, timer = setTimeout(function () {" +
+            "          if (!pending[id]) { return; }" +
+            "          delete pending[id];" +
+            "          reject(new Error('OmnilyBinaryBridge.' + op + ' timed out'));" +
+            "        }, " + TIMEOUT_MS + ");" +
+            "        pending[id] = { resolve: resolve, reject: reject, timer: timer };" +
+            "        port.postMessage(frame.buffer);" +
+            "      });" +
+            "    }" +
+            "  };" +
+            "})();";
+
+    /**
+     * Esegue un'operazione binaria (main thread: il lavoro pesante va spostato su un executor).
+     * Il risultato arriva su callbackName tramite runJsCallback → complete()
+     */
+    public interface OperationHandler {
+        /**
+         * Il payload è la parte del frame da payloadOffset (nessuna copia: BitmapFactory legge dall'offset)
+         *
+         * @throws IllegalArgumentException operazione sconosciuta o header non valido
+         */
+        void handle(String op, JSONObject header, byte[] frame, int payloadOffset, int payloadLength,
+                    String callbackName) throws Exception;
+    }
+
+    private final OperationHandler handler;
+    private final JsCallbackDispatcher jsDispatcher;
+    private final Map<String, JavaScriptReplyProxy> replies = new ConcurrentHashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public BinaryBridgeChannel(OperationHandler handler, JsCallbackDispatcher jsDispatcher) {
+        this.handler = handler;
+        this.jsDispatcher = jsDispatcher;
+    }
+
+    public static boolean isSupported() {
+        return WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_LISTENER)
+                && WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_ARRAY_BUFFER);
+    }
+
+    /**
+     * Da chiamare prima del primo loadUrl (ad ogni WebView creato)
+     */
+    public void install(WebView webView) {
+        if (!isSupported()) {
+            Log.i(TAG, "Binary bridge not supported by this WebView - base64 methods only");
+            return;
+        }
+        WebViewCompat.addWebMessageListener(webView, OBJECT_NAME, BridgeInjector.ALLOWED_ORIGINS,
+                this::onPostMessage);
+        Log.i(TAG, "✅ Binary bridge channel installed");
+    }
+
+    private void onPostMessage(WebView view, WebMessageCompat message, Uri sourceOrigin, boolean isMainFrame,
+                               JavaScriptReplyProxy replyProxy) {
+        if (!isMainFrame || message.getType() != WebMessageCompat.TYPE_ARRAY_BUFFER) {
+            return;
+        }
+        byte[] frame = message.getArrayBuffer();
+        String id = "";
+        try {
+            int headerLength = frame.length >= 4
+                    ? ((frame[0] & 0xFF) << 24) | ((frame[1] & 0xFF) << 16) | ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF)
+                    : -1;
+            if (headerLength < 0 || headerLength > MAX_HEADER_BYTES || 4 + headerLength > frame.length) {
+                // Senza header non c'è un id: la Promise lato JS scade, il documento riceve comunque l'errore
+                Log.w(TAG, "⚠️ Invalid binary frame (" + frame.length + " bytes)");
+                replyProxy.postMessage(frame(error(id, "Invalid binary frame"), null));
+                return;
+            }
+            JSONObject header = new JSONObject(new String(frame, 4, headerLength, StandardCharsets.UTF_8));
+            id = header.optString("id", "");
+            int payloadOffset = 4 + headerLength;
+
+            if (id.isEmpty()) {
+                throw new IllegalArgumentException("Binary frame without id");
+            }
+            replies.put(id, replyProxy);
+            // Stessa scadenza della Promise: oltre, la risposta non avrebbe più nessuno ad attenderla
+            final String expiring = id;
+            mainHandler.postDelayed(() -> {
+                if (replies.remove(expiring, replyProxy)) {
+                    Log.w(TAG, "⚠️ Binary operation " + expiring + " timed out");
+                }
+            }, TIMEOUT_MS);
+            handler.handle(header.optString("op", ""), header, frame, payloadOffset, frame.length - payloadOffset,
+                    CALLBACK_PREFIX + id);
+        } catch (IllegalArgumentException e) {
+            replies.remove(id);
+            replyProxy.postMessage(frame(error(id, e.getMessage()), null));
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Binary operation failed", e);
+            replies.remove(id);
+            replyProxy.postMessage(frame(error(id, "Binary operation failed: " + e.getMessage()), null));
+        }
+    }
+
+    /**
+     * Risultato da runJsCallback: true se il callback era riservato al canale binario
+     */
+    public boolean complete(String callbackName, String resultJson) {
+        return complete(callbackName, resultJson, null);
+    }
+
+    /**
+     * Come complete(callbackName, resultJson), con byte restituiti nel payload senza passare da stringhe JS
+     */
+    public boolean complete(String callbackName, String resultJson, byte[] payload) {
+        if (callbackName == null || !callbackName.startsWith(CALLBACK_PREFIX)) {
+            return false;
+        }
+        String id = callbackName.substring(CALLBACK_PREFIX.length());
+        final JavaScriptReplyProxy replyProxy = replies.remove(id);
+        if (replyProxy == null) {
+            return true; // Documento cambiato nel frattempo
+        }
+        final byte[] reply = frame("{\"id\":" + JSONObject.quote(id) + ",\"ok\":true,\"result\":"
+                + (resultJson != null && !resultJson.isEmpty() ? resultJson : "null") + "}", payload);
+        // Main thread (richiesto dal JavaScriptReplyProxy), nello stesso frame e in ordine con i callback
+        jsDispatcher.post(() -> replyProxy.postMessage(reply));
+        return true;
+    }
+
+    private static String error(String id, String message) {
+        try {
+            return new JSONObject().put("id", id).put("ok", false).put("error", String.valueOf(message)).toString();
+        } catch (JSONException e) {
+            return "{\"ok\":false}";
+        }
+    }
+
+    private static byte[] frame(String headerJson, byte[] payload) {
+        byte[] header = headerJson.getBytes(StandardCharsets.UTF_8);
+        int payloadLength = payload != null ? payload.length : 0;
+        byte[] frame = new byte[4 + header.length + payloadLength];
+        frame[0] = (byte) (header.length >>> 24);
+        frame[1] = (byte) (header.length >>> 16);
+        frame[2] = (byte) (header.length >>> 8);
+        frame[3] = (byte) header.length;
+        System.arraycopy(header, 0, frame, 4, header.length);
+        if (payloadLength > 0) {
+            System.arraycopy(payload, 0, frame, 4 + header.length, payloadLength);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,189 @@
+package com.omnilypro.pos.bridge;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Protocollo batch del bridge: OmnilyPOS.invoke(batchJson) con ID di correlazione
+ *
+ * Il client JS (SCRIPT, window.OmnilyBridge.call(method, ...args) → Promise) accoda le chiamate
+ * dello stesso tick e le invia con un solo attraversamento del bridge. Ogni operazione viene
+ * eseguita dal metodo del bridge esistente (che usa già il proprio executor: stampante, UI, TTS)
+ * con un callback riservato "__omnilyInvoke:<id>" al posto dell'handler globale: due chiamate
+ * concorrenti non si sovrascrivono più il callback.
+ *
+ * I risultati sincroni tornano nel valore di invoke(); quelli asincroni passano dal
+ * JsCallbackDispatcher (window.__omnilyBridgeResolve) e vengono risolti a lotti, una evaluateJavascript per frame.
+ * Ogni Promise ha una scadenza (CALL_TIMEOUT_MS, INTERACTIVE_TIMEOUT_MS per le letture che attendono
+ * il cliente): un callback perso non lascia ID pendenti per sempre, e un risultato tardivo viene ignorato.
+ */
+public class BridgeBatchInvoker {
+    private static final String TAG = "BridgeBatchInvoker";
+    private static final String CALLBACK_PREFIX = "__omnilyInvoke:";
+    private static final int MAX_OPS_PER_BATCH = 50;
+    private static final String RESOLVE_PREFIX = "window.__omnilyBridgeResolve && window.__omnilyBridgeResolve([";
+    static final long CALL_TIMEOUT_MS = 30_000;
+    // Carta NFC, QR e importo attendono il cliente
+    static final long INTERACTIVE_TIMEOUT_MS = 120_000;
+
+    /**
+     * Valore di dispatch(): il risultato arriverà sul callback riservato
+     */
+    public static final Object PENDING = new Object();
+
+    public static final String SCRIPT =
+            "(function () {" +
+            "  var bridge = window." + BridgeInjector.INTERFACE_NAME + ";" +
+            "  if (window.OmnilyBridge || !bridge || !bridge.invoke) { return; }" +
+            "  var doc = Date.now().toString(36) + Math.random().toString(36).slice(2, 6);" +
+            "  var seq = 0, pending = {}, queue = [], scheduled = false;" +
+            "  var interactive = { readNFCCard: 1, readNFCCardAsync: 1, readQRCode: 1, readQRCodeAsync: 1, inputAmount: 1, inputAmountAsync: 1 };" +
+            "  function settle(replies) {" +
+            "    for (var i = 0; i < replies.length; i++) {" +
+            "      var r = replies[i], p = pending[r.id];" +
+            "      if (!p) { continue; }" +
+            "      delete pending[r.id];" +
+            "      clearTimeout(p.timer);" +
+            "      if (r.ok) { p.resolve(r.result); } else { p.reject(new Error(r.error)); }" +
+            "    }" +
+            "  }" +
+            "  window.__omnilyBridgeResolve = settle;" +
+            "  function send() {" +
+            "    scheduled = false;" +
+            "    var ops = queue; queue = [];" +
+            "    try { settle(JSON.parse(bridge.invoke(JSON.stringify(ops)))); }" +
+            "    catch (e) { settle(ops.map(function (op) { return { id: op.id, ok: false, error: String(e) }; })); }" +
+            "  }" +
+            "  function call(method) {" +
+            "    var args = Array.prototype.slice.call(arguments, 1);" +
+            "    return new Promise(function (resolve, reject) {" +
+            "      var id = doc + ':' + (++seq);" +
+            "      var timer = setTimeout(function () {" +
+            "        if (!pending[id]) { return; }" +
+            "        delete pending[id];" +
+            "        reject(new Error('OmnilyBridge.' + method + ' timed out'));" +
+            "      }, interactive[method] ? " + INTERACTIVE_TIMEOUT_MS + " : " + CALL_TIMEOUT_MS + ");" +
+            "      pending[id] = { resolve: resolve, reject: reject, timer: timer };" +
+            "      queue.push({ id: id, method: method, args: args });" +
+            "      if (!scheduled) { scheduled = true; Promise.resolve().then(send); }" +
+            "    });" +
+            "  }" +
+            "  window.OmnilyBridge = {" +
+            "    call: call," +
+            "    batch: function (ops) {" +
+            "      return Promise.all(ops.map(function (op) { return call.apply(null, [op.method].concat(op.args || [])); }));" +
+            "    }" +
+            "  };" +
+            "})();";
+
+    /**
+     * Esegue un'operazione con il metodo del bridge corrispondente
+     */
+    public interface Dispatcher {
+        /**
+         * @return il risultato sincrono (anche null), oppure PENDING se arriverà su callbackName
+         * @throws IllegalArgumentException metodo sconosciuto o argomenti non validi
+         */
+        Object dispatch(String method, JSONArray args, String callbackName) throws Exception;
+    }
+
+    private final Dispatcher dispatcher;
+    private final JsCallbackDispatcher jsDispatcher;
+
+    public BridgeBatchInvoker(Dispatcher dispatcher, JsCallbackDispatcher jsDispatcher) {
+        this.dispatcher = dispatcher;
+        this.jsDispatcher = jsDispatcher;
+    }
+
+    /**
+     * [{id, method, args}] → [{id, ok, result|error}] per le operazioni già concluse (thread del bridge)
+     */
+    public String invoke(String batchJson) {
+        StringBuilder replies = new StringBuilder("[");
+        JSONArray ops;
+        try {
+            ops = new JSONArray(batchJson);
+        } catch (JSONException e) {
+            Log.w(TAG, "⚠️ Invalid invoke batch: " + e.getMessage());
+            return "[]";
+        }
+
+        for (int i = 0; i < ops.length(); i++) {
+            JSONObject op = ops.optJSONObject(i);
+            if (op == null) {
+                continue;
+            }
+            String id = op.optString("id", "");
+            if (i >= MAX_OPS_PER_BATCH) {
+                appendError(replies, id, "Batch too large (max " + MAX_OPS_PER_BATCH + ")");
+                continue;
+            }
+            String method = op.optString("method", "");
+            JSONArray args = op.optJSONArray("args");
+            try {
+                Object result = dispatcher.dispatch(method, args != null ? args : new JSONArray(), CALLBACK_PREFIX + id);
+                if (result != PENDING) {
+                    appendSuccess(replies, id, valueToJson(result));
+                }
+            } catch (IllegalArgumentException e) {
+                appendError(replies, id, e.getMessage());
+            } catch (Exception e) {
+                Log.e(TAG, "❌ invoke " + method + " failed", e);
+                appendError(replies, id, method + " failed: " + e.getMessage());
+            }
+        }
+        return replies.append(']').toString();
+    }
+
+    /**
+     * Risultato asincrono da runJsCallback: true se il callback era riservato a invoke()
+     */
+    public boolean complete(String callbackName, String resultJson) {
+        if (callbackName == null || !callbackName.startsWith(CALLBACK_PREFIX)) {
+            return false;
+        }
+        String id = callbackName.substring(CALLBACK_PREFIX.length());
+        StringBuilder script = new StringBuilder(RESOLVE_PREFIX.length() + 64 + (resultJson != null ? resultJson.length() : 0))
+                .append(RESOLVE_PREFIX);
+        appendSuccess(script, id, resultJson != null && !resultJson.isEmpty() ? resultJson : "null");
+        jsDispatcher.enqueue(script.append("])").toString());
+        return true;
+    }
+
+    // ============================================================================
+    // Serializzazione risposte (scritte direttamente nel buffer, senza String intermedie per risposta)
+    // ============================================================================
+
+    private static void appendSuccess(StringBuilder out, String id, String resultJson) {
+        appendId(out, id).append(",\"ok\":true,\"result\":").append(resultJson).append('}');
+    }
+
+    private static void appendError(StringBuilder out, String id, String message) {
+        appendId(out, id).append(",\"ok\":false,\"error\":");
+        BridgeResult.appendQuoted(out, String.valueOf(message));
+        out.append('}');
+    }
+
+    private static StringBuilder appendId(StringBuilder out, String id) {
+        // "[" iniziale della lista o "([" dello script di resolve: virgola solo tra due risposte
+        if (out.charAt(out.length() - 1) != '[') {
+            out.append(',');
+        }
+        out.append("{\"id\":");
+        BridgeResult.appendQuoted(out, id);
+        return out;
+    }
+
+    private static String valueToJson(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof String) {
+            return BridgeResult.quote((String) value);
+        }
+        return String.valueOf(JSONObject.wrap(value));
+    }
+}
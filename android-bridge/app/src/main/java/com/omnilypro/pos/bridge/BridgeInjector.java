@@ -0,0 +1,165 @@
+package com.omnilypro.pos.bridge;
+
+import android.annotation.SuppressLint;
+import android.util.Log;
+import android.webkit.WebView;
+
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Iniezione event-driven del bridge window.OmnilyPOS
+ *
+ * addJavascriptInterface viene chiamato UNA volta prima del primo loadUrl: Chromium espone l'oggetto
+ * in ogni nuovo documento prima che giri il codice della pagina, e la navigazione SPA (pushState)
+ * non cambia il contesto JS. Non serve quindi nessun loop di re-iniezione.
+ *
+ * Uno script document-start crea window.OmnilyPOSReady (Promise) e l'evento 'omnilypos:ready',
+ * e conferma al nativo con notifyBridgeReady(href) ad ogni navigazione (handshake).
+ *
+ * L'handshake arriva sul thread del bridge e può precedere onPageStarted (main thread): non viene
+ * azzerato all'inizio della navigazione, ma legato all'URL del documento e consumato in
+ * onPageFinished per quello stesso URL.
+ */
+public class BridgeInjector {
+    private static final String TAG = "BridgeInjector";
+    public static final String INTERFACE_NAME = "OmnilyPOS";
+
+    static final Set<String> ALLOWED_ORIGINS = new HashSet<>(Arrays.asList(
+            "https://omnilypro.com",
+            "https://www.omnilypro.com"
+    ));
+
+    // Idempotente: può girare sia da document-start sia dal fallback in onPageStarted/onPageFinished
+    static final String BOOT_SCRIPT =
+            "(function () {" +
+            "  if (window.__omnilyBridgeBoot) { return; }" +
+            "  window.__omnilyBridgeBoot = true;" +
+            "  var bridge = window." + INTERFACE_NAME + ";" +
+            "  var ready = typeof bridge !== 'undefined';" +
+            "  window.OmnilyPOSReady = Promise.resolve(ready ? bridge : null);" +
+            "  if (!ready) { return; }" +
+            "  try { bridge.notifyBridgeReady(String(location.href)); } catch (e) {}" +
+            "  var fire = function () { window.dispatchEvent(new Event('omnilypos:ready')); };" +
+            "  if (document.readyState === 'loading') {" +
+            "    document.addEventListener('DOMContentLoaded', fire);" +
+            "  } else { fire(); }" +
+            "})();";
+
+    private final WebView webView;
+    private final Object bridge;
+    private final List<String> extraScripts = new ArrayList<>();
+    private boolean documentStartSupported = false;
+    // URL (senza #fragment) dell'ultimo handshake non ancora verificato da onPageFinished
+    private final AtomicReference<String> handshakeUrl = new AtomicReference<>();
+    private boolean recoveryReloadDone = false;
+
+    public BridgeInjector(WebView webView, Object bridge) {
+        this.webView = webView;
+        this.bridge = bridge;
+    }
+
+    /**
+     * Script aggiuntivo (idempotente) eseguito ad ogni documento dopo il boot del bridge.
+     * Da registrare prima di install()
+     */
+    public void addDocumentStartScript(String script) {
+        extraScripts.add(script);
+    }
+
+    /**
+     * Da chiamare una sola volta, prima del primo loadUrl
+     */
+    @SuppressLint({"JavascriptInterface", "AddJavascriptInterface"})
+    public void install() {
+        webView.addJavascriptInterface(bridge, INTERFACE_NAME);
+
+        if (WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)) {
+            WebViewCompat.addDocumentStartJavaScript(webView, BOOT_SCRIPT, ALLOWED_ORIGINS);
+            for (String script : extraScripts) {
+                WebViewCompat.addDocumentStartJavaScript(webView, script, ALLOWED_ORIGINS);
+            }
+            documentStartSupported = true;
+            Log.i(TAG, "✅ Bridge installed with document-start handshake");
+        } else {
+            Log.i(TAG, "✅ Bridge installed (document-start not supported, using page-start fallback)");
+        }
+    }
+
+    /**
+     * Nuovo documento (fallback senza document-start). L'handshake non viene azzerato qui:
+     * per il documento nuovo può essere già arrivato
+     */
+    public void onPageStarted(String url) {
+        if (!documentStartSupported) {
+            runFallbackScripts();
+        }
+    }
+
+    /**
+     * Verifica finale: handshake per questo URL, altrimenti controllo diretto nel documento corrente
+     */
+    public void onPageFinished(String url) {
+        String handshake = handshakeUrl.getAndSet(null);
+        if (handshake != null && handshake.equals(withoutFragment(url))) {
+            return;
+        }
+        if (!documentStartSupported) {
+            // Il fallback in onPageStarted può girare prima che il documento sia pronto
+            runFallbackScripts();
+        }
+        // Handshake assente o di un altro URL (redirect, pushState, onPageFinished ripetuto):
+        // si ricarica solo se il bridge manca davvero nel documento corrente
+        webView.evaluateJavascript("typeof window." + INTERFACE_NAME + " !== 'undefined'", value -> {
+            if (!"true".equals(value)) {
+                recoverMissingBridge(url);
+            }
+        });
+    }
+
+    private void runFallbackScripts() {
+        webView.evaluateJavascript(BOOT_SCRIPT, null);
+        for (String script : extraScripts) {
+            webView.evaluateJavascript(script, null);
+        }
+    }
+
+    /**
+     * Handshake dal JS (chiamato su un thread del bridge, non sul main thread)
+     */
+    public void onBridgeReady(String href) {
+        handshakeUrl.set(withoutFragment(href));
+        Log.i(TAG, "🤝 Bridge ready for " + href);
+    }
+
+    private static String withoutFragment(String url) {
+        if (url == null) {
+            return "";
+        }
+        int hash = url.indexOf('#');
+        return hash >= 0 ? url.substring(0, hash) : url;
+    }
+
+    /**
+     * Un solo reload di recupero per activity: l'interfaccia viene esposta solo ai documenti caricati dopo
+     */
+    @SuppressLint({"JavascriptInterface", "AddJavascriptInterface"})
+    private void recoverMissingBridge(String url) {
+        if (recoveryReloadDone) {
+            Log.e(TAG, "❌ Bridge still not visible in JS context for " + url);
+            return;
+        }
+        recoveryReloadDone = true;
+        Log.w(TAG, "⚠️ No bridge handshake for " + url + " - re-adding interface and reloading once");
+        webView.removeJavascriptInterface(INTERFACE_NAME);
+        webView.addJavascriptInterface(bridge, INTERFACE_NAME);
+        webView.reload();
+    }
+}
@@ -0,0 +1,197 @@
+package com.omnilypro.pos.bridge;
+
+/**
+ * Encoder streaming dei risultati del bridge (JSON piatti: {"success":true,"message":"..."})
+ *
+ * Sostituisce new JSONObject() + put() + toString() nei callback caldi (NFC, QR, stampa): niente
+ * LinkedHashMap, boxing dei valori o JSONStringer intermedio, e nessuna JSONException da gestire
+ * nei percorsi di errore. Le chiavi sono frammenti "nome": precalcolati e il buffer è riusato per
+ * thread: a regime l'unica allocazione per risultato è la String finale.
+ *
+ * Uso: BridgeResult.begin().put(BridgeResult.SUCCESS, true).put(BridgeResult.CARD_NO, uid).end()
+ * I valori vanno calcolati prima di begin(): un'eccezione tra begin() ed end() lascia il buffer del
+ * thread occupato e i risultati successivi su quel thread tornano ad allocarne uno nuovo.
+ */
+public final class BridgeResult {
+    private static final int INITIAL_CAPACITY = 256;
+    // Oltre questa soglia il buffer non viene trattenuto (un risultato enorme non resta in memoria)
+    private static final int MAX_POOLED_CAPACITY = 8 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Chiave con il frammento "nome": già serializzato
+     */
+    public static final class Key {
+        final String fragment;
+
+        private Key(String name) {
+            this.fragment = quote(name) + ":";
+        }
+    }
+
+    public static Key key(String name) {
+        return new Key(name);
+    }
+
+    public static final Key SUCCESS = key("success");
+    public static final Key ERROR = key("error");
+    public static final Key MESSAGE = key("message");
+    public static final Key CANCELLED = key("cancelled");
+    public static final Key CARD_NO = key("cardNo");
+    public static final Key RF_UID = key("rfUid");
+    public static final Key CONTENT = key("content");
+    public static final Key FORMAT = key("format");
+    public static final Key QR_CODE = key("qrCode");
+    public static final Key CONNECTED = key("connected");
+    public static final Key TYPE = key("type");
+    public static final Key IP = key("ip");
+
+    // ThreadLocal.withInitial richiede API 26
+    private static final ThreadLocal<BridgeResult> POOL = new ThreadLocal<BridgeResult>() {
+        @Override
+        protected BridgeResult initialValue() {
+            return new BridgeResult();
+        }
+    };
+
+    private StringBuilder out = new StringBuilder(INITIAL_CAPACITY);
+    private boolean open = false;
+    private boolean first = true;
+
+    private BridgeResult() {
+    }
+
+    /**
+     * Nuovo oggetto sul buffer del thread corrente (chiudere con end())
+     */
+    public static BridgeResult begin() {
+        BridgeResult result = POOL.get();
+        if (result.open) {
+            result = new BridgeResult(); // Risultato annidato sullo stesso thread: buffer proprio
+        }
+        result.open = true;
+        result.first = true;
+        result.out.setLength(0);
+        result.out.append('{');
+        return result;
+    }
+
+    /**
+     * {"success":true,"message":...}
+     */
+    public static String success(String message) {
+        return begin().put(SUCCESS, true).put(MESSAGE, message).end();
+    }
+
+    /**
+     * {"success":false,"error":...}
+     */
+    public static String error(String error) {
+        return begin().put(SUCCESS, false).put(ERROR, error).end();
+    }
+
+    public BridgeResult put(Key key, String value) {
+        appendKey(key);
+        if (value == null) {
+            out.append("null");
+        } else {
+            appendQuoted(out, value);
+        }
+        return this;
+    }
+
+    public BridgeResult put(Key key, boolean value) {
+        appendKey(key);
+        out.append(value);
+        return this;
+    }
+
+    public BridgeResult put(Key key, long value) {
+        appendKey(key);
+        out.append(value);
+        return this;
+    }
+
+    /**
+     * Chiude l'oggetto e rilascia il buffer
+     */
+    public String end() {
+        out.append('}');
+        String json = out.toString();
+        if (out.capacity() > MAX_POOLED_CAPACITY) {
+            out = new StringBuilder(INITIAL_CAPACITY);
+        }
+        open = false;
+        return json;
+    }
+
+    private void appendKey(Key key) {
+        if (!first) {
+            out.append(',');
+        }
+        first = false;
+        out.append(key.fragment);
+    }
+
+    // ============================================================================
+    // Stringhe JSON
+    // ============================================================================
+
+    /**
+     * Come JSONObject.quote(), con U+2028/U+2029 escapati: i risultati finiscono in sorgente JS
+     * (runJsCallback), dove quei due caratteri chiudono la riga
+     */
+    public static String quote(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2);
+        appendQuoted(out, value);
+        return out.toString();
+    }
+
+    /**
+     * Scrive la stringa quotata direttamente nel buffer, senza String intermedia
+     */
+    public static void appendQuoted(StringBuilder out, String value) {
+        out.append('"');
+        int length = value.length();
+        int run = 0; // Inizio dei caratteri da copiare così come sono
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            out.append(value, run, i);
+            run = i + 1;
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                default:
+                    out.append("\\u")
+                            .append(HEX[(c >> 12) & 0xF])
+                            .append(HEX[(c >> 8) & 0xF])
+                            .append(HEX[(c >> 4) & 0xF])
+                            .append(HEX[c & 0xF]);
+            }
+        }
+        out.append(value, run, length);
+        out.append('"');
+    }
+}
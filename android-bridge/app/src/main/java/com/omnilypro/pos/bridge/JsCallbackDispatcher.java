@@ -0,0 +1,109 @@
+package com.omnilypro.pos.bridge;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+import android.webkit.WebView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coda delle chiamate native → JS, svuotata una volta per frame
+ *
+ * Callback del bridge, risposte di invoke() e messaggi del canale binario
+ * vengono accodati da qualsiasi thread; al vsync successivo gli script accodati diventano UNA
+ * evaluateJavascript e i messaggi sulle porte partono nello stesso passaggio. L'ordine di
+ * accodamento è rispettato (anche tra script e messaggi); ogni script gira nel proprio try/catch,
+ * così un callback che lancia non blocca i successivi.
+ */
+public class JsCallbackDispatcher implements Choreographer.FrameCallback {
+    private static final String TAG = "JsCallbackDispatcher";
+
+    /**
+     * WebView corrente (può essere ricreato dopo un crash del renderer). Main thread
+     */
+    public interface Target {
+        WebView getWebView();
+    }
+
+    private final Target target;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Script (String) e messaggi (Runnable) in ordine di accodamento
+    private final List<Object> pending = new ArrayList<>();
+    private boolean frameScheduled = false;
+
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(this);
+
+    public JsCallbackDispatcher(Target target) {
+        this.target = target;
+    }
+
+    /**
+     * Script da valutare nel prossimo frame (qualsiasi thread)
+     */
+    public void enqueue(String script) {
+        add(script);
+    }
+
+    /**
+     * Operazione sul main thread nello stesso passaggio, in ordine con gli script (es. postMessage su una porta)
+     */
+    public void post(Runnable message) {
+        add(message);
+    }
+
+    private void add(Object entry) {
+        synchronized (pending) {
+            pending.add(entry);
+            if (!frameScheduled) {
+                frameScheduled = true;
+                if (Looper.myLooper() == Looper.getMainLooper()) {
+                    scheduleFrame.run();
+                } else {
+                    mainHandler.post(scheduleFrame);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        List<Object> batch;
+        synchronized (pending) {
+            frameScheduled = false;
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        StringBuilder script = new StringBuilder();
+        for (Object entry : batch) {
+            if (entry instanceof String) {
+                script.append("try{").append((String) entry).append(";}catch(e){console.error(e);}");
+            } else {
+                // Gli script accodati prima del messaggio partono prima
+                evaluate(script);
+                script.setLength(0);
+                try {
+                    ((Runnable) entry).run();
+                } catch (Exception e) {
+                    Log.e(TAG, "❌ Outbound message failed", e);
+                }
+            }
+        }
+        evaluate(script);
+    }
+
+    private void evaluate(StringBuilder script) {
+        if (script.length() == 0) {
+            return;
+        }
+        WebView webView = target.getWebView();
+        if (webView == null) {
+            Log.e(TAG, "🔴 WebView is null - dropping JS callbacks");
+            return;
+        }
+        webView.evaluateJavascript(script.toString(), null);
+    }
+}
@@ -0,0 +1,154 @@
+package com.omnilypro.pos.bridge;
+
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebView;
+
+import androidx.webkit.JavaScriptReplyProxy;
+import androidx.webkit.WebMessageCompat;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import com.omnilypro.pos.session.SecureSessionStore;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Scambio della sessione staff tra web app e SecureSessionStore (WebMessageListener)
+ *
+ * I token non passano dal @JavascriptInterface: OmnilyPOS è visibile in ogni frame, compresi gli
+ * iframe srcDoc e quelli di terze parti. Qui il listener è limitato a ALLOWED_ORIGINS
+ * e risponde solo al main frame. Il web app usa window.OmnilySession.get() / save(session) / clear()
+ * → Promise; se il WebView non supporta i listener OmnilySession resta undefined (login ad ogni riavvio).
+ *
+ * Messaggi (stringhe JSON): {"id": 1, "op": "get"|"save"|"clear", "session": {...}}
+ * Risposte: {"id": 1, "ok": true, "session": {...}|null} oppure {"id": 1, "ok": false, "error": "..."}
+ */
+public class SessionChannel {
+    private static final String TAG = "SessionChannel";
+    public static final String OBJECT_NAME = "OmnilyPOSSession";
+
+    public static final String SCRIPT =
+            "(function () {" +
+            "  var port = window." + OBJECT_NAME + ";" +
+            "  if (window.OmnilySession || !port || window.top !== window) { return; }" +
+            "  var seq = 0, pending = {};" +
+            "  port.addEventListener('message', function (event) {" +
+            "    var reply;" +
+            "    try { reply = JSON.parse(event.data); } catch (e) { return; }" +
+            "    var p = pending[reply.id];" +
+            "    if (!p) { return; }" +
+            "    delete pending[reply.id];" +
+            "    if (reply.ok) { p.resolve(reply.session || null); }" +
+            "    else { p.reject(new Error(reply.error)); }" +
+            "  });" +
+            "  function send(op, session) {" +
+            "    return new Promise(function (resolve, reject) {" +
+            "      var id = ++seq;" +
+            "      pending[id] = { resolve: resolve, reject: reject };" +
+            "      port.postMessage(JSON.stringify({ id: id, op: op, session: session || null }));" +
+            "    });" +
+            "  }" +
+            "  window.OmnilySession = {" +
+            "    get: function () { return send('get'); }," +
+            "    save: function (session) { return send('save', session); }," +
+            "    clear: function () { return send('clear'); }" +
+            "  };" +
+            "})();";
+
+    /**
+     * Logout dal web app (main thread): cache e cookie dell'operatore uscente
+     */
+    public interface LogoutListener {
+        void onLogout();
+    }
+
+    private final SecureSessionStore store;
+    private final LogoutListener logoutListener;
+    // Keystore fuori dal main thread; un solo thread = save/get/clear nell'ordine di arrivo
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    public SessionChannel(SecureSessionStore store, LogoutListener logoutListener) {
+        this.store = store;
+        this.logoutListener = logoutListener;
+    }
+
+    public static boolean isSupported() {
+        return WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_LISTENER);
+    }
+
+    /**
+     * Da chiamare prima del primo loadUrl (ad ogni WebView creato)
+     */
+    public void install(WebView webView) {
+        if (!isSupported()) {
+            Log.i(TAG, "Session channel not supported by this WebView - login required after restart");
+            return;
+        }
+        WebViewCompat.addWebMessageListener(webView, OBJECT_NAME, BridgeInjector.ALLOWED_ORIGINS,
+                this::onPostMessage);
+        Log.i(TAG, "✅ Session channel installed");
+    }
+
+    private void onPostMessage(final WebView view, WebMessageCompat message, Uri sourceOrigin, boolean isMainFrame,
+                               final JavaScriptReplyProxy replyProxy) {
+        if (!isMainFrame || message.getType() != WebMessageCompat.TYPE_STRING || message.getData() == null) {
+            Log.w(TAG, "⚠️ Session request ignored (origin " + sourceOrigin + ", main frame " + isMainFrame + ")");
+            return;
+        }
+        final JSONObject request;
+        try {
+            request = new JSONObject(message.getData());
+        } catch (JSONException e) {
+            Log.w(TAG, "⚠️ Invalid session request: " + e.getMessage());
+            return;
+        }
+        final long id = request.optLong("id");
+        final String op = request.optString("op", "");
+        if ("clear".equals(op)) {
+            logoutListener.onLogout();
+        }
+        executor.execute(() -> {
+            String reply = handle(id, op, request.optJSONObject("session"));
+            // Il JavaScriptReplyProxy va usato sul main thread
+            view.post(() -> replyProxy.postMessage(reply));
+        });
+    }
+
+    private String handle(long id, String op, JSONObject session) {
+        try {
+            JSONObject reply = new JSONObject().put("id", id).put("ok", true);
+            switch (op) {
+                case "get":
+                    String stored = store.getSession();
+                    reply.put("session", stored != null ? new JSONObject(stored) : JSONObject.NULL);
+                    break;
+                case "save":
+                    if (session == null || !store.save(session.toString())) {
+                        return error(id, "Invalid session");
+                    }
+                    break;
+                case "clear":
+                    store.clear();
+                    break;
+                default:
+                    return error(id, "Unknown session op: " + op);
+            }
+            return reply.toString();
+        } catch (JSONException e) {
+            return error(id, e.getMessage());
+        }
+    }
+
+    private static String error(long id, String message) {
+        try {
+            return new JSONObject().put("id", id).put("ok", false).put("error", String.valueOf(message)).toString();
+        } catch (JSONException e) {
+            return "{\"ok\":false}";
+        }
+    }
+}
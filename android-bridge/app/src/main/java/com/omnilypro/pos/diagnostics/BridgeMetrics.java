@@ -0,0 +1,420 @@
+package com.omnilypro.pos.diagnostics;
+
+import android.os.SystemClock;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latenze per metodo del bridge OmnilyPOS (istogrammi lock-free, stile HDR)
+ *
+ * Per ogni metodo:
+ * - exec: durata della parte sincrona sul thread del bridge, oppure dell'operazione
+ *   hardware avviata (job su mExecutor, runnable sul main thread)
+ * - queue: attesa tra la chiamata del bridge e l'avvio dell'operazione sul suo executor
+ * - callback: dalla chiamata del bridge al runJsCallback del risultato
+ *
+ * Il contesto (metodo + istante della chiamata) viaggia in un ThreadLocal: onBridgeCall lo apre e
+ * Call.end() lo chiude (sempre, in finally), wrap() lo porta sui runnable accodati,
+ * expectCallback() lo lega al callback del risultato, che arriverà da un altro thread. Va
+ * strumentato solo il punto d'ingresso: gli alias (beep(), *Async) delegano a helper privati.
+ * getSummary() per getBridgeStats(). Per l'heartbeat MDM (campo bridge_stats): snapshot() prima
+ * dell'invio e commit() solo a invio riuscito, che sottrae dalla finestra i conteggi inviati: un
+ * heartbeat fallito non perde nulla, il successivo riporta entrambe le finestre.
+ */
+public class BridgeMetrics {
+    private static final int MAX_PENDING_CALLBACKS = 256;
+
+    private static BridgeMetrics instance;
+
+    private final Map<String, MethodStats> methods = new ConcurrentHashMap<>();
+    private final Map<String, Call> pendingCallbacks = new ConcurrentHashMap<>();
+    private final ThreadLocal<Call> current = new ThreadLocal<>();
+    private volatile long windowStartedAt = System.currentTimeMillis();
+
+    private BridgeMetrics() {
+    }
+
+    public static synchronized BridgeMetrics getInstance() {
+        if (instance == null) {
+            instance = new BridgeMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Una chiamata al bridge (metodo + istante), corrente sul thread che la esegue
+     */
+    public final class Call {
+        final MethodStats stats;
+        final long startedAt;
+        // Chiamata aperta prima di questa sullo stesso thread (es. invoke → metodo del lotto)
+        final Call previous;
+
+        Call(MethodStats stats, long startedAt, Call previous) {
+            this.stats = stats;
+            this.startedAt = startedAt;
+            this.previous = previous;
+        }
+
+        /**
+         * Fine della parte sincrona: registra exec e ripristina il contesto precedente del thread
+         */
+        public void end() {
+            stats.exec.record(elapsedMicros(startedAt));
+            if (current.get() == this) {
+                if (previous != null) {
+                    current.set(previous);
+                } else {
+                    current.remove();
+                }
+            }
+        }
+    }
+
+    // ============================================================================
+    // Strumentazione
+    // ============================================================================
+
+    /**
+     * Inizio di un metodo del bridge sul thread corrente
+     */
+    public Call begin(String method) {
+        MethodStats stats = methods.get(method);
+        if (stats == null) {
+            MethodStats created = new MethodStats();
+            stats = methods.putIfAbsent(method, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        stats.calls.incrementAndGet();
+        Call call = new Call(stats, SystemClock.elapsedRealtimeNanos(), current.get());
+        current.set(call);
+        return call;
+    }
+
+    /**
+     * Porta il contesto corrente su un runnable eseguito altrove: queue e exec finiscono sul metodo chiamante
+     */
+    public Runnable wrap(final Runnable task) {
+        final Call call = current.get();
+        if (call == null) {
+            return task;
+        }
+        final long queuedAt = SystemClock.elapsedRealtimeNanos();
+        return () -> {
+            long started = SystemClock.elapsedRealtimeNanos();
+            call.stats.queue.record((started - queuedAt) / 1000);
+            Call previous = current.get();
+            current.set(call);
+            try {
+                task.run();
+            } finally {
+                call.stats.exec.record(elapsedMicros(started));
+                if (previous != null) {
+                    current.set(previous);
+                } else {
+                    current.remove();
+                }
+            }
+        };
+    }
+
+    /**
+     * Il risultato arriverà su callbackName da un thread senza contesto (intent NFC, activity result)
+     */
+    public void expectCallback(String callbackName) {
+        Call call = current.get();
+        if (call == null || callbackName == null) {
+            return;
+        }
+        if (pendingCallbacks.size() >= MAX_PENDING_CALLBACKS) {
+            pendingCallbacks.clear(); // Callback mai arrivati (letture annullate)
+        }
+        pendingCallbacks.put(callbackName, call);
+    }
+
+    /**
+     * Risultato consegnato al JS (runJsCallback): conta solo i callback registrati con expectCallback
+     */
+    public void onCallback(String callbackName) {
+        Call call = callbackName != null ? pendingCallbacks.remove(callbackName) : null;
+        if (call != null) {
+            call.stats.callback.record(elapsedMicros(call.startedAt));
+        }
+    }
+
+    /**
+     * Single thread executor (stampante, SDK) che porta il contesto del chiamante sui job
+     */
+    public ThreadPoolExecutor newSingleThreadExecutor() {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            public void execute(Runnable command) {
+                super.execute(wrap(command));
+            }
+        };
+    }
+
+    private static long elapsedMicros(long startedAtNanos) {
+        return (SystemClock.elapsedRealtimeNanos() - startedAtNanos) / 1000;
+    }
+
+    // ============================================================================
+    // Riepilogo
+    // ============================================================================
+
+    /**
+     * Finestra corrente senza azzerarla (getBridgeStats)
+     */
+    public JSONObject getSummary() {
+        return snapshotOrEmpty().toJson();
+    }
+
+    /**
+     * Finestra dall'ultimo heartbeat riuscito, da passare a commit() dopo l'invio (null se nessuna chiamata)
+     */
+    public Window snapshot() {
+        Window window = snapshotOrEmpty();
+        return window.taken.isEmpty() ? null : window;
+    }
+
+    /**
+     * Heartbeat inviato: i conteggi della finestra escono dai contatori, quelli arrivati nel frattempo restano.
+     * Una finestra già superata (due heartbeat sovrapposti) viene ignorata: meglio reinviare che sottrarre due volte
+     */
+    public synchronized void commit(Window window) {
+        if (window == null || window.windowStart != windowStartedAt) {
+            return;
+        }
+        for (Map.Entry<MethodStats, MethodStats.Counts> entry : window.taken.entrySet()) {
+            entry.getKey().subtract(entry.getValue());
+        }
+        windowStartedAt = window.windowEnd;
+    }
+
+    private Window snapshotOrEmpty() {
+        long end = System.currentTimeMillis();
+        Map<String, MethodStats.Counts> byName = new TreeMap<>();
+        Map<MethodStats, MethodStats.Counts> taken = new HashMap<>();
+        for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+            MethodStats.Counts counts = entry.getValue().snapshot();
+            if (!counts.isEmpty()) {
+                byName.put(entry.getKey(), counts);
+                taken.put(entry.getValue(), counts);
+            }
+        }
+        return new Window(windowStartedAt, end, byName, taken);
+    }
+
+    /**
+     * Finestra fotografata per l'heartbeat
+     */
+    public static final class Window {
+        final long windowStart;
+        final long windowEnd;
+        // Ordine alfabetico: diff leggibili tra due heartbeat
+        final Map<String, MethodStats.Counts> byName;
+        final Map<MethodStats, MethodStats.Counts> taken;
+
+        Window(long windowStart, long windowEnd, Map<String, MethodStats.Counts> byName,
+               Map<MethodStats, MethodStats.Counts> taken) {
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+            this.byName = byName;
+            this.taken = taken;
+        }
+
+        public JSONObject toJson() {
+            JSONObject summary = new JSONObject();
+            try {
+                summary.put("window_start", windowStart);
+                summary.put("window_end", windowEnd);
+                JSONObject byMethod = new JSONObject();
+                for (Map.Entry<String, MethodStats.Counts> entry : byName.entrySet()) {
+                    byMethod.put(entry.getKey(), entry.getValue().toJson());
+                }
+                summary.put("methods", byMethod);
+            } catch (JSONException ignored) {
+            }
+            return summary;
+        }
+    }
+
+    static class MethodStats {
+        final AtomicLong calls = new AtomicLong();
+        final Histogram exec = new Histogram();
+        final Histogram queue = new Histogram();
+        final Histogram callback = new Histogram();
+
+        Counts snapshot() {
+            return new Counts(calls.get(), exec.snapshot(), queue.snapshot(), callback.snapshot());
+        }
+
+        void subtract(Counts counts) {
+            calls.addAndGet(-counts.calls);
+            exec.subtract(counts.exec);
+            queue.subtract(counts.queue);
+            callback.subtract(counts.callback);
+        }
+
+        static final class Counts {
+            final long calls;
+            final Histogram.Counts exec;
+            final Histogram.Counts queue;
+            final Histogram.Counts callback;
+
+            Counts(long calls, Histogram.Counts exec, Histogram.Counts queue, Histogram.Counts callback) {
+                this.calls = calls;
+                this.exec = exec;
+                this.queue = queue;
+                this.callback = callback;
+            }
+
+            boolean isEmpty() {
+                return calls == 0 && exec.total == 0 && queue.total == 0 && callback.total == 0;
+            }
+
+            JSONObject toJson() throws JSONException {
+                JSONObject json = new JSONObject();
+                json.put("calls", calls);
+                if (exec.total > 0) {
+                    json.put("exec_ms", exec.toJson());
+                }
+                if (queue.total > 0) {
+                    json.put("queue_ms", queue.toJson());
+                }
+                if (callback.total > 0) {
+                    json.put("callback_ms", callback.toJson());
+                }
+                return json;
+            }
+        }
+    }
+
+    /**
+     * Istogramma log-lineare in microsecondi: 16 sotto-bucket per potenza di 2 (errore relativo ≤ 6%),
+     * fino a ~38 ore. Solo AtomicLongArray: record() non blocca mai il thread del bridge
+     */
+    static class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int MAX_SHIFT = 32;
+        private static final int BUCKETS = 2 * SUB_COUNT + MAX_SHIFT * SUB_COUNT;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long micros) {
+            long value = Math.max(0, micros);
+            counts.incrementAndGet(indexOf(value));
+            long previous;
+            while (value > (previous = max.get()) && !max.compareAndSet(previous, value)) {
+                // Retry: un altro thread ha aggiornato il massimo
+            }
+        }
+
+        static int indexOf(long value) {
+            if (value < 2 * SUB_COUNT) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            if (shift > MAX_SHIFT) {
+                return BUCKETS - 1;
+            }
+            return 2 * SUB_COUNT + (shift - 1) * SUB_COUNT + (int) ((value >>> shift) - SUB_COUNT);
+        }
+
+        /**
+         * Valore centrale del bucket
+         */
+        static long valueAt(int index) {
+            if (index < 2 * SUB_COUNT) {
+                return index;
+            }
+            int shift = (index - 2 * SUB_COUNT) / SUB_COUNT + 1;
+            long sub = (index - 2 * SUB_COUNT) % SUB_COUNT + SUB_COUNT;
+            return (sub << shift) + (1L << (shift - 1));
+        }
+
+        Counts snapshot() {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            return new Counts(snapshot, total, max.get());
+        }
+
+        /**
+         * Toglie i conteggi già inviati. Se il massimo era quello della finestra inviata riparte dal
+         * bucket più alto rimasto (valore centrale, errore ≤ 6%), o da 0 se non è arrivato altro
+         */
+        void subtract(Counts taken) {
+            int highest = -1;
+            for (int i = 0; i < BUCKETS; i++) {
+                long left = taken.counts[i] != 0 ? counts.addAndGet(i, -taken.counts[i]) : counts.get(i);
+                if (left > 0) {
+                    highest = i;
+                }
+            }
+            max.compareAndSet(taken.max, highest < 0 ? 0 : valueAt(highest));
+        }
+
+        static final class Counts {
+            final long[] counts;
+            final long total;
+            final long max;
+
+            Counts(long[] counts, long total, long max) {
+                this.counts = counts;
+                this.total = total;
+                this.max = max;
+            }
+
+            /**
+             * Percentili in ms (null se vuoto)
+             */
+            JSONObject toJson() throws JSONException {
+                if (total == 0) {
+                    return null;
+                }
+                JSONObject json = new JSONObject();
+                json.put("count", total);
+                json.put("p50", millis(percentile(counts, total, 0.50)));
+                json.put("p90", millis(percentile(counts, total, 0.90)));
+                json.put("p99", millis(percentile(counts, total, 0.99)));
+                json.put("max", millis(max));
+                return json;
+            }
+        }
+
+        private static long percentile(long[] snapshot, long total, double quantile) {
+            long rank = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return valueAt(i);
+                }
+            }
+            return valueAt(snapshot.length - 1);
+        }
+
+        private static double millis(long micros) {
+            return Math.round(micros / 100.0) / 10.0;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.omnilypro.pos.diagnostics;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import android.webkit.ConsoleMessage;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Logging di bridge e console JS con costo quasi nullo in produzione
+ *
+ * - Livelli impostati da remoto (comando MDM set_log_level), con override per tag e scadenza
+ * - Sotto il livello attivo una chiamata costa un confronto tra interi (nessuna stringa costruita
+ *   se il chiamante usa isLoggable per i messaggi costosi)
+ * - Ring buffer in memoria lock-free (RING_SIZE righe) da cui l'MDM scarica gli ultimi N minuti
+ * - Rate limit per tag (righe/secondo) con budget separato per WARN/ERROR: un burst di debug sullo
+ *   stesso tag non fa mai scartare gli errori. Campionamento solo delle righe sotto WARN
+ * - Logcat solo da logcatLevel in su (default WARN)
+ */
+public final class DiagnosticLog {
+    private static final String TAG = "DiagnosticLog";
+    private static final String PREFS_NAME = "diagnostics";
+    private static final String KEY_CONFIG = "log_config";
+
+    private static final int RING_SIZE = 2048; // potenza di 2
+    private static final int RING_MASK = RING_SIZE - 1;
+    private static final int MAX_MESSAGE_CHARS = 512;
+
+    public static final int OFF = Integer.MAX_VALUE;
+
+    private static final int DEFAULT_LEVEL = Log.INFO;
+    private static final int DEFAULT_LOGCAT_LEVEL = Log.WARN;
+    private static final int DEFAULT_LINES_PER_SECOND = 20;
+
+    // Configurazione attiva (letture senza lock sul percorso caldo)
+    private static volatile int level = DEFAULT_LEVEL;
+    private static volatile int logcatLevel = DEFAULT_LOGCAT_LEVEL;
+    private static volatile Map<String, Integer> tagLevels = Collections.emptyMap();
+    private static volatile float sampleRate = 1f;
+    private static volatile int linesPerSecond = DEFAULT_LINES_PER_SECOND;
+    private static volatile long expiresAt = 0;
+
+    private static final AtomicReferenceArray<Entry> ring = new AtomicReferenceArray<>(RING_SIZE);
+    private static final AtomicLong cursor = new AtomicLong();
+    private static final ConcurrentHashMap<String, RateWindow> rateWindows = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, RateWindow> warnRateWindows = new ConcurrentHashMap<>();
+
+    private static SharedPreferences prefs;
+
+    private DiagnosticLog() {
+    }
+
+    /**
+     * Carica la configurazione salvata (Application/Activity onCreate)
+     */
+    public static synchronized void init(Context context) {
+        if (prefs != null) {
+            return;
+        }
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String saved = prefs.getString(KEY_CONFIG, null);
+        if (saved != null) {
+            try {
+                apply(new JSONObject(saved), false);
+            } catch (JSONException e) {
+                Log.w(TAG, "⚠️ Invalid saved log config, using defaults");
+            }
+        }
+    }
+
+    // ============================================================================
+    // API di logging
+    // ============================================================================
+
+    public static boolean isLoggable(String tag, int priority) {
+        if (expiresAt != 0 && System.currentTimeMillis() > expiresAt) {
+            resetToDefaults();
+        }
+        Map<String, Integer> overrides = tagLevels;
+        if (!overrides.isEmpty()) {
+            Integer tagLevel = overrides.get(tag);
+            if (tagLevel != null) {
+                return priority >= tagLevel;
+            }
+        }
+        return priority >= level;
+    }
+
+    public static void v(String tag, String msg) {
+        log(Log.VERBOSE, tag, msg, null);
+    }
+
+    public static void d(String tag, String msg) {
+        log(Log.DEBUG, tag, msg, null);
+    }
+
+    public static void i(String tag, String msg) {
+        log(Log.INFO, tag, msg, null);
+    }
+
+    public static void w(String tag, String msg) {
+        log(Log.WARN, tag, msg, null);
+    }
+
+    public static void w(String tag, String msg, Throwable tr) {
+        log(Log.WARN, tag, msg, tr);
+    }
+
+    public static void e(String tag, String msg) {
+        log(Log.ERROR, tag, msg, null);
+    }
+
+    public static void e(String tag, String msg, Throwable tr) {
+        log(Log.ERROR, tag, msg, tr);
+    }
+
+    /**
+     * Console del WebView: console.log/debug sono DEBUG (spente in produzione), warn/error sempre registrati
+     */
+    public static void console(String tag, ConsoleMessage message) {
+        int priority;
+        switch (message.messageLevel()) {
+            case ERROR:
+                priority = Log.ERROR;
+                break;
+            case WARNING:
+                priority = Log.WARN;
+                break;
+            case TIP:
+                priority = Log.VERBOSE;
+                break;
+            default:
+                priority = Log.DEBUG;
+                break;
+        }
+        if (!isLoggable(tag, priority)) {
+            return;
+        }
+        log(priority, tag, "🌐 JS: " + message.message() + " (" + shortSource(message.sourceId()) + ":"
+                + message.lineNumber() + ")", null);
+    }
+
+    private static void log(int priority, String tag, String msg, Throwable tr) {
+        if (!isLoggable(tag, priority)) {
+            return;
+        }
+        if (priority < Log.WARN && sampleRate < 1f && ThreadLocalRandom.current().nextFloat() >= sampleRate) {
+            return;
+        }
+        int suppressed = acquire(priority >= Log.WARN ? warnRateWindows : rateWindows, tag);
+        if (suppressed < 0) {
+            return;
+        }
+        if (suppressed > 0) {
+            msg = msg + " (+" + suppressed + " suppressed)";
+        }
+
+        String stored = msg.length() > MAX_MESSAGE_CHARS ? msg.substring(0, MAX_MESSAGE_CHARS) + "…" : msg;
+        if (tr != null) {
+            stored = stored + " | " + tr;
+        }
+        long seq = cursor.getAndIncrement();
+        ring.set((int) (seq & RING_MASK), new Entry(seq, System.currentTimeMillis(), priority, tag, stored));
+
+        if (priority >= logcatLevel) {
+            Log.println(priority, tag, tr != null ? msg + '\n' + Log.getStackTraceString(tr) : msg);
+        }
+    }
+
+    /**
+     * Rate limit a finestre di 1 secondo per tag (windows: budget sotto WARN oppure WARN/ERROR)
+     *
+     * @return -1 se la riga va scartata, altrimenti il numero di righe scartate nella finestra precedente
+     */
+    private static int acquire(ConcurrentHashMap<String, RateWindow> windows, String tag) {
+        RateWindow window = windows.get(tag);
+        if (window == null) {
+            window = new RateWindow();
+            RateWindow existing = windows.putIfAbsent(tag, window);
+            if (existing != null) {
+                window = existing;
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (now - window.startedAt >= 1000) {
+            // Cambio finestra: una corsa tra thread al massimo lascia passare qualche riga in più
+            window.startedAt = now;
+            window.count.set(1);
+            return window.dropped.getAndSet(0);
+        }
+        if (window.count.incrementAndGet() > linesPerSecond) {
+            window.dropped.incrementAndGet();
+            return -1;
+        }
+        return 0;
+    }
+
+    // ============================================================================
+    // Configurazione remota (MDM)
+    // ============================================================================
+
+    /**
+     * Payload del comando MDM set_log_level:
+     * {"level": "debug", "logcatLevel": "info", "tags": {"NFC": "verbose"}, "sampleRate": 0.2,
+     *  "linesPerSecond": 50, "durationMinutes": 60}
+     * Senza durationMinutes il livello resta finché non viene reimpostato ("level": "default")
+     */
+    public static synchronized void configure(JSONObject config) throws JSONException {
+        apply(config, true);
+        if (prefs != null) {
+            if ("default".equalsIgnoreCase(config.optString("level"))) {
+                prefs.edit().remove(KEY_CONFIG).apply();
+            } else {
+                JSONObject saved = new JSONObject(config.toString());
+                saved.put("expiresAt", expiresAt);
+                prefs.edit().putString(KEY_CONFIG, saved.toString()).apply();
+            }
+        }
+        Log.i(TAG, "🎚️ Log config: level=" + levelName(level) + ", logcat=" + levelName(logcatLevel)
+                + ", tags=" + tagLevels + ", sample=" + sampleRate + ", limit=" + linesPerSecond + "/s");
+    }
+
+    private static void apply(JSONObject config, boolean fromRemote) throws JSONException {
+        if ("default".equalsIgnoreCase(config.optString("level"))) {
+            resetToDefaults();
+            return;
+        }
+        long expiry = 0;
+        if (fromRemote && config.has("durationMinutes")) {
+            expiry = System.currentTimeMillis() + config.getLong("durationMinutes") * 60000L;
+        } else if (!fromRemote) {
+            expiry = config.optLong("expiresAt", 0);
+            if (expiry != 0 && expiry < System.currentTimeMillis()) {
+                return; // Config temporanea già scaduta
+            }
+        }
+
+        Map<String, Integer> tags = new HashMap<>();
+        JSONObject tagConfig = config.optJSONObject("tags");
+        if (tagConfig != null) {
+            Iterator<String> keys = tagConfig.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                tags.put(key, parseLevel(tagConfig.getString(key), DEFAULT_LEVEL));
+            }
+        }
+
+        level = parseLevel(config.optString("level", null), DEFAULT_LEVEL);
+        logcatLevel = parseLevel(config.optString("logcatLevel", null), DEFAULT_LOGCAT_LEVEL);
+        tagLevels = tags;
+        sampleRate = (float) Math.max(0, Math.min(1, config.optDouble("sampleRate", 1)));
+        linesPerSecond = Math.max(1, config.optInt("linesPerSecond", DEFAULT_LINES_PER_SECOND));
+        expiresAt = expiry;
+    }
+
+    private static synchronized void resetToDefaults() {
+        if (expiresAt != 0 && prefs != null) {
+            prefs.edit().remove(KEY_CONFIG).apply();
+        }
+        level = DEFAULT_LEVEL;
+        logcatLevel = DEFAULT_LOGCAT_LEVEL;
+        tagLevels = Collections.emptyMap();
+        sampleRate = 1f;
+        linesPerSecond = DEFAULT_LINES_PER_SECOND;
+        expiresAt = 0;
+    }
+
+    private static int parseLevel(String name, int fallback) {
+        if (name == null || name.isEmpty()) {
+            return fallback;
+        }
+        switch (name.toLowerCase(Locale.US)) {
+            case "verbose":
+                return Log.VERBOSE;
+            case "debug":
+                return Log.DEBUG;
+            case "info":
+                return Log.INFO;
+            case "warn":
+            case "warning":
+                return Log.WARN;
+            case "error":
+                return Log.ERROR;
+            case "off":
+                return OFF;
+            default:
+                return fallback;
+        }
+    }
+
+    private static String levelName(int priority) {
+        switch (priority) {
+            case Log.VERBOSE:
+                return "verbose";
+            case Log.DEBUG:
+                return "debug";
+            case Log.INFO:
+                return "info";
+            case Log.WARN:
+                return "warn";
+            case Log.ERROR:
+                return "error";
+            default:
+                return "off";
+        }
+    }
+
+    // ============================================================================
+    // Export
+    // ============================================================================
+
+    /**
+     * Righe del ring buffer degli ultimi N minuti, in ordine cronologico
+     *
+     * @return [{t, level, tag, msg}]
+     */
+    public static JSONArray snapshot(int minutes) {
+        long cutoff = System.currentTimeMillis() - minutes * 60000L;
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < RING_SIZE; i++) {
+            Entry entry = ring.get(i);
+            if (entry != null && entry.time >= cutoff) {
+                entries.add(entry);
+            }
+        }
+        Collections.sort(entries, (a, b) -> Long.compare(a.seq, b.seq));
+
+        JSONArray out = new JSONArray();
+        for (Entry entry : entries) {
+            try {
+                JSONObject line = new JSONObject();
+                line.put("t", entry.time);
+                line.put("level", levelName(entry.priority));
+                line.put("tag", entry.tag);
+                line.put("msg", entry.message);
+                out.put(line);
+            } catch (JSONException ignored) {
+            }
+        }
+        return out;
+    }
+
+    private static String shortSource(String sourceId) {
+        if (sourceId == null) {
+            return "";
+        }
+        int slash = sourceId.lastIndexOf('/');
+        return slash >= 0 ? sourceId.substring(slash + 1) : sourceId;
+    }
+
+    private static final class Entry {
+        final long seq;
+        final long time;
+        final int priority;
+        final String tag;
+        final String message;
+
+        Entry(long seq, long time, int priority, String tag, String message) {
+            this.seq = seq;
+            this.time = time;
+            this.priority = priority;
+            this.tag = tag;
+            this.message = message;
+        }
+    }
+
+    private static final class RateWindow {
+        volatile long startedAt = System.currentTimeMillis();
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicInteger dropped = new AtomicInteger();
+    }
+}
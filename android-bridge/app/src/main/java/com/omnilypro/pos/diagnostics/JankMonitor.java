@@ -0,0 +1,303 @@
+package com.omnilypro.pos.diagnostics;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tempi di frame (FrameMetrics) del WebView POS e del customer display
+ *
+ * - Istogramma per minuto e per superficie: p50/p90/p99, frame lenti (> 2 intervalli di vsync)
+ *   e frame congelati (> 700 ms)
+ * - Ogni frame lento viene associato alle chiamate bridge avvenute durante il frame
+ *   (più SPIKE_MARGIN_MS prima): così si vede quale azione blocca la UI
+ * - Per minuto viene registrata anche la route del web app (SPA) attiva
+ * - getSummary() finisce nell'heartbeat MDM (campo jank_summary)
+ *
+ * FrameMetrics esiste da API 24: sotto il monitor resta spento.
+ */
+public class JankMonitor {
+    private static final String TAG = "JankMonitor";
+    public static final String SURFACE_MAIN = "main";
+    public static final String SURFACE_CUSTOMER = "customer";
+
+    private static final int HISTOGRAM_MAX_MS = 200; // bucket da 1 ms, l'ultimo raccoglie tutto il resto
+    private static final long FROZEN_FRAME_MS = 700;
+    private static final long SPIKE_MARGIN_MS = 100;
+    private static final int MINUTES_KEPT = 10;
+    private static final int BRIDGE_CALLS_KEPT = 64;
+
+    private static JankMonitor instance;
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Map<String, Surface> surfaces = new HashMap<>();
+    private final ArrayDeque<JSONObject> completedMinutes = new ArrayDeque<>();
+
+    // Ultime chiamate bridge (scritte dal thread JavaBridge, lette dal thread del monitor)
+    private final String[] bridgeMethods = new String[BRIDGE_CALLS_KEPT];
+    private final long[] bridgeTimes = new long[BRIDGE_CALLS_KEPT];
+    private int bridgeCursor = 0;
+
+    private volatile String route = "";
+
+    private JankMonitor() {
+        thread = new HandlerThread("jank-monitor");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    public static synchronized JankMonitor getInstance() {
+        if (instance == null) {
+            instance = new JankMonitor();
+        }
+        return instance;
+    }
+
+    /**
+     * Inizia a misurare la finestra (activity o Presentation); una nuova finestra per la stessa
+     * superficie sostituisce la precedente
+     */
+    public void attach(String surfaceName, Window window, Display display) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N || window == null) {
+            return;
+        }
+        synchronized (surfaces) {
+            Surface previous = surfaces.get(surfaceName);
+            if (previous != null) {
+                previous.detach();
+            }
+            float refreshRate = display != null && display.getRefreshRate() > 0 ? display.getRefreshRate() : 60f;
+            Surface surface = new Surface(surfaceName, window, refreshRate);
+            surfaces.put(surfaceName, surface);
+            surface.attach();
+        }
+        Log.d(TAG, "📈 Frame metrics attached: " + surfaceName);
+    }
+
+    public void attach(String surfaceName, Activity activity) {
+        attach(surfaceName, activity.getWindow(), displayOf(activity));
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Display displayOf(Activity activity) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? activity.getDisplay()
+                : activity.getWindowManager().getDefaultDisplay();
+    }
+
+    public void detach(String surfaceName) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return;
+        }
+        synchronized (surfaces) {
+            Surface surface = surfaces.remove(surfaceName);
+            if (surface != null) {
+                surface.detach();
+            }
+        }
+    }
+
+    /**
+     * Chiamata bridge iniziata (OmnilyPOSBridge.onBridgeCall)
+     */
+    public void noteBridgeCall(String method) {
+        long now = SystemClock.uptimeMillis();
+        synchronized (bridgeMethods) {
+            bridgeMethods[bridgeCursor] = method;
+            bridgeTimes[bridgeCursor] = now;
+            bridgeCursor = (bridgeCursor + 1) % BRIDGE_CALLS_KEPT;
+        }
+    }
+
+    /**
+     * Route corrente del web app (doUpdateVisitedHistory), per capire quali schermate scattano
+     */
+    public void setRoute(String url) {
+        if (url == null) {
+            return;
+        }
+        int hash = url.indexOf('#');
+        String path = hash >= 0 ? url.substring(hash) : android.net.Uri.parse(url).getPath();
+        route = path != null ? path : "";
+    }
+
+    /**
+     * Ultimi MINUTES_KEPT minuti completati: [{surface, minute, route, frames, p50, p90, p99,
+     * slow, frozen, worst_ms, suspects: {metodo: frame lenti}}]
+     */
+    public JSONObject getSummary() {
+        JSONObject summary = new JSONObject();
+        try {
+            JSONArray minutes = new JSONArray();
+            synchronized (completedMinutes) {
+                for (JSONObject minute : completedMinutes) {
+                    minutes.put(minute);
+                }
+            }
+            summary.put("minutes", minutes);
+            summary.put("generated_at", System.currentTimeMillis());
+        } catch (JSONException ignored) {
+        }
+        return summary;
+    }
+
+    public boolean hasData() {
+        synchronized (completedMinutes) {
+            return !completedMinutes.isEmpty();
+        }
+    }
+
+    private void publish(JSONObject minute) {
+        synchronized (completedMinutes) {
+            completedMinutes.addLast(minute);
+            while (completedMinutes.size() > MINUTES_KEPT * 2) { // main + customer
+                completedMinutes.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Metodi bridge chiamati nell'intervallo [from, to] (uptime ms)
+     */
+    private void collectBridgeCalls(long from, long to, Map<String, Integer> out) {
+        synchronized (bridgeMethods) {
+            for (int i = 0; i < BRIDGE_CALLS_KEPT; i++) {
+                String method = bridgeMethods[i];
+                if (method != null && bridgeTimes[i] >= from && bridgeTimes[i] <= to) {
+                    Integer count = out.get(method);
+                    out.put(method, count == null ? 1 : count + 1);
+                }
+            }
+        }
+    }
+
+    // ============================================================================
+    // Superficie (una finestra)
+    // ============================================================================
+
+    private class Surface {
+        final String name;
+        final Window window;
+        final long slowFrameMs;
+        final int[] histogram = new int[HISTOGRAM_MAX_MS + 1];
+        final Map<String, Integer> suspects = new HashMap<>();
+        long minuteStartedAt = System.currentTimeMillis();
+        int frames;
+        int slow;
+        int frozen;
+        long worstMs;
+        String minuteRoute;
+        Object listener;
+
+        Surface(String name, Window window, float refreshRate) {
+            this.name = name;
+            this.window = window;
+            this.slowFrameMs = Math.round(2 * 1000f / refreshRate);
+        }
+
+        void attach() {
+            Window.OnFrameMetricsAvailableListener frameListener = (w, metrics, dropCount) -> {
+                long durationMs = metrics.getMetric(FrameMetrics.TOTAL_DURATION) / 1_000_000;
+                onFrame(durationMs, SystemClock.uptimeMillis());
+            };
+            listener = frameListener;
+            window.addOnFrameMetricsAvailableListener(frameListener, handler);
+        }
+
+        void detach() {
+            if (listener != null) {
+                try {
+                    window.removeOnFrameMetricsAvailableListener((Window.OnFrameMetricsAvailableListener) listener);
+                } catch (RuntimeException ignored) {
+                    // Finestra già distrutta
+                }
+                listener = null;
+            }
+            handler.post(this::flush);
+        }
+
+        // Thread jank-monitor
+        void onFrame(long durationMs, long endedAt) {
+            long now = System.currentTimeMillis();
+            if (now - minuteStartedAt >= 60000) {
+                flush();
+            }
+            if (minuteRoute == null && SURFACE_MAIN.equals(name)) {
+                minuteRoute = route;
+            }
+            frames++;
+            histogram[(int) Math.min(durationMs, HISTOGRAM_MAX_MS)]++;
+            worstMs = Math.max(worstMs, durationMs);
+            if (durationMs > slowFrameMs) {
+                slow++;
+                if (durationMs > FROZEN_FRAME_MS) {
+                    frozen++;
+                }
+                collectBridgeCalls(endedAt - durationMs - SPIKE_MARGIN_MS, endedAt, suspects);
+            }
+        }
+
+        void flush() {
+            if (frames > 0) {
+                try {
+                    JSONObject minute = new JSONObject();
+                    minute.put("surface", name);
+                    minute.put("minute", minuteStartedAt);
+                    if (minuteRoute != null) {
+                        minute.put("route", minuteRoute);
+                    }
+                    minute.put("frames", frames);
+                    minute.put("p50", percentile(0.50));
+                    minute.put("p90", percentile(0.90));
+                    minute.put("p99", percentile(0.99));
+                    minute.put("slow", slow);
+                    minute.put("frozen", frozen);
+                    minute.put("worst_ms", worstMs);
+                    if (!suspects.isEmpty()) {
+                        minute.put("suspects", new JSONObject(suspects));
+                    }
+                    publish(minute);
+                    if (slow > 0) {
+                        DiagnosticLog.i(TAG, "🐢 " + name + " " + minute);
+                    }
+                } catch (JSONException ignored) {
+                }
+            }
+            java.util.Arrays.fill(histogram, 0);
+            suspects.clear();
+            frames = 0;
+            slow = 0;
+            frozen = 0;
+            worstMs = 0;
+            minuteRoute = null;
+            minuteStartedAt = System.currentTimeMillis();
+        }
+
+        int percentile(double p) {
+            int target = (int) Math.ceil(frames * p);
+            int seen = 0;
+            for (int ms = 0; ms <= HISTOGRAM_MAX_MS; ms++) {
+                seen += histogram[ms];
+                if (seen >= target) {
+                    return ms;
+                }
+            }
+            return HISTOGRAM_MAX_MS;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.omnilypro.pos.diagnostics;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Metriche di performance del web app (navigation timing, FCP/LCP, long task, heap JS)
+ *
+ * SCRIPT viene iniettato ad ogni documento (BridgeInjector.addDocumentStartScript): un
+ * PerformanceObserver accumula i campioni e li invia ogni 30 s con OmnilyPOS.reportWebPerf().
+ * Qui vengono aggregati (percentili per metrica, totali dei long task, picco di heap) e
+ * l'heartbeat MDM li invia nel campo web_perf: snapshot() prima dell'invio, commit() solo a invio
+ * riuscito. Un heartbeat fallito lascia il lotto al successivo.
+ */
+public class WebPerfCollector {
+    private static final String TAG = "WebPerfCollector";
+    private static final int MAX_SAMPLES = 200;
+
+    public static final String SCRIPT =
+            "(function () {" +
+            "  if (window.__omnilyPerf || typeof PerformanceObserver === 'undefined') { return; }" +
+            "  var bridge = window.OmnilyPOS;" +
+            "  if (!bridge || !bridge.reportWebPerf) { return; }" +
+            "  window.__omnilyPerf = true;" +
+            "  var longTasks = [], nav = null, fcp = 0, lcp = 0, pageSent = false;" +
+            "  function observe(type, cb) {" +
+            "    try { new PerformanceObserver(function (list) { list.getEntries().forEach(cb); })" +
+            "      .observe({ type: type, buffered: true }); } catch (e) {}" +
+            "  }" +
+            "  observe('longtask', function (e) { if (longTasks.length < 200) { longTasks.push(Math.round(e.duration)); } });" +
+            "  observe('paint', function (e) { if (e.name === 'first-contentful-paint') { fcp = Math.round(e.startTime); } });" +
+            "  observe('largest-contentful-paint', function (e) { lcp = Math.round(e.startTime); });" +
+            "  observe('navigation', function (e) {" +
+            "    nav = { ttfb: Math.round(e.responseStart), dcl: Math.round(e.domContentLoadedEventEnd)," +
+            "            load: Math.round(e.loadEventEnd), transfer: e.transferSize || 0 };" +
+            "  });" +
+            "  function flush() {" +
+            "    var payload = { route: location.pathname + location.hash, longTasks: longTasks };" +
+            "    if (!pageSent && nav) { pageSent = true; payload.nav = nav; payload.fcp = fcp; payload.lcp = lcp; }" +
+            "    var m = performance.memory;" +
+            "    if (m) { payload.heapUsed = m.usedJSHeapSize; payload.heapLimit = m.jsHeapSizeLimit; }" +
+            "    longTasks = [];" +
+            "    try { bridge.reportWebPerf(JSON.stringify(payload)); } catch (e) {}" +
+            "  }" +
+            "  setInterval(flush, 30000);" +
+            "  document.addEventListener('visibilitychange', function () { if (document.visibilityState === 'hidden') { flush(); } });" +
+            "})();";
+
+    private static WebPerfCollector instance;
+
+    private final Map<String, Samples> pageMetrics = new HashMap<>();
+    private final Map<String, Integer> longTasksByRoute = new HashMap<>();
+    private int longTaskCount;
+    private long longTaskTotalMs;
+    private long longTaskMaxMs;
+    private long heapUsedMax;
+    private long heapUsedLast;
+    private long heapLimit;
+    private int reports;
+    private long windowStartedAt = System.currentTimeMillis();
+    private String webBundle;
+
+    private WebPerfCollector() {
+    }
+
+    public static synchronized WebPerfCollector getInstance() {
+        if (instance == null) {
+            instance = new WebPerfCollector();
+        }
+        return instance;
+    }
+
+    public synchronized void setWebBundleVersion(String version) {
+        this.webBundle = version;
+    }
+
+    /**
+     * Lotto inviato dallo script (thread del bridge)
+     */
+    public synchronized void report(String json) {
+        try {
+            JSONObject payload = new JSONObject(json);
+            reports++;
+
+            JSONObject nav = payload.optJSONObject("nav");
+            if (nav != null) {
+                add("ttfb", nav.optLong("ttfb"));
+                add("dcl", nav.optLong("dcl"));
+                add("load", nav.optLong("load"));
+                add("fcp", payload.optLong("fcp"));
+                add("lcp", payload.optLong("lcp"));
+                add("transfer_kb", nav.optLong("transfer") / 1024);
+            }
+
+            JSONArray tasks = payload.optJSONArray("longTasks");
+            if (tasks != null && tasks.length() > 0) {
+                for (int i = 0; i < tasks.length(); i++) {
+                    long duration = tasks.optLong(i);
+                    longTaskCount++;
+                    longTaskTotalMs += duration;
+                    longTaskMaxMs = Math.max(longTaskMaxMs, duration);
+                }
+                String route = payload.optString("route", "");
+                Integer count = longTasksByRoute.get(route);
+                longTasksByRoute.put(route, (count == null ? 0 : count) + tasks.length());
+            }
+
+            long heapUsed = payload.optLong("heapUsed", 0);
+            if (heapUsed > 0) {
+                heapUsedLast = heapUsed;
+                heapUsedMax = Math.max(heapUsedMax, heapUsed);
+                heapLimit = payload.optLong("heapLimit", heapLimit);
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "⚠️ Invalid web perf report: " + e.getMessage());
+        }
+    }
+
+    private void add(String metric, long value) {
+        if (value <= 0) {
+            return;
+        }
+        Samples samples = pageMetrics.get(metric);
+        if (samples == null) {
+            samples = new Samples();
+            pageMetrics.put(metric, samples);
+        }
+        samples.add(value);
+    }
+
+    /**
+     * Aggregato dall'ultimo heartbeat riuscito (null se il web app non ha inviato nulla), non azzera
+     */
+    public synchronized Snapshot snapshot() {
+        if (reports == 0) {
+            return null;
+        }
+        long windowEnd = System.currentTimeMillis();
+        JSONObject summary = new JSONObject();
+        try {
+            summary.put("window_start", windowStartedAt);
+            summary.put("window_end", windowEnd);
+            summary.put("reports", reports);
+            if (webBundle != null) {
+                summary.put("web_bundle", webBundle);
+            }
+
+            JSONObject page = new JSONObject();
+            for (Map.Entry<String, Samples> entry : pageMetrics.entrySet()) {
+                page.put(entry.getKey(), entry.getValue().toJson());
+            }
+            summary.put("page", page);
+
+            JSONObject longTasks = new JSONObject();
+            longTasks.put("count", longTaskCount);
+            longTasks.put("total_ms", longTaskTotalMs);
+            longTasks.put("max_ms", longTaskMaxMs);
+            longTasks.put("by_route", new JSONObject(longTasksByRoute));
+            summary.put("long_tasks", longTasks);
+
+            if (heapUsedMax > 0) {
+                JSONObject heap = new JSONObject();
+                heap.put("used_mb", heapUsedLast / (1024 * 1024));
+                heap.put("max_used_mb", heapUsedMax / (1024 * 1024));
+                heap.put("limit_mb", heapLimit / (1024 * 1024));
+                summary.put("heap", heap);
+            }
+        } catch (JSONException ignored) {
+        }
+
+        Map<String, Integer> sampleCounts = new HashMap<>();
+        for (Map.Entry<String, Samples> entry : pageMetrics.entrySet()) {
+            sampleCounts.put(entry.getKey(), entry.getValue().size);
+        }
+        return new Snapshot(summary, windowStartedAt, windowEnd, reports, longTaskCount, longTaskTotalMs,
+                sampleCounts, new HashMap<>(longTasksByRoute));
+    }
+
+    /**
+     * Heartbeat inviato: toglie dai contatori quanto contenuto nello snapshot, i report arrivati nel
+     * frattempo restano. I picchi (long task, heap) si azzerano solo se non è arrivato nulla dopo
+     */
+    public synchronized void commit(Snapshot sent) {
+        if (sent == null || sent.windowStart != windowStartedAt) {
+            return; // Già superato da un altro heartbeat: meglio reinviare che sottrarre due volte
+        }
+        for (Map.Entry<String, Integer> entry : sent.sampleCounts.entrySet()) {
+            Samples samples = pageMetrics.get(entry.getKey());
+            if (samples != null && samples.dropFirst(entry.getValue()) == 0) {
+                pageMetrics.remove(entry.getKey());
+            }
+        }
+        for (Map.Entry<String, Integer> entry : sent.longTasksByRoute.entrySet()) {
+            Integer count = longTasksByRoute.get(entry.getKey());
+            int left = (count == null ? 0 : count) - entry.getValue();
+            if (left > 0) {
+                longTasksByRoute.put(entry.getKey(), left);
+            } else {
+                longTasksByRoute.remove(entry.getKey());
+            }
+        }
+        longTaskCount -= sent.longTaskCount;
+        longTaskTotalMs -= sent.longTaskTotalMs;
+        reports -= sent.reports;
+        if (reports == 0) {
+            longTaskMaxMs = 0;
+            heapUsedMax = 0;
+        }
+        windowStartedAt = sent.windowEnd;
+    }
+
+    /**
+     * Aggregato inviato con un heartbeat e i contatori da togliere a invio riuscito
+     */
+    public static final class Snapshot {
+        private final JSONObject summary;
+        final long windowStart;
+        final long windowEnd;
+        final int reports;
+        final int longTaskCount;
+        final long longTaskTotalMs;
+        final Map<String, Integer> sampleCounts;
+        final Map<String, Integer> longTasksByRoute;
+
+        Snapshot(JSONObject summary, long windowStart, long windowEnd, int reports, int longTaskCount,
+                 long longTaskTotalMs, Map<String, Integer> sampleCounts, Map<String, Integer> longTasksByRoute) {
+            this.summary = summary;
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+            this.reports = reports;
+            this.longTaskCount = longTaskCount;
+            this.longTaskTotalMs = longTaskTotalMs;
+            this.sampleCounts = sampleCounts;
+            this.longTasksByRoute = longTasksByRoute;
+        }
+
+        public JSONObject toJson() {
+            return summary;
+        }
+    }
+
+    /**
+     * Campioni di una metrica di caricamento pagina (max MAX_SAMPLES per lotto)
+     */
+    private static class Samples {
+        long[] values = new long[8];
+        int size;
+
+        void add(long value) {
+            if (size == MAX_SAMPLES) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(MAX_SAMPLES, size * 2));
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Toglie i primi count campioni (già inviati), restituisce quelli rimasti
+         */
+        int dropFirst(int count) {
+            int drop = Math.min(count, size);
+            System.arraycopy(values, drop, values, 0, size - drop);
+            size -= drop;
+            return size;
+        }
+
+        JSONObject toJson() throws JSONException {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            JSONObject json = new JSONObject();
+            json.put("count", size);
+            json.put("p50", sorted[(size - 1) / 2]);
+            json.put("p90", sorted[(int) Math.ceil(size * 0.9) - 1]);
+            json.put("max", sorted[size - 1]);
+            return json;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.omnilypro.pos.display;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * Fontana di monete della celebrazione (porting di triggerCoinFountain in CustomerDisplay.tsx)
+ *
+ * Stessa fisica del canvas web, espressa per frame a 60 fps: per 1 s nascono 3 monete a frame dal
+ * centro in basso, lanciate a ventaglio verso l'alto, poi ricadono per gravità ruotando.
+ * Le particelle stanno in array preallocati: nessuna allocazione durante l'animazione.
+ */
+public class CoinFountainView extends View {
+    private static final String TAG = "CoinFountainView";
+    private static final String COIN_ASSET = "display/moneyomily.png";
+
+    private static final long SPAWN_DURATION_MS = 1000;
+    private static final int SPAWN_PER_FRAME = 3;
+    private static final float FRAME_MS = 1000f / 60f;
+    // 1 s di spawn a 60 fps, con margine per frame più lenti
+    private static final int MAX_PARTICLES = 240;
+    private static final float COIN_SIZE_DP = 50;
+
+    private final float density;
+    private final Bitmap coin;
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final RectF coinBounds = new RectF();
+    private final Random random = new Random();
+
+    private final float[] x = new float[MAX_PARTICLES];
+    private final float[] y = new float[MAX_PARTICLES];
+    private final float[] vx = new float[MAX_PARTICLES];
+    private final float[] vy = new float[MAX_PARTICLES];
+    private final float[] rotation = new float[MAX_PARTICLES];
+    private final float[] rotationSpeed = new float[MAX_PARTICLES];
+    private final float[] scale = new float[MAX_PARTICLES];
+    private int count = 0;
+
+    private long startedAt = 0;
+    private long lastFrameAt = 0;
+    private boolean running = false;
+
+    public CoinFountainView(Context context) {
+        super(context);
+        density = context.getResources().getDisplayMetrics().density;
+        coin = loadCoin(context);
+        if (coin == null) {
+            paint.setColor(Color.parseColor("#F59E0B")); // Senza immagine: monete dorate disegnate
+        }
+    }
+
+    private static Bitmap loadCoin(Context context) {
+        try (InputStream in = context.getAssets().open(COIN_ASSET)) {
+            return BitmapFactory.decodeStream(in);
+        } catch (IOException e) {
+            Log.w(TAG, "⚠️ Coin image not packaged: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Avvia (o riavvia) la fontana
+     */
+    public void start() {
+        count = 0;
+        startedAt = SystemClock.uptimeMillis();
+        lastFrameAt = startedAt;
+        running = true;
+        setVisibility(VISIBLE);
+        postInvalidateOnAnimation();
+    }
+
+    public void stop() {
+        running = false;
+        count = 0;
+        setVisibility(GONE);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (!running) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        // Passo in frame da 60 fps: stessa traiettoria anche se il display rallenta
+        float step = Math.min(4f, (now - lastFrameAt) / FRAME_MS);
+        lastFrameAt = now;
+
+        boolean spawning = now - startedAt < SPAWN_DURATION_MS;
+        if (spawning) {
+            for (int i = 0; i < SPAWN_PER_FRAME && count < MAX_PARTICLES; i++) {
+                spawn();
+            }
+        }
+
+        float half = COIN_SIZE_DP * density / 2;
+        for (int i = count - 1; i >= 0; i--) {
+            vy[i] += 0.5f * density * step;
+            x[i] += vx[i] * step;
+            y[i] += vy[i] * step;
+            rotation[i] += rotationSpeed[i] * step;
+
+            if (y[i] > getHeight() + half * 2) {
+                remove(i);
+                continue;
+            }
+            float size = half * scale[i];
+            canvas.save();
+            canvas.translate(x[i], y[i]);
+            canvas.rotate(rotation[i]);
+            coinBounds.set(-size, -size, size, size);
+            if (coin != null) {
+                canvas.drawBitmap(coin, null, coinBounds, paint);
+            } else {
+                canvas.drawOval(coinBounds, paint);
+            }
+            canvas.restore();
+        }
+
+        if (spawning || count > 0) {
+            postInvalidateOnAnimation();
+        } else {
+            stop();
+        }
+    }
+
+    private void spawn() {
+        int i = count++;
+        double angle = -Math.PI / 2 + (random.nextDouble() * 0.5 - 0.25); // Ventaglio stretto verso l'alto
+        float velocity = (15 + random.nextFloat() * 10) * density;
+        x[i] = getWidth() / 2f;
+        y[i] = getHeight() - 20 * density;
+        vx[i] = (float) Math.cos(angle) * velocity * 0.5f;
+        vy[i] = (float) Math.sin(angle) * velocity;
+        rotation[i] = random.nextFloat() * 360;
+        rotationSpeed[i] = (random.nextFloat() - 0.5f) * 10;
+        scale[i] = 0.5f + random.nextFloat() * 0.5f;
+    }
+
+    /**
+     * Sposta l'ultima particella al posto di quella rimossa (l'ordine di disegno non conta)
+     */
+    private void remove(int i) {
+        int last = --count;
+        x[i] = x[last];
+        y[i] = y[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        rotation[i] = rotation[last];
+        rotationSpeed[i] = rotationSpeed[last];
+        scale[i] = scale[last];
+    }
+}
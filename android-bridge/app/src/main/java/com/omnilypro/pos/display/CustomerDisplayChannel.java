@@ -0,0 +1,159 @@
+package com.omnilypro.pos.display;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Canale degli aggiornamenti per il customer display (OmnilyPOS.updateCustomerDisplay)
+ *
+ * - I messaggi arrivano dal thread del bridge e vengono consegnati al Sink una volta per vsync
+ * - I messaggi di stato (carrello, anteprima, elaborazione, benvenuto) sono "latest wins":
+ *   uno stato superato nello stesso frame non viene mai consegnato
+ * - Gli eventi (celebrazione, gift certificate, tier upgrade, IDLE) restano tutti, in ordine
+ * - IDLE scarta gli stati ancora in coda; l'ultimo stato consegnato viene riproposto con resync()
+ *   quando il display ricarica la pagina o viene ricreato
+ */
+public class CustomerDisplayChannel implements Choreographer.FrameCallback {
+    private static final String TAG = "CustomerDisplayChannel";
+
+    public static final String TYPE_TRANSACTION_UPDATE = "TRANSACTION_UPDATE";
+    public static final String TYPE_WELCOME = "WELCOME";
+    public static final String TYPE_IDLE = "IDLE";
+    public static final String TYPE_SALE_PREVIEW = "SALE_PREVIEW";
+    public static final String TYPE_SALE_PROCESSING = "SALE_PROCESSING";
+
+    private static final Set<String> STATE_TYPES = new HashSet<>(Arrays.asList(
+            TYPE_TRANSACTION_UPDATE, TYPE_WELCOME, TYPE_SALE_PREVIEW, TYPE_SALE_PROCESSING
+    ));
+    // Stati azzerati da IDLE (il benvenuto resta)
+    private static final Set<String> SALE_STATE_TYPES = new HashSet<>(Arrays.asList(
+            TYPE_TRANSACTION_UPDATE, TYPE_SALE_PREVIEW, TYPE_SALE_PROCESSING
+    ));
+    // Overlay di vendita: ognuno nasconde l'altro, gli eventi li nascondono entrambi
+    private static final Set<String> OVERLAY_TYPES = new HashSet<>(Arrays.asList(
+            TYPE_SALE_PREVIEW, TYPE_SALE_PROCESSING
+    ));
+
+    /**
+     * Destinazione dei messaggi (main thread)
+     */
+    public interface Sink {
+        void deliver(String type, JSONObject message);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LinkedHashMap<String, JSONObject> pending = new LinkedHashMap<>();
+    private final LinkedHashMap<String, JSONObject> lastStates = new LinkedHashMap<>();
+    private Sink sink;
+    private long eventSequence = 0;
+    private boolean frameScheduled = false;
+
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(this);
+
+    /**
+     * Da qualsiasi thread (bridge)
+     */
+    public void submit(String messageJson) {
+        JSONObject message;
+        try {
+            message = new JSONObject(messageJson);
+        } catch (JSONException e) {
+            Log.w(TAG, "⚠️ Invalid customer display message: " + e.getMessage());
+            return;
+        }
+        String type = message.optString("type", "");
+
+        synchronized (pending) {
+            if (TYPE_IDLE.equals(type)) {
+                removeStates(pending, SALE_STATE_TYPES);
+            }
+            String key = STATE_TYPES.contains(type) ? type : "#" + (eventSequence++);
+            // remove + put: lo stato più recente va in coda, dopo gli eventi arrivati prima
+            pending.remove(key);
+            pending.put(key, message);
+            if (!frameScheduled) {
+                frameScheduled = true;
+                mainHandler.post(scheduleFrame);
+            }
+        }
+    }
+
+    /**
+     * Main thread
+     */
+    public void setSink(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Ripropone l'ultimo stato consegnato (display ricaricato o ricreato). Main thread
+     */
+    public void resync() {
+        synchronized (pending) {
+            for (Map.Entry<String, JSONObject> state : lastStates.entrySet()) {
+                if (!pending.containsKey(state.getKey())) {
+                    pending.put(state.getKey(), state.getValue());
+                }
+            }
+            if (!pending.isEmpty() && !frameScheduled) {
+                frameScheduled = true;
+                mainHandler.post(scheduleFrame);
+            }
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        List<JSONObject> batch;
+        synchronized (pending) {
+            frameScheduled = false;
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        for (JSONObject message : batch) {
+            String type = message.optString("type", "");
+            // lastStates segue quello che il display mostra, per il resync
+            if (TYPE_IDLE.equals(type)) {
+                removeStates(lastStates, SALE_STATE_TYPES);
+            } else if (STATE_TYPES.contains(type)) {
+                if (OVERLAY_TYPES.contains(type)) {
+                    removeStates(lastStates, OVERLAY_TYPES);
+                }
+                lastStates.remove(type);
+                lastStates.put(type, message);
+            } else {
+                removeStates(lastStates, OVERLAY_TYPES);
+            }
+            if (sink != null) {
+                try {
+                    sink.deliver(type, message);
+                } catch (Exception e) {
+                    Log.e(TAG, "❌ Customer display delivery failed for " + type, e);
+                }
+            }
+        }
+    }
+
+    private static void removeStates(Map<String, JSONObject> map, Set<String> types) {
+        Iterator<String> keys = map.keySet().iterator();
+        while (keys.hasNext()) {
+            if (types.contains(keys.next())) {
+                keys.remove();
+            }
+        }
+    }
+}
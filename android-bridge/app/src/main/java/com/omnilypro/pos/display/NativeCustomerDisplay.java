@@ -0,0 +1,552 @@
+package com.omnilypro.pos.display;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.media.AudioAttributes;
+import android.media.SoundPool;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Customer display nativo: benvenuto, carrello con totale, overlay di vendita
+ *
+ * Stessi messaggi JSON di CustomerDisplay.tsx (via CustomerDisplayChannel), ma senza un secondo
+ * WebView: niente renderer, niente bundle JS da scaricare al boot. Le viste sono create una volta
+ * e aggiornate sul posto; le righe del carrello vengono riusate.
+ * La celebrazione di vendita ha lo stesso suono (SoundPool, asset display/ impacchettato dalla build)
+ * e la stessa fontana di monete del web app (CoinFountainView).
+ */
+public class NativeCustomerDisplay implements CustomerDisplayChannel.Sink {
+    private static final String TAG = "NativeCustomerDisplay";
+
+    private static final String DEFAULT_LOGO_URL =
+            "https://sjvatdnvewohvswfrdiv.supabase.co/storage/v1/object/public/IMG/OMNILYPRO.png";
+    private static final int LOGO_MAX_HEIGHT_PX = 240;
+    private static final String COIN_SOUND_ASSET = "display/sounds/slot-machine-coin-payout-1-188227.mp3";
+    private static final float COIN_SOUND_VOLUME = 0.9f;
+
+    private static final int COLOR_BACKGROUND = Color.parseColor("#F1F5F9");
+    private static final int COLOR_HEADER = Color.parseColor("#1E293B");
+    private static final int COLOR_TEXT = Color.parseColor("#1F2937");
+    private static final int COLOR_TEXT_MUTED = Color.parseColor("#6B7280");
+    private static final int COLOR_BRAND = Color.parseColor("#DC2626");
+    private static final int COLOR_CUSTOMER = Color.parseColor("#10B981");
+    private static final int COLOR_GIFT_VALIDATED = Color.parseColor("#059669");
+    private static final int COLOR_GIFT_REDEEMED = Color.parseColor("#1D4ED8");
+    private static final int COLOR_GIFT_ISSUED = Color.parseColor("#D97706");
+    private static final int COLOR_TIER_DEFAULT = Color.parseColor("#F59E0B");
+
+    private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService logoExecutor = Executors.newSingleThreadExecutor();
+    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(15, TimeUnit.SECONDS)
+            .build();
+    private final SimpleDateFormat clockFormat = new SimpleDateFormat("HH:mm:ss", Locale.ITALY);
+
+    private final FrameLayout root;
+    // Benvenuto (nessun articolo)
+    private final LinearLayout welcomeView;
+    private final ImageView welcomeLogo;
+    private final TextView welcomeName;
+    private final TextView welcomeMessage;
+    // Carrello
+    private final LinearLayout cartView;
+    private final ImageView headerLogo;
+    private final TextView headerClock;
+    private final LinearLayout itemsContainer;
+    private final TextView totalView;
+    private final TextView customerView;
+    // Overlay (anteprima, elaborazione, celebrazione, gift certificate, tier upgrade)
+    private final LinearLayout overlayView;
+    private final TextView overlayIcon;
+    private final TextView overlayTitle;
+    private final TextView overlaySubtitle;
+    private final TextView overlayAmount;
+    private final TextView overlayDetail;
+    private final CoinFountainView coinFountain;
+    // Suono della celebrazione (caricato una volta, decodificato in memoria da SoundPool)
+    private final SoundPool soundPool;
+    private int coinSoundId = 0;
+    private boolean coinSoundLoaded = false;
+
+    private boolean hasItems = false;
+    private String logoUrl;
+    private boolean released = false;
+
+    private final Runnable hideOverlay = this::hideOverlay;
+    private final Runnable clockTick = new Runnable() {
+        @Override
+        public void run() {
+            headerClock.setText(clockFormat.format(new Date()));
+            handler.postDelayed(this, 1000 - System.currentTimeMillis() % 1000);
+        }
+    };
+
+    public NativeCustomerDisplay(Context context) {
+        this.context = context;
+
+        root = new FrameLayout(context);
+        root.setBackgroundColor(COLOR_BACKGROUND);
+
+        // ----- Benvenuto -----
+        welcomeView = new LinearLayout(context);
+        welcomeView.setOrientation(LinearLayout.VERTICAL);
+        welcomeView.setGravity(Gravity.CENTER);
+        welcomeView.setPadding(dp(24), dp(24), dp(24), dp(24));
+        welcomeLogo = new ImageView(context);
+        welcomeLogo.setScaleType(ImageView.ScaleType.FIT_CENTER);
+        welcomeView.addView(welcomeLogo, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, dp(120)));
+        welcomeName = text(30, COLOR_TEXT, true);
+        welcomeName.setText("OMNILY PRO");
+        welcomeView.addView(welcomeName, wrap(dp(16)));
+        welcomeMessage = text(20, COLOR_TEXT_MUTED, false);
+        welcomeMessage.setText("Benvenuto!");
+        welcomeView.addView(welcomeMessage, wrap(dp(8)));
+        root.addView(welcomeView, match());
+
+        // ----- Carrello -----
+        cartView = new LinearLayout(context);
+        cartView.setOrientation(LinearLayout.VERTICAL);
+        LinearLayout header = new LinearLayout(context);
+        header.setOrientation(LinearLayout.VERTICAL);
+        header.setGravity(Gravity.CENTER_HORIZONTAL);
+        header.setBackgroundColor(COLOR_HEADER);
+        header.setPadding(dp(8), dp(8), dp(8), dp(8));
+        headerLogo = new ImageView(context);
+        headerLogo.setScaleType(ImageView.ScaleType.FIT_CENTER);
+        header.addView(headerLogo, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, dp(40)));
+        headerClock = text(12, Color.parseColor("#CBD5E1"), false);
+        header.addView(headerClock, wrap(dp(4)));
+        cartView.addView(header, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+
+        ScrollView scroll = new ScrollView(context);
+        itemsContainer = new LinearLayout(context);
+        itemsContainer.setOrientation(LinearLayout.VERTICAL);
+        itemsContainer.setPadding(dp(12), dp(8), dp(12), dp(8));
+        scroll.addView(itemsContainer);
+        cartView.addView(scroll, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 0, 1f));
+
+        totalView = text(30, Color.WHITE, true);
+        totalView.setBackgroundColor(COLOR_BRAND);
+        totalView.setPadding(dp(12), dp(12), dp(12), dp(12));
+        cartView.addView(totalView, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        customerView = text(16, Color.WHITE, false);
+        customerView.setBackgroundColor(COLOR_CUSTOMER);
+        customerView.setPadding(dp(12), dp(8), dp(12), dp(8));
+        customerView.setVisibility(View.GONE);
+        cartView.addView(customerView, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        cartView.setVisibility(View.GONE);
+        root.addView(cartView, match());
+
+        // ----- Overlay -----
+        overlayView = new LinearLayout(context);
+        overlayView.setOrientation(LinearLayout.VERTICAL);
+        overlayView.setGravity(Gravity.CENTER);
+        overlayView.setPadding(dp(24), dp(24), dp(24), dp(24));
+        overlayIcon = text(56, Color.WHITE, false);
+        overlayView.addView(overlayIcon, wrap(0));
+        overlayTitle = text(26, Color.WHITE, true);
+        overlayView.addView(overlayTitle, wrap(dp(8)));
+        overlaySubtitle = text(20, Color.WHITE, false);
+        overlayView.addView(overlaySubtitle, wrap(dp(4)));
+        overlayAmount = text(44, Color.WHITE, true);
+        overlayView.addView(overlayAmount, wrap(dp(12)));
+        overlayDetail = text(18, Color.WHITE, false);
+        overlayView.addView(overlayDetail, wrap(dp(8)));
+        overlayView.setVisibility(View.GONE);
+        root.addView(overlayView, match());
+
+        // ----- Fontana di monete (sopra l'overlay) -----
+        coinFountain = new CoinFountainView(context);
+        coinFountain.setVisibility(View.GONE);
+        root.addView(coinFountain, match());
+
+        soundPool = new SoundPool.Builder()
+                .setMaxStreams(1)
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_MEDIA)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                        .build())
+                .build();
+        soundPool.setOnLoadCompleteListener((pool, sampleId, status) -> coinSoundLoaded = status == 0);
+        try (AssetFileDescriptor fd = context.getAssets().openFd(COIN_SOUND_ASSET)) {
+            coinSoundId = soundPool.load(fd, 1);
+        } catch (IOException e) {
+            Log.w(TAG, "⚠️ Celebration sound not packaged: " + e.getMessage());
+        }
+
+        loadLogo(DEFAULT_LOGO_URL);
+    }
+
+    public View getView() {
+        return root;
+    }
+
+    /**
+     * Presentation chiusa: ferma timer e caricamento logo
+     */
+    public void release() {
+        released = true;
+        handler.removeCallbacksAndMessages(null);
+        logoExecutor.shutdownNow();
+        coinFountain.stop();
+        soundPool.release();
+    }
+
+    // ============================================================================
+    // Messaggi
+    // ============================================================================
+
+    @Override
+    public void deliver(String type, JSONObject message) {
+        if (released) {
+            return;
+        }
+        switch (type) {
+            case CustomerDisplayChannel.TYPE_TRANSACTION_UPDATE:
+                renderTransaction(message.optJSONObject("transaction"));
+                break;
+            case CustomerDisplayChannel.TYPE_WELCOME:
+                renderWelcome(message);
+                break;
+            case CustomerDisplayChannel.TYPE_SALE_PREVIEW: {
+                JSONObject preview = object(message, "preview");
+                double amount = preview.optDouble("amount", 0);
+                showOverlay(COLOR_BRAND, "🛒", "Riepilogo", preview.optString("customerName", ""),
+                        amount > 0 ? euro(amount) : "",
+                        amount > 0 ? "+" + preview.optInt("pointsToEarn") + " punti · saldo "
+                                + preview.optInt("newTotalPoints") + " punti" : "", 0);
+                break;
+            }
+            case CustomerDisplayChannel.TYPE_SALE_PROCESSING: {
+                JSONObject processing = object(message, "processing");
+                showOverlay(COLOR_BRAND, "⏳", "Elaborazione in corso...", processing.optString("customerName", ""),
+                        euro(processing.optDouble("amount", 0)),
+                        "+" + processing.optInt("pointsToEarn") + " punti", 0);
+                break;
+            }
+            case "SALE_CELEBRATION": {
+                JSONObject celebration = object(message, "celebration");
+                showOverlay(COLOR_BRAND, "🎉", "Grazie " + celebration.optString("customerName", "") + "!",
+                        "+" + celebration.optInt("pointsEarned") + " PUNTI!",
+                        euro(celebration.optDouble("amount", 0)),
+                        "Nuovo saldo: " + celebration.optInt("newTotalPoints") + " punti", 3000);
+                coinFountain.start();
+                if (coinSoundLoaded) {
+                    soundPool.play(coinSoundId, COIN_SOUND_VOLUME, COIN_SOUND_VOLUME, 1, 0, 1f);
+                }
+                break;
+            }
+            case "GIFT_CERTIFICATE_VALIDATED": {
+                JSONObject gift = object(message, "giftCertificate");
+                showOverlay(COLOR_GIFT_VALIDATED, "🎁", "Gift Certificate", gift.optString("code", ""),
+                        euro(gift.optDouble("balance", 0)), gift.optString("recipientName", ""), 8000);
+                break;
+            }
+            case "GIFT_CERTIFICATE_REDEEMED": {
+                JSONObject redemption = object(message, "redemption");
+                showOverlay(COLOR_GIFT_REDEEMED, "💰", "Riscatto", redemption.optString("code", ""),
+                        euro(redemption.optDouble("amountRedeemed", 0)),
+                        "Residuo: " + euro(redemption.optDouble("balanceAfter", 0)), 6000);
+                break;
+            }
+            case "GIFT_CERTIFICATE_ISSUED": {
+                JSONObject issuance = object(message, "issuance");
+                String recipient = issuance.optString("recipientName", "");
+                showOverlay(COLOR_GIFT_ISSUED, "🎟️", "Emesso", issuance.optString("code", ""),
+                        euro(issuance.optDouble("amount", 0)), recipient.isEmpty() ? "" : "Per: " + recipient, 7000);
+                break;
+            }
+            case "TIER_UPGRADE": {
+                JSONObject tier = object(message, "tierUpgrade");
+                int color = COLOR_TIER_DEFAULT;
+                try {
+                    color = Color.parseColor(tier.optString("newTierColor", "#F59E0B"));
+                } catch (IllegalArgumentException ignored) {
+                }
+                double multiplier = tier.optDouble("multiplier", 1);
+                showOverlay(color, tierIcon(tier.optString("newTierName", "")), tier.optString("customerName", ""),
+                        tier.optString("oldTierName", "") + " → " + tier.optString("newTierName", ""), "",
+                        multiplier > 1 ? formatMultiplier(multiplier) + "x Punti" : "", 4000);
+                break;
+            }
+            case CustomerDisplayChannel.TYPE_IDLE:
+                renderTransaction(null);
+                hideOverlay();
+                coinFountain.stop();
+                break;
+            default:
+                Log.w(TAG, "⚠️ Unknown customer display message: " + type);
+        }
+    }
+
+    private void renderWelcome(JSONObject welcome) {
+        String name = welcome.optString("organizationName", "");
+        if (!name.isEmpty()) {
+            welcomeName.setText(name);
+        }
+        String message = welcome.optString("welcomeMessage", "");
+        if (!message.isEmpty()) {
+            welcomeMessage.setText(message);
+        }
+        String url = welcome.optString("logoUrl", "");
+        if (!url.isEmpty()) {
+            loadLogo(url);
+        }
+    }
+
+    private void renderTransaction(JSONObject transaction) {
+        JSONArray items = transaction != null ? transaction.optJSONArray("items") : null;
+        int count = items != null ? items.length() : 0;
+
+        // Righe esistenti riusate, quelle in eccesso rimosse
+        for (int i = 0; i < count; i++) {
+            JSONObject item = items.optJSONObject(i);
+            if (item == null) {
+                item = new JSONObject();
+            }
+            LinearLayout row;
+            if (i < itemsContainer.getChildCount()) {
+                row = (LinearLayout) itemsContainer.getChildAt(i);
+            } else {
+                row = createRow();
+                itemsContainer.addView(row);
+            }
+            int quantity = item.optInt("quantity", 1);
+            ((TextView) row.getChildAt(0)).setText(item.optString("name", "") + "\nQtà: " + quantity);
+            ((TextView) row.getChildAt(1)).setText(euro(item.optDouble("price", 0) * quantity));
+        }
+        if (itemsContainer.getChildCount() > count) {
+            itemsContainer.removeViews(count, itemsContainer.getChildCount() - count);
+        }
+
+        totalView.setText("TOTALE: " + euro(transaction != null ? transaction.optDouble("total", 0) : 0));
+        JSONObject customer = transaction != null ? transaction.optJSONObject("customer") : null;
+        if (customer != null) {
+            customerView.setText("👋 Ciao " + customer.optString("name", "") + "!  Punti fedeltà: " + customer.optInt("points"));
+            customerView.setVisibility(View.VISIBLE);
+        } else {
+            customerView.setVisibility(View.GONE);
+        }
+
+        hasItems = count > 0;
+        updateBaseScreen();
+    }
+
+    private void showOverlay(int color, String icon, String title, String subtitle, String amount, String detail,
+                             long autoHideMs) {
+        overlayView.setBackgroundColor(color);
+        overlayIcon.setText(icon);
+        setOptional(overlayTitle, title);
+        setOptional(overlaySubtitle, subtitle);
+        setOptional(overlayAmount, amount);
+        setOptional(overlayDetail, detail);
+        overlayView.setVisibility(View.VISIBLE);
+
+        handler.removeCallbacks(hideOverlay);
+        if (autoHideMs > 0) {
+            handler.postDelayed(hideOverlay, autoHideMs);
+        }
+        updateBaseScreen();
+    }
+
+    private void hideOverlay() {
+        handler.removeCallbacks(hideOverlay);
+        overlayView.setVisibility(View.GONE);
+        updateBaseScreen();
+    }
+
+    /**
+     * Carrello se ci sono articoli, altrimenti benvenuto; l'orologio gira solo se visibile
+     */
+    private void updateBaseScreen() {
+        boolean showCart = hasItems && overlayView.getVisibility() != View.VISIBLE;
+        cartView.setVisibility(hasItems ? View.VISIBLE : View.GONE);
+        welcomeView.setVisibility(hasItems ? View.GONE : View.VISIBLE);
+        handler.removeCallbacks(clockTick);
+        if (showCart) {
+            clockTick.run();
+        }
+    }
+
+    // ============================================================================
+    // Logo (cache su disco, decodificato già ridotto)
+    // ============================================================================
+
+    private void loadLogo(final String url) {
+        if (url.equals(logoUrl)) {
+            return;
+        }
+        logoUrl = url;
+        final File cacheFile = new File(new File(context.getCacheDir(), "customer_display"),
+                "logo_" + Integer.toHexString(url.hashCode()));
+        logoExecutor.submit(() -> {
+            try {
+                if (!cacheFile.exists()) {
+                    download(url, cacheFile);
+                }
+                final Bitmap logo = decode(cacheFile);
+                if (logo == null) {
+                    cacheFile.delete();
+                    return;
+                }
+                handler.post(() -> {
+                    if (!released && url.equals(logoUrl)) {
+                        welcomeLogo.setImageBitmap(logo);
+                        headerLogo.setImageBitmap(logo);
+                    }
+                });
+            } catch (IOException e) {
+                Log.w(TAG, "⚠️ Logo download failed: " + e.getMessage());
+            }
+        });
+    }
+
+    private void download(String url, File target) throws IOException {
+        Request request = new Request.Builder().url(url).build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (response.code() != 200 || body == null) {
+                throw new IOException("HTTP " + response.code());
+            }
+            File dir = target.getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            File tmp = new File(target.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(body.bytes());
+            }
+            if (!tmp.renameTo(target)) {
+                tmp.delete();
+            }
+        }
+    }
+
+    private static Bitmap decode(File file) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+        int sample = 1;
+        while (bounds.outHeight / (sample * 2) >= LOGO_MAX_HEIGHT_PX) {
+            sample *= 2;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sample;
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    // ============================================================================
+    // Helper viste e formattazione
+    // ============================================================================
+
+    private LinearLayout createRow() {
+        LinearLayout row = new LinearLayout(context);
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        row.setGravity(Gravity.CENTER_VERTICAL);
+        row.setPadding(0, dp(8), 0, dp(8));
+        TextView name = text(18, COLOR_TEXT, false);
+        name.setGravity(Gravity.START);
+        row.addView(name, new LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1f));
+        TextView price = text(18, COLOR_TEXT, true);
+        row.addView(price, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        return row;
+    }
+
+    private TextView text(int sizeSp, int color, boolean bold) {
+        TextView view = new TextView(context);
+        view.setTextSize(TypedValue.COMPLEX_UNIT_SP, sizeSp);
+        view.setTextColor(color);
+        view.setGravity(Gravity.CENTER);
+        if (bold) {
+            view.setTypeface(null, Typeface.BOLD);
+        }
+        return view;
+    }
+
+    private static void setOptional(TextView view, String value) {
+        view.setText(value);
+        view.setVisibility(value == null || value.isEmpty() ? View.GONE : View.VISIBLE);
+    }
+
+    private LinearLayout.LayoutParams wrap(int topMargin) {
+        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        params.topMargin = topMargin;
+        return params;
+    }
+
+    private static FrameLayout.LayoutParams match() {
+        return new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
+    }
+
+    private int dp(int value) {
+        return Math.round(value * context.getResources().getDisplayMetrics().density);
+    }
+
+    private static JSONObject object(JSONObject message, String key) {
+        JSONObject value = message.optJSONObject(key);
+        return value != null ? value : new JSONObject();
+    }
+
+    private static String euro(double amount) {
+        return String.format(Locale.US, "€%.2f", amount);
+    }
+
+    private static String formatMultiplier(double multiplier) {
+        return multiplier == Math.floor(multiplier)
+                ? String.valueOf((long) multiplier) : String.format(Locale.US, "%.1f", multiplier);
+    }
+
+    private static String tierIcon(String tierName) {
+        switch (tierName) {
+            case "Platinum":
+                return "👑";
+            case "Gold":
+                return "⭐";
+            case "Silver":
+                return "✨";
+            case "Bronze":
+                return "🥉";
+            default:
+                return "🏆";
+        }
+    }
+}
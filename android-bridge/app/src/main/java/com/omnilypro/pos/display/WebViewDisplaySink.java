@@ -0,0 +1,152 @@
+package com.omnilypro.pos.display;
+
+import android.webkit.WebView;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+
+/**
+ * Consegna al WebView del customer display con payload delta per il carrello
+ *
+ * Un TRANSACTION_UPDATE invia solo le righe cambiate, la nuova lunghezza e i campi modificati
+ * (totale, cliente); uno stato identico all'ultimo inviato non viene inviato affatto.
+ * Un piccolo script nel documento ricompone la transazione e la posta come TRANSACTION_UPDATE
+ * completo: il web app del display non cambia.
+ */
+public class WebViewDisplaySink implements CustomerDisplayChannel.Sink {
+
+    private static final String APPLY_SCRIPT =
+            "(function () {" +
+            "  if (window.__omnilyDisplayApply) { return; }" +
+            "  var tx = { items: [], total: 0 };" +
+            "  window.__omnilyDisplayApply = function (p) {" +
+            "    if (p.full) {" +
+            "      if (p.full.type === 'TRANSACTION_UPDATE') { tx = p.full.transaction || { items: [], total: 0 }; }" +
+            "      else if (p.full.type === 'IDLE') { tx = { items: [], total: 0 }; }" +
+            "      window.postMessage(p.full, '*');" +
+            "      return;" +
+            "    }" +
+            "    var d = p.delta, next = {}, k, i;" +
+            "    for (k in tx) { next[k] = tx[k]; }" +
+            "    for (k in d.set) { next[k] = d.set[k]; }" +
+            "    for (i = 0; i < d.unset.length; i++) { delete next[d.unset[i]]; }" +
+            "    next.items = (tx.items || []).slice(0, d.len);" +
+            "    for (i = 0; i < d.lines.length; i++) { next.items[d.lines[i][0]] = d.lines[i][1]; }" +
+            "    tx = next;" +
+            "    window.postMessage({ type: 'TRANSACTION_UPDATE', transaction: tx }, '*');" +
+            "  };" +
+            "})();";
+
+    private WebView webView;
+    private boolean ready = false;
+    private boolean scriptInstalled = false;
+    private JSONObject lastTransaction;
+
+    /**
+     * WebView (ri)creato o rilasciato (null). Main thread
+     */
+    public void attach(WebView webView) {
+        this.webView = webView;
+        onPageStarted();
+    }
+
+    /**
+     * Nuovo documento: stato JS perso, il prossimo invio è completo
+     */
+    public void onPageStarted() {
+        ready = false;
+        scriptInstalled = false;
+        lastTransaction = null;
+    }
+
+    /**
+     * Documento pronto: da qui i messaggi vengono consegnati (seguire con channel.resync())
+     */
+    public void onPageFinished() {
+        ready = true;
+    }
+
+    @Override
+    public void deliver(String type, JSONObject message) {
+        if (webView == null || !ready) {
+            return; // Il resync dopo onPageFinished riallinea il display
+        }
+        String payload;
+        if (CustomerDisplayChannel.TYPE_TRANSACTION_UPDATE.equals(type)) {
+            JSONObject transaction = message.optJSONObject("transaction");
+            JSONObject delta = transaction != null && lastTransaction != null ? diff(lastTransaction, transaction) : null;
+            if (delta != null && delta.optJSONArray("lines").length() == 0 && delta.optJSONObject("set").length() == 0
+                    && delta.optJSONArray("unset").length() == 0 && delta.optInt("len") == itemCount(lastTransaction)) {
+                return; // Nessuna modifica visibile
+            }
+            lastTransaction = transaction;
+            payload = delta != null ? "{\"delta\":" + delta + "}" : "{\"full\":" + message + "}";
+        } else {
+            if (CustomerDisplayChannel.TYPE_IDLE.equals(type)) {
+                lastTransaction = null;
+            }
+            payload = "{\"full\":" + message + "}";
+        }
+
+        String script = "window.__omnilyDisplayApply(" + payload + ");";
+        if (!scriptInstalled) {
+            script = APPLY_SCRIPT + script;
+            scriptInstalled = true;
+        }
+        webView.evaluateJavascript(script, null);
+    }
+
+    /**
+     * {len, lines: [[indice, riga]], set: {campo: valore}, unset: [campo]}
+     */
+    private static JSONObject diff(JSONObject previous, JSONObject current) {
+        try {
+            JSONArray oldItems = previous.optJSONArray("items");
+            JSONArray newItems = current.optJSONArray("items");
+            int oldLength = oldItems != null ? oldItems.length() : 0;
+            int newLength = newItems != null ? newItems.length() : 0;
+
+            JSONArray lines = new JSONArray();
+            for (int i = 0; i < newLength; i++) {
+                Object item = newItems.get(i);
+                if (i >= oldLength || !String.valueOf(item).equals(String.valueOf(oldItems.get(i)))) {
+                    lines.put(new JSONArray().put(i).put(item));
+                }
+            }
+
+            JSONObject set = new JSONObject();
+            Iterator<String> keys = current.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (!"items".equals(key) && !String.valueOf(current.get(key)).equals(String.valueOf(previous.opt(key)))) {
+                    set.put(key, current.get(key));
+                }
+            }
+            JSONArray unset = new JSONArray();
+            keys = previous.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (!"items".equals(key) && !current.has(key)) {
+                    unset.put(key);
+                }
+            }
+
+            JSONObject delta = new JSONObject();
+            delta.put("len", newLength);
+            delta.put("lines", lines);
+            delta.put("set", set);
+            delta.put("unset", unset);
+            return delta;
+        } catch (JSONException e) {
+            return null; // Invio completo
+        }
+    }
+
+    private static int itemCount(JSONObject transaction) {
+        JSONArray items = transaction.optJSONArray("items");
+        return items != null ? items.length() : 0;
+    }
+}
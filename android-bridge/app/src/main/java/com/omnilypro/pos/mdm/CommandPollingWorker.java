@@ -14,8 +14,15 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.omnilypro.pos.diagnostics.DiagnosticLog;
+import com.omnilypro.pos.web.SupabaseReadCache;
+
+import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -26,6 +33,7 @@ import okhttp3.Response;
  */
 public class CommandPollingWorker extends Worker {
     private static final String TAG = "CommandPollingWorker";
+    private static final long UPLOAD_LOGS_TIMEOUT_SECONDS = 30;
     private final Gson gson = new Gson();
 
     // Device ID storage key
@@ -148,7 +156,9 @@ public class CommandPollingWorker extends Worker {
                     break;
 
                 case MdmConfig.CMD_SYNC_CONFIG:
-                    success = executeSyncConfig();
+                    JsonObject syncPayload = command.has("payload") && command.get("payload").isJsonObject()
+                            ? command.getAsJsonObject("payload") : null;
+                    success = executeSyncConfig(syncPayload);
                     break;
 
                 case MdmConfig.CMD_LOCATE:
@@ -160,6 +170,16 @@ public class CommandPollingWorker extends Worker {
                     success = executeTestPrint(printPayload);
                     break;
 
+                case MdmConfig.CMD_SET_LOG_LEVEL:
+                    JsonObject logPayload = command.has("payload") ? command.getAsJsonObject("payload") : null;
+                    success = executeSetLogLevel(logPayload);
+                    break;
+
+                case MdmConfig.CMD_UPLOAD_LOGS:
+                    JsonObject uploadPayload = command.has("payload") ? command.getAsJsonObject("payload") : null;
+                    success = executeUploadLogs(commandId, uploadPayload);
+                    break;
+
                 default:
                     errorMessage = "Unknown command type: " + commandType;
                     Log.w(TAG, errorMessage);
@@ -580,9 +600,14 @@ public class CommandPollingWorker extends Worker {
         }
     }
 
-    private boolean executeSyncConfig() {
+    private boolean executeSyncConfig(JsonObject payload) {
         try {
             Log.i(TAG, "Syncing configuration...");
+            // Rotte della cache letture Supabase: [{table, ttlSeconds, maxStaleSeconds, invalidateOnRpc}]
+            if (payload != null && payload.has("supabase_cache_routes")) {
+                SupabaseReadCache.getInstance(getApplicationContext())
+                        .configure(payload.get("supabase_cache_routes").toString());
+            }
             // TODO: Implementare sync configurazioni da backend
             // Broadcast intent to MainActivity
             Intent intent = new Intent("com.omnilypro.pos.SYNC_CONFIG");
@@ -634,6 +659,60 @@ public class CommandPollingWorker extends Worker {
         }
     }
 
+    private boolean executeSetLogLevel(JsonObject payload) {
+        if (payload == null) {
+            Log.w(TAG, "⚠️ No payload for set_log_level command");
+            return false;
+        }
+        try {
+            DiagnosticLog.init(getApplicationContext());
+            DiagnosticLog.configure(new JSONObject(payload.toString()));
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Set log level failed", e);
+            return false;
+        }
+    }
+
+    private boolean executeUploadLogs(String commandId, JsonObject payload) {
+        try {
+            int minutes = payload != null && payload.has("minutes") ? payload.get("minutes").getAsInt() : 15;
+            String entries = DiagnosticLog.snapshot(minutes).toString();
+            Log.i(TAG, "📤 Uploading diagnostic logs (last " + minutes + " min, " + entries.length() + " chars)");
+
+            // Il comando risulta completato solo se l'upload è andato a buon fine
+            // (siamo sul thread del callback di polling, attendere non blocca la UI)
+            CountDownLatch done = new CountDownLatch(1);
+            AtomicBoolean uploaded = new AtomicBoolean(false);
+            SupabaseClient.getInstance().uploadDeviceLogs(commandId, minutes, entries, new Callback() {
+                @Override
+                public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                    Log.e(TAG, "❌ Diagnostic log upload failed", e);
+                    done.countDown();
+                }
+
+                @Override
+                public void onResponse(@NonNull Call call, @NonNull Response response) {
+                    if (response.isSuccessful()) {
+                        uploaded.set(true);
+                    } else {
+                        Log.w(TAG, "⚠️ Diagnostic log upload failed with code: " + response.code());
+                    }
+                    response.close();
+                    done.countDown();
+                }
+            });
+            if (!done.await(UPLOAD_LOGS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                Log.w(TAG, "⚠️ Diagnostic log upload timed out");
+                return false;
+            }
+            return uploaded.get();
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Upload logs failed", e);
+            return false;
+        }
+    }
+
     private boolean executeLocate() {
         try {
             Log.i(TAG, "📍 Locating device - getting GPS position...");
@@ -21,6 +21,11 @@ import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.omnilypro.pos.diagnostics.BridgeMetrics;
+import com.omnilypro.pos.diagnostics.JankMonitor;
+import com.omnilypro.pos.diagnostics.WebPerfCollector;
+import com.omnilypro.pos.startup.StartupTracer;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
@@ -90,6 +95,18 @@ public class HeartbeatWorker extends Worker {
             Log.w(TAG, "No GPS location available");
         }
 
+        // Timeline dell'ultimo avvio (confronto prestazioni di avvio tra dispositivi e deploy)
+        addStartupTimeline(context, deviceData);
+
+        // Percentili dei tempi di frame per minuto + chiamate bridge durante i frame lenti
+        addJankSummary(deviceData);
+
+        // Metriche del web app (navigation timing, LCP, long task, heap) aggregate dall'ultimo heartbeat riuscito
+        final WebPerfCollector.Snapshot webPerf = addWebPerf(deviceData);
+
+        // Latenze per metodo del bridge (exec, attesa executor, tempo al callback) dall'ultimo heartbeat riuscito
+        final BridgeMetrics.Window bridgeStats = addBridgeStats(deviceData);
+
         Log.d(TAG, "Sending heartbeat for device: " + androidId);
         Log.d(TAG, "Payload: " + deviceData.toString());
 
@@ -105,6 +122,9 @@ public class HeartbeatWorker extends Worker {
                 if (response.isSuccessful()) {
                     String responseBody = response.body() != null ? response.body().string() : "no body";
                     Log.d(TAG, "Heartbeat sent successfully - Response: " + responseBody);
+                    // Solo ora le finestre inviate escono dai contatori: se fallisce ripartono col prossimo
+                    WebPerfCollector.getInstance().commit(webPerf);
+                    BridgeMetrics.getInstance().commit(bridgeStats);
                 } else {
                     String errorBody = response.body() != null ? response.body().string() : "no body";
                     Log.w(TAG, "Heartbeat failed: " + response.code() + " - " + errorBody);
@@ -114,6 +134,74 @@ public class HeartbeatWorker extends Worker {
         });
     }
 
+    /**
+     * Campi startup_*: timeline completa + tempo fino al bridge pronto (ms dall'avvio del processo)
+     */
+    private void addStartupTimeline(Context context, JsonObject deviceData) {
+        try {
+            org.json.JSONObject latest = StartupTracer.getInstance(context).getLatest();
+            if (latest == null) {
+                return;
+            }
+            JsonObject timeline = JsonParser.parseString(latest.toString()).getAsJsonObject();
+            deviceData.add("startup_timeline", timeline);
+
+            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+            sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+            deviceData.addProperty("startup_at", sdf.format(new Date(latest.optLong("started_at"))));
+
+            JsonObject phases = timeline.getAsJsonObject("phases");
+            if (phases != null && phases.has(StartupTracer.PHASE_BRIDGE_READY)) {
+                deviceData.addProperty("startup_ready_ms", phases.get(StartupTracer.PHASE_BRIDGE_READY).getAsLong());
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error adding startup timeline", e);
+        }
+    }
+
+    private void addJankSummary(JsonObject deviceData) {
+        try {
+            JankMonitor monitor = JankMonitor.getInstance();
+            if (monitor.hasData()) {
+                deviceData.add("jank_summary", JsonParser.parseString(monitor.getSummary().toString()));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error adding jank summary", e);
+        }
+    }
+
+    /**
+     * Campo web_perf; lo snapshot va passato a commit() solo se l'heartbeat arriva
+     */
+    private WebPerfCollector.Snapshot addWebPerf(JsonObject deviceData) {
+        try {
+            WebPerfCollector.Snapshot snapshot = WebPerfCollector.getInstance().snapshot();
+            if (snapshot != null) {
+                deviceData.add("web_perf", JsonParser.parseString(snapshot.toJson().toString()));
+            }
+            return snapshot;
+        } catch (Exception e) {
+            Log.e(TAG, "Error adding web perf summary", e);
+            return null;
+        }
+    }
+
+    /**
+     * Campo bridge_stats; la finestra va passata a commit() solo se l'heartbeat arriva
+     */
+    private BridgeMetrics.Window addBridgeStats(JsonObject deviceData) {
+        try {
+            BridgeMetrics.Window window = BridgeMetrics.getInstance().snapshot();
+            if (window != null) {
+                deviceData.add("bridge_stats", JsonParser.parseString(window.toJson().toString()));
+            }
+            return window;
+        } catch (Exception e) {
+            Log.e(TAG, "Error adding bridge stats", e);
+            return null;
+        }
+    }
+
     /**
      * Ottieni livello batteria
      */
@@ -18,6 +18,7 @@ public class MdmConfig {
     public static final String DEVICES_ENDPOINT = "/rest/v1/devices";
     public static final String COMMANDS_ENDPOINT = "/rest/v1/device_commands";
     public static final String LOGS_ENDPOINT = "/rest/v1/mdm_activity_logs";
+    public static final String LOG_UPLOADS_ENDPOINT = "/rest/v1/device_log_uploads";
 
     // Device status
     public static final String STATUS_ONLINE = "online";
@@ -33,6 +34,8 @@ public class MdmConfig {
     public static final String CMD_SYNC_CONFIG = "sync_config";
     public static final String CMD_LOCATE = "locate";
     public static final String CMD_TEST_PRINT = "test_print";
+    public static final String CMD_SET_LOG_LEVEL = "set_log_level";
+    public static final String CMD_UPLOAD_LOGS = "upload_logs";
 
     // Command status
     public static final String CMD_STATUS_PENDING = "pending";
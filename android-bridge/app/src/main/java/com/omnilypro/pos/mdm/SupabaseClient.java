@@ -3,6 +3,7 @@ package com.omnilypro.pos.mdm;
 import android.util.Log;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import okhttp3.*;
 
 import java.io.IOException;
@@ -277,6 +278,37 @@ public class SupabaseClient {
         httpClient.newCall(request).enqueue(callback);
     }
 
+    /**
+     * Carica le ultime righe del ring buffer diagnostico (comando upload_logs)
+     *
+     * @param entriesJson array JSON [{t, level, tag, msg}] prodotto da DiagnosticLog.snapshot
+     */
+    public void uploadDeviceLogs(String commandId, int windowMinutes, String entriesJson, Callback callback) {
+        String url = supabaseUrl + MdmConfig.LOG_UPLOADS_ENDPOINT;
+
+        JsonObject data = new JsonObject();
+        data.addProperty("device_id", cachedDeviceUuid);
+        data.addProperty("command_id", commandId);
+        data.addProperty("window_minutes", windowMinutes);
+        data.add("entries", JsonParser.parseString(entriesJson));
+
+        RequestBody body = RequestBody.create(
+                data.toString(),
+                MediaType.parse("application/json")
+        );
+
+        Request request = new Request.Builder()
+                .url(url)
+                .post(body)
+                .addHeader("apikey", apiKey)
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .addHeader("Content-Type", "application/json")
+                .addHeader("Prefer", "return=minimal")
+                .build();
+
+        httpClient.newCall(request).enqueue(callback);
+    }
+
     /**
      * Set device UUID per logging attività
      */
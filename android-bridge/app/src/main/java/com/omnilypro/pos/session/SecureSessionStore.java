@@ -0,0 +1,175 @@
+package com.omnilypro.pos.session;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Sessione Supabase dello staff conservata in modo sicuro tra i riavvii
+ *
+ * - La sessione (access + refresh token) è cifrata AES-GCM con una chiave dell'Android Keystore
+ *   (API 23+; sotto resta solo in memoria e dopo un riavvio serve il login)
+ * - Il web app la salva ad ogni SIGNED_IN / TOKEN_REFRESHED e la riprende al boot
+ *   (supabase.auth.setSession) tramite SessionChannel: mai dal @JavascriptInterface, che è
+ *   esposto anche agli iframe
+ * - Il refresh lo fa solo supabase-js: il refresh token è a rotazione e un secondo refresher
+ *   nativo lo spenderebbe due volte (reuse detection → sessione revocata). Se al boot il token
+ *   è scaduto, setSession lo rinnova con un solo round-trip.
+ *
+ * Metodi bloccanti (Keystore): da chiamare fuori dal main thread.
+ */
+public class SecureSessionStore {
+    private static final String TAG = "SecureSessionStore";
+    private static final String PREFS_NAME = "secure_session";
+    private static final String KEY_DATA = "session";
+    private static final String KEY_IV = "iv";
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "omnily_session_key";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static SecureSessionStore instance;
+
+    private final SharedPreferences prefs;
+    private JSONObject session;
+    private boolean loaded = false;
+
+    private SecureSessionStore(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized SecureSessionStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new SecureSessionStore(context);
+        }
+        return instance;
+    }
+
+    // ============================================================================
+    // API
+    // ============================================================================
+
+    /**
+     * All'avvio (in background): decifra la sessione, così la richiesta del web app non attende il Keystore
+     */
+    public synchronized void restore() {
+        ensureLoaded();
+        if (session != null) {
+            long expiresIn = session.optLong("expires_at") - System.currentTimeMillis() / 1000;
+            Log.i(TAG, "🔐 Session restored, " + (expiresIn > 0 ? "expires in " + expiresIn + "s" : "refresh due"));
+        }
+    }
+
+    /**
+     * Sessione dal web app (SIGNED_IN / TOKEN_REFRESHED): {access_token, refresh_token, expires_at, user}
+     */
+    public synchronized boolean save(String sessionJson) {
+        try {
+            JSONObject incoming = new JSONObject(sessionJson);
+            if (incoming.optString("refresh_token", "").isEmpty() || incoming.optString("access_token", "").isEmpty()) {
+                Log.w(TAG, "⚠️ Session without tokens ignored");
+                return false;
+            }
+            store(incoming);
+            return true;
+        } catch (JSONException e) {
+            Log.e(TAG, "❌ Invalid session JSON: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Ultima sessione salvata (anche se scaduta: supabase-js la rinnova), oppure null se serve il login
+     */
+    public synchronized String getSession() {
+        ensureLoaded();
+        return session != null ? session.toString() : null;
+    }
+
+    /**
+     * Logout: cancella la sessione
+     */
+    public synchronized void clear() {
+        session = null;
+        loaded = true;
+        prefs.edit().remove(KEY_DATA).remove(KEY_IV).apply();
+        Log.i(TAG, "🔓 Session cleared");
+    }
+
+    // ============================================================================
+    // Storage cifrato
+    // ============================================================================
+
+    private void store(JSONObject newSession) {
+        session = newSession;
+        loaded = true;
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return; // Nessuna chiave hardware: la sessione non viene scritta su disco
+        }
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, getOrCreateKey());
+            byte[] encrypted = cipher.doFinal(newSession.toString().getBytes(StandardCharsets.UTF_8));
+            prefs.edit()
+                    .putString(KEY_IV, Base64.encodeToString(cipher.getIV(), Base64.NO_WRAP))
+                    .putString(KEY_DATA, Base64.encodeToString(encrypted, Base64.NO_WRAP))
+                    .apply();
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Cannot encrypt session: " + e.getMessage());
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        String data = prefs.getString(KEY_DATA, null);
+        String iv = prefs.getString(KEY_IV, null);
+        if (data == null || iv == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return;
+        }
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, getOrCreateKey(), new GCMParameterSpec(128, Base64.decode(iv, Base64.NO_WRAP)));
+            byte[] plain = cipher.doFinal(Base64.decode(data, Base64.NO_WRAP));
+            session = new JSONObject(new String(plain, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            // Chiave invalidata (reset credenziali, restore backup): la sessione non è più leggibile
+            Log.w(TAG, "⚠️ Stored session unreadable, login required: " + e.getMessage());
+            prefs.edit().remove(KEY_DATA).remove(KEY_IV).apply();
+        }
+    }
+
+    private static SecretKey getOrCreateKey() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        KeyStore.Entry entry = keyStore.getEntry(KEY_ALIAS, null);
+        if (entry instanceof KeyStore.SecretKeyEntry) {
+            return ((KeyStore.SecretKeyEntry) entry).getSecretKey();
+        }
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+}
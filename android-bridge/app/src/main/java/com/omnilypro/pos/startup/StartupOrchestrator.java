@@ -0,0 +1,243 @@
+package com.omnilypro.pos.startup;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Grafo delle dipendenze di avvio dell'activity
+ *
+ * Ogni task dichiara thread (main o background), fase (CRITICAL / AFTER_FIRST_PAINT) e dipendenze.
+ * I task indipendenti partono in parallelo; quelli AFTER_FIRST_PAINT vengono rilasciati al primo
+ * onPageFinished (o dopo FIRST_PAINT_TIMEOUT_MS se la pagina non arriva mai, es. offline senza bundle).
+ * Lo stato del grafo viene modificato solo sul main thread.
+ */
+public class StartupOrchestrator {
+    private static final String TAG = "StartupOrchestrator";
+    private static final long FIRST_PAINT_TIMEOUT_MS = 10000;
+
+    public enum Phase { CRITICAL, AFTER_FIRST_PAINT }
+
+    private enum State { WAITING, RUNNING, DONE }
+
+    private static class Task {
+        final String name;
+        final Phase phase;
+        final Executor executor; // null = main thread
+        final Runnable action;
+        final List<String> dependsOn;
+        State state = State.WAITING;
+        long startedAt;
+
+        Task(String name, Phase phase, Executor executor, Runnable action, String[] dependsOn) {
+            this.name = name;
+            this.phase = phase;
+            this.executor = executor;
+            this.action = action;
+            this.dependsOn = Arrays.asList(dependsOn);
+        }
+    }
+
+    /**
+     * Notifica opzionale al termine di ogni task (sempre sul main thread)
+     */
+    public interface Listener {
+        void onTaskFinished(String name, long durationMs, boolean success);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private ExecutorService backgroundPool;
+    private Listener listener;
+    private boolean started = false;
+    private boolean firstPaintReleased = false;
+    private long startedAt;
+
+    private final Runnable firstPaintTimeout = () -> {
+        if (!firstPaintReleased) {
+            Log.w(TAG, "⏱️ No first paint after " + FIRST_PAINT_TIMEOUT_MS + "ms - releasing deferred tasks");
+            onFirstPaint();
+        }
+    };
+
+    public StartupOrchestrator addMain(String name, Phase phase, Runnable action, String... dependsOn) {
+        return add(new Task(name, phase, null, action, dependsOn));
+    }
+
+    /**
+     * executor null = pool condiviso dell'orchestratore
+     */
+    public StartupOrchestrator addBackground(String name, Phase phase, Executor executor, Runnable action, String... dependsOn) {
+        if (executor == null) {
+            executor = getBackgroundPool();
+        }
+        return add(new Task(name, phase, executor, action, dependsOn));
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Avvia il grafo: i task background pronti vengono sottomessi per primi,
+     * poi i task main pronti vengono eseguiti subito (inline, siamo già sul main thread)
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        for (Task task : tasks.values()) {
+            for (String dep : task.dependsOn) {
+                if (!tasks.containsKey(dep)) {
+                    throw new IllegalStateException("Startup task " + task.name + " depends on unknown task " + dep);
+                }
+            }
+        }
+        started = true;
+        startedAt = SystemClock.elapsedRealtime();
+        Log.i(TAG, "🚀 Startup graph started (" + tasks.size() + " tasks)");
+        mainHandler.postDelayed(firstPaintTimeout, FIRST_PAINT_TIMEOUT_MS);
+        dispatchReady();
+    }
+
+    /**
+     * Da chiamare al primo onPageFinished del WebView principale
+     */
+    public void onFirstPaint() {
+        if (firstPaintReleased) {
+            return;
+        }
+        firstPaintReleased = true;
+        mainHandler.removeCallbacks(firstPaintTimeout);
+        Log.i(TAG, "🎨 First paint after " + (SystemClock.elapsedRealtime() - startedAt) + "ms - releasing deferred tasks");
+        if (started) {
+            dispatchReady();
+        }
+    }
+
+    public boolean isDone(String name) {
+        Task task = tasks.get(name);
+        return task != null && task.state == State.DONE;
+    }
+
+    /**
+     * Da chiamare in onDestroy: i task in coda non vengono più avviati
+     */
+    public void shutdown() {
+        mainHandler.removeCallbacks(firstPaintTimeout);
+        if (backgroundPool != null) {
+            backgroundPool.shutdown();
+        }
+    }
+
+    private StartupOrchestrator add(Task task) {
+        if (started) {
+            throw new IllegalStateException("Cannot add startup task after start(): " + task.name);
+        }
+        if (tasks.containsKey(task.name)) {
+            throw new IllegalStateException("Duplicate startup task: " + task.name);
+        }
+        tasks.put(task.name, task);
+        return this;
+    }
+
+    private ExecutorService getBackgroundPool() {
+        if (backgroundPool == null) {
+            backgroundPool = Executors.newFixedThreadPool(2);
+        }
+        return backgroundPool;
+    }
+
+    private void dispatchReady() {
+        List<Task> mainReady = new ArrayList<>();
+        for (Task task : tasks.values()) {
+            if (!isReady(task)) {
+                continue;
+            }
+            task.state = State.RUNNING;
+            if (task.executor == null) {
+                mainReady.add(task);
+            } else {
+                submitBackground(task);
+            }
+        }
+        for (Task task : mainReady) {
+            runTask(task);
+        }
+    }
+
+    private boolean isReady(Task task) {
+        if (task.state != State.WAITING) {
+            return false;
+        }
+        if (task.phase == Phase.AFTER_FIRST_PAINT && !firstPaintReleased) {
+            return false;
+        }
+        for (String dep : task.dependsOn) {
+            if (tasks.get(dep).state != State.DONE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void submitBackground(Task task) {
+        try {
+            task.executor.execute(() -> runTask(task));
+        } catch (Exception e) {
+            // Executor già chiuso (activity distrutta durante l'avvio)
+            Log.w(TAG, "⚠️ Cannot submit startup task " + task.name + ": " + e.getMessage());
+        }
+    }
+
+    private void runTask(Task task) {
+        task.startedAt = SystemClock.elapsedRealtime();
+        boolean success = true;
+        try {
+            task.action.run();
+        } catch (Exception e) {
+            // Un task fallito non deve bloccare l'avvio: i dipendenti partono comunque
+            success = false;
+            Log.e(TAG, "❌ Startup task " + task.name + " failed", e);
+        }
+        long duration = SystemClock.elapsedRealtime() - task.startedAt;
+        final boolean ok = success;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            onTaskFinished(task, duration, ok);
+        } else {
+            mainHandler.post(() -> onTaskFinished(task, duration, ok));
+        }
+    }
+
+    private void onTaskFinished(Task task, long durationMs, boolean success) {
+        task.state = State.DONE;
+        Log.d(TAG, (success ? "✅ " : "❌ ") + task.name + " done in " + durationMs + "ms ("
+                + (task.executor == null ? "main" : "background") + ")");
+        if (listener != null) {
+            listener.onTaskFinished(task.name, durationMs, success);
+        }
+        dispatchReady();
+        if (allDone()) {
+            Log.i(TAG, "🏁 Startup graph completed in " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+        }
+    }
+
+    private boolean allDone() {
+        for (Task task : tasks.values()) {
+            if (task.state != State.DONE) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
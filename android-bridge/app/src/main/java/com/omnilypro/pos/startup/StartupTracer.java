@@ -0,0 +1,152 @@
+package com.omnilypro.pos.startup;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Timeline di cold start: millisecondi dall'avvio del processo ad ogni fase
+ *
+ * Le ultime HISTORY_SIZE timeline restano nelle SharedPreferences; l'ultima viene
+ * inviata da HeartbeatWorker nei campi startup_* del dispositivo.
+ */
+public class StartupTracer {
+    private static final String TAG = "StartupTracer";
+    private static final String PREFS_NAME = "startup_trace";
+    private static final String KEY_HISTORY = "history";
+    private static final int HISTORY_SIZE = 10;
+
+    // Fasi in ordine atteso
+    public static final String PHASE_ACTIVITY_CREATE = "activity_create";
+    public static final String PHASE_SPLASH_SHOWN = "splash_shown";
+    public static final String PHASE_WEBVIEW_CREATED = "webview_created";
+    public static final String PHASE_SDK_INIT_DONE = "sdk_init_done";
+    public static final String PHASE_FIRST_PAGE_FINISHED = "first_page_finished";
+    public static final String PHASE_BRIDGE_READY = "bridge_ready";
+    public static final String PHASE_FIRST_BRIDGE_CALL = "first_bridge_call";
+
+    // Fallback pre-Nougat: caricamento della classe ≈ avvio processo
+    private static final long CLASS_LOADED_AT = SystemClock.elapsedRealtime();
+
+    private static StartupTracer instance;
+    private final SharedPreferences prefs;
+    private final long processStartAt;
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private long sessionStartedAtWall;
+    private long sessionBaseAt;
+    private boolean coldStart;
+    private String webBundleVersion;
+
+    private StartupTracer(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.processStartAt = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                ? Process.getStartElapsedRealtime()
+                : CLASS_LOADED_AT;
+    }
+
+    public static synchronized StartupTracer getInstance(Context context) {
+        if (instance == null) {
+            instance = new StartupTracer(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Nuova sessione ad ogni onCreate dell'activity principale.
+     * Cold start = primo onCreate del processo (gli altri partono da activity_create).
+     */
+    public synchronized void begin() {
+        coldStart = sessionStartedAtWall == 0;
+        phases.clear();
+        sessionStartedAtWall = System.currentTimeMillis();
+        sessionBaseAt = coldStart ? processStartAt : SystemClock.elapsedRealtime();
+        mark(PHASE_ACTIVITY_CREATE);
+    }
+
+    /**
+     * Registra solo la prima occorrenza di ogni fase (thread-safe, chiamabile dai thread del bridge)
+     */
+    public synchronized void mark(String phase) {
+        if (sessionStartedAtWall == 0 || phases.containsKey(phase)) {
+            return;
+        }
+        long elapsed = SystemClock.elapsedRealtime() - sessionBaseAt;
+        phases.put(phase, elapsed);
+        Log.i(TAG, "⏱️ " + phase + " +" + elapsed + "ms" + (coldStart ? " (cold)" : " (warm)"));
+        persist();
+    }
+
+    public synchronized boolean isMarked(String phase) {
+        return phases.containsKey(phase);
+    }
+
+    public synchronized void setWebBundleVersion(String version) {
+        this.webBundleVersion = version;
+    }
+
+    /**
+     * Ultima timeline registrata (anche di un processo precedente), null se non c'è
+     */
+    public synchronized JSONObject getLatest() {
+        JSONArray history = readHistory();
+        return history.length() > 0 ? history.optJSONObject(history.length() - 1) : null;
+    }
+
+    public synchronized JSONArray getHistory() {
+        return readHistory();
+    }
+
+    private void persist() {
+        try {
+            JSONObject timeline = new JSONObject();
+            timeline.put("started_at", sessionStartedAtWall);
+            timeline.put("cold", coldStart);
+            if (webBundleVersion != null) {
+                timeline.put("web_bundle", webBundleVersion);
+            }
+            JSONObject phaseObj = new JSONObject();
+            for (Map.Entry<String, Long> entry : phases.entrySet()) {
+                phaseObj.put(entry.getKey(), entry.getValue());
+            }
+            timeline.put("phases", phaseObj);
+
+            // La sessione corrente sostituisce la propria voce (stesso started_at)
+            JSONArray history = readHistory();
+            List<JSONObject> previous = new ArrayList<>();
+            for (int i = 0; i < history.length(); i++) {
+                JSONObject item = history.optJSONObject(i);
+                if (item != null && item.optLong("started_at") != sessionStartedAtWall) {
+                    previous.add(item);
+                }
+            }
+            JSONArray updated = new JSONArray();
+            for (int i = Math.max(0, previous.size() - HISTORY_SIZE + 1); i < previous.size(); i++) {
+                updated.put(previous.get(i));
+            }
+            updated.put(timeline);
+            prefs.edit().putString(KEY_HISTORY, updated.toString()).apply();
+        } catch (JSONException e) {
+            Log.e(TAG, "Error saving startup timeline", e);
+        }
+    }
+
+    private JSONArray readHistory() {
+        try {
+            return new JSONArray(prefs.getString(KEY_HISTORY, "[]"));
+        } catch (JSONException e) {
+            return new JSONArray();
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.omnilypro.pos.web;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import com.omnilypro.pos.mdm.MdmConfig;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Proxy di ridimensionamento per le immagini mostrate nel WebView (premi, gallerie, loghi)
+ *
+ * Il renderer non decodifica più foto da 12 MP per mostrarle come miniature:
+ * l'originale viene decodificato qui con inSampleSize, scalato alla dimensione richiesta,
+ * ricodificato in WebP e tenuto in una cache LRU su disco.
+ *
+ * Dimensione di destinazione (px fisici), in ordine:
+ * 1. query pos_w / pos_h aggiunta dal web app (rimossa prima del download)
+ * 2. dimensione dell'elemento riportata con OmnilyPOS.reportImageSize(url, w, h) (px CSS)
+ * 3. default: lato lungo dello schermo
+ */
+public class ImageDownscaleProxy {
+    private static final String TAG = "ImageDownscaleProxy";
+    private static final String PARAM_WIDTH = "pos_w";
+    private static final String PARAM_HEIGHT = "pos_h";
+    private static final String STORAGE_PUBLIC_PREFIX = "/storage/v1/object/public/";
+    private static final long MAX_CACHE_BYTES = 40L * 1024 * 1024; // 40 MB
+    private static final int SIZE_BUCKET_PX = 64;
+    private static final int WEBP_QUALITY = 80;
+    // Un marker .skip (già piccola / non decodificabile) vale un giorno, poi l'immagine viene ritentata
+    private static final long SKIP_TTL_MS = 24L * 60 * 60 * 1000;
+
+    // GIF (animate) e SVG (vettoriali) passano invariati
+    private static final Pattern RASTER_IMAGE = Pattern.compile(".*\\.(jpe?g|png|webp|bmp)$", Pattern.CASE_INSENSITIVE);
+
+    private static ImageDownscaleProxy instance;
+
+    private final OkHttpClient httpClient;
+    private final File cacheDir;
+    private final String supabaseHost;
+    private final float density;
+    private final int screenMaxPx;
+    // Max 2 decodifiche in parallelo: più richieste IO del WebView insieme finirebbero la heap
+    private final Semaphore decodePermits = new Semaphore(2);
+    private final ExecutorService maintenanceExecutor = Executors.newSingleThreadExecutor();
+    private final LruCache<String, int[]> sizeHints = new LruCache<>(256);
+
+    private ImageDownscaleProxy(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.httpClient = WebCacheManager.getInstance(appContext).getHttpClient();
+        this.cacheDir = new File(appContext.getCacheDir(), "image_proxy");
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.e(TAG, "❌ Cannot create cache dir: " + cacheDir);
+        }
+        this.supabaseHost = Uri.parse(MdmConfig.SUPABASE_URL).getHost();
+        DisplayMetrics metrics = appContext.getResources().getDisplayMetrics();
+        this.density = metrics.density;
+        this.screenMaxPx = Math.max(metrics.widthPixels, metrics.heightPixels);
+    }
+
+    public static synchronized ImageDownscaleProxy getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageDownscaleProxy(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Dimensione dell'elemento in px CSS riportata dal web app (bridge)
+     */
+    public void reportSize(String url, int cssWidth, int cssHeight) {
+        if (url == null || cssWidth <= 0 && cssHeight <= 0) {
+            return;
+        }
+        sizeHints.put(stripSizeParams(Uri.parse(url)).toString(),
+                new int[]{Math.round(cssWidth * density), Math.round(cssHeight * density)});
+    }
+
+    /**
+     * Da chiamare in WebViewClient.shouldInterceptRequest (thread IO del WebView)
+     *
+     * @return l'immagine ridimensionata, oppure null per lasciare la richiesta al WebView
+     */
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getMethod())) {
+            return null;
+        }
+        Uri uri = request.getUrl();
+        String path = uri.getPath();
+        if (!"https".equals(uri.getScheme()) || path == null || !RASTER_IMAGE.matcher(path).matches()) {
+            return null;
+        }
+
+        boolean hinted = uri.getQueryParameter(PARAM_WIDTH) != null || uri.getQueryParameter(PARAM_HEIGHT) != null;
+        boolean storageImage = supabaseHost.equals(uri.getHost()) && path.startsWith(STORAGE_PUBLIC_PREFIX);
+        if (!hinted && !storageImage) {
+            return null;
+        }
+
+        Uri original = stripSizeParams(uri);
+        int[] target = targetSize(uri, original);
+        String key = WebCacheManager.sha1(original + "|" + target[0] + "x" + target[1]);
+        File cached = new File(cacheDir, key + ".webp");
+        // Marker: immagine già piccola, la carica il WebView (con la sua cache HTTP)
+        File passThrough = new File(cacheDir, key + ".skip");
+
+        try {
+            if (cached.exists()) {
+                cached.setLastModified(System.currentTimeMillis());
+                return respond("image/webp", new FileInputStream(cached));
+            }
+            if (passThrough.exists()) {
+                if (System.currentTimeMillis() - passThrough.lastModified() < SKIP_TTL_MS) {
+                    return null;
+                }
+                passThrough.delete();
+            }
+
+            byte[] data = download(original.toString());
+            if (data == null) {
+                return null;
+            }
+            byte[] webp = downscale(data, target[0], target[1]);
+            if (webp == null) {
+                // Già piccola o non decodificabile: l'originale va bene così
+                passThrough.createNewFile();
+                trimToBudgetAsync();
+                return respond(MimeTypes.fromPath(path), new ByteArrayInputStream(data));
+            }
+            store(cached, webp);
+            Log.d(TAG, "🖼️ " + path.substring(path.lastIndexOf('/') + 1) + ": " + (data.length / 1024) + " KB → "
+                    + (webp.length / 1024) + " KB (" + target[0] + "x" + target[1] + ")");
+            return respond("image/webp", new ByteArrayInputStream(webp));
+        } catch (Exception | OutOfMemoryError e) {
+            // OOM da decode/createScaledBitmap: sul thread IO del WebView farebbe crashare il POS
+            Log.w(TAG, "⚠️ Image proxy failed for " + path + ": " + e);
+            return null;
+        }
+    }
+
+    // ============================================================================
+    // Ridimensionamento
+    // ============================================================================
+
+    private int[] targetSize(Uri uri, Uri original) {
+        int width = parseDimension(uri.getQueryParameter(PARAM_WIDTH));
+        int height = parseDimension(uri.getQueryParameter(PARAM_HEIGHT));
+        if (width == 0 && height == 0) {
+            int[] hint = sizeHints.get(original.toString());
+            if (hint != null) {
+                width = hint[0];
+                height = hint[1];
+            }
+        }
+        if (width == 0 && height == 0) {
+            width = screenMaxPx;
+            height = screenMaxPx;
+        }
+        // Bucket da 64px: elementi di dimensioni simili condividono la stessa voce di cache
+        return new int[]{bucket(width), bucket(height)};
+    }
+
+    private static int parseDimension(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int bucket(int px) {
+        return px <= 0 ? 0 : ((px + SIZE_BUCKET_PX - 1) / SIZE_BUCKET_PX) * SIZE_BUCKET_PX;
+    }
+
+    /**
+     * @return WebP ridimensionato, null se l'immagine entra già nella dimensione richiesta
+     */
+    private byte[] downscale(byte[] data, int maxWidth, int maxHeight) throws InterruptedException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        float scale = scaleFor(bounds.outWidth, bounds.outHeight, maxWidth, maxHeight);
+        if (scale >= 1f) {
+            return null;
+        }
+        int targetWidth = Math.max(1, Math.round(bounds.outWidth * scale));
+        int targetHeight = Math.max(1, Math.round(bounds.outHeight * scale));
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize(bounds.outWidth, bounds.outHeight, targetWidth, targetHeight);
+
+        decodePermits.acquire();
+        Bitmap decoded = null;
+        Bitmap scaled = null;
+        try {
+            decoded = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            if (decoded == null) {
+                return null;
+            }
+            scaled = decoded.getWidth() > targetWidth
+                    ? Bitmap.createScaledBitmap(decoded, targetWidth, targetHeight, true)
+                    : decoded;
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            scaled.compress(webpFormat(), WEBP_QUALITY, out);
+            return out.toByteArray();
+        } finally {
+            if (scaled != null && scaled != decoded) {
+                scaled.recycle();
+            }
+            if (decoded != null) {
+                decoded.recycle();
+            }
+            decodePermits.release();
+        }
+    }
+
+    static float scaleFor(int width, int height, int maxWidth, int maxHeight) {
+        float scaleX = maxWidth > 0 ? maxWidth / (float) width : Float.MAX_VALUE;
+        float scaleY = maxHeight > 0 ? maxHeight / (float) height : Float.MAX_VALUE;
+        return Math.min(scaleX, scaleY);
+    }
+
+    /**
+     * Potenza di 2 più grande che mantiene la bitmap decodificata >= destinazione
+     */
+    static int sampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sample = 1;
+        while (width / (sample * 2) >= targetWidth && height / (sample * 2) >= targetHeight) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    @SuppressWarnings("deprecation")
+    static Bitmap.CompressFormat webpFormat() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP;
+    }
+
+    // ============================================================================
+    // Rete, cache e risposte
+    // ============================================================================
+
+    private byte[] download(String url) throws IOException {
+        Request request = new Request.Builder().url(url).build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (response.code() != 200 || body == null) {
+                return null;
+            }
+            return body.bytes();
+        }
+    }
+
+    private void store(File target, byte[] webp) throws IOException {
+        // Temporaneo per richiesta: due richieste concorrenti della stessa immagine non scrivono lo stesso file
+        File tmp = File.createTempFile(target.getName(), ".tmp", cacheDir);
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(webp);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            return;
+        }
+        trimToBudgetAsync();
+    }
+
+    private void trimToBudgetAsync() {
+        maintenanceExecutor.submit(() -> {
+            File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(".webp") || name.endsWith(".skip"));
+            if (files == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long total = 0;
+            List<File> list = new ArrayList<>();
+            for (File file : files) {
+                if (file.getName().endsWith(".skip") && now - file.lastModified() >= SKIP_TTL_MS) {
+                    file.delete(); // Marker scaduto
+                    continue;
+                }
+                list.add(file);
+                total += file.length();
+            }
+            if (total <= MAX_CACHE_BYTES) {
+                return;
+            }
+            Collections.sort(list, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (File file : list) {
+                if (total <= MAX_CACHE_BYTES) {
+                    break;
+                }
+                total -= file.length();
+                file.delete();
+            }
+            Log.i(TAG, "🧹 Image cache trimmed to " + (total / 1024) + " KB");
+        });
+    }
+
+    private static WebResourceResponse respond(String mime, java.io.InputStream in) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Cache-Control", "max-age=86400");
+        return new WebResourceResponse(mime, null, 200, "OK", headers, in);
+    }
+
+    private static Uri stripSizeParams(Uri uri) {
+        if (uri.getQueryParameter(PARAM_WIDTH) == null && uri.getQueryParameter(PARAM_HEIGHT) == null) {
+            return uri;
+        }
+        Uri.Builder builder = uri.buildUpon().clearQuery();
+        for (String name : uri.getQueryParameterNames()) {
+            String lower = name.toLowerCase(Locale.US);
+            if (lower.equals(PARAM_WIDTH) || lower.equals(PARAM_HEIGHT)) {
+                continue;
+            }
+            for (String value : uri.getQueryParameters(name)) {
+                builder.appendQueryParameter(name, value);
+            }
+        }
+        return builder.build();
+    }
+}
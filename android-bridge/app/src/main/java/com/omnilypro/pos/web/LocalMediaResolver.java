@@ -0,0 +1,498 @@
+package com.omnilypro.pos.web;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebSettings;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Font e media statici serviti in locale al WebView, con supporto Range (206)
+ *
+ * Sorgenti in ordine:
+ * 1. bundle web attivo (es. /sounds/coinrain.mp3 dell'app shell)
+ * 2. file nell'APK: assets/media/<host>/<path> (font-awesome, leaflet: media-seed/ verificato da copyMediaSeed)
+ * 3. cache su disco per CDN con URL versionati (font-awesome, leaflet, Google Fonts), scaricati una volta sola
+ *
+ * I font non bloccano più il primo paint e i suoni partono senza attendere la rete. Google Fonts
+ * (CSS e file diversi per user agent) non è impacchettato: il primo avvio lo scarica dalla rete,
+ * con lo user agent del WebView.
+ *
+ * Nessun header CORS inventato: si ripete solo l'Access-Control-Allow-Origin inviato dall'origine
+ * (registrato in media-seed.json per l'APK, nel .meta per la cache su disco).
+ */
+public class LocalMediaResolver {
+    private static final String TAG = "LocalMediaResolver";
+    private static final String APK_MEDIA_DIR = "media";
+    private static final String APK_MEDIA_INDEX = APK_MEDIA_DIR + "/media-seed.json";
+    private static final long MAX_CACHE_BYTES = 50L * 1024 * 1024; // 50 MB
+
+    private static final Pattern MEDIA_EXT = Pattern.compile(
+            ".*\\.(woff2?|ttf|otf|eot|mp3|wav|ogg|m4a|mp4|webm)$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final Pattern UNPKG_VERSIONED = Pattern.compile("^/[^/]+@\\d[^/]*/.*");
+
+    // URL versionati: il contenuto non cambia mai, nessuna rivalidazione
+    private static final Set<String> IMMUTABLE_HOSTS = new HashSet<>(java.util.Arrays.asList(
+            "fonts.gstatic.com", "cdnjs.cloudflare.com"));
+    private static final String GOOGLE_FONTS_CSS_HOST = "fonts.googleapis.com";
+    private static final long GOOGLE_FONTS_CSS_TTL_MS = 7L * 24 * 3_600_000;
+    private static final long APP_MEDIA_TTL_MS = 24L * 3_600_000;
+
+    private static LocalMediaResolver instance;
+
+    private final Context appContext;
+    private final AssetManager assets;
+    private final WebBundleManager bundleManager;
+    private final OkHttpClient httpClient;
+    private final File cacheDir;
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+    private final Set<String> inFlight = Collections.synchronizedSet(new HashSet<>());
+    private volatile JSONObject apkIndex;
+    private volatile String defaultUserAgent;
+
+    private LocalMediaResolver(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.appContext = appContext;
+        this.assets = appContext.getAssets();
+        this.bundleManager = WebBundleManager.getInstance(appContext);
+        this.httpClient = WebCacheManager.getInstance(appContext).getHttpClient();
+        this.cacheDir = new File(appContext.getFilesDir(), "media_cache");
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.e(TAG, "❌ Cannot create cache dir: " + cacheDir);
+        }
+    }
+
+    public static synchronized LocalMediaResolver getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalMediaResolver(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Da chiamare in WebViewClient.shouldInterceptRequest prima del bundle (che non gestisce Range)
+     *
+     * @return la risposta locale, oppure null per lasciare la richiesta agli altri livelli
+     */
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getMethod())) {
+            return null;
+        }
+        Uri uri = request.getUrl();
+        String host = uri.getHost();
+        String path = uri.getPath();
+        if (!"https".equals(uri.getScheme()) || host == null || path == null) {
+            return null;
+        }
+
+        try {
+            boolean appHost = host.equals(WebCacheManager.APP_HOST) || host.equals("www." + WebCacheManager.APP_HOST);
+            boolean media = MEDIA_EXT.matcher(path).matches();
+
+            if (appHost && media) {
+                WebResourceResponse local = serveFromBundle(request, path.substring(1));
+                if (local == null) {
+                    local = serveFromApk(request, host, path);
+                }
+                return local != null ? local : serveFromDiskCache(request, APP_MEDIA_TTL_MS);
+            }
+
+            long ttl = cacheTtlFor(host, path);
+            if (ttl == 0) {
+                return null;
+            }
+            WebResourceResponse packaged = serveFromApk(request, host, path);
+            return packaged != null ? packaged : serveFromDiskCache(request, ttl);
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Media intercept failed for " + uri + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return TTL di rivalidazione (Long.MAX_VALUE = immutabile), 0 = URL non gestito
+     */
+    private static long cacheTtlFor(String host, String path) {
+        if (IMMUTABLE_HOSTS.contains(host)) {
+            return Long.MAX_VALUE;
+        }
+        if (host.equals("unpkg.com") && UNPKG_VERSIONED.matcher(path).matches()) {
+            return Long.MAX_VALUE;
+        }
+        if (host.equals(GOOGLE_FONTS_CSS_HOST)) {
+            return GOOGLE_FONTS_CSS_TTL_MS;
+        }
+        return 0;
+    }
+
+    // ============================================================================
+    // Sorgenti
+    // ============================================================================
+
+    private WebResourceResponse serveFromBundle(WebResourceRequest request, String path) throws IOException {
+        WebBundleManager.ActiveBundle bundle = bundleManager.getActiveBundle();
+        if (bundle == null) {
+            return null;
+        }
+        WebBundleManifest.FileInfo info = bundle.manifest.files.get(path);
+        if (info == null || info.size < 0) {
+            return null;
+        }
+        return respond(request, MimeTypes.fromPath(path), info.size, bundle.open(path), null);
+    }
+
+    private WebResourceResponse serveFromApk(WebResourceRequest request, String host, String path) {
+        String assetPath = APK_MEDIA_DIR + "/" + host + path;
+        try {
+            InputStream in = assets.open(assetPath);
+            JSONObject seeded = apkIndex().optJSONObject(host + path);
+            String cors = seeded != null && !seeded.isNull("cors") ? seeded.optString("cors") : null;
+            // AssetInputStream.available() = byte rimanenti dell'asset
+            return respond(request, MimeTypes.fromPath(path), in.available(), in, cors);
+        } catch (IOException e) {
+            return null; // non impacchettato
+        }
+    }
+
+    private WebResourceResponse serveFromDiskCache(WebResourceRequest request, long ttlMs) throws IOException {
+        String url = request.getUrl().toString();
+        String name = WebCacheManager.sha1(url);
+        File body = new File(cacheDir, name + ".bin");
+        File meta = new File(cacheDir, name + ".meta");
+
+        if (body.exists() && meta.exists()) {
+            JSONObject info = readMeta(meta);
+            if (info != null) {
+                body.setLastModified(System.currentTimeMillis());
+                if (ttlMs != Long.MAX_VALUE && System.currentTimeMillis() - info.optLong("storedAt") > ttlMs) {
+                    refreshAsync(url, name, userAgent(request));
+                }
+                return respond(request, info.optString("contentType", MimeTypes.fromPath(request.getUrl().getPath())),
+                        body.length(), new FileInputStream(body), corsOf(info));
+            }
+        }
+
+        // Primo accesso: download completo (poi sempre dal disco)
+        if (!download(url, name, userAgent(request))) {
+            return null;
+        }
+        trimToBudgetAsync();
+        JSONObject info = readMeta(meta);
+        String contentType = info != null ? info.optString("contentType") : MimeTypes.fromPath(request.getUrl().getPath());
+        return respond(request, contentType, body.length(), new FileInputStream(body), info != null ? corsOf(info) : null);
+    }
+
+    private boolean download(String url, String name, String userAgent) throws IOException {
+        // Stesso user agent del WebView: Google Fonts sceglie CSS e formati dei font in base a questo
+        Request request = new Request.Builder().url(url).header("User-Agent", userAgent).build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            ResponseBody responseBody = response.body();
+            if (response.code() != 200 || responseBody == null) {
+                return false;
+            }
+            // Temporaneo per richiesta: due primi accessi concorrenti allo stesso URL non scrivono lo stesso file
+            File tmp = File.createTempFile(name, ".tmp", cacheDir);
+            try (InputStream in = responseBody.byteStream(); FileOutputStream out = new FileOutputStream(tmp)) {
+                byte[] buffer = new byte[16384];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                out.getFD().sync();
+            } catch (IOException e) {
+                tmp.delete();
+                throw e;
+            }
+            // rename atomico: sostituisce il .bin esistente senza esporre un file parziale
+            if (!tmp.renameTo(new File(cacheDir, name + ".bin"))) {
+                tmp.delete();
+                return false;
+            }
+            String contentType = response.header("Content-Type", MimeTypes.fromPath(Uri.parse(url).getPath()));
+            writeMeta(new File(cacheDir, name + ".meta"), url, contentType, response.header("Access-Control-Allow-Origin"));
+            Log.d(TAG, "💾 Cached " + url);
+            return true;
+        }
+    }
+
+    private void refreshAsync(String url, String name, String userAgent) {
+        if (!inFlight.add(name)) {
+            return;
+        }
+        backgroundExecutor.submit(() -> {
+            try {
+                download(url, name, userAgent);
+            } catch (IOException e) {
+                Log.d(TAG, "Refresh failed (offline?) for " + url);
+            } finally {
+                inFlight.remove(name);
+            }
+        });
+    }
+
+    // ============================================================================
+    // Risposte con Range
+    // ============================================================================
+
+    /**
+     * 200 completo oppure 206 per "Range: bytes=a-b" (necessario per audio/video e seek)
+     */
+    private static WebResourceResponse respond(WebResourceRequest request, String contentType, long length,
+                                               InputStream in, String cors) throws IOException {
+        String mime = contentType;
+        int semicolon = contentType.indexOf(';');
+        if (semicolon >= 0) {
+            mime = contentType.substring(0, semicolon).trim();
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        if (cors != null) {
+            headers.put("Access-Control-Allow-Origin", cors);
+        }
+        headers.put("Accept-Ranges", "bytes");
+        headers.put("Cache-Control", "max-age=31536000");
+
+        String range = header(request, "Range");
+        Matcher matcher = range != null ? RANGE.matcher(range.trim()) : null;
+        if (matcher == null || !matcher.matches() || length <= 0) {
+            headers.put("Content-Length", String.valueOf(length));
+            return new WebResourceResponse(mime, MimeTypes.charsetFor(mime), 200, "OK", headers, in);
+        }
+
+        long start;
+        long end;
+        if (matcher.group(1).isEmpty()) {
+            // bytes=-N: ultimi N byte
+            long suffix = matcher.group(2).isEmpty() ? 0 : Long.parseLong(matcher.group(2));
+            start = Math.max(0, length - suffix);
+            end = length - 1;
+        } else {
+            start = Long.parseLong(matcher.group(1));
+            end = matcher.group(2).isEmpty() ? length - 1 : Math.min(Long.parseLong(matcher.group(2)), length - 1);
+        }
+
+        if (start >= length || start > end) {
+            in.close();
+            headers.put("Content-Range", "bytes */" + length);
+            return new WebResourceResponse(mime, null, 416, "Range Not Satisfiable", headers,
+                    new java.io.ByteArrayInputStream(new byte[0]));
+        }
+
+        skipFully(in, start);
+        long count = end - start + 1;
+        headers.put("Content-Range", "bytes " + start + "-" + end + "/" + length);
+        headers.put("Content-Length", String.valueOf(count));
+        return new WebResourceResponse(mime, MimeTypes.charsetFor(mime), 206, "Partial Content", headers,
+                new BoundedInputStream(in, count));
+    }
+
+    private String userAgent(WebResourceRequest request) {
+        String userAgent = header(request, "User-Agent");
+        if (userAgent != null) {
+            return userAgent;
+        }
+        if (defaultUserAgent == null) {
+            defaultUserAgent = WebSettings.getDefaultUserAgent(appContext);
+        }
+        return defaultUserAgent;
+    }
+
+    private static String header(WebResourceRequest request, String name) {
+        for (Map.Entry<String, String> header : request.getRequestHeaders().entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static void skipFully(InputStream in, long bytes) throws IOException {
+        long remaining = bytes;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("Unexpected end of stream while skipping");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int value = super.read();
+            if (value >= 0) {
+                remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(count, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+
+    // ============================================================================
+    // Metadata e budget
+    // ============================================================================
+
+    private static JSONObject readMeta(File meta) {
+        try (FileInputStream in = new FileInputStream(meta)) {
+            byte[] data = new byte[(int) meta.length()];
+            int offset = 0;
+            while (offset < data.length) {
+                int read = in.read(data, offset, data.length - offset);
+                if (read < 0) break;
+                offset += read;
+            }
+            return new JSONObject(new String(data, 0, offset, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private JSONObject apkIndex() {
+        JSONObject index = apkIndex;
+        if (index == null) {
+            try (InputStream in = assets.open(APK_MEDIA_INDEX)) {
+                java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                index = new JSONObject(new String(out.toByteArray(), StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                index = new JSONObject(); // Nessun media seed nell'APK
+            }
+            apkIndex = index;
+        }
+        return index;
+    }
+
+    private static String corsOf(JSONObject meta) {
+        return meta.isNull("cors") ? null : meta.optString("cors", null);
+    }
+
+    private static void writeMeta(File meta, String url, String contentType, String cors) throws IOException {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("url", url);
+            json.put("contentType", contentType);
+            json.putOpt("cors", cors);
+            json.put("storedAt", System.currentTimeMillis());
+            File tmp = File.createTempFile(meta.getName(), ".tmp", meta.getParentFile());
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            if (!tmp.renameTo(meta)) {
+                tmp.delete();
+                throw new IOException("Cannot write " + meta);
+            }
+        } catch (org.json.JSONException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void trimToBudgetAsync() {
+        backgroundExecutor.submit(() -> {
+            // Temporanei orfani (download interrotti da un kill del processo)
+            File[] orphans = cacheDir.listFiles((dir, name) -> name.endsWith(".tmp"));
+            if (orphans != null) {
+                for (File orphan : orphans) {
+                    if (System.currentTimeMillis() - orphan.lastModified() > 3_600_000L) {
+                        orphan.delete();
+                    }
+                }
+            }
+            File[] bodies = cacheDir.listFiles((dir, name) -> name.endsWith(".bin"));
+            if (bodies == null) {
+                return;
+            }
+            long total = 0;
+            List<File> files = new ArrayList<>();
+            for (File body : bodies) {
+                files.add(body);
+                total += body.length();
+            }
+            if (total <= MAX_CACHE_BYTES) {
+                return;
+            }
+            Collections.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (File body : files) {
+                if (total <= MAX_CACHE_BYTES) {
+                    break;
+                }
+                total -= body.length();
+                String name = body.getName();
+                new File(cacheDir, name.substring(0, name.length() - ".bin".length()) + ".meta").delete();
+                body.delete();
+            }
+            Log.i(TAG, "🧹 Media cache trimmed to " + (total / 1024) + " KB");
+        });
+    }
+
+    public void clear() {
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+}
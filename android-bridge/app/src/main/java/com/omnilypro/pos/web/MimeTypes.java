@@ -0,0 +1,65 @@
+package com.omnilypro.pos.web;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * MIME type per i file serviti localmente al WebView
+ * (MimeTypeMap di Android non conosce mjs/woff2/webp sui device più vecchi)
+ */
+public final class MimeTypes {
+    private static final Map<String, String> TYPES = new HashMap<>();
+
+    static {
+        TYPES.put("html", "text/html");
+        TYPES.put("htm", "text/html");
+        TYPES.put("js", "application/javascript");
+        TYPES.put("mjs", "application/javascript");
+        TYPES.put("css", "text/css");
+        TYPES.put("json", "application/json");
+        TYPES.put("map", "application/json");
+        TYPES.put("txt", "text/plain");
+        TYPES.put("xml", "application/xml");
+        TYPES.put("svg", "image/svg+xml");
+        TYPES.put("png", "image/png");
+        TYPES.put("jpg", "image/jpeg");
+        TYPES.put("jpeg", "image/jpeg");
+        TYPES.put("gif", "image/gif");
+        TYPES.put("webp", "image/webp");
+        TYPES.put("ico", "image/x-icon");
+        TYPES.put("woff", "font/woff");
+        TYPES.put("woff2", "font/woff2");
+        TYPES.put("ttf", "font/ttf");
+        TYPES.put("otf", "font/otf");
+        TYPES.put("mp3", "audio/mpeg");
+        TYPES.put("wav", "audio/wav");
+        TYPES.put("ogg", "audio/ogg");
+        TYPES.put("mp4", "video/mp4");
+        TYPES.put("webm", "video/webm");
+    }
+
+    private MimeTypes() {
+    }
+
+    public static String fromPath(String path) {
+        int dot = path.lastIndexOf('.');
+        if (dot < 0 || dot == path.length() - 1) {
+            return "application/octet-stream";
+        }
+        String type = TYPES.get(path.substring(dot + 1).toLowerCase(Locale.US));
+        return type != null ? type : "application/octet-stream";
+    }
+
+    /**
+     * Charset da dichiarare nella WebResourceResponse (solo per i tipi testuali)
+     */
+    public static String charsetFor(String mimeType) {
+        if (mimeType.startsWith("text/") || mimeType.equals("application/javascript")
+                || mimeType.equals("application/json") || mimeType.equals("image/svg+xml")
+                || mimeType.equals("application/xml")) {
+            return "utf-8";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,66 @@
+package com.omnilypro.pos.web;
+
+import android.content.Context;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+/**
+ * Catena di interception nativa, legata all'Application e non all'Activity
+ *
+ * Il client dei Service Worker è globale per il processo e sopravvive all'Activity: se catturasse
+ * MainActivityFinal la tratterrebbe (e un'Activity ricreata non verrebbe mai ricollegata).
+ * Tutti gli anelli sono singleton con applicationContext, quindi SW, pagina e prefetch condividono
+ * la stessa istanza.
+ */
+public class NativeRequestChain implements RequestInterceptor {
+    private static NativeRequestChain instance;
+
+    private final LocalMediaResolver localMediaResolver;
+    private final ImageDownscaleProxy imageProxy;
+    private final WebBundleManager webBundleManager;
+    private final WebCacheManager webCacheManager;
+    private final SupabaseReadCache supabaseReadCache;
+
+    private NativeRequestChain(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.localMediaResolver = LocalMediaResolver.getInstance(appContext);
+        this.imageProxy = ImageDownscaleProxy.getInstance(appContext);
+        this.webBundleManager = WebBundleManager.getInstance(appContext);
+        this.webCacheManager = WebCacheManager.getInstance(appContext);
+        this.supabaseReadCache = SupabaseReadCache.getInstance(appContext);
+    }
+
+    public static synchronized NativeRequestChain getInstance(Context context) {
+        if (instance == null) {
+            instance = new NativeRequestChain(context);
+        }
+        return instance;
+    }
+
+    /**
+     * @return la risposta locale/in cache, oppure null per lasciare la richiesta al WebView
+     */
+    @Override
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        // Font e media prima del bundle: servono le risposte parziali (Range) per l'audio
+        WebResourceResponse media = localMediaResolver.intercept(request);
+        if (media != null) {
+            return media;
+        }
+        // Immagini grandi (premi, gallerie) ridimensionate prima che le decodifichi il renderer
+        WebResourceResponse image = imageProxy.intercept(request);
+        if (image != null) {
+            return image;
+        }
+        WebResourceResponse local = webBundleManager.intercept(request);
+        if (local != null) {
+            return local;
+        }
+        WebResourceResponse cached = webCacheManager.intercept(request);
+        if (cached != null) {
+            return cached;
+        }
+        // GET Supabase in sola lettura: stale-while-revalidate dal disco
+        return supabaseReadCache.intercept(request);
+    }
+}
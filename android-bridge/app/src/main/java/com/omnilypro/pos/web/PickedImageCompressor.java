@@ -0,0 +1,279 @@
+package com.omnilypro.pos.web;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ridimensiona e comprime le immagini scelte dal file chooser del WebView prima dell'upload
+ *
+ * Foto da fotocamera/galleria (4-12 MP, 3-8 MB) diventano copie JPEG/WebP ruotate secondo EXIF
+ * e limitate alle dimensioni chieste dal web app con OmnilyPOS.setImagePickerLimits().
+ * PNG/WebP e immagini con trasparenza (loghi) restano lossless: in JPEG lo sfondo diventerebbe nero.
+ * Le copie stanno in cacheDir/picked_images e vengono rimosse dopo un giorno.
+ */
+public class PickedImageCompressor {
+    private static final String TAG = "PickedImageCompressor";
+    private static final long MAX_FILE_AGE_MS = 24 * 60 * 60 * 1000L;
+    private static final int MIN_QUALITY = 50;
+
+    private static final int DEFAULT_MAX_SIDE = 1600;
+    private static final int DEFAULT_QUALITY = 82;
+
+    public interface Callback {
+        void onResult(Uri[] uris);
+    }
+
+    private static PickedImageCompressor instance;
+
+    private final ContentResolver resolver;
+    private final File outputDir;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Limiti impostati dal web app (validi fino alla prossima chiamata)
+    private volatile int maxWidth = DEFAULT_MAX_SIDE;
+    private volatile int maxHeight = DEFAULT_MAX_SIDE;
+    private volatile int quality = DEFAULT_QUALITY;
+    private volatile boolean webp = false;
+    private volatile long maxBytes = 0;
+
+    private PickedImageCompressor(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.resolver = appContext.getContentResolver();
+        this.outputDir = new File(appContext.getCacheDir(), "picked_images");
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            Log.e(TAG, "❌ Cannot create output dir: " + outputDir);
+        }
+    }
+
+    public static synchronized PickedImageCompressor getInstance(Context context) {
+        if (instance == null) {
+            instance = new PickedImageCompressor(context);
+        }
+        return instance;
+    }
+
+    /**
+     * @param json {"maxWidth": 1600, "maxHeight": 1600, "quality": 82, "format": "jpeg"|"webp", "maxBytes": 500000}
+     */
+    public void setLimits(String json) throws JSONException {
+        JSONObject limits = new JSONObject(json);
+        maxWidth = Math.max(64, limits.optInt("maxWidth", DEFAULT_MAX_SIDE));
+        maxHeight = Math.max(64, limits.optInt("maxHeight", DEFAULT_MAX_SIDE));
+        quality = Math.max(MIN_QUALITY, Math.min(100, limits.optInt("quality", DEFAULT_QUALITY)));
+        webp = "webp".equalsIgnoreCase(limits.optString("format", "jpeg"));
+        maxBytes = Math.max(0, limits.optLong("maxBytes", 0));
+        Log.d(TAG, "📐 Picker limits: " + maxWidth + "x" + maxHeight + " q" + quality + (webp ? " webp" : " jpeg")
+                + (maxBytes > 0 ? " max " + (maxBytes / 1024) + "KB" : ""));
+    }
+
+    /**
+     * Elabora le immagini in background; il callback arriva sul main thread.
+     * In caso di errore viene restituito l'URI originale, così l'upload non si blocca.
+     *
+     * @param thumbnail bitmap restituita da ACTION_IMAGE_CAPTURE senza EXTRA_OUTPUT (può essere null)
+     */
+    public void process(final Uri[] uris, final Bitmap thumbnail, final Callback callback) {
+        executor.execute(() -> {
+            deleteOldFiles();
+            Uri[] results = null;
+            if (uris != null) {
+                results = new Uri[uris.length];
+                for (int i = 0; i < uris.length; i++) {
+                    results[i] = compress(uris[i]);
+                }
+            } else if (thumbnail != null) {
+                File file = writeBitmap(thumbnail, thumbnail.hasAlpha());
+                results = file != null ? new Uri[]{Uri.fromFile(file)} : null;
+            }
+            final Uri[] finalResults = results;
+            mainHandler.post(() -> callback.onResult(finalResults));
+        });
+    }
+
+    private Uri compress(Uri uri) {
+        long startedAt = System.currentTimeMillis();
+        try {
+            String type = resolver.getType(uri);
+            // GIF animate, SVG e documenti non vengono toccati
+            if (type != null && (!type.startsWith("image/") || type.equals("image/gif") || type.equals("image/svg+xml"))) {
+                return uri;
+            }
+
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            try (InputStream in = resolver.openInputStream(uri)) {
+                BitmapFactory.decodeStream(in, null, bounds);
+            }
+            if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+                return uri;
+            }
+
+            int rotation = readRotation(uri);
+            // Limiti riferiti all'immagine già ruotata
+            boolean swap = rotation == 90 || rotation == 270;
+            int sourceWidth = swap ? bounds.outHeight : bounds.outWidth;
+            int sourceHeight = swap ? bounds.outWidth : bounds.outHeight;
+            float scale = Math.min(1f, ImageDownscaleProxy.scaleFor(sourceWidth, sourceHeight, maxWidth, maxHeight));
+            int targetWidth = Math.max(1, Math.round(bounds.outWidth * scale));
+            int targetHeight = Math.max(1, Math.round(bounds.outHeight * scale));
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = ImageDownscaleProxy.sampleSize(bounds.outWidth, bounds.outHeight, targetWidth, targetHeight);
+            Bitmap decoded;
+            try (InputStream in = resolver.openInputStream(uri)) {
+                decoded = BitmapFactory.decodeStream(in, null, options);
+            }
+            if (decoded == null) {
+                return uri;
+            }
+
+            // Senza MIME dal provider si usa quello rilevato dal decoder
+            String sourceType = type != null ? type : bounds.outMimeType;
+            boolean lossless = keepsLossless(sourceType, decoded.hasAlpha());
+            Bitmap transformed = transform(decoded, targetWidth, targetHeight, rotation);
+            File file;
+            try {
+                file = writeBitmap(transformed, lossless);
+            } finally {
+                if (transformed != decoded) {
+                    transformed.recycle();
+                }
+                decoded.recycle();
+            }
+            if (file == null) {
+                return uri;
+            }
+            Log.i(TAG, "🗜️ Picked image " + bounds.outWidth + "x" + bounds.outHeight + " -> " + targetWidth + "x"
+                    + targetHeight + " (" + (file.length() / 1024) + " KB, " + (System.currentTimeMillis() - startedAt) + "ms)");
+            return Uri.fromFile(file);
+        } catch (Exception | OutOfMemoryError e) {
+            Log.w(TAG, "⚠️ Compression failed, uploading original: " + e.getMessage());
+            return uri;
+        }
+    }
+
+    private static Bitmap transform(Bitmap decoded, int targetWidth, int targetHeight, int rotation) {
+        float scaleX = targetWidth / (float) decoded.getWidth();
+        float scaleY = targetHeight / (float) decoded.getHeight();
+        if (rotation == 0 && scaleX >= 1f && scaleY >= 1f) {
+            return decoded;
+        }
+        Matrix matrix = new Matrix();
+        if (scaleX < 1f || scaleY < 1f) {
+            matrix.postScale(scaleX, scaleY);
+        }
+        if (rotation != 0) {
+            matrix.postRotate(rotation);
+        }
+        return Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), matrix, true);
+    }
+
+    /**
+     * PNG/WebP sorgente o canale alfa: niente JPEG né WebP lossy
+     */
+    static boolean keepsLossless(String mimeType, boolean hasAlpha) {
+        return hasAlpha || "image/png".equalsIgnoreCase(mimeType) || "image/webp".equalsIgnoreCase(mimeType);
+    }
+
+    /**
+     * Scrive la bitmap abbassando la qualità finché rientra in maxBytes (se impostato).
+     * In lossless la qualità non conta: vale solo il limite sulle dimensioni.
+     */
+    private File writeBitmap(Bitmap bitmap, boolean lossless) {
+        Bitmap.CompressFormat format;
+        String extension;
+        if (lossless) {
+            // WEBP_LOSSLESS solo da API 30, prima PNG
+            boolean losslessWebp = webp && Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+            format = losslessWebp ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.PNG;
+            extension = losslessWebp ? ".webp" : ".png";
+        } else {
+            format = webp ? ImageDownscaleProxy.webpFormat() : Bitmap.CompressFormat.JPEG;
+            extension = webp ? ".webp" : ".jpg";
+        }
+        int currentQuality = lossless ? 100 : quality;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(format, currentQuality, out);
+        while (!lossless && maxBytes > 0 && out.size() > maxBytes && currentQuality > MIN_QUALITY) {
+            currentQuality = Math.max(MIN_QUALITY, currentQuality - 10);
+            out.reset();
+            bitmap.compress(format, currentQuality, out);
+        }
+
+        File file = null;
+        try {
+            // Nome univoco: due scelte nello stesso millisecondo non si sovrascrivono
+            file = File.createTempFile("img_", extension, outputDir);
+            try (FileOutputStream fos = new FileOutputStream(file)) {
+                out.writeTo(fos);
+            }
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Cannot write picked image: " + e.getMessage());
+            if (file != null) {
+                file.delete();
+            }
+            return null;
+        }
+    }
+
+    private int readRotation(Uri uri) {
+        // ExifInterface da stream: API 24+ (sotto, immagini lasciate con l'orientamento originale)
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return 0;
+        }
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) {
+                return 0;
+            }
+            int orientation = new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL);
+            switch (orientation) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void deleteOldFiles() {
+        File[] files = outputDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - MAX_FILE_AGE_MS;
+        for (File file : files) {
+            if (file.lastModified() < cutoff) {
+                file.delete();
+            }
+        }
+    }
+}
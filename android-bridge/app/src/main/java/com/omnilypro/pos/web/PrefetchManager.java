@@ -0,0 +1,275 @@
+package com.omnilypro.pos.web;
+
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prefetch speculativo richiesto dal web app (OmnilyPOS.prefetch)
+ *
+ * Le richieste passano dalla stessa catena di interception del WebView (bundle, cache asset,
+ * cache Supabase, media, immagini): quando il cassiere apre la schermata trova la cache calda.
+ * Un URL che nessun livello gestisce non viene scaricato.
+ *
+ * - Pool limitato (2 thread) con coda a priorità
+ * - Deduplica per URL nella sessione
+ * - Budget per sessione (byte e numero di richieste); la sessione ricomincia ad ogni nuovo documento
+ * - cancel(): svuota la coda (es. il cassiere ha cambiato schermata)
+ */
+public class PrefetchManager {
+    private static final String TAG = "PrefetchManager";
+    private static final int MAX_REQUESTS_PER_SESSION = 200;
+    private static final long MAX_BYTES_PER_SESSION = 20L * 1024 * 1024; // 20 MB
+
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_LOW = 1;
+
+    private final RequestInterceptor interceptor;
+    private final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>();
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Set<String> seen = new HashSet<>();
+    private final AtomicLong sessionBytes = new AtomicLong();
+    private int sessionRequests = 0;
+    private volatile int sessionId = 0;
+
+    public PrefetchManager(RequestInterceptor interceptor) {
+        this.interceptor = interceptor;
+        this.executor = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS, queue);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param itemsJson ["https://...", {"url": "https://...", "headers": {"Authorization": "..."}}]
+     *                  (gli header servono per le GET Supabase, la cui chiave include l'autenticazione)
+     * @param priority  "high" oppure "low"
+     * @return {"queued": n, "skipped": m}
+     */
+    public synchronized String prefetch(String itemsJson, String priority) {
+        int prio = "high".equalsIgnoreCase(priority) ? PRIORITY_HIGH : PRIORITY_LOW;
+        int queued = 0;
+        int skipped = 0;
+        try {
+            JSONArray items = new JSONArray(itemsJson);
+            for (int i = 0; i < items.length(); i++) {
+                Object item = items.get(i);
+                String url;
+                Map<String, String> headers = new HashMap<>();
+                if (item instanceof JSONObject) {
+                    JSONObject obj = (JSONObject) item;
+                    url = obj.optString("url", null);
+                    JSONObject headerObj = obj.optJSONObject("headers");
+                    if (headerObj != null) {
+                        Iterator<String> keys = headerObj.keys();
+                        while (keys.hasNext()) {
+                            String key = keys.next();
+                            headers.put(key, headerObj.getString(key));
+                        }
+                    }
+                } else {
+                    url = String.valueOf(item);
+                }
+
+                if (url == null || !url.startsWith("https://") || sessionRequests >= MAX_REQUESTS_PER_SESSION
+                        || sessionBytes.get() >= MAX_BYTES_PER_SESSION || seen.contains(dedupKey(url, headers))) {
+                    skipped++;
+                    continue;
+                }
+                seen.add(dedupKey(url, headers));
+                sessionRequests++;
+                executor.execute(new Task(prio, sequence.getAndIncrement(), sessionId, dedupKey(url, headers),
+                        new PrefetchRequest(Uri.parse(url), headers)));
+                queued++;
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "⚠️ Invalid prefetch list: " + e.getMessage());
+        }
+        Log.d(TAG, "🔮 Prefetch (" + priority + "): " + queued + " queued, " + skipped + " skipped");
+        return "{\"queued\":" + queued + ",\"skipped\":" + skipped + "}";
+    }
+
+    /**
+     * Annulla le richieste ancora in coda (quelle in corso terminano)
+     */
+    public synchronized int cancel() {
+        List<Runnable> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        int cancelled = pending.size();
+        for (Runnable runnable : pending) {
+            // Annullati = mai scaricati: possono essere richiesti di nuovo
+            Task task = (Task) runnable;
+            seen.remove(task.key);
+            sessionRequests--;
+        }
+        if (cancelled > 0) {
+            Log.d(TAG, "🛑 Prefetch cancelled: " + cancelled + " pending");
+        }
+        return cancelled;
+    }
+
+    /**
+     * Nuovo documento nel WebView: coda, deduplica e budget ripartono da zero
+     */
+    public synchronized void resetSession() {
+        cancel();
+        sessionId++;
+        seen.clear();
+        sessionRequests = 0;
+        sessionBytes.set(0);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static String dedupKey(String url, Map<String, String> headers) {
+        String auth = null;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if ("authorization".equalsIgnoreCase(header.getKey())) {
+                auth = header.getValue();
+            }
+        }
+        return auth != null ? url + "|" + auth.hashCode() : url;
+    }
+
+    private class Task implements Runnable, Comparable<Task> {
+        final int priority;
+        final long seq;
+        final int session;
+        final String key;
+        final PrefetchRequest request;
+
+        Task(int priority, long seq, int session, String key, PrefetchRequest request) {
+            this.priority = priority;
+            this.seq = seq;
+            this.session = session;
+            this.key = key;
+            this.request = request;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(seq, other.seq);
+        }
+
+        @Override
+        public void run() {
+            if (session != sessionId || sessionBytes.get() >= MAX_BYTES_PER_SESSION) {
+                return;
+            }
+            long startedAt = System.currentTimeMillis();
+            WebResourceResponse response = null;
+            try {
+                response = interceptor.intercept(request);
+                if (response == null) {
+                    Log.d(TAG, "Prefetch not cacheable: " + request.getUrl());
+                    return;
+                }
+                // I livelli scrivono su disco prima di rispondere: basta consumare lo stream
+                long bytes = drain(response.getData());
+                sessionBytes.addAndGet(bytes);
+                Log.d(TAG, "✅ Prefetched " + request.getUrl().getPath() + " (" + (bytes / 1024) + " KB, "
+                        + (System.currentTimeMillis() - startedAt) + "ms)");
+            } catch (Exception e) {
+                Log.d(TAG, "Prefetch failed for " + request.getUrl() + ": " + e.getMessage());
+            } finally {
+                if (response != null && response.getData() != null) {
+                    try {
+                        response.getData().close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        if (in == null) {
+            return 0;
+        }
+        byte[] buffer = new byte[16384];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Richiesta sintetica equivalente a una subresource GET del WebView
+     */
+    private static class PrefetchRequest implements WebResourceRequest {
+        private final Uri url;
+        private final Map<String, String> headers;
+
+        PrefetchRequest(Uri url, Map<String, String> headers) {
+            this.url = url;
+            this.headers = headers;
+            if (!containsHeader(headers, "Origin")) {
+                headers.put("Origin", "https://" + WebCacheManager.APP_HOST);
+            }
+        }
+
+        private static boolean containsHeader(Map<String, String> headers, String name) {
+            for (String key : headers.keySet()) {
+                if (key.equalsIgnoreCase(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Uri getUrl() {
+            return url;
+        }
+
+        @Override
+        public boolean isForMainFrame() {
+            return false;
+        }
+
+        @Override
+        public boolean isRedirect() {
+            return false;
+        }
+
+        @Override
+        public boolean hasGesture() {
+            return false;
+        }
+
+        @Override
+        public String getMethod() {
+            return "GET";
+        }
+
+        @Override
+        public Map<String, String> getRequestHeaders() {
+            return headers;
+        }
+    }
+}
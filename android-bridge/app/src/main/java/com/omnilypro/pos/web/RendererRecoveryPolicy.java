@@ -0,0 +1,63 @@
+package com.omnilypro.pos.web;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * Recovery graduale del renderer WebView
+ *
+ * 1° crash nella finestra → RECREATE_WEBVIEW: nuovo WebView nella stessa activity (hardware acceso, cache intatte)
+ * 2° crash → CLEAR_HTTP_CACHE: come sopra ma svuotando solo la cache HTTP
+ * 3° crash → FULL_WIPE: WebViewRecoveryActivity (cancella tutti i dati WebView, ultima risorsa)
+ *
+ * Un renderer ucciso dal sistema per memoria (didCrash = false) non indica dati corrotti:
+ * resta al primo livello e non fa salire il contatore.
+ */
+public class RendererRecoveryPolicy {
+    private static final String TAG = "RendererRecovery";
+    private static final String PREFS_NAME = "renderer_recovery";
+    private static final String KEY_LAST_CRASH = "last_crash_time";
+    private static final String KEY_CRASH_COUNT = "crash_count";
+    private static final long CRASH_WINDOW_MS = 120000; // 2 minuti senza crash → si riparte dal primo livello
+
+    public enum Tier { RECREATE_WEBVIEW, CLEAR_HTTP_CACHE, FULL_WIPE }
+
+    private final SharedPreferences prefs;
+
+    public RendererRecoveryPolicy(Context context) {
+        // Persistente: un crash subito dopo il riavvio dell'activity continua la scalata
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public Tier onRendererGone(boolean didCrash) {
+        long now = System.currentTimeMillis();
+        if (!didCrash) {
+            Log.w(TAG, "⚠️ Renderer killed by the system (memory) - recreating WebView only");
+            return Tier.RECREATE_WEBVIEW;
+        }
+
+        int count = prefs.getInt(KEY_CRASH_COUNT, 0);
+        if (now - prefs.getLong(KEY_LAST_CRASH, 0) > CRASH_WINDOW_MS) {
+            count = 0;
+        }
+        count++;
+        prefs.edit()
+                .putLong(KEY_LAST_CRASH, now)
+                .putInt(KEY_CRASH_COUNT, count)
+                .commit();
+
+        Tier tier = count == 1 ? Tier.RECREATE_WEBVIEW
+                : count == 2 ? Tier.CLEAR_HTTP_CACHE
+                : Tier.FULL_WIPE;
+        Log.w(TAG, "🚑 Renderer crash #" + count + " in window - recovery tier " + tier);
+        return tier;
+    }
+
+    /**
+     * Dopo il wipe completo la scalata ricomincia
+     */
+    public void reset() {
+        prefs.edit().clear().apply();
+    }
+}
@@ -0,0 +1,16 @@
+package com.omnilypro.pos.web;
+
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+/**
+ * Catena di interception nativa (bundle, cache asset, cache Supabase, media, immagini)
+ *
+ * Condivisa da WebViewClient.shouldInterceptRequest, dal client dei Service Worker e dal prefetch.
+ */
+public interface RequestInterceptor {
+    /**
+     * @return la risposta locale/in cache, oppure null per lasciare la richiesta alla rete
+     */
+    WebResourceResponse intercept(WebResourceRequest request);
+}
@@ -0,0 +1,106 @@
+package com.omnilypro.pos.web;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import androidx.webkit.ServiceWorkerClientCompat;
+import androidx.webkit.ServiceWorkerControllerCompat;
+import androidx.webkit.WebViewFeature;
+
+import java.util.Map;
+
+/**
+ * Le fetch del Service Worker del web app passano dalla stessa catena nativa delle pagine
+ *
+ * Senza questo client il SW scarica da rete (bypassando WebViewClient.shouldInterceptRequest)
+ * e tiene una propria Cache Storage in app_webview, cancellata dal recovery completo.
+ * Così SW e pagina condividono le cache native (in cacheDir, con una sola politica LRU)
+ * che sopravvivono al recovery del renderer.
+ */
+public class ServiceWorkerInterceptor {
+    private static final String TAG = "SWInterceptor";
+
+    private static boolean installed = false;
+
+    /**
+     * Da chiamare prima del primo loadUrl. Il client è globale per il processo: usa la catena
+     * dell'Application (NativeRequestChain), mai l'Activity, così un'Activity ricreata non serve
+     * reinstallarlo e quella distrutta non resta in memoria.
+     */
+    public static synchronized void install(Context context) {
+        if (installed) {
+            return;
+        }
+        if (!WebViewFeature.isFeatureSupported(WebViewFeature.SERVICE_WORKER_BASIC_USAGE)
+                || !WebViewFeature.isFeatureSupported(WebViewFeature.SERVICE_WORKER_SHOULD_INTERCEPT_REQUEST)) {
+            Log.i(TAG, "Service Worker interception not supported by this WebView");
+            return;
+        }
+        final RequestInterceptor interceptor = NativeRequestChain.getInstance(context);
+        ServiceWorkerControllerCompat.getInstance().setServiceWorkerClient(new ServiceWorkerClientCompat() {
+            @Override
+            public WebResourceResponse shouldInterceptRequest(WebResourceRequest request) {
+                // Thread del SW: stesso contratto di shouldInterceptRequest (disco/rete ammessi)
+                return interceptor.intercept(new NavigationAwareRequest(request));
+            }
+        });
+        installed = true;
+        Log.i(TAG, "✅ Service Worker fetches routed through the native cache");
+    }
+
+    /**
+     * Per il SW isForMainFrame() è sempre false: le navigazioni che il SW inoltra (Accept text/html)
+     * vengono trattate come main frame, così rotte SPA e rivalidazione dell'entry point restano uguali
+     */
+    private static class NavigationAwareRequest implements WebResourceRequest {
+        private final WebResourceRequest request;
+        private final boolean navigation;
+
+        NavigationAwareRequest(WebResourceRequest request) {
+            this.request = request;
+            this.navigation = isNavigation(request);
+        }
+
+        private static boolean isNavigation(WebResourceRequest request) {
+            for (Map.Entry<String, String> header : request.getRequestHeaders().entrySet()) {
+                if ("Accept".equalsIgnoreCase(header.getKey())) {
+                    return header.getValue() != null && header.getValue().startsWith("text/html");
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Uri getUrl() {
+            return request.getUrl();
+        }
+
+        @Override
+        public boolean isForMainFrame() {
+            return navigation;
+        }
+
+        @Override
+        public boolean isRedirect() {
+            return false; // isRedirect() esiste solo da API 24
+        }
+
+        @Override
+        public boolean hasGesture() {
+            return request.hasGesture();
+        }
+
+        @Override
+        public String getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public Map<String, String> getRequestHeaders() {
+            return request.getRequestHeaders();
+        }
+    }
+}
@@ -0,0 +1,538 @@
+package com.omnilypro.pos.web;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import com.omnilypro.pos.mdm.MdmConfig;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Stale-while-revalidate per le GET Supabase REST (PostgREST) in sola lettura fatte dal web app
+ *
+ * - Solo tabelle configurate (rotte sicure), mai /rpc
+ * - Entro il TTL: servito dal disco senza rete
+ * - Scaduto ma entro maxStale: servito subito dal disco e rivalidato in background
+ * - Qualsiasi POST/PATCH/PUT/DELETE sulla tabella invalida le sue voci
+ * - Qualsiasi chiamata /rpc non GET invalida le rotte invalidateOnRpc: punti e saldi wallet dei
+ *   clienti cambiano via RPC (add_customer_points, process_wallet_transaction), non con scritture REST
+ *
+ * La chiave include Authorization/apikey: utenti diversi non condividono mai le risposte; clear()
+ * al logout (clearSession) toglie comunque le righe dell'operatore precedente dal disco.
+ * Le rotte di default possono essere sostituite con configure(json) dal comando MDM sync_config.
+ */
+public class SupabaseReadCache {
+    private static final String TAG = "SupabaseReadCache";
+    private static final String PREFS_NAME = "supabase_read_cache";
+    private static final String KEY_ROUTES = "routes";
+    private static final String REST_PREFIX = "/rest/v1/";
+    private static final String RPC_PREFIX = REST_PREFIX + "rpc/";
+    private static final long MAX_CACHE_BYTES = 20L * 1024 * 1024; // 20 MB
+
+    // Header che cambiano la risposta di PostgREST (fanno parte della chiave)
+    private static final String[] KEY_HEADERS = {"Authorization", "apikey", "Accept", "Accept-Profile", "Prefer", "Range"};
+    // Header da non inoltrare: li gestisce OkHttp o non hanno senso fuori dal WebView
+    private static final Set<String> SKIP_HEADERS = new HashSet<>(java.util.Arrays.asList(
+            "accept-encoding", "connection", "host", "content-length", "if-none-match", "if-modified-since"));
+
+    public static class Route {
+        final String table;
+        final long ttlMs;
+        final long maxStaleMs;
+        // Dati modificati anche da funzioni RPC: ogni /rpc non GET invalida la rotta
+        final boolean invalidateOnRpc;
+
+        public Route(String table, long ttlMs, long maxStaleMs, boolean invalidateOnRpc) {
+            this.table = table;
+            this.ttlMs = ttlMs;
+            this.maxStaleMs = maxStaleMs;
+            this.invalidateOnRpc = invalidateOnRpc;
+        }
+    }
+
+    private static SupabaseReadCache instance;
+
+    private final SharedPreferences prefs;
+    private final File cacheDir;
+    private final String supabaseHost;
+    private final OkHttpClient httpClient;
+    private final ExecutorService revalidateExecutor = Executors.newFixedThreadPool(2);
+    private final ExecutorService maintenanceExecutor = Executors.newSingleThreadExecutor();
+    private final Set<String> inFlight = Collections.synchronizedSet(new HashSet<>());
+    // Ultima invalidazione per tabella: una lettura partita prima di una scrittura non va salvata
+    private final Map<String, Long> invalidatedAt = new java.util.concurrent.ConcurrentHashMap<>();
+    // Ultimo clear(): vale per tutte le tabelle
+    private volatile long clearedAt = 0;
+    private volatile Map<String, Route> routes;
+
+    private SupabaseReadCache(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.cacheDir = new File(appContext.getFilesDir(), "supabase_cache");
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.e(TAG, "❌ Cannot create cache dir: " + cacheDir);
+        }
+        this.supabaseHost = Uri.parse(MdmConfig.SUPABASE_URL).getHost();
+        this.httpClient = WebCacheManager.getInstance(appContext).getHttpClient();
+        this.routes = loadRoutes();
+    }
+
+    public static synchronized SupabaseReadCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new SupabaseReadCache(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Rotte di default: dati di configurazione poco variabili con TTL lunghi, liste clienti con TTL brevi
+     */
+    static Map<String, Route> defaultRoutes() {
+        Map<String, Route> defaults = new HashMap<>();
+        addRoute(defaults, new Route("organizations", 5 * 60_000L, 24 * 3_600_000L, false));
+        addRoute(defaults, new Route("rewards", 5 * 60_000L, 24 * 3_600_000L, false));
+        addRoute(defaults, new Route("omnilypro_plans", 60 * 60_000L, 7 * 24 * 3_600_000L, false));
+        addRoute(defaults, new Route("referral_programs", 10 * 60_000L, 24 * 3_600_000L, false));
+        addRoute(defaults, new Route("gaming_badges", 10 * 60_000L, 24 * 3_600_000L, false));
+        // link_auth_to_staff_member, authenticate_operator_via_nfc
+        addRoute(defaults, new Route("staff_members", 5 * 60_000L, 24 * 3_600_000L, true));
+        // add_customer_points, add_loyalty_points, process_wallet_transaction, process_referral_conversion
+        addRoute(defaults, new Route("customers", 30_000L, 10 * 60_000L, true));
+        return defaults;
+    }
+
+    private static void addRoute(Map<String, Route> map, Route route) {
+        map.put(route.table, route);
+    }
+
+    /**
+     * Sostituisce le rotte: [{"table":"rewards","ttlSeconds":300,"maxStaleSeconds":86400,"invalidateOnRpc":false}, ...]
+     */
+    public void configure(String routesJson) throws JSONException {
+        Map<String, Route> parsed = parseRoutes(routesJson);
+        prefs.edit().putString(KEY_ROUTES, routesJson).apply();
+        routes = parsed;
+        clear();
+        Log.i(TAG, "⚙️ Routes configured: " + parsed.keySet());
+    }
+
+    private Map<String, Route> loadRoutes() {
+        String json = prefs.getString(KEY_ROUTES, null);
+        if (json != null) {
+            try {
+                return parseRoutes(json);
+            } catch (JSONException e) {
+                Log.w(TAG, "⚠️ Invalid stored routes, using defaults: " + e.getMessage());
+            }
+        }
+        return defaultRoutes();
+    }
+
+    static Map<String, Route> parseRoutes(String json) throws JSONException {
+        Map<String, Route> parsed = new HashMap<>();
+        JSONArray array = new JSONArray(json);
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            String table = item.getString("table");
+            if (table.isEmpty() || table.contains("/")) {
+                throw new JSONException("Invalid table: " + table);
+            }
+            long ttl = item.getLong("ttlSeconds") * 1000;
+            addRoute(parsed, new Route(table, ttl, Math.max(ttl, item.optLong("maxStaleSeconds", 0) * 1000),
+                    item.optBoolean("invalidateOnRpc", false)));
+        }
+        return parsed;
+    }
+
+    /**
+     * Da chiamare in WebViewClient.shouldInterceptRequest (thread IO del WebView)
+     *
+     * @return la risposta (cache o rete), oppure null per lasciare la richiesta al WebView
+     */
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        Uri uri = request.getUrl();
+        if (!"https".equals(uri.getScheme()) || !supabaseHost.equals(uri.getHost())) {
+            return null;
+        }
+        String path = uri.getPath();
+        String method = request.getMethod().toUpperCase(Locale.US);
+        if (!"GET".equals(method)) {
+            // Scrittura sulla tabella o RPC: le letture in cache non sono più affidabili
+            for (String table : invalidatedTables(routes, method, path)) {
+                invalidateTable(table);
+            }
+            return null;
+        }
+        String table = tableOf(path);
+        if (table == null) {
+            return null;
+        }
+        Route route = routes.get(table);
+        if (route == null) {
+            return null;
+        }
+
+        try {
+            String key = table + "-" + WebCacheManager.sha1(buildKey(request));
+            ApiEntry entry = ApiEntry.load(cacheDir, key);
+            // Salvata prima di un clear() ancora in corso sul disco: mai servita
+            if (entry != null && entry.storedAt > clearedAt) {
+                long age = System.currentTimeMillis() - entry.storedAt;
+                if (age <= route.ttlMs) {
+                    entry.touch();
+                    return entry.toResponse(request, "HIT");
+                }
+                if (age <= route.maxStaleMs) {
+                    entry.touch();
+                    revalidateAsync(table, key, request);
+                    return entry.toResponse(request, "STALE");
+                }
+            }
+            return fetch(table, key, request);
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Intercept failed for " + uri.getPath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Svuota la cache (logout, cambio rotte, recovery). Qualsiasi thread: da subito nessuna voce
+     * precedente viene più servita, i file vengono eliminati sull'executor di manutenzione
+     */
+    public void clear() {
+        clearedAt = System.currentTimeMillis();
+        maintenanceExecutor.submit(() -> {
+            File[] files = cacheDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            Log.i(TAG, "🧹 Supabase read cache cleared");
+        });
+    }
+
+    // ============================================================================
+    // Rete
+    // ============================================================================
+
+    /**
+     * Miss: GET fatta da noi con gli stessi header del web app, così la risposta può essere salvata
+     */
+    private WebResourceResponse fetch(String table, String key, WebResourceRequest request) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        try (Response response = httpClient.newCall(toOkHttp(request)).execute()) {
+            ResponseBody body = response.body();
+            byte[] data = body != null ? body.bytes() : new byte[0];
+            if (isCacheable(response) && !invalidatedSince(table, startedAt)) {
+                ApiEntry entry = ApiEntry.write(cacheDir, key, response, data);
+                trimToBudgetAsync();
+                return entry.toResponse(request, "MISS");
+            }
+            // Errori (401, 4xx, 5xx) passano al web app senza essere salvati
+            return ApiEntry.passThrough(request, response, data);
+        }
+    }
+
+    private void revalidateAsync(String table, String key, WebResourceRequest request) {
+        if (!inFlight.add(key)) {
+            return;
+        }
+        final Request okRequest = toOkHttp(request);
+        revalidateExecutor.submit(() -> {
+            long startedAt = System.currentTimeMillis();
+            try (Response response = httpClient.newCall(okRequest).execute()) {
+                ResponseBody body = response.body();
+                if (isCacheable(response) && body != null && !invalidatedSince(table, startedAt)) {
+                    ApiEntry.write(cacheDir, key, response, body.bytes());
+                    trimToBudgetAsync();
+                } else if (response.code() == 401 || response.code() == 403) {
+                    // Token scaduto/revocato: la copia non deve più essere servita
+                    new File(cacheDir, key + ".body").delete();
+                    new File(cacheDir, key + ".meta").delete();
+                }
+            } catch (IOException e) {
+                Log.d(TAG, "Revalidation failed (offline?) for " + key + ": " + e.getMessage());
+            } finally {
+                inFlight.remove(key);
+            }
+        });
+    }
+
+    private static Request toOkHttp(WebResourceRequest request) {
+        Request.Builder builder = new Request.Builder().url(request.getUrl().toString());
+        for (Map.Entry<String, String> header : request.getRequestHeaders().entrySet()) {
+            if (!SKIP_HEADERS.contains(header.getKey().toLowerCase(Locale.US))) {
+                builder.header(header.getKey(), header.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    private static boolean isCacheable(Response response) {
+        // 206 = Prefer: count=exact con Content-Range
+        return response.code() == 200 || response.code() == 206;
+    }
+
+    // ============================================================================
+    // Chiavi e manutenzione
+    // ============================================================================
+
+    static String tableOf(String path) {
+        if (path == null || !path.startsWith(REST_PREFIX)) {
+            return null;
+        }
+        String rest = path.substring(REST_PREFIX.length());
+        if (rest.isEmpty() || rest.contains("/")) {
+            return null; // /rpc/... e percorsi annidati non sono mai in cache
+        }
+        return rest;
+    }
+
+    /**
+     * Tabelle in cache da invalidare per una richiesta non GET (scrittura REST o chiamata /rpc)
+     */
+    static List<String> invalidatedTables(Map<String, Route> routes, String method, String path) {
+        List<String> tables = new ArrayList<>();
+        if ("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method) || path == null) {
+            return tables;
+        }
+        String table = tableOf(path);
+        if (table != null) {
+            if (routes.containsKey(table)) {
+                tables.add(table);
+            }
+        } else if (path.startsWith(RPC_PREFIX)) {
+            // Il nativo non sa cosa scrive una funzione: si invalidano le rotte che dichiarano di dipenderne
+            for (Route route : routes.values()) {
+                if (route.invalidateOnRpc) {
+                    tables.add(route.table);
+                }
+            }
+        }
+        return tables;
+    }
+
+    private static String buildKey(WebResourceRequest request) {
+        Map<String, String> lower = new HashMap<>();
+        for (Map.Entry<String, String> header : request.getRequestHeaders().entrySet()) {
+            lower.put(header.getKey().toLowerCase(Locale.US), header.getValue());
+        }
+        StringBuilder key = new StringBuilder(request.getUrl().toString());
+        for (String name : KEY_HEADERS) {
+            key.append('\n').append(name).append(':').append(lower.get(name.toLowerCase(Locale.US)));
+        }
+        return key.toString();
+    }
+
+    private boolean invalidatedSince(String table, long startedAt) {
+        Long at = invalidatedAt.get(table);
+        return (at != null && at >= startedAt) || clearedAt >= startedAt;
+    }
+
+    private void invalidateTable(String table) {
+        invalidatedAt.put(table, System.currentTimeMillis());
+        maintenanceExecutor.submit(() -> {
+            File[] files = cacheDir.listFiles((dir, name) -> name.startsWith(table + "-"));
+            if (files == null || files.length == 0) {
+                return;
+            }
+            for (File file : files) {
+                file.delete();
+            }
+            Log.d(TAG, "🗑️ Invalidated " + (files.length / 2) + " cached reads of " + table);
+        });
+    }
+
+    private void trimToBudgetAsync() {
+        maintenanceExecutor.submit(() -> {
+            File[] bodies = cacheDir.listFiles((dir, name) -> name.endsWith(".body"));
+            if (bodies == null) {
+                return;
+            }
+            long total = 0;
+            List<File> files = new ArrayList<>();
+            for (File body : bodies) {
+                files.add(body);
+                total += body.length();
+            }
+            if (total <= MAX_CACHE_BYTES) {
+                return;
+            }
+            // LRU: il timestamp del body viene aggiornato ad ogni hit
+            Collections.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (File body : files) {
+                if (total <= MAX_CACHE_BYTES) {
+                    break;
+                }
+                total -= body.length();
+                String name = body.getName();
+                new File(cacheDir, name.substring(0, name.length() - ".body".length()) + ".meta").delete();
+                body.delete();
+            }
+            Log.i(TAG, "🧹 Cache trimmed to " + (total / 1024) + " KB");
+        });
+    }
+
+    /**
+     * Risposta API salvata: body + metadata JSON (.meta) con istante di salvataggio e header utili
+     */
+    private static class ApiEntry {
+        final File body;
+        final File meta;
+        long storedAt;
+        int status;
+        String contentType;
+        String contentRange;
+
+        ApiEntry(File dir, String key) {
+            this.body = new File(dir, key + ".body");
+            this.meta = new File(dir, key + ".meta");
+        }
+
+        static ApiEntry load(File dir, String key) {
+            ApiEntry entry = new ApiEntry(dir, key);
+            if (!entry.meta.exists() || !entry.body.exists()) {
+                return null;
+            }
+            try (FileInputStream in = new FileInputStream(entry.meta)) {
+                byte[] data = new byte[(int) entry.meta.length()];
+                int offset = 0;
+                while (offset < data.length) {
+                    int read = in.read(data, offset, data.length - offset);
+                    if (read < 0) break;
+                    offset += read;
+                }
+                JSONObject json = new JSONObject(new String(data, 0, offset, StandardCharsets.UTF_8));
+                entry.storedAt = json.getLong("storedAt");
+                entry.status = json.optInt("status", 200);
+                entry.contentType = json.optString("contentType", "application/json");
+                entry.contentRange = json.optString("contentRange", null);
+                return entry;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        static ApiEntry write(File dir, String key, Response response, byte[] data) throws IOException {
+            ApiEntry entry = new ApiEntry(dir, key);
+            entry.storedAt = System.currentTimeMillis();
+            entry.status = response.code();
+            entry.contentType = response.header("Content-Type", "application/json");
+            entry.contentRange = response.header("Content-Range");
+
+            // Body e meta con rename atomico: un lettore concorrente vede sempre una coppia completa.
+            // Temporanei per richiesta: due revalidate concorrenti della stessa chiave non scrivono lo stesso file
+            File tmpBody = File.createTempFile(key, ".body.tmp", dir);
+            try (FileOutputStream out = new FileOutputStream(tmpBody)) {
+                out.write(data);
+            } catch (IOException e) {
+                tmpBody.delete();
+                throw e;
+            }
+            if (!tmpBody.renameTo(entry.body)) {
+                tmpBody.delete();
+                throw new IOException("Cannot commit " + key);
+            }
+            try {
+                JSONObject json = new JSONObject();
+                json.put("storedAt", entry.storedAt);
+                json.put("status", entry.status);
+                json.put("contentType", entry.contentType);
+                json.putOpt("contentRange", entry.contentRange);
+                File tmpMeta = File.createTempFile(key, ".meta.tmp", dir);
+                try (FileOutputStream out = new FileOutputStream(tmpMeta)) {
+                    out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    tmpMeta.delete();
+                    throw e;
+                }
+                if (!tmpMeta.renameTo(entry.meta)) {
+                    tmpMeta.delete();
+                    throw new IOException("Cannot commit " + key);
+                }
+            } catch (JSONException e) {
+                throw new IOException(e);
+            }
+            return entry;
+        }
+
+        void touch() {
+            body.setLastModified(System.currentTimeMillis());
+        }
+
+        WebResourceResponse toResponse(WebResourceRequest request, String cacheStatus) throws IOException {
+            Map<String, String> headers = corsHeaders(request);
+            headers.put("Content-Type", contentType);
+            headers.put("X-Omnily-Cache", cacheStatus);
+            if (contentRange != null) {
+                headers.put("Content-Range", contentRange);
+            }
+            return new WebResourceResponse(mimeOf(contentType), "utf-8", status,
+                    status == 206 ? "Partial Content" : "OK", headers, new FileInputStream(body));
+        }
+
+        static WebResourceResponse passThrough(WebResourceRequest request, Response response, byte[] data) {
+            Map<String, String> headers = corsHeaders(request);
+            String contentType = response.header("Content-Type", "application/json");
+            headers.put("Content-Type", contentType);
+            String contentRange = response.header("Content-Range");
+            if (contentRange != null) {
+                headers.put("Content-Range", contentRange);
+            }
+            String reason = response.message().isEmpty() ? "HTTP " + response.code() : response.message();
+            return new WebResourceResponse(mimeOf(contentType), "utf-8", response.code(), reason, headers,
+                    new ByteArrayInputStream(data));
+        }
+
+        /**
+         * La richiesta è cross-origin (omnilypro.com → supabase.co): senza CORS il WebView scarta la risposta
+         */
+        private static Map<String, String> corsHeaders(WebResourceRequest request) {
+            Map<String, String> headers = new HashMap<>();
+            String origin = null;
+            for (Map.Entry<String, String> header : request.getRequestHeaders().entrySet()) {
+                if ("origin".equalsIgnoreCase(header.getKey())) {
+                    origin = header.getValue();
+                }
+            }
+            headers.put("Access-Control-Allow-Origin", origin != null ? origin : "*");
+            headers.put("Access-Control-Expose-Headers", "Content-Range, X-Omnily-Cache");
+            headers.put("Vary", "Origin");
+            return headers;
+        }
+
+        private static String mimeOf(String contentType) {
+            int semicolon = contentType.indexOf(';');
+            return semicolon >= 0 ? contentType.substring(0, semicolon).trim() : contentType;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.omnilypro.pos.web;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Aggiornamento differenziale del bundle web
+ *
+ * Confronta gli hash del manifest remoto con quelli dei bundle già presenti sul device (attivo e pending):
+ * i file invariati vengono copiati in locale, solo quelli cambiati vengono scaricati in parallelo.
+ * Il commit resta atomico (rename della directory di staging in WebBundleManager).
+ */
+class WebBundleDiffUpdater {
+    private static final String TAG = "WebBundleDiff";
+    private static final int PARALLEL_DOWNLOADS = 4;
+
+    private final WebBundleManager manager;
+    private final List<WebBundleManager.ActiveBundle> bases;
+    private final List<Map<String, String>> hashIndexes = new ArrayList<>();
+
+    WebBundleDiffUpdater(WebBundleManager manager, List<WebBundleManager.ActiveBundle> bases) {
+        this.manager = manager;
+        this.bases = bases;
+        // Indice sha256 → path per ogni bundle locale (trova anche i file rinominati con contenuto identico)
+        for (WebBundleManager.ActiveBundle base : bases) {
+            Map<String, String> index = new HashMap<>();
+            for (Map.Entry<String, WebBundleManifest.FileInfo> file : base.manifest.files.entrySet()) {
+                index.put(file.getValue().sha256.toLowerCase(Locale.US), file.getKey());
+            }
+            hashIndexes.add(index);
+        }
+    }
+
+    /**
+     * Popola la directory di staging con tutti i file del manifest remoto
+     */
+    void populate(WebBundleManifest remote, File staging) throws IOException {
+        List<Map.Entry<String, WebBundleManifest.FileInfo>> toDownload = new ArrayList<>();
+        int reused = 0;
+        long reusedBytes = 0;
+
+        for (Map.Entry<String, WebBundleManifest.FileInfo> file : remote.files.entrySet()) {
+            File target = WebBundleManager.resolveInside(staging, file.getKey());
+            if (copyFromBase(file.getKey(), file.getValue(), target)) {
+                reused++;
+                reusedBytes += Math.max(0, file.getValue().size);
+            } else {
+                toDownload.add(file);
+            }
+        }
+
+        long downloadBytes = 0;
+        for (Map.Entry<String, WebBundleManifest.FileInfo> file : toDownload) {
+            downloadBytes += Math.max(0, file.getValue().size);
+        }
+        Log.i(TAG, "📊 Bundle " + remote.version + ": " + reused + " files reused (" + (reusedBytes / 1024) + " KB), "
+                + toDownload.size() + " to download (" + (downloadBytes / 1024) + " KB)");
+
+        if (!toDownload.isEmpty()) {
+            downloadParallel(toDownload, staging);
+        }
+    }
+
+    /**
+     * Cerca un file con lo stesso hash nei bundle locali; la copia viene ri-verificata durante la scrittura
+     */
+    private boolean copyFromBase(String path, WebBundleManifest.FileInfo info, File target) {
+        for (int i = 0; i < bases.size(); i++) {
+            WebBundleManager.ActiveBundle base = bases.get(i);
+            String basePath = hashIndexes.get(i).get(info.sha256.toLowerCase(Locale.US));
+            if (basePath == null) {
+                continue;
+            }
+            try {
+                if (copyVerified(base, basePath, info.sha256, target)) {
+                    return true;
+                }
+                Log.w(TAG, "⚠️ Local copy of " + basePath + " is corrupted - will download");
+            } catch (IOException e) {
+                Log.w(TAG, "⚠️ Cannot reuse " + basePath + ": " + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private static boolean copyVerified(WebBundleManager.ActiveBundle base, String basePath, String sha256, File target) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+
+        MessageDigest digest = WebBundleManager.newSha256();
+        try (InputStream in = base.open(basePath); FileOutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[16384];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                digest.update(buffer, 0, read);
+            }
+            out.getFD().sync();
+        }
+        if (WebCacheManager.toHex(digest.digest()).equalsIgnoreCase(sha256)) {
+            return true;
+        }
+        target.delete();
+        return false;
+    }
+
+    private void downloadParallel(List<Map.Entry<String, WebBundleManifest.FileInfo>> files, File staging) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(PARALLEL_DOWNLOADS, files.size()));
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (final Map.Entry<String, WebBundleManifest.FileInfo> file : files) {
+                futures.add(pool.submit(() -> {
+                    manager.downloadFile(file.getKey(), file.getValue(), WebBundleManager.resolveInside(staging, file.getKey()));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bundle download interrupted", e);
+        } finally {
+            // Al primo errore gli altri download vengono annullati: lo staging verrà eliminato
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package com.omnilypro.pos.web;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.AssetManager;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.CacheControl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * App shell offline: serve la build web da una copia locale versionata invece che dalla rete
+ *
+ * - L'APK contiene una copia seed in assets/webapp (copiata da frontend/dist in fase di build)
+ * - Le build più recenti vengono scaricate in background in una directory di staging e verificate (SHA-256);
+ *   solo i file con hash diverso da quelli già presenti sul device (WebBundleDiffUpdater)
+ * - Lo swap è atomico: il puntatore alla versione attiva cambia solo al riavvio o quando il POS è inattivo
+ *
+ * Le richieste fuori dal bundle (API, file non in manifest) passano a WebCacheManager / rete.
+ */
+public class WebBundleManager {
+    private static final String TAG = "WebBundleManager";
+    private static final String PREFS_NAME = "web_bundle";
+    private static final String KEY_ACTIVE_VERSION = "active_version";
+    private static final String KEY_PENDING_VERSION = "pending_version";
+    // Versione attiva prima dell'ultimo swap: le richieste ancora in corso possono leggerne i file
+    private static final String KEY_PREVIOUS_VERSION = "previous_version";
+
+    private static final String SEED_ASSET_DIR = "webapp";
+    private static final String SEED_SOURCE = "seed";
+    private static final String MANIFEST_URL = "https://" + WebCacheManager.APP_HOST + "/" + WebBundleManifest.FILE_NAME;
+
+    private static WebBundleManager instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final File bundlesDir;
+    private final ExecutorService updateExecutor = Executors.newSingleThreadExecutor();
+
+    private volatile ActiveBundle active;
+    private volatile boolean updateInProgress = false;
+
+    /**
+     * Notifica quando una nuova build è pronta per lo swap
+     */
+    public interface UpdateListener {
+        void onBundleReady(String version);
+    }
+
+    private WebBundleManager(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.bundlesDir = new File(this.context.getFilesDir(), "web_bundles");
+        if (!bundlesDir.exists() && !bundlesDir.mkdirs()) {
+            Log.e(TAG, "❌ Cannot create bundles dir: " + bundlesDir);
+        }
+
+        // Al riavvio un bundle già scaricato diventa attivo prima del primo caricamento
+        activatePending();
+        this.active = loadActiveBundle();
+    }
+
+    public static synchronized WebBundleManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new WebBundleManager(context);
+        }
+        return instance;
+    }
+
+    public boolean hasActiveBundle() {
+        return active != null;
+    }
+
+    public String getActiveVersion() {
+        ActiveBundle bundle = active;
+        return bundle != null ? bundle.manifest.version : null;
+    }
+
+    public String getPendingVersion() {
+        return prefs.getString(KEY_PENDING_VERSION, null);
+    }
+
+    /**
+     * Bundle attivo per i resolver del package (es. media con Range), null se si usa la rete
+     */
+    ActiveBundle getActiveBundle() {
+        return active;
+    }
+
+    // ============================================================================
+    // Interception
+    // ============================================================================
+
+    /**
+     * Da chiamare in WebViewClient.shouldInterceptRequest prima di WebCacheManager
+     *
+     * @return il file del bundle attivo, oppure null se la richiesta non appartiene al bundle
+     */
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        ActiveBundle bundle = active;
+        if (bundle == null || !"GET".equalsIgnoreCase(request.getMethod())) {
+            return null;
+        }
+
+        Uri uri = request.getUrl();
+        String host = uri.getHost();
+        if (!"https".equals(uri.getScheme()) || host == null
+                || !(host.equals(WebCacheManager.APP_HOST) || host.equals("www." + WebCacheManager.APP_HOST))) {
+            return null;
+        }
+
+        String path = uri.getPath() != null && uri.getPath().length() > 1 ? uri.getPath().substring(1) : "";
+        String file = null;
+        if (bundle.manifest.contains(path)) {
+            file = path;
+        } else if (request.isForMainFrame() && !path.substring(path.lastIndexOf('/') + 1).contains(".")) {
+            // Rotte della SPA → index.html (come i rewrite di Vercel)
+            file = bundle.manifest.entry;
+        }
+        if (file == null) {
+            return null;
+        }
+
+        try {
+            String mime = MimeTypes.fromPath(file);
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Cache-Control", "no-cache");
+            return new WebResourceResponse(mime, MimeTypes.charsetFor(mime), 200, "OK", headers, bundle.open(file));
+        } catch (IOException e) {
+            Log.w(TAG, "⚠️ Bundle file missing: " + file + " (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    // ============================================================================
+    // Update in background
+    // ============================================================================
+
+    /**
+     * Controlla se il server ha pubblicato una build diversa e la scarica in staging
+     */
+    public void checkForUpdateAsync(final UpdateListener listener) {
+        if (updateInProgress) {
+            return;
+        }
+        updateInProgress = true;
+        updateExecutor.submit(() -> {
+            try {
+                WebBundleManifest remote = fetchRemoteManifest();
+                if (remote == null) {
+                    return;
+                }
+                if (remote.version.equals(getActiveVersion()) || remote.version.equals(getPendingVersion())) {
+                    Log.d(TAG, "Web bundle up to date: " + remote.version);
+                    return;
+                }
+
+                Log.i(TAG, "📥 New web bundle available: " + remote.version + " (" + (remote.totalBytes() / 1024) + " KB)");
+                if (downloadBundle(remote)) {
+                    prefs.edit().putString(KEY_PENDING_VERSION, remote.version).commit();
+                    Log.i(TAG, "✅ Web bundle " + remote.version + " ready - will activate on next restart/idle");
+                    if (listener != null) {
+                        listener.onBundleReady(remote.version);
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Web bundle update failed", e);
+            } finally {
+                updateInProgress = false;
+            }
+        });
+    }
+
+    /**
+     * Attiva subito il bundle pending (da chiamare solo quando il POS è inattivo, seguito da un reload)
+     * Nessun I/O sul disco qui: la pulizia dei bundle vecchi va sull'executor degli update.
+     *
+     * @return true se il bundle attivo è cambiato
+     */
+    public synchronized boolean activatePendingNow() {
+        if (!activatePending()) {
+            return false;
+        }
+        active = loadActiveBundle();
+        return true;
+    }
+
+    private WebBundleManifest fetchRemoteManifest() throws Exception {
+        Request request = new Request.Builder()
+                .url(MANIFEST_URL)
+                .cacheControl(CacheControl.FORCE_NETWORK)
+                .build();
+        try (Response response = WebCacheManager.getInstance(context).getHttpClient().newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                Log.w(TAG, "⚠️ Manifest fetch failed: HTTP " + response.code());
+                return null;
+            }
+            return WebBundleManifest.parse(response.body().string());
+        }
+    }
+
+    /**
+     * Popola lo staging (file invariati copiati in locale, gli altri scaricati), poi rinomina la directory
+     */
+    private boolean downloadBundle(WebBundleManifest manifest) throws IOException {
+        File staging = resolveInside(bundlesDir, ".staging-" + manifest.version);
+        deleteRecursive(staging);
+        if (!staging.mkdirs()) {
+            throw new IOException("Cannot create staging dir " + staging);
+        }
+
+        // Basi per il diff: bundle attivo (installato o seed) e un eventuale pending non ancora attivato
+        List<ActiveBundle> bases = new ArrayList<>();
+        ActiveBundle current = active;
+        if (current != null) {
+            bases.add(current);
+        }
+        String pending = getPendingVersion();
+        if (pending != null) {
+            File pendingDir = new File(bundlesDir, pending);
+            WebBundleManifest pendingManifest = readManifest(pendingDir);
+            if (pendingManifest != null) {
+                bases.add(new ActiveBundle(pendingManifest, pendingDir, null));
+            }
+        }
+
+        try {
+            new WebBundleDiffUpdater(this, bases).populate(manifest, staging);
+            writeManifest(staging, manifest);
+            return commitStaging(staging, manifest.version);
+        } catch (IOException e) {
+            deleteRecursive(staging);
+            throw e;
+        }
+    }
+
+    void downloadFile(String path, WebBundleManifest.FileInfo info, File target) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+
+        Request request = new Request.Builder()
+                .url("https://" + WebCacheManager.APP_HOST + "/" + path)
+                .build();
+        try (Response response = WebCacheManager.getInstance(context).getHttpClient().newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("HTTP " + response.code() + " for " + path);
+            }
+            MessageDigest digest = newSha256();
+            try (InputStream in = response.body().byteStream(); FileOutputStream out = new FileOutputStream(target)) {
+                byte[] buffer = new byte[16384];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    digest.update(buffer, 0, read);
+                }
+                out.getFD().sync();
+            }
+            String actual = WebCacheManager.toHex(digest.digest());
+            if (!actual.equalsIgnoreCase(info.sha256)) {
+                // Il sito potrebbe essere stato ri-deployato durante il download: si riprova al prossimo check
+                throw new IOException("Checksum mismatch for " + path);
+            }
+        }
+    }
+
+    void writeManifest(File dir, WebBundleManifest manifest) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(new File(dir, WebBundleManifest.FILE_NAME))) {
+            out.write(manifest.rawJson.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * La directory completa e verificata viene rinominata: un bundle installato è sempre integro
+     */
+    boolean commitStaging(File staging, String version) throws IOException {
+        File target = resolveInside(bundlesDir, version);
+        deleteRecursive(target);
+        if (!staging.renameTo(target)) {
+            throw new IOException("Cannot commit bundle " + version);
+        }
+        return true;
+    }
+
+    // ============================================================================
+    // Bundle attivo
+    // ============================================================================
+
+    private boolean activatePending() {
+        String pending = prefs.getString(KEY_PENDING_VERSION, null);
+        if (pending == null) {
+            return false;
+        }
+        File dir = new File(bundlesDir, pending);
+        if (!new File(dir, WebBundleManifest.FILE_NAME).exists()) {
+            prefs.edit().remove(KEY_PENDING_VERSION).commit();
+            return false;
+        }
+
+        String previous = prefs.getString(KEY_ACTIVE_VERSION, null);
+        // commit() sincrono: il puntatore è l'unico punto di swap
+        prefs.edit()
+                .putString(KEY_ACTIVE_VERSION, pending)
+                .putString(KEY_PREVIOUS_VERSION, previous)
+                .remove(KEY_PENDING_VERSION)
+                .commit();
+        Log.i(TAG, "🔄 Web bundle activated: " + pending + " (was " + previous + ")");
+
+        // Il bundle precedente resta fino al prossimo swap: shouldInterceptRequest in corso
+        // potrebbe ancora leggerne i file. Stesso executor dei download: mai durante uno staging.
+        updateExecutor.submit(this::cleanupBundles);
+        return true;
+    }
+
+    private ActiveBundle loadActiveBundle() {
+        WebBundleManifest seed = loadSeedManifest();
+        String activeVersion = prefs.getString(KEY_ACTIVE_VERSION, null);
+
+        if (activeVersion != null && !SEED_SOURCE.equals(activeVersion)) {
+            File dir = new File(bundlesDir, activeVersion);
+            WebBundleManifest installed = readManifest(dir);
+            if (installed != null) {
+                // Un APK aggiornato può contenere un seed più recente del bundle scaricato
+                if (seed == null || installed.generatedAt >= seed.generatedAt) {
+                    Log.i(TAG, "📦 Serving installed web bundle " + installed.version);
+                    return new ActiveBundle(installed, dir, null);
+                }
+            } else {
+                Log.w(TAG, "⚠️ Active bundle " + activeVersion + " is missing - falling back to seed");
+            }
+        }
+
+        if (seed != null) {
+            prefs.edit().putString(KEY_ACTIVE_VERSION, SEED_SOURCE).apply();
+            Log.i(TAG, "📦 Serving seed web bundle " + seed.version + " from APK");
+            return new ActiveBundle(seed, null, context.getAssets());
+        }
+
+        Log.i(TAG, "No local web bundle - loading from network");
+        return null;
+    }
+
+    private WebBundleManifest loadSeedManifest() {
+        try (InputStream in = context.getAssets().open(SEED_ASSET_DIR + "/" + WebBundleManifest.FILE_NAME)) {
+            return WebBundleManifest.parse(readString(in));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    WebBundleManifest readManifest(File dir) {
+        File file = new File(dir, WebBundleManifest.FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return WebBundleManifest.parse(readString(in));
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Invalid manifest in " + dir + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Mantiene il bundle attivo, il precedente e quello pending (staging incompleti inclusi vengono eliminati)
+     */
+    private void cleanupBundles() {
+        String activeVersion = prefs.getString(KEY_ACTIVE_VERSION, null);
+        String previous = prefs.getString(KEY_PREVIOUS_VERSION, null);
+        String pending = prefs.getString(KEY_PENDING_VERSION, null);
+        File[] dirs = bundlesDir.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            String name = dir.getName();
+            if (!name.equals(activeVersion) && !name.equals(previous) && !name.equals(pending)) {
+                deleteRecursive(dir);
+            }
+        }
+        Log.d(TAG, "🧹 Old web bundles cleaned up");
+    }
+
+    /**
+     * Path del manifest (arriva dalla rete) dentro root: rifiuta tutto ciò che ne esce dopo la canonicalizzazione
+     */
+    static File resolveInside(File root, String relative) throws IOException {
+        if (!WebBundleManifest.isSafePath(relative)) {
+            throw new IOException("Unsafe bundle path: " + relative);
+        }
+        File file = new File(root, relative);
+        String rootPath = root.getCanonicalPath() + File.separator;
+        if (!file.getCanonicalPath().startsWith(rootPath)) {
+            throw new IOException("Bundle path escapes " + root + ": " + relative);
+        }
+        return file;
+    }
+
+    static void deleteRecursive(File file) {
+        if (file == null || !file.exists()) {
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursive(child);
+            }
+        }
+        file.delete();
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String readString(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Bundle attivo: directory installata oppure seed dentro l'APK
+     */
+    static class ActiveBundle {
+        final WebBundleManifest manifest;
+        final File dir;
+        final AssetManager assets;
+
+        ActiveBundle(WebBundleManifest manifest, File dir, AssetManager assets) {
+            this.manifest = manifest;
+            this.dir = dir;
+            this.assets = assets;
+        }
+
+        InputStream open(String path) throws IOException {
+            if (dir != null) {
+                return new FileInputStream(new File(dir, path));
+            }
+            return assets.open(SEED_ASSET_DIR + "/" + path);
+        }
+    }
+}
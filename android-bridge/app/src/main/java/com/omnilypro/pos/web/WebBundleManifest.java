@@ -0,0 +1,96 @@
+package com.omnilypro.pos.web;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * pos-manifest.json generato dalla build web (vite.config.ts → pos-bundle-manifest)
+ *
+ * { "version": "...", "generatedAt": 1700000000000, "entry": "index.html",
+ *   "files": { "assets/index-AbCd1234.js": { "sha256": "...", "size": 1234 } } }
+ */
+public class WebBundleManifest {
+    public static final String FILE_NAME = "pos-manifest.json";
+
+    public final String version;
+    public final long generatedAt;
+    public final String entry;
+    public final Map<String, FileInfo> files;
+    public final String rawJson;
+
+    public static class FileInfo {
+        public final String sha256;
+        public final long size;
+
+        FileInfo(String sha256, long size) {
+            this.sha256 = sha256;
+            this.size = size;
+        }
+    }
+
+    private WebBundleManifest(String version, long generatedAt, String entry, Map<String, FileInfo> files, String rawJson) {
+        this.version = version;
+        this.generatedAt = generatedAt;
+        this.entry = entry;
+        this.files = Collections.unmodifiableMap(files);
+        this.rawJson = rawJson;
+    }
+
+    public static WebBundleManifest parse(String json) throws JSONException {
+        JSONObject root = new JSONObject(json);
+        String version = root.getString("version");
+        if (!isSafeVersion(version)) {
+            throw new JSONException("Unsafe version in manifest: " + version);
+        }
+        long generatedAt = root.optLong("generatedAt", 0);
+        String entry = root.optString("entry", "index.html");
+
+        Map<String, FileInfo> files = new HashMap<>();
+        JSONObject fileObj = root.getJSONObject("files");
+        Iterator<String> keys = fileObj.keys();
+        while (keys.hasNext()) {
+            String path = keys.next();
+            if (!isSafePath(path)) {
+                throw new JSONException("Unsafe path in manifest: " + path);
+            }
+            JSONObject info = fileObj.getJSONObject(path);
+            files.put(path, new FileInfo(info.getString("sha256"), info.optLong("size", -1)));
+        }
+
+        if (!files.containsKey(entry)) {
+            throw new JSONException("Manifest entry not listed in files: " + entry);
+        }
+        return new WebBundleManifest(version, generatedAt, entry, files, json);
+    }
+
+    public boolean contains(String path) {
+        return files.containsKey(path);
+    }
+
+    public long totalBytes() {
+        long total = 0;
+        for (FileInfo info : files.values()) {
+            total += Math.max(0, info.size);
+        }
+        return total;
+    }
+
+    /**
+     * Solo percorsi relativi senza risalite: il manifest arriva dalla rete e diventa un path su disco
+     */
+    static boolean isSafePath(String path) {
+        return !path.isEmpty() && !path.startsWith("/") && !path.contains("..") && !path.contains("\\");
+    }
+
+    /**
+     * La versione diventa il nome della directory del bundle: un solo segmento, niente separatori
+     */
+    static boolean isSafeVersion(String version) {
+        return !version.isEmpty() && !version.startsWith(".") && version.matches("[A-Za-z0-9._-]+");
+    }
+}
@@ -0,0 +1,525 @@
+package com.omnilypro.pos.web;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Cache HTTP persistente per il WebView del POS
+ *
+ * - Asset statici con hash nel nome (build Vite: /assets/index-AbCd1234.js) serviti dal disco senza rete
+ * - Entry point HTML rivalidato ad ogni avvio con ETag / Last-Modified (304 = servito dalla cache)
+ * - Purge degli asset vecchi solo quando il server annuncia una nuova build
+ *
+ * Tutto il resto passa dalla cache HTTP standard di Chromium (LOAD_DEFAULT).
+ */
+public class WebCacheManager {
+    private static final String TAG = "WebCacheManager";
+    private static final String PREFS_NAME = "web_cache";
+    private static final String KEY_CURRENT_BUILD = "current_build";
+    private static final String KEY_PREVIOUS_BUILD = "previous_build";
+
+    // Header opzionale con cui il server può annunciare esplicitamente la build
+    private static final String BUILD_HEADER = "X-Omnily-Build";
+
+    public static final String APP_HOST = "omnilypro.com";
+    private static final String ENTRY_KEY = "https://" + APP_HOST + "/index.html";
+
+    // Asset Vite/Rollup con hash di contenuto: [name]-[hash].[ext], hash base64url di esattamente 8 caratteri.
+    // Un suffisso di sole minuscole è una parola (es. customer-displays.js), non un hash: viene rivalidato.
+    // Niente .json: pos-manifest.json e simili cambiano a parità di nome
+    private static final Pattern HASHED_ASSET = Pattern.compile(
+            "^/assets/[^/]+-(?![a-z]{8}\\.)[A-Za-z0-9_-]{8}\\.(js|css|woff2?|ttf|otf|png|jpe?g|gif|svg|webp|ico|mp3|wav)$");
+
+    private static final long MAX_CACHE_BYTES = 150L * 1024 * 1024; // 150 MB
+
+    private static WebCacheManager instance;
+
+    private final SharedPreferences prefs;
+    private final File cacheDir;
+    private final OkHttpClient httpClient;
+    private final ExecutorService maintenanceExecutor = Executors.newSingleThreadExecutor();
+
+    private WebCacheManager(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.cacheDir = new File(appContext.getFilesDir(), "web_cache");
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.e(TAG, "❌ Cannot create cache dir: " + cacheDir);
+        }
+
+        this.httpClient = new OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public static synchronized WebCacheManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new WebCacheManager(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Client HTTP condiviso dai componenti web nativi
+     */
+    public OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Da chiamare in WebViewClient.shouldInterceptRequest (thread IO del WebView)
+     *
+     * @return la risposta dalla cache, oppure null per lasciare la richiesta al WebView
+     */
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getMethod())) {
+            return null;
+        }
+
+        Uri uri = request.getUrl();
+        if (!isAppHost(uri) || request.getRequestHeaders().containsKey("Range")) {
+            return null;
+        }
+
+        String path = uri.getPath() != null ? uri.getPath() : "/";
+        try {
+            if (isHashedAsset(path)) {
+                return serveImmutable(uri);
+            }
+            if (isEntryRequest(request, path)) {
+                return serveEntry(uri);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Cache intercept failed for " + path + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * URL iniziale senza cache-busting: la freschezza è garantita dalla rivalidazione dell'entry point
+     */
+    public static String getEntryUrl(String query) {
+        return "https://" + APP_HOST + (query != null && !query.isEmpty() ? "?" + query : "");
+    }
+
+    public String getCurrentBuild() {
+        return prefs.getString(KEY_CURRENT_BUILD, null);
+    }
+
+    // ============================================================================
+    // Strategie di cache
+    // ============================================================================
+
+    /**
+     * Asset con hash: il contenuto non cambia mai per lo stesso URL, quindi cache-first senza rivalidazione
+     */
+    private WebResourceResponse serveImmutable(Uri uri) throws IOException {
+        String key = uri.getScheme() + "://" + uri.getHost() + uri.getPath();
+        CacheEntry entry = readEntry(key);
+        if (entry != null) {
+            entry.touch(getCurrentBuild());
+            return entry.toResponse(200);
+        }
+
+        Request request = new Request.Builder().url(key).build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (response.code() != 200 || response.body() == null) {
+                return null;
+            }
+            entry = writeEntry(key, response);
+        }
+        trimToBudgetAsync();
+        return entry != null ? entry.toResponse(200) : null;
+    }
+
+    /**
+     * Entry point HTML: richiesta condizionale, 304 → cache, errore di rete → ultima copia nota
+     */
+    private WebResourceResponse serveEntry(Uri uri) throws IOException {
+        CacheEntry cached = readEntry(ENTRY_KEY);
+
+        Request.Builder builder = new Request.Builder().url(uri.toString());
+        if (cached != null) {
+            if (cached.etag != null) {
+                builder.header("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified != null) {
+                builder.header("If-Modified-Since", cached.lastModified);
+            }
+        }
+
+        try (Response response = httpClient.newCall(builder.build()).execute()) {
+            if (response.code() == 304 && cached != null) {
+                Log.d(TAG, "✅ Entry point not modified (304) - serving cached copy");
+                return cached.toResponse(200);
+            }
+            if (response.code() == 200 && response.body() != null) {
+                CacheEntry fresh = writeEntry(ENTRY_KEY, response);
+                if (fresh != null) {
+                    String build = response.header(BUILD_HEADER);
+                    onBuildSeen(build != null ? build : fresh.etag != null ? fresh.etag : fresh.sha1);
+                    return fresh.toResponse(200);
+                }
+            }
+            Log.w(TAG, "⚠️ Entry point HTTP " + response.code());
+        } catch (IOException e) {
+            Log.w(TAG, "⚠️ Entry point network error: " + e.getMessage());
+        }
+
+        if (cached != null) {
+            Log.i(TAG, "📦 Serving last known entry point (offline)");
+            return cached.toResponse(200);
+        }
+        return null;
+    }
+
+    /**
+     * Registra la build annunciata dal server e avvia il purge solo se è cambiata
+     */
+    private synchronized void onBuildSeen(String build) {
+        if (build == null) {
+            return;
+        }
+        String current = getCurrentBuild();
+        if (build.equals(current)) {
+            return;
+        }
+
+        Log.i(TAG, "🆕 New web build announced: " + build + " (was " + current + ")");
+        prefs.edit()
+                .putString(KEY_PREVIOUS_BUILD, current)
+                .putString(KEY_CURRENT_BUILD, build)
+                .apply();
+
+        if (current != null) {
+            maintenanceExecutor.submit(this::purgeStaleBuilds);
+        }
+    }
+
+    /**
+     * Elimina gli asset non usati né dalla build corrente né dalla precedente
+     */
+    private void purgeStaleBuilds() {
+        String current = prefs.getString(KEY_CURRENT_BUILD, null);
+        String previous = prefs.getString(KEY_PREVIOUS_BUILD, null);
+        File[] metas = cacheDir.listFiles((dir, name) -> name.endsWith(".meta"));
+        if (metas == null) {
+            return;
+        }
+
+        int purged = 0;
+        for (File meta : metas) {
+            CacheEntry entry = CacheEntry.load(meta);
+            if (entry == null || ENTRY_KEY.equals(entry.url)) {
+                continue;
+            }
+            if (entry.build == null || (!entry.build.equals(current) && !entry.build.equals(previous))) {
+                entry.delete();
+                purged++;
+            }
+        }
+        Log.i(TAG, "🧹 Purged " + purged + " assets from old builds");
+    }
+
+    private void trimToBudgetAsync() {
+        maintenanceExecutor.submit(() -> {
+            File[] metas = cacheDir.listFiles((dir, name) -> name.endsWith(".meta"));
+            if (metas == null) {
+                return;
+            }
+            long total = 0;
+            java.util.List<CacheEntry> entries = new java.util.ArrayList<>();
+            for (File meta : metas) {
+                CacheEntry entry = CacheEntry.load(meta);
+                if (entry != null) {
+                    entries.add(entry);
+                    total += entry.body.length();
+                }
+            }
+            if (total <= MAX_CACHE_BYTES) {
+                return;
+            }
+            // LRU: elimina prima gli asset usati meno di recente
+            java.util.Collections.sort(entries, (a, b) -> Long.compare(a.body.lastModified(), b.body.lastModified()));
+            for (CacheEntry entry : entries) {
+                if (total <= MAX_CACHE_BYTES) {
+                    break;
+                }
+                if (ENTRY_KEY.equals(entry.url)) {
+                    continue;
+                }
+                total -= entry.body.length();
+                entry.delete();
+            }
+            Log.i(TAG, "🧹 Cache trimmed to " + (total / 1024) + " KB");
+        });
+    }
+
+    /**
+     * Svuota l'intera cache (usato dal recovery)
+     */
+    public void clear() {
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        prefs.edit().clear().apply();
+        Log.i(TAG, "🧹 Web cache cleared");
+    }
+
+    // ============================================================================
+    // Storage su disco
+    // ============================================================================
+
+    /**
+     * Path di un asset immutabile (servito dalla cache senza rivalidazione)
+     */
+    static boolean isHashedAsset(String path) {
+        return HASHED_ASSET.matcher(path).matches();
+    }
+
+    private static boolean isAppHost(Uri uri) {
+        String host = uri.getHost();
+        return "https".equals(uri.getScheme()) && host != null
+                && (host.equals(APP_HOST) || host.equals("www." + APP_HOST));
+    }
+
+    private static boolean isEntryRequest(WebResourceRequest request, String path) {
+        if (!request.isForMainFrame()) {
+            return false;
+        }
+        // Le rotte della SPA non hanno estensione e vengono tutte riscritte su index.html
+        String lastSegment = path.substring(path.lastIndexOf('/') + 1);
+        return lastSegment.isEmpty() || lastSegment.equals("index.html") || !lastSegment.contains(".");
+    }
+
+    private CacheEntry readEntry(String url) {
+        String name = sha1(url);
+        File meta = new File(cacheDir, name + ".meta");
+        return meta.exists() ? CacheEntry.load(meta) : null;
+    }
+
+    private CacheEntry writeEntry(String url, Response response) throws IOException {
+        ResponseBody body = response.body();
+        if (body == null) {
+            return null;
+        }
+
+        String name = sha1(url);
+        // Temporaneo per richiesta: due fetch concorrenti dello stesso URL (pagina + SW, prefetch)
+        // non scrivono mai nello stesso file
+        File tmp = File.createTempFile(name, ".tmp", cacheDir);
+        MessageDigest digest = newSha1();
+        long written = 0;
+        try (InputStream in = body.byteStream(); FileOutputStream out = new FileOutputStream(tmp)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                digest.update(buffer, 0, read);
+                written += read;
+            }
+            out.getFD().sync();
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+
+        CacheEntry entry = new CacheEntry(cacheDir, name);
+        entry.url = url;
+        entry.contentType = response.header("Content-Type", "application/octet-stream");
+        entry.etag = response.header("ETag");
+        entry.lastModified = response.header("Last-Modified");
+        entry.build = getCurrentBuild();
+        entry.sha1 = toHex(digest.digest());
+
+        // Un asset immutabile non viene più rivalidato: prima di installarlo il file su disco
+        // deve avere la lunghezza annunciata e lo stesso digest dei byte ricevuti
+        long expected = body.contentLength();
+        if ((expected >= 0 && expected != written) || !entry.sha1.equals(sha1Of(tmp))) {
+            tmp.delete();
+            throw new IOException("Digest mismatch, cache entry discarded for " + url);
+        }
+
+        // Rename atomico: un crash a metà scrittura non lascia mai un body troncato in cache
+        if (!tmp.renameTo(entry.body)) {
+            tmp.delete();
+            throw new IOException("Cannot commit cache entry for " + url);
+        }
+        entry.saveMeta();
+        return entry;
+    }
+
+    static String sha1(String value) {
+        MessageDigest digest = newSha1();
+        return toHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String sha1Of(File file) throws IOException {
+        MessageDigest digest = newSha1();
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] hex = "0123456789abcdef".toCharArray();
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = hex[(bytes[i] >> 4) & 0xF];
+            out[i * 2 + 1] = hex[bytes[i] & 0xF];
+        }
+        return new String(out);
+    }
+
+    /**
+     * Voce di cache: body + metadata JSON affiancato (.meta)
+     */
+    private static class CacheEntry {
+        final File body;
+        final File meta;
+        String url;
+        String contentType;
+        String etag;
+        String lastModified;
+        String build;
+        String sha1;
+
+        CacheEntry(File dir, String name) {
+            this.body = new File(dir, name + ".body");
+            this.meta = new File(dir, name + ".meta");
+        }
+
+        static CacheEntry load(File meta) {
+            String name = meta.getName().substring(0, meta.getName().length() - ".meta".length());
+            CacheEntry entry = new CacheEntry(meta.getParentFile(), name);
+            if (!entry.body.exists()) {
+                meta.delete();
+                return null;
+            }
+            try (FileInputStream in = new FileInputStream(meta)) {
+                byte[] data = new byte[(int) meta.length()];
+                int offset = 0;
+                while (offset < data.length) {
+                    int read = in.read(data, offset, data.length - offset);
+                    if (read < 0) break;
+                    offset += read;
+                }
+                JSONObject json = new JSONObject(new String(data, 0, offset, StandardCharsets.UTF_8));
+                entry.url = json.optString("url", null);
+                entry.contentType = json.optString("contentType", "application/octet-stream");
+                entry.etag = json.optString("etag", null);
+                entry.lastModified = json.optString("lastModified", null);
+                entry.build = json.optString("build", null);
+                entry.sha1 = json.optString("sha1", null);
+                return entry;
+            } catch (Exception e) {
+                entry.delete();
+                return null;
+            }
+        }
+
+        void saveMeta() throws IOException {
+            try {
+                JSONObject json = new JSONObject();
+                json.put("url", url);
+                json.put("contentType", contentType);
+                json.putOpt("etag", etag);
+                json.putOpt("lastModified", lastModified);
+                json.putOpt("build", build);
+                json.putOpt("sha1", sha1);
+                File tmp = File.createTempFile(meta.getName(), ".tmp", meta.getParentFile());
+                try (FileOutputStream out = new FileOutputStream(tmp)) {
+                    out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                if (!tmp.renameTo(meta)) {
+                    tmp.delete();
+                    throw new IOException("Cannot write " + meta);
+                }
+            } catch (org.json.JSONException e) {
+                throw new IOException(e);
+            }
+        }
+
+        /**
+         * Aggiorna timestamp LRU e build di appartenenza (un asset riusato dalla nuova build non va eliminato)
+         */
+        void touch(String currentBuild) {
+            body.setLastModified(System.currentTimeMillis());
+            if (currentBuild != null && !currentBuild.equals(build)) {
+                build = currentBuild;
+                try {
+                    saveMeta();
+                } catch (IOException e) {
+                    Log.w(TAG, "⚠️ Cannot update cache metadata: " + e.getMessage());
+                }
+            }
+        }
+
+        void delete() {
+            body.delete();
+            meta.delete();
+        }
+
+        WebResourceResponse toResponse(int status) throws IOException {
+            String mime = contentType;
+            String charset = null;
+            int semicolon = contentType.indexOf(';');
+            if (semicolon >= 0) {
+                mime = contentType.substring(0, semicolon).trim();
+                int charsetIdx = contentType.toLowerCase().indexOf("charset=");
+                if (charsetIdx >= 0) {
+                    charset = contentType.substring(charsetIdx + "charset=".length()).trim();
+                }
+            }
+
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Content-Type", contentType);
+            if (etag != null) {
+                headers.put("ETag", etag);
+            }
+            return new WebResourceResponse(mime, charset, status, "OK", headers, new FileInputStream(body));
+        }
+    }
+}
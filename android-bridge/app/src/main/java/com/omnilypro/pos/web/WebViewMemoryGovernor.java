@@ -0,0 +1,184 @@
+package com.omnilypro.pos.web;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.WebView;
+
+/**
+ * Gestione dei due WebView (principale + customer display) sotto pressione di memoria
+ *
+ * - Priorità renderer: principale IMPORTANT, customer display WAIVED (sacrificabile)
+ * - MODERATE: i WebView ricevono l'evento 'omnilypos:memorypressure' (per ora nessun listener nel web app)
+ * - LOW: svuotata la cache HTTP in memoria, condivisa da TUTTI i WebView dell'app (anche il principale):
+ *   le risorse vengono rilette dagli interceptor locali o dalla cache su disco, la RAM torna libera
+ * - CRITICAL / onLowMemory: il WebView del customer display viene rilasciato e ripristinato
+ *   dopo RESTORE_COOLDOWN_MS senza nuove segnalazioni
+ */
+public class WebViewMemoryGovernor {
+    private static final String TAG = "MemoryGovernor";
+    private static final long RESTORE_COOLDOWN_MS = 60000;
+
+    public interface Host {
+        WebView getMainWebView();
+
+        WebView getCustomerWebView();
+
+        void releaseCustomerDisplay();
+
+        void restoreCustomerDisplay();
+    }
+
+    private final Context context;
+    private final Host host;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private boolean customerReleased = false;
+    private long lastPressureAt;
+    private int lastNotifiedLevel = -1;
+
+    private final Runnable restoreCheck = this::tryRestoreCustomerDisplay;
+
+    public WebViewMemoryGovernor(Context context, Host host) {
+        this.context = context.getApplicationContext();
+        this.host = host;
+    }
+
+    public static void applyMainPolicy(WebView webView) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            webView.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_IMPORTANT, false);
+        }
+    }
+
+    public static void applyWaivablePolicy(WebView webView) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            webView.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_WAIVED, true);
+        }
+    }
+
+    /**
+     * Da ComponentCallbacks2.onTrimMemory dell'activity (main thread)
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN && level < ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            // UI_HIDDEN / BACKGROUND / MODERATE: app non in primo piano, il POS non è in uso
+            notifyWebApps("background", level);
+            return;
+        }
+
+        switch (level) {
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE:
+                onPressure("moderate", level);
+                break;
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW:
+                onPressure("low", level);
+                trimHttpMemoryCache();
+                break;
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL:
+            case ComponentCallbacks2.TRIM_MEMORY_COMPLETE:
+                onPressure("critical", level);
+                releaseCustomerDisplay();
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void onLowMemory() {
+        onPressure("critical", ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        releaseCustomerDisplay();
+    }
+
+    private void onPressure(String name, int level) {
+        lastPressureAt = SystemClock.elapsedRealtime();
+        Log.w(TAG, "⚠️ Memory pressure: " + name + " (level " + level + ") - " + describeMemory());
+        notifyWebApps(name, level);
+    }
+
+    /**
+     * Evento per le pagine che vogliono liberare le proprie cache prima che il sistema uccida il renderer
+     */
+    private void notifyWebApps(String name, int level) {
+        // Stesso livello ripetuto: il web app ha già reagito
+        if (level == lastNotifiedLevel && !"critical".equals(name)) {
+            return;
+        }
+        lastNotifiedLevel = level;
+        String script = "window.dispatchEvent(new CustomEvent('omnilypos:memorypressure', { detail: { level: '"
+                + name + "', trimLevel: " + level + " } }));";
+        WebView main = host.getMainWebView();
+        if (main != null) {
+            main.evaluateJavascript(script, null);
+        }
+        WebView customer = host.getCustomerWebView();
+        if (customer != null) {
+            customer.evaluateJavascript(script, null);
+        }
+    }
+
+    private void trimHttpMemoryCache() {
+        WebView any = host.getCustomerWebView() != null ? host.getCustomerWebView() : host.getMainWebView();
+        if (any != null) {
+            // clearCache agisce sulla cache dell'app, non del singolo WebView; false = solo RAM, il disco resta
+            any.clearCache(false);
+            Log.i(TAG, "🪶 WebView in-memory HTTP cache cleared (all WebViews)");
+        }
+    }
+
+    private void releaseCustomerDisplay() {
+        if (!customerReleased && host.getCustomerWebView() != null) {
+            customerReleased = true;
+            host.releaseCustomerDisplay();
+            Log.w(TAG, "🧯 Customer display WebView released to protect the main renderer");
+        }
+        mainHandler.removeCallbacks(restoreCheck);
+        mainHandler.postDelayed(restoreCheck, RESTORE_COOLDOWN_MS);
+    }
+
+    private void tryRestoreCustomerDisplay() {
+        if (!customerReleased) {
+            return;
+        }
+        long quietFor = SystemClock.elapsedRealtime() - lastPressureAt;
+        if (quietFor < RESTORE_COOLDOWN_MS || isSystemLowOnMemory()) {
+            mainHandler.postDelayed(restoreCheck, RESTORE_COOLDOWN_MS);
+            return;
+        }
+        customerReleased = false;
+        lastNotifiedLevel = -1;
+        host.restoreCustomerDisplay();
+        Log.i(TAG, "✅ Memory pressure gone - customer display restored (" + describeMemory() + ")");
+    }
+
+    public void release() {
+        mainHandler.removeCallbacks(restoreCheck);
+    }
+
+    private boolean isSystemLowOnMemory() {
+        ActivityManager.MemoryInfo info = getMemoryInfo();
+        return info != null && info.lowMemory;
+    }
+
+    private String describeMemory() {
+        ActivityManager.MemoryInfo info = getMemoryInfo();
+        if (info == null) {
+            return "memory info n/a";
+        }
+        return "avail " + (info.availMem / (1024 * 1024)) + "MB, threshold " + (info.threshold / (1024 * 1024))
+                + "MB, low=" + info.lowMemory;
+    }
+
+    private ActivityManager.MemoryInfo getMemoryInfo() {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (am == null) {
+            return null;
+        }
+        ActivityManager.MemoryInfo info = new ActivityManager.MemoryInfo();
+        am.getMemoryInfo(info);
+        return info;
+    }
+}
@@ -0,0 +1,93 @@
+package com.omnilypro.pos.bridge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class BridgeResultTest {
+
+    private static final String[] SAMPLES = {
+            "",
+            "plain ascii",
+            "quote \" backslash \\ slash / </script>",
+            "newline \n return \r tab \t backspace \b formfeed \f",
+            "nul \u0000 unit-sep \u001f del \u007f",
+            "line sep \u2028 para sep \u2029 end",
+            "non-BMP 😀 𝄞 🇮🇹 and BMP àèìòù €",
+            "04:A3:2B:91:5C:80",
+    };
+
+    /**
+     * Decodifica con org.json: il confronto è semantico (org.json e Android escapano in modo diverso)
+     */
+    private static String roundTrip(String value) throws JSONException {
+        String json = BridgeResult.begin().put(BridgeResult.MESSAGE, value).end();
+        return new JSONObject(json).getString("message");
+    }
+
+    @Test
+    public void escapedStringsRoundTripThroughOrgJson() throws JSONException {
+        for (String sample : SAMPLES) {
+            assertEquals(sample, roundTrip(sample));
+        }
+        StringBuilder allControls = new StringBuilder();
+        for (char c = 0; c < 0x20; c++) {
+            allControls.append(c);
+        }
+        assertEquals(allControls.toString(), roundTrip(allControls.toString()));
+    }
+
+    @Test
+    public void outputIsSafeAsJavaScriptSource() {
+        for (String sample : SAMPLES) {
+            String quoted = BridgeResult.quote(sample);
+            // U+2028/U+2029 chiudono la riga in sorgente JS (runJsCallback), i controlli non sono JSON valido
+            assertFalse(quoted.indexOf('\u2028') >= 0 || quoted.indexOf('\u2029') >= 0);
+            for (int i = 0; i < quoted.length(); i++) {
+                assertTrue("raw control char in " + quoted, quoted.charAt(i) >= 0x20);
+            }
+        }
+        assertEquals("\"\\u2028\\u2029\"", BridgeResult.quote("\u2028\u2029"));
+        assertEquals("\"\\u0000\\u001f\"", BridgeResult.quote("\u0000\u001f"));
+        assertEquals("\"\\\"\\\\\\n\"", BridgeResult.quote("\"\\\n"));
+    }
+
+    @Test
+    public void nonBmpCharactersAreCopiedAsSurrogatePairs() {
+        assertEquals("\"😀𝄞\"", BridgeResult.quote("😀𝄞"));
+    }
+
+    @Test
+    public void matchesJsonObjectForTypicalResults() throws JSONException {
+        String encoded = BridgeResult.begin()
+                .put(BridgeResult.SUCCESS, true)
+                .put(BridgeResult.CARD_NO, "04A32B915C80")
+                .put(BridgeResult.RF_UID, (String) null)
+                .put(BridgeResult.TYPE, 42L)
+                .end();
+        JSONObject parsed = new JSONObject(encoded);
+        assertTrue(parsed.getBoolean("success"));
+        assertEquals("04A32B915C80", parsed.getString("cardNo"));
+        assertTrue(parsed.isNull("rfUid"));
+        assertEquals(42L, parsed.getLong("type"));
+        assertEquals(4, parsed.length());
+
+        JSONObject error = new JSONObject(BridgeResult.error("NFC \"off\""));
+        assertFalse(error.getBoolean("success"));
+        assertEquals("NFC \"off\"", error.getString("error"));
+        assertEquals("{\"success\":true,\"message\":\"ok\"}", BridgeResult.success("ok"));
+    }
+
+    @Test
+    public void nestedResultOnSameThreadUsesOwnBuffer() throws JSONException {
+        BridgeResult outer = BridgeResult.begin().put(BridgeResult.SUCCESS, true);
+        String inner = BridgeResult.error("inner");
+        String json = outer.put(BridgeResult.MESSAGE, inner).end();
+        assertEquals(inner, new JSONObject(json).getString("message"));
+        assertEquals("{\"success\":false,\"error\":\"inner\"}", inner);
+    }
+}
@@ -0,0 +1,93 @@
+package com.omnilypro.pos.diagnostics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class BridgeMetricsHistogramTest {
+
+    @Test
+    public void smallValuesHaveExactBuckets() {
+        for (long value = 0; value < 32; value++) {
+            assertEquals(value, BridgeMetrics.Histogram.indexOf(value));
+            assertEquals(value, BridgeMetrics.Histogram.valueAt((int) value));
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguousAtPowersOfTwo() {
+        assertEquals(31, BridgeMetrics.Histogram.indexOf(31));
+        assertEquals(32, BridgeMetrics.Histogram.indexOf(32));
+        assertEquals(32, BridgeMetrics.Histogram.indexOf(33));
+        assertEquals(33, BridgeMetrics.Histogram.indexOf(34));
+        assertEquals(47, BridgeMetrics.Histogram.indexOf(63));
+        assertEquals(48, BridgeMetrics.Histogram.indexOf(64));
+    }
+
+    @Test
+    public void indexIsMonotonicAndValueWithinRelativeError() {
+        int previous = -1;
+        for (long value = 0; value < 1L << 36; value = value < 64 ? value + 1 : value + value / 37) {
+            int index = BridgeMetrics.Histogram.indexOf(value);
+            assertTrue("index decreased at " + value, index >= previous);
+            previous = index;
+            long center = BridgeMetrics.Histogram.valueAt(index);
+            // 16 sotto-bucket per potenza di 2: errore relativo del centro ≤ 1/32
+            assertTrue("value " + value + " -> " + center, Math.abs(center - value) <= value / 32);
+        }
+    }
+
+    @Test
+    public void valueAtInvertsBucketStart() {
+        for (int index = 32; index < 300; index++) {
+            assertEquals(index, BridgeMetrics.Histogram.indexOf(BridgeMetrics.Histogram.valueAt(index)));
+        }
+    }
+
+    @Test
+    public void hugeValuesClampToLastBucket() {
+        int last = BridgeMetrics.Histogram.indexOf(Long.MAX_VALUE);
+        assertEquals(last, BridgeMetrics.Histogram.indexOf(1L << 50));
+        assertTrue(BridgeMetrics.Histogram.valueAt(last) > 0);
+    }
+
+    @Test
+    public void percentilesInMilliseconds() throws JSONException {
+        BridgeMetrics.Histogram histogram = new BridgeMetrics.Histogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(2_000); // 2 ms
+        }
+        histogram.record(500_000); // 500 ms
+        histogram.record(-5); // Clock all'indietro: contato come 0
+
+        BridgeMetrics.Histogram.Counts sent = histogram.snapshot();
+        JSONObject json = sent.toJson();
+        assertEquals(101, json.getLong("count"));
+        assertEquals(2.0, json.getDouble("p50"), 0.13);
+        assertEquals(2.0, json.getDouble("p90"), 0.13);
+        assertEquals(500.0, json.getDouble("max"), 0.0);
+        // commit: finestra successiva vuota
+        histogram.subtract(sent);
+        assertNull(histogram.snapshot().toJson());
+    }
+
+    @Test
+    public void subtractKeepsSamplesRecordedAfterSnapshot() throws JSONException {
+        BridgeMetrics.Histogram histogram = new BridgeMetrics.Histogram();
+        histogram.record(500_000);
+        BridgeMetrics.Histogram.Counts sent = histogram.snapshot();
+        histogram.record(3_000);
+        histogram.record(3_000);
+
+        histogram.subtract(sent);
+        JSONObject json = histogram.snapshot().toJson();
+        assertEquals(2, json.getLong("count"));
+        assertEquals(3.0, json.getDouble("p50"), 0.13);
+        // Il massimo inviato non resta nella finestra successiva
+        assertEquals(3.0, json.getDouble("max"), 0.13);
+    }
+}
@@ -0,0 +1,29 @@
+package com.omnilypro.pos.web;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PickedImageCompressorTest {
+
+    @Test
+    public void pngAndWebpSourcesStayLossless() {
+        assertTrue(PickedImageCompressor.keepsLossless("image/png", false));
+        assertTrue(PickedImageCompressor.keepsLossless("image/webp", false));
+        assertTrue(PickedImageCompressor.keepsLossless("IMAGE/PNG", false));
+    }
+
+    @Test
+    public void transparencyStaysLosslessWhateverTheSource() {
+        assertTrue(PickedImageCompressor.keepsLossless("image/jpeg", true));
+        assertTrue(PickedImageCompressor.keepsLossless(null, true));
+    }
+
+    @Test
+    public void opaquePhotosAreRecompressed() {
+        assertFalse(PickedImageCompressor.keepsLossless("image/jpeg", false));
+        assertFalse(PickedImageCompressor.keepsLossless("image/heic", false));
+        assertFalse(PickedImageCompressor.keepsLossless(null, false));
+    }
+}
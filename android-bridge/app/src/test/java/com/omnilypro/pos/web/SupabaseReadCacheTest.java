@@ -0,0 +1,82 @@
+package com.omnilypro.pos.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+public class SupabaseReadCacheTest {
+
+    private final Map<String, SupabaseReadCache.Route> routes = SupabaseReadCache.defaultRoutes();
+
+    @Test
+    public void tableOfAcceptsOnlyTopLevelTables() {
+        assertEquals("customers", SupabaseReadCache.tableOf("/rest/v1/customers"));
+        assertEquals("rewards", SupabaseReadCache.tableOf("/rest/v1/rewards"));
+        assertNull(SupabaseReadCache.tableOf("/rest/v1/rpc/add_customer_points"));
+        assertNull(SupabaseReadCache.tableOf("/rest/v1/"));
+        assertNull(SupabaseReadCache.tableOf("/auth/v1/token"));
+        assertNull(SupabaseReadCache.tableOf(null));
+    }
+
+    @Test
+    public void restWriteInvalidatesOnlyItsTable() {
+        assertEquals(Collections.singletonList("customers"),
+                SupabaseReadCache.invalidatedTables(routes, "PATCH", "/rest/v1/customers"));
+        assertEquals(Collections.singletonList("rewards"),
+                SupabaseReadCache.invalidatedTables(routes, "DELETE", "/rest/v1/rewards"));
+        // Tabella non in cache: niente da invalidare
+        assertTrue(SupabaseReadCache.invalidatedTables(routes, "POST", "/rest/v1/transactions").isEmpty());
+    }
+
+    @Test
+    public void readsNeverInvalidate() {
+        assertTrue(SupabaseReadCache.invalidatedTables(routes, "GET", "/rest/v1/customers").isEmpty());
+        assertTrue(SupabaseReadCache.invalidatedTables(routes, "HEAD", "/rest/v1/customers").isEmpty());
+        assertTrue(SupabaseReadCache.invalidatedTables(routes, "OPTIONS", "/rest/v1/rpc/add_customer_points").isEmpty());
+    }
+
+    @Test
+    public void rpcWriteInvalidatesRpcDependentRoutes() {
+        List<String> tables = SupabaseReadCache.invalidatedTables(routes, "POST", "/rest/v1/rpc/add_customer_points");
+        assertEquals(new HashSet<>(java.util.Arrays.asList("customers", "staff_members")), new HashSet<>(tables));
+
+        tables = SupabaseReadCache.invalidatedTables(routes, "POST", "/rest/v1/rpc/process_wallet_transaction");
+        assertTrue(tables.contains("customers"));
+        // Dati di configurazione non dipendono dalle RPC
+        assertFalse(tables.contains("organizations"));
+        assertFalse(tables.contains("rewards"));
+    }
+
+    @Test
+    public void parseRoutesReadsTtlAndRpcFlag() throws JSONException {
+        Map<String, SupabaseReadCache.Route> parsed = SupabaseReadCache.parseRoutes(
+                "[{\"table\":\"customers\",\"ttlSeconds\":10,\"maxStaleSeconds\":60,\"invalidateOnRpc\":true},"
+                        + "{\"table\":\"rewards\",\"ttlSeconds\":300}]");
+        assertEquals(2, parsed.size());
+        assertEquals(10_000L, parsed.get("customers").ttlMs);
+        assertEquals(60_000L, parsed.get("customers").maxStaleMs);
+        assertTrue(parsed.get("customers").invalidateOnRpc);
+        // maxStale mai sotto il TTL, flag RPC spento di default
+        assertEquals(300_000L, parsed.get("rewards").maxStaleMs);
+        assertFalse(parsed.get("rewards").invalidateOnRpc);
+    }
+
+    @Test(expected = JSONException.class)
+    public void parseRoutesRejectsNestedPaths() throws JSONException {
+        SupabaseReadCache.parseRoutes("[{\"table\":\"rpc/add_customer_points\",\"ttlSeconds\":10}]");
+    }
+
+    @Test(expected = JSONException.class)
+    public void parseRoutesRejectsMissingTtl() throws JSONException {
+        SupabaseReadCache.parseRoutes("[{\"table\":\"customers\"}]");
+    }
+}
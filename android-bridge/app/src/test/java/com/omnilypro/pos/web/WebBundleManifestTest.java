@@ -0,0 +1,65 @@
+package com.omnilypro.pos.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class WebBundleManifestTest {
+
+    private static String manifest(String version, String path) {
+        return "{\"version\":\"" + version + "\",\"entry\":\"index.html\",\"files\":{"
+                + "\"index.html\":{\"sha256\":\"00\",\"size\":1},"
+                + "\"" + path + "\":{\"sha256\":\"11\",\"size\":2}}}";
+    }
+
+    @Test
+    public void acceptsRelativeBundlePaths() throws JSONException {
+        WebBundleManifest parsed = WebBundleManifest.parse(manifest("2026.10.17-ab12", "assets/index-BQ2i3dXa.js"));
+        assertEquals("2026.10.17-ab12", parsed.version);
+        assertEquals(2, parsed.files.size());
+    }
+
+    @Test
+    public void rejectsPathsLeavingTheBundle() {
+        String[] unsafe = {"../shared_prefs/web_bundle.xml", "assets/../../x.js", "/data/x.js", "assets\\\\x.js"};
+        for (String path : unsafe) {
+            try {
+                WebBundleManifest.parse(manifest("v1", path));
+                fail("accepted " + path);
+            } catch (JSONException expected) {
+                // ok
+            }
+        }
+    }
+
+    @Test
+    public void rejectsVersionsThatAreNotASingleDirectory() {
+        String[] unsafe = {"..", "../v1", "v1/x", ".staging-v1", ""};
+        for (String version : unsafe) {
+            try {
+                WebBundleManifest.parse(manifest(version, "assets/a.js"));
+                fail("accepted version " + version);
+            } catch (JSONException expected) {
+                // ok
+            }
+        }
+    }
+
+    @Test
+    public void resolveInsideStaysUnderRoot() throws IOException {
+        File root = new File(System.getProperty("java.io.tmpdir"), "bundle-root");
+        assertEquals(new File(root, "assets/a.js").getPath(),
+                WebBundleManager.resolveInside(root, "assets/a.js").getPath());
+        try {
+            WebBundleManager.resolveInside(root, "../outside.js");
+            fail("escaped root");
+        } catch (IOException expected) {
+            // ok
+        }
+    }
+}
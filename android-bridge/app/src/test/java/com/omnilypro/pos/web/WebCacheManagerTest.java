@@ -0,0 +1,47 @@
+package com.omnilypro.pos.web;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WebCacheManagerTest {
+
+    @Test
+    public void viteHashedAssetsAreImmutable() {
+        assertTrue(WebCacheManager.isHashedAsset("/assets/index-BQ2i3dXa.js"));
+        assertTrue(WebCacheManager.isHashedAsset("/assets/index-D8kq_2Lm.css"));
+        // L'hash base64url di Rollup può contenere '-' e '_'
+        assertTrue(WebCacheManager.isHashedAsset("/assets/vendor-react-a-9Xk_2Q.js"));
+        assertTrue(WebCacheManager.isHashedAsset("/assets/Inter-Regular-CfKQ92xA.woff2"));
+        assertTrue(WebCacheManager.isHashedAsset("/assets/logo-0a1b2c3d.png"));
+    }
+
+    @Test
+    public void plainNamesAreRevalidated() {
+        assertFalse(WebCacheManager.isHashedAsset("/assets/customer-display.js"));
+        assertFalse(WebCacheManager.isHashedAsset("/assets/customer-displays.js"));
+        assertFalse(WebCacheManager.isHashedAsset("/assets/pos-manifest.json"));
+        assertFalse(WebCacheManager.isHashedAsset("/pos-manifest.json"));
+        assertFalse(WebCacheManager.isHashedAsset("/index.html"));
+        assertFalse(WebCacheManager.isHashedAsset("/assets/logo.png"));
+    }
+
+    @Test
+    public void hashMustBeExactlyEightChars() {
+        assertFalse(WebCacheManager.isHashedAsset("/assets/index-BQ2i3dX.js"));
+        assertFalse(WebCacheManager.isHashedAsset("/assets/index-BQ2i3dXa9.js"));
+        assertFalse(WebCacheManager.isHashedAsset("/assets/index.BQ2i3dXa.js"));
+    }
+
+    @Test
+    public void jsonIsNeverContentHashed() {
+        assertFalse(WebCacheManager.isHashedAsset("/assets/data-BQ2i3dXa.json"));
+    }
+
+    @Test
+    public void onlyTopLevelAssetsDirectory() {
+        assertFalse(WebCacheManager.isHashedAsset("/other/index-BQ2i3dXa.js"));
+        assertFalse(WebCacheManager.isHashedAsset("/assets/sub/../index-BQ2i3dXa.js"));
+    }
+}
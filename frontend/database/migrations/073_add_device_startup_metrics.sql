@@ -0,0 +1,16 @@
+-- Migration: Add startup metrics to MDM devices
+-- Date: 2026-10-17
+-- Description: Cold-start timeline reported by the Android POS heartbeat (HeartbeatWorker)
+
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS startup_timeline JSONB;
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS startup_ready_ms INTEGER;
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS startup_at TIMESTAMPTZ;
+
+-- Confronto tempi di avvio nella flotta (es. regressioni dopo deploy APK/web)
+CREATE INDEX IF NOT EXISTS idx_devices_startup_ready_ms
+ON devices(startup_ready_ms)
+WHERE startup_ready_ms IS NOT NULL;
+
+COMMENT ON COLUMN devices.startup_timeline IS 'Latest startup timeline: {started_at, cold, web_bundle, phases: {phase: ms since process start}}';
+COMMENT ON COLUMN devices.startup_ready_ms IS 'Milliseconds from process start to JS bridge ready on the latest startup';
+COMMENT ON COLUMN devices.startup_at IS 'When the latest reported startup began';
@@ -0,0 +1,85 @@
+-- Migration: Create device_log_uploads table
+-- Date: 2026-10-17
+-- Description: Diagnostic log windows uploaded by the Android POS on the MDM 'upload_logs' command
+
+CREATE TABLE IF NOT EXISTS device_log_uploads (
+  id uuid PRIMARY KEY DEFAULT gen_random_uuid(),
+  device_id uuid REFERENCES devices(id) ON DELETE CASCADE,
+  command_id uuid REFERENCES device_commands(id) ON DELETE SET NULL,
+  window_minutes integer NOT NULL,
+  entries jsonb NOT NULL, -- [{t, level, tag, msg}] dal ring buffer in memoria
+  created_at timestamptz DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_device_log_uploads_device
+ON device_log_uploads(device_id, created_at DESC);
+
+ALTER TABLE device_log_uploads ENABLE ROW LEVEL SECURITY;
+
+-- Il dispositivo usa la chiave anon (auth.uid() è NULL): l'upload è ammesso solo in risposta a
+-- un comando upload_logs ancora aperto per quello stesso dispositivo. Funzione SECURITY DEFINER
+-- perché la chiave anon non legge device_commands attraverso le sue policy.
+CREATE OR REPLACE FUNCTION device_log_upload_allowed(p_device_id uuid, p_command_id uuid)
+RETURNS boolean AS $$
+  SELECT EXISTS (
+    SELECT 1 FROM device_commands
+    WHERE id = p_command_id
+    AND device_id = p_device_id
+    AND command_type = 'upload_logs'
+    AND status IN ('pending', 'executing')
+  );
+$$ LANGUAGE sql STABLE SECURITY DEFINER SET search_path = public;
+
+-- Versione precedente di questa migration: insert aperto a qualunque device_id
+DROP POLICY IF EXISTS "Devices insert log uploads" ON device_log_uploads;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1 FROM pg_policies
+        WHERE schemaname = 'public'
+        AND tablename = 'device_log_uploads'
+        AND policyname = 'Devices insert log uploads for own command'
+    ) THEN
+        CREATE POLICY "Devices insert log uploads for own command" ON device_log_uploads FOR INSERT
+        WITH CHECK (device_log_upload_allowed(device_id, command_id));
+    END IF;
+END $$;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1 FROM pg_policies
+        WHERE schemaname = 'public'
+        AND tablename = 'device_log_uploads'
+        AND policyname = 'Super admin read log uploads'
+    ) THEN
+        CREATE POLICY "Super admin read log uploads" ON device_log_uploads FOR SELECT USING (
+          auth.uid() IN (
+            SELECT user_id FROM organization_users
+            WHERE role = 'super_admin'
+          )
+        );
+    END IF;
+END $$;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1 FROM pg_policies
+        WHERE schemaname = 'public'
+        AND tablename = 'device_log_uploads'
+        AND policyname = 'Organization users read log uploads'
+    ) THEN
+        CREATE POLICY "Organization users read log uploads" ON device_log_uploads FOR SELECT USING (
+          device_id IN (
+            SELECT d.id FROM devices d
+            JOIN organization_users ou ON d.organization_id = ou.org_id
+            WHERE ou.user_id = auth.uid()
+          )
+        );
+    END IF;
+END $$;
+
+COMMENT ON TABLE device_log_uploads IS 'On-demand diagnostic log uploads (last N minutes of the in-memory ring buffer)';
+COMMENT ON COLUMN device_log_uploads.entries IS 'Log lines: {t: epoch ms, level, tag, msg}';
@@ -0,0 +1,7 @@
+-- Migration: Add frame-time (jank) summary to MDM devices
+-- Date: 2026-10-17
+-- Description: Per-minute frame percentiles of the POS and customer display WebViews, reported by the heartbeat
+
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS jank_summary JSONB;
+
+COMMENT ON COLUMN devices.jank_summary IS 'Last 10 minutes of frame metrics: {minutes: [{surface, minute, route, frames, p50, p90, p99, slow, frozen, worst_ms, suspects: {bridge_method: slow_frames}}]}';
@@ -0,0 +1,12 @@
+-- Migration: Add web app performance metrics to MDM devices
+-- Date: 2026-10-17
+-- Description: Navigation timing, LCP, long tasks and JS heap collected inside the POS page, aggregated per heartbeat
+
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS web_perf JSONB;
+
+-- Confronto per modello di terminale (es. regressioni del bundle web su hardware lento)
+CREATE INDEX IF NOT EXISTS idx_devices_model_web_perf
+ON devices(device_model)
+WHERE web_perf IS NOT NULL;
+
+COMMENT ON COLUMN devices.web_perf IS 'Web perf batch since previous heartbeat: {window_start, window_end, reports, web_bundle, page: {ttfb|dcl|load|fcp|lcp|transfer_kb: {count, p50, p90, max}}, long_tasks: {count, total_ms, max_ms, by_route}, heap: {used_mb, max_used_mb, limit_mb}}';
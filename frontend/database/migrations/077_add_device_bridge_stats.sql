@@ -0,0 +1,10 @@
+-- Migration: Add per-method bridge latency stats to MDM devices
+-- Date: 2026-10-17
+-- Description: Call counts and latency percentiles for each OmnilyPOS bridge method, aggregated per heartbeat
+
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS bridge_stats JSONB;
+
+-- Confronto per modello di terminale: nessun indice dedicato, devices(device_model) è già
+-- indicizzato (idx_devices_model_web_perf, 076) e la tabella ha una riga per dispositivo
+
+COMMENT ON COLUMN devices.bridge_stats IS 'Bridge latency since previous heartbeat: {window_start, window_end, methods: {<method>: {calls, exec_ms, queue_ms, callback_ms: {count, p50, p90, p99, max}}}}';
@@ -1,6 +1,7 @@
 import React, { createContext, useContext, useEffect, useState } from 'react'
 import type { User, Session } from '@supabase/supabase-js'
 import { supabase } from '../lib/supabase'
+import { restorePosSession, syncPosSession } from '../lib/posSession'
 import { auditService } from '../services/auditService'
 
 interface AuthContextType {
@@ -204,8 +205,8 @@ export const AuthProvider: React.FC<AuthProviderProps> = ({ children }) => {
       }
     }
 
-    // Get initial session from Supabase
-    supabase.auth.getSession().then(async ({ data: { session } }) => {
+    // Get initial session from Supabase (sul POS prima quella salvata nel Keystore nativo)
+    restorePosSession().then(() => supabase.auth.getSession()).then(async ({ data: { session } }) => {
       setSession(session)
       setUser(session?.user ?? null)
 
@@ -228,6 +229,8 @@ export const AuthProvider: React.FC<AuthProviderProps> = ({ children }) => {
         return
       }
 
+      syncPosSession(event, session)
+
       setSession(session)
       setUser(session?.user ?? null)
 
@@ -0,0 +1,72 @@
+/**
+ * POS Session Handoff
+ *
+ * Sul POS Android la sessione Supabase dello staff è conservata anche nel Keystore nativo
+ * (SecureSessionStore), così sopravvive al riavvio e alla pulizia della WebStorage.
+ * Lo scambio passa da window.OmnilySession (WebMessageListener, solo main frame) e non dal
+ * bridge OmnilyPOS, visibile anche agli iframe.
+ *
+ * Il refresh lo fa solo supabase-js: il nativo salva e restituisce, non rinnova mai il token.
+ */
+
+import type { AuthChangeEvent, Session } from '@supabase/supabase-js'
+import { supabase } from './supabase'
+
+interface OmnilySessionChannel {
+  get: () => Promise<Session | null>
+  save: (session: Session) => Promise<null>
+  clear: () => Promise<null>
+}
+
+declare global {
+  interface Window {
+    OmnilySession?: OmnilySessionChannel
+  }
+}
+
+const channel = (): OmnilySessionChannel | undefined =>
+  typeof window !== 'undefined' ? window.OmnilySession : undefined
+
+/**
+ * Al boot: applica la sessione nativa se la WebStorage non ne ha una più recente.
+ * Se il token è scaduto, setSession lo rinnova (un solo refresher: supabase-js).
+ */
+export async function restorePosSession(): Promise<void> {
+  const native = channel()
+  if (!native) return
+
+  try {
+    const stored = await native.get()
+    if (!stored?.access_token || !stored.refresh_token) return
+
+    const { data: { session: local } } = await supabase.auth.getSession()
+    if (local && (local.expires_at ?? 0) >= (stored.expires_at ?? 0)) return
+
+    const { error } = await supabase.auth.setSession({
+      access_token: stored.access_token,
+      refresh_token: stored.refresh_token
+    })
+    if (error) {
+      console.warn('🔐 POS session restore failed, login required:', error.message)
+      await native.clear()
+    } else {
+      console.log('🔐 POS session restored from native store')
+    }
+  } catch (err) {
+    console.warn('🔐 POS session restore error:', err)
+  }
+}
+
+/**
+ * Da onAuthStateChange: tiene il Keystore allineato a supabase-js (token a rotazione)
+ */
+export function syncPosSession(event: AuthChangeEvent, session: Session | null): void {
+  const native = channel()
+  if (!native) return
+
+  if (event === 'SIGNED_OUT') {
+    native.clear().catch((err) => console.warn('🔐 POS session clear error:', err))
+  } else if (session && (event === 'SIGNED_IN' || event === 'TOKEN_REFRESHED' || event === 'USER_UPDATED')) {
+    native.save(session).catch((err) => console.warn('🔐 POS session save error:', err))
+  }
+}
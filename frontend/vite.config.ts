@@ -1,7 +1,41 @@
 import { defineConfig } from 'vite'
 import react from '@vitejs/plugin-react-swc'
 import path from 'path'
-import { copyFileSync } from 'fs'
+import { copyFileSync, readdirSync, readFileSync, statSync, writeFileSync } from 'fs'
+import { createHash } from 'crypto'
+
+// Manifest della build per l'app shell offline del POS Android (android-bridge WebBundleManager)
+function writePosBundleManifest(distDir: string) {
+  const files: Record<string, { sha256: string; size: number }> = {}
+  const walk = (dir: string) => {
+    for (const name of readdirSync(dir)) {
+      const full = path.join(dir, name)
+      if (statSync(full).isDirectory()) {
+        walk(full)
+        continue
+      }
+      const rel = path.relative(distDir, full).split(path.sep).join('/')
+      if (rel === 'pos-manifest.json') continue
+      const data = readFileSync(full)
+      files[rel] = { sha256: createHash('sha256').update(data).digest('hex'), size: data.length }
+    }
+  }
+  walk(distDir)
+
+  // Versione deterministica: cambia solo se cambia almeno un file
+  const versionHash = createHash('sha256')
+  for (const rel of Object.keys(files).sort()) {
+    versionHash.update(rel).update(files[rel].sha256)
+  }
+
+  const manifest = {
+    version: versionHash.digest('hex').substring(0, 16),
+    generatedAt: Date.now(),
+    entry: 'index.html',
+    files,
+  }
+  writeFileSync(path.join(distDir, 'pos-manifest.json'), JSON.stringify(manifest))
+}
 
 // https://vitejs.dev/config/
 export default defineConfig({
@@ -19,6 +53,13 @@ export default defineConfig({
           path.resolve(__dirname, 'dist/loading.html')
         )
       }
+    },
+    // Plugin per generare pos-manifest.json (dopo copy-loading-html, così include tutti i file)
+    {
+      name: 'pos-bundle-manifest',
+      closeBundle() {
+        writePosBundleManifest(path.resolve(__dirname, 'dist'))
+      }
     }
   ],
   esbuild: {